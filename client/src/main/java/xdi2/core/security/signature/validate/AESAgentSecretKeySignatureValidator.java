@@ -13,6 +13,8 @@ import xdi2.client.manipulator.impl.SetLinkContractMessageManipulator;
 import xdi2.core.ContextNode;
 import xdi2.core.constants.XDISecurityConstants;
 import xdi2.core.features.linkcontracts.instance.PublicLinkContract;
+import xdi2.core.security.signature.KeyCache;
+import xdi2.core.security.signature.KeyCache.CachedKey;
 import xdi2.core.syntax.XDIAddress;
 import xdi2.core.util.XDIAddressUtil;
 
@@ -30,6 +32,10 @@ public class AESAgentSecretKeySignatureValidator extends AESSecretKeySignatureVa
 
 		super();
 
+		// keys from the agent are cached without a fingerprint, so they must not be shared with other validators
+
+		this.setKeyCache(new KeyCache());
+
 		this.xdiAgent = xdiAgent;
 	}
 
@@ -41,6 +47,13 @@ public class AESAgentSecretKeySignatureValidator extends AESSecretKeySignatureVa
 	@Override
 	public SecretKey getSecretKey(XDIAddress signerXDIAddress) throws GeneralSecurityException {
 
+		// look in the key cache
+
+		KeyCache keyCache = this.getKeyCache();
+
+		CachedKey<SecretKey> cachedKey = keyCache == null ? null : keyCache.get(SecretKey.class, signerXDIAddress, null);
+		if (cachedKey != null) return cachedKey.getKey();
+
 		// retrieve the key
 
 		SecretKey secretKey = null;
@@ -50,18 +63,19 @@ public class AESAgentSecretKeySignatureValidator extends AESSecretKeySignatureVa
 			XDIAddress secretKeyXDIAddress = XDIAddressUtil.concatXDIAddresses(signerXDIAddress, XDISecurityConstants.XDI_ADD_SECRET_KEY);
 
 			ContextNode contextNode = this.getXdiAgent().get(secretKeyXDIAddress, new SetLinkContractMessageManipulator(PublicLinkContract.class));
-			if (contextNode == null) return null;
-
-			String secretKeyString = contextNode.getLiteralDataString();
-			if (secretKeyString == null) return null;
 
-			secretKey = aesSecretKeyFromSecretKeyString(secretKeyString);
+			String secretKeyString = contextNode == null ? null : contextNode.getLiteralDataString();
+			if (secretKeyString != null) secretKey = aesSecretKeyFromSecretKeyString(secretKeyString);
 		} catch (Xdi2ClientException ex) {
 
 			if (log.isWarnEnabled()) log.warn("Cannot retrieve secret key for " + signerXDIAddress + ": " + ex.getMessage(), ex);
 			return null;
 		}
 
+		// remember the key, or that there is none
+
+		if (keyCache != null) keyCache.put(SecretKey.class, signerXDIAddress, null, secretKey);
+
 		// done
 
 		return secretKey;
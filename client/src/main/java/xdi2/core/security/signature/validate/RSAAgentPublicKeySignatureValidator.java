@@ -12,6 +12,8 @@ import xdi2.client.manipulator.impl.SetLinkContractMessageManipulator;
 import xdi2.core.ContextNode;
 import xdi2.core.constants.XDISecurityConstants;
 import xdi2.core.features.linkcontracts.instance.PublicLinkContract;
+import xdi2.core.security.signature.KeyCache;
+import xdi2.core.security.signature.KeyCache.CachedKey;
 import xdi2.core.syntax.XDIAddress;
 import xdi2.core.util.XDIAddressUtil;
 
@@ -29,6 +31,10 @@ public class RSAAgentPublicKeySignatureValidator extends RSAPublicKeySignatureVa
 
 		super();
 
+		// keys from the agent are cached without a fingerprint, so they must not be shared with other validators
+
+		this.setKeyCache(new KeyCache());
+
 		this.xdiAgent = xdiAgent;
 	}
 
@@ -40,6 +46,13 @@ public class RSAAgentPublicKeySignatureValidator extends RSAPublicKeySignatureVa
 	@Override
 	public RSAPublicKey getPublicKey(XDIAddress signerXDIAddress) throws GeneralSecurityException {
 
+		// look in the key cache
+
+		KeyCache keyCache = this.getKeyCache();
+
+		CachedKey<RSAPublicKey> cachedKey = keyCache == null ? null : keyCache.get(RSAPublicKey.class, signerXDIAddress, null);
+		if (cachedKey != null) return cachedKey.getKey();
+
 		// retrieve the key
 
 		RSAPublicKey publicKey = null;
@@ -49,18 +62,19 @@ public class RSAAgentPublicKeySignatureValidator extends RSAPublicKeySignatureVa
 			XDIAddress publicKeyXDIAddress = XDIAddressUtil.concatXDIAddresses(signerXDIAddress, XDISecurityConstants.XDI_ADD_MSG_SIG_KEYPAIR_PUBLIC_KEY);
 
 			ContextNode contextNode = this.getXdiAgent().get(publicKeyXDIAddress, new SetLinkContractMessageManipulator(PublicLinkContract.class));
-			if (contextNode == null) return null;
-
-			String publicKeyString = contextNode.getLiteralDataString();
-			if (publicKeyString == null) return null;
 
-			publicKey = rsaPublicKeyFromPublicKeyString(publicKeyString);
+			String publicKeyString = contextNode == null ? null : contextNode.getLiteralDataString();
+			if (publicKeyString != null) publicKey = rsaPublicKeyFromPublicKeyString(publicKeyString);
 		} catch (Xdi2ClientException ex) {
 
 			if (log.isWarnEnabled()) log.warn("Cannot retrieve public key for " + signerXDIAddress + ": " + ex.getMessage(), ex);
 			return null;
 		}
 
+		// remember the key, or that there is none
+
+		if (keyCache != null) keyCache.put(RSAPublicKey.class, signerXDIAddress, null, publicKey);
+
 		// done
 
 		return publicKey;
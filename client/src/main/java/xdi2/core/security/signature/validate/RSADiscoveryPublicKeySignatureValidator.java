@@ -7,6 +7,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import xdi2.client.exceptions.Xdi2ClientException;
+import xdi2.core.security.signature.KeyCache;
+import xdi2.core.security.signature.KeyCache.CachedKey;
 import xdi2.core.syntax.XDIAddress;
 import xdi2.discovery.XDIDiscoveryClient;
 import xdi2.discovery.XDIDiscoveryResult;
@@ -27,6 +29,10 @@ public class RSADiscoveryPublicKeySignatureValidator extends RSAPublicKeySignatu
 
 		super();
 
+		// keys from discovery are cached without a fingerprint, so they must not be shared with other validators
+
+		this.setKeyCache(new KeyCache());
+
 		this.xdiDiscoveryClient = xdiDiscoveryClient;
 	}
 
@@ -38,6 +44,13 @@ public class RSADiscoveryPublicKeySignatureValidator extends RSAPublicKeySignatu
 	@Override
 	public RSAPublicKey getPublicKey(XDIAddress signerXDIAddress) throws GeneralSecurityException {
 
+		// look in the key cache
+
+		KeyCache keyCache = this.getKeyCache();
+
+		CachedKey<RSAPublicKey> cachedKey = keyCache == null ? null : keyCache.get(RSAPublicKey.class, signerXDIAddress, null);
+		if (cachedKey != null) return cachedKey.getKey();
+
 		// perform discovery
 
 		RSAPublicKey publicKey = null;
@@ -47,9 +60,7 @@ public class RSADiscoveryPublicKeySignatureValidator extends RSAPublicKeySignatu
 			XDIDiscoveryResult xdiDiscoveryResult = this.getXdiDiscoveryClient().discover(signerXDIAddress);
 
 			String publicKeyString = xdiDiscoveryResult.getSignaturePublicKey();
-			if (publicKeyString == null) return null;
-
-			publicKey = rsaPublicKeyFromPublicKeyString(publicKeyString);
+			if (publicKeyString != null) publicKey = rsaPublicKeyFromPublicKeyString(publicKeyString);
 		} catch (Xdi2ClientException ex) {
 
 			if (log.isWarnEnabled()) log.warn("Cannot discover public key for " + signerXDIAddress + ": " + ex.getMessage(), ex);
@@ -57,6 +68,10 @@ public class RSADiscoveryPublicKeySignatureValidator extends RSAPublicKeySignatu
 			return null;
 		}
 
+		// remember the key, or that there is none
+
+		if (keyCache != null) keyCache.put(RSAPublicKey.class, signerXDIAddress, null, publicKey);
+
 		// done
 
 		return publicKey;
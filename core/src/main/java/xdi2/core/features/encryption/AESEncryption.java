@@ -100,7 +100,7 @@ public final class AESEncryption extends Encryption<SecretKey, SecretKey> {
 
 		try {
 
-			normalizedSerialization = Normalization.serialize(this.getBaseContextNode(), new NoEncryptionsCopyStrategy()).getBytes(Charset.forName("UTF-8"));
+			normalizedSerialization = Normalization.serializeBytes(this.getBaseContextNode(), new NoEncryptionsCopyStrategy());
 		} catch (Exception ex) {
 
 			throw new RuntimeException(ex.getMessage(), ex);
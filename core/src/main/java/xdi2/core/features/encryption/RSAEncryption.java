@@ -99,7 +99,7 @@ public final class RSAEncryption extends Encryption<PublicKey, PrivateKey> {
 
 		try {
 
-			normalizedSerialization = Normalization.serialize(this.getBaseContextNode(), new NoEncryptionsCopyStrategy()).getBytes(Charset.forName("UTF-8"));
+			normalizedSerialization = Normalization.serializeBytes(this.getBaseContextNode(), new NoEncryptionsCopyStrategy());
 		} catch (Exception ex) {
 
 			throw new RuntimeException(ex.getMessage(), ex);
@@ -17,6 +17,23 @@ public class SecretTokens {
 
 	public static String PREFIX_XDI2_DIGEST = "xdi2-digest";
 
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final ThreadLocal<MessageDigest> SHA512_DIGEST = new ThreadLocal<MessageDigest> () {
+
+		@Override
+		protected MessageDigest initialValue() {
+
+			try {
+
+				return MessageDigest.getInstance("SHA-512");
+			} catch (Exception ex) {
+
+				throw new RuntimeException(ex.getMessage(), ex);
+			}
+		}
+	};
+
 	private SecretTokens() { }
 
 	/**
@@ -62,7 +79,7 @@ public class SecretTokens {
 		if (! isValidSalt(globalSalt)) throw new Xdi2RuntimeException("Invalid global salt.");
 		if (! isValidSalt(localSalt)) throw new Xdi2RuntimeException("Invalid local salt.");
 
-		return sha512HexString(globalSalt + ":" + localSalt + ":" + sha512HexString(globalSalt + ":" + new String(Base64.encodeBase64(secretToken.getBytes(Charset.forName("UTF-8"))), Charset.forName("UTF-8"))));
+		return sha512HexString(globalSalt + ":" + localSalt + ":" + sha512HexString(globalSalt + ":" + new String(Base64.encodeBase64(secretToken.getBytes(UTF8)), UTF8)));
 	}
 
 	public static String randomSalt() {
@@ -87,18 +104,10 @@ public class SecretTokens {
 
 	private static String sha512HexString(String string) {
 
-		MessageDigest digest;
-
-		try {
-
-			digest = MessageDigest.getInstance("SHA-512");
-		} catch (Exception ex) {
-
-			throw new RuntimeException(ex.getMessage(), ex);
-		}
+		MessageDigest digest = SHA512_DIGEST.get();
 
 		digest.reset();
-		digest.update(string.getBytes(Charset.forName("UTF-8")));
+		digest.update(string.getBytes(UTF8));
 
 		return new String(Hex.encodeHex(digest.digest()));
 	}
@@ -4,6 +4,9 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import xdi2.core.ContextNode;
 import xdi2.core.Graph;
 import xdi2.core.LiteralNode;
@@ -24,8 +27,10 @@ import xdi2.core.syntax.XDIStatement;
 import xdi2.core.util.iterators.CompositeIterator;
 import xdi2.core.util.iterators.DescendingIterator;
 import xdi2.core.util.iterators.IteratorCounter;
+import xdi2.core.util.iterators.IteratorListMaker;
 import xdi2.core.util.iterators.IteratorFirstItem;
 import xdi2.core.util.iterators.MappingIterator;
+import xdi2.core.util.iterators.NotNullIterator;
 import xdi2.core.util.iterators.ReadOnlyIterator;
 import xdi2.core.util.iterators.SelectingIterator;
 import xdi2.core.util.iterators.SingleItemIterator;
@@ -34,6 +39,8 @@ public abstract class AbstractContextNode extends AbstractNode implements Contex
 
 	private static final long serialVersionUID = 7937255194345376190L;
 
+	private static final Logger log = LoggerFactory.getLogger(AbstractContextNode.class);
+
 	private Graph graph;
 
 	public AbstractContextNode(Graph graph, ContextNode contextNode) {
@@ -163,7 +170,7 @@ public abstract class AbstractContextNode extends AbstractNode implements Contex
 	@Override
 	public void delContextNodes() {
 
-		for (ContextNode contextNode : this.getContextNodes()) contextNode.delete();
+		for (ContextNode contextNode : new IteratorListMaker<ContextNode> (this.getContextNodes()).list()) contextNode.delete();
 	}
 
 	@Override
@@ -248,11 +255,34 @@ public abstract class AbstractContextNode extends AbstractNode implements Contex
 	}
 
 	@Override
-	/*
-	 * TODO: This is inefficient for a large number of context nodes in the graph.
-	 */
 	public ReadOnlyIterator<Relation> getIncomingRelations() {
 
+		IncomingRelationIndex incomingRelationIndex = this.getIncomingRelationIndex();
+
+		// look up incoming relations in the index, if the graph maintains one
+
+		if (incomingRelationIndex != null) {
+
+			return new NotNullIterator<Relation> (new MappingIterator<XDIStatement, Relation> (incomingRelationIndex.getIncomingRelations(this.getXDIAddress())) {
+
+				@Override
+				public Relation map(XDIStatement XDIstatement) {
+
+					ContextNode contextNode = AbstractContextNode.this.getGraph().getDeepContextNode(XDIstatement.getContextNodeXDIAddress(), false);
+
+					if (contextNode == null) {
+
+						if (log.isWarnEnabled()) log.warn("In context node " + AbstractContextNode.this.getXDIAddress() + " found incoming relation " + XDIstatement.getRelationXDIAddress() + " from non-existent context node " + XDIstatement.getContextNodeXDIAddress());
+						return null;
+					}
+
+					return contextNode.getRelation(XDIstatement.getRelationXDIAddress(), XDIstatement.getTargetXDIAddress());
+				}
+			});
+		}
+
+		// otherwise we have to look at all relations in the graph
+
 		return new SelectingIterator<Relation> (this.getGraph().getRootContextNode(true).getAllRelations()) {
 
 			@Override
@@ -340,7 +370,7 @@ public abstract class AbstractContextNode extends AbstractNode implements Contex
 	@Override
 	public void delRelations() {
 
-		for (Relation relation : this.getRelations()) relation.delete();
+		for (Relation relation : new IteratorListMaker<Relation> (this.getRelations()).list()) relation.delete();
 	}
 
 	@Override
@@ -865,6 +895,16 @@ public abstract class AbstractContextNode extends AbstractNode implements Contex
 		if (this.containsRelations(XDIDictionaryConstants.XDI_ADD_REP)) throw new Xdi2GraphException("Cannot add literal to context node " + this.getXDIAddress() + " containing a " + XDIDictionaryConstants.XDI_ADD_REP + " relation.");*/
 	}
 
+	/**
+	 * Returns the index of incoming relations maintained by the graph.
+	 * Subclasses that maintain such an index must keep it up to date whenever a relation is set or deleted.
+	 * @return The index of incoming relations, or null, if the graph does not maintain one.
+	 */
+	protected IncomingRelationIndex getIncomingRelationIndex() {
+
+		return null;
+	}
+
 	/**
 	 * When a context node is created, check if the inner root subject and predicate have to be created too.
 	 */
@@ -895,7 +935,7 @@ public abstract class AbstractContextNode extends AbstractNode implements Contex
 	 */
 	protected void delContextNodeDelAllInnerRoots() {
 
-		for (Relation relation : this.getAllRelations()) {
+		for (Relation relation : new IteratorListMaker<Relation> (this.getAllRelations()).list()) {
 
 			AbstractContextNode contextNode = ((AbstractContextNode) relation.getContextNode());
 
@@ -908,7 +948,7 @@ public abstract class AbstractContextNode extends AbstractNode implements Contex
 	 */
 	protected void delContextNodeDelAllRelations() {
 
-		for (Relation relation : this.getAllRelations()) relation.delete();
+		for (Relation relation : new IteratorListMaker<Relation> (this.getAllRelations()).list()) relation.delete();
 	}
 
 	/**
@@ -916,7 +956,7 @@ public abstract class AbstractContextNode extends AbstractNode implements Contex
 	 */
 	protected void delContextNodeDelAllIncomingRelations() {
 
-		for (Relation relation : this.getAllIncomingRelations()) relation.delete();
+		for (Relation relation : new IteratorListMaker<Relation> (this.getAllIncomingRelations()).list()) relation.delete();
 	}
 
 	/**
@@ -2,7 +2,12 @@ package xdi2.core.impl;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 import xdi2.core.ContextNode;
 import xdi2.core.Graph;
@@ -27,10 +32,14 @@ public abstract class AbstractGraph implements Graph {
 	private GraphFactory graphFactory;
 	private String identifier;
 
+	private final AtomicLong modificationCount;
+
 	protected AbstractGraph(GraphFactory graphFactory, String identifier) {
 
 		this.graphFactory = graphFactory;
 		this.identifier = identifier;
+
+		this.modificationCount = new AtomicLong();
 	}
 
 	/*
@@ -292,6 +301,11 @@ public abstract class AbstractGraph implements Graph {
 		return this.toString(MIME_TYPE_GRAPH_STRING);
 	}
 
+	/**
+	 * Two graphs are equal if they contain the same statements.
+	 * This first compares the number of statements and the order-independent hash of the statements,
+	 * and only if these match, checks if every statement of this graph is contained in the other graph.
+	 */
 	@Override
 	public boolean equals(Object object) {
 
@@ -300,29 +314,124 @@ public abstract class AbstractGraph implements Graph {
 
 		Graph other = (Graph) object;
 
-		// TODO: do this without serializing to string
+		GraphHash graphHash = this.getGraphHash();
+		GraphHash otherGraphHash = getGraphHash(other);
 
-		return this.toString(MIME_TYPE_GRAPH_STRING).equals(other.toString(MIME_TYPE_GRAPH_STRING));
+		if (graphHash.getCount() != otherGraphHash.getCount()) return false;
+		if (graphHash.getHash() != otherGraphHash.getHash()) return false;
+
+		return containsAllStatements(other, this);
 	}
 
 	@Override
 	public int hashCode() {
 
-		// TODO: do this without serializing to string
+		long hash = this.getGraphHash().getHash();
 
-		return this.toString(MIME_TYPE_GRAPH_STRING).hashCode();
+		return (int) (hash ^ (hash >>> 32));
 	}
 
+	/**
+	 * Graphs are ordered by the number of statements, then by the order-independent hash of the statements,
+	 * and finally by comparing their sorted statements.
+	 */
 	@Override
 	public int compareTo(Graph other) {
 
 		if (other == null || other == this) return 0;
 
-		// TODO: do this without serializing to string
+		GraphHash graphHash = this.getGraphHash();
+		GraphHash otherGraphHash = getGraphHash(other);
+
+		if (graphHash.getCount() != otherGraphHash.getCount()) return graphHash.getCount() < otherGraphHash.getCount() ? -1 : 1;
+		if (graphHash.getHash() != otherGraphHash.getHash()) return graphHash.getHash() < otherGraphHash.getHash() ? -1 : 1;
+
+		if (containsAllStatements(other, this)) return 0;
+
+		// same number of statements and same hash, but different statements
+
+		Iterator<String> statements = sortedStatements(this).iterator();
+		Iterator<String> otherStatements = sortedStatements(other).iterator();
+
+		while (statements.hasNext() && otherStatements.hasNext()) {
+
+			int compare = statements.next().compareTo(otherStatements.next());
+			if (compare != 0) return compare;
+		}
+
+		return 0;
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	/**
+	 * Returns a number that is increased after every change of this graph.
+	 * Caches of data derived from a graph can remember this number, and discard their data once it is different.
+	 * The number is increased after a change has been applied, so data derived after reading
+	 * the number is never newer than the number.
+	 */
+	public long getModificationCount() {
+
+		return this.modificationCount.get();
+	}
+
+	/**
+	 * Graph implementations call this after every change of this graph.
+	 */
+	protected void modified() {
+
+		this.modificationCount.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of statements and the order-independent hash of the statements in this graph.
+	 * Graph implementations that can maintain this incrementally should override this method,
+	 * otherwise it is calculated by iterating over all statements.
+	 */
+	public GraphHash getGraphHash() {
+
+		return new GraphHash(this.getAllStatements());
+	}
+
+	/**
+	 * Returns the numbers of context nodes, relations, literals and statements in this graph.
+	 * This takes constant time for graph implementations that maintain these numbers incrementally.
+	 */
+	public GraphStatistics getGraphStatistics() {
+
+		return GraphStatistics.fromGraph(this);
+	}
+
+	private static GraphHash getGraphHash(Graph graph) {
+
+		if (graph instanceof AbstractGraph) return ((AbstractGraph) graph).getGraphHash();
+
+		return new GraphHash(graph.getAllStatements());
+	}
+
+	private static boolean containsAllStatements(Graph graph, Graph statementsGraph) {
+
+		for (Iterator<Statement> statements = statementsGraph.getAllStatements(); statements.hasNext(); ) {
+
+			if (! graph.containsStatement(statements.next().getXDIStatement())) return false;
+		}
+
+		return true;
+	}
+
+	private static List<String> sortedStatements(Graph graph) {
+
+		List<String> list = new ArrayList<String> ();
+
+		for (Iterator<Statement> statements = graph.getAllStatements(); statements.hasNext(); ) {
+
+			list.add(statements.next().getXDIStatement().toString());
+		}
 
-		String string1 = this.toString(MIME_TYPE_GRAPH_STRING);
-		String string2 = other.toString(MIME_TYPE_GRAPH_STRING);
+		Collections.sort(list);
 
-		return string1.compareTo(string2);
+		return list;
 	}
 }
@@ -1,6 +1,7 @@
 package xdi2.core.impl;
 
 import xdi2.core.ContextNode;
+import xdi2.core.Graph;
 import xdi2.core.LiteralNode;
 import xdi2.core.Node;
 import xdi2.core.constants.XDIConstants;
@@ -64,4 +65,18 @@ public abstract class AbstractNode implements Node {
 
 		return this.XDIaddress;
 	}
+
+	/*
+	 * Helper methods
+	 */
+
+	/**
+	 * Graph implementations call this after every change of a node.
+	 */
+	protected void modified() {
+
+		Graph graph = this.getGraph();
+
+		if (graph instanceof AbstractGraph) ((AbstractGraph) graph).modified();
+	}
 }
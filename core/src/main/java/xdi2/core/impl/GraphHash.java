@@ -0,0 +1,106 @@
+package xdi2.core.impl;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import xdi2.core.Statement;
+import xdi2.core.syntax.XDIStatement;
+
+/**
+ * An order-independent hash over the statements of a graph, together with the number of statements.
+ * The hash is the sum of 64-bit hashes of the individual statements, so it can be
+ * updated incrementally when statements are added or removed, and it does not
+ * depend on the order in which the statements are visited.
+ * Since the sums are commutative, they are updated without a lock. While statements are being
+ * added or removed concurrently, the hash and the count may be read at different moments.
+ *
+ * @author markus
+ */
+public class GraphHash implements Serializable {
+
+	private static final long serialVersionUID = -6190437512250838729L;
+
+	private final AtomicLong hash;
+	private final AtomicLong count;
+
+	public GraphHash() {
+
+		this.hash = new AtomicLong(0);
+		this.count = new AtomicLong(0);
+	}
+
+	public GraphHash(Iterator<Statement> statements) {
+
+		this();
+
+		while (statements.hasNext()) this.addStatement(statements.next().getXDIStatement());
+	}
+
+	public void addStatement(XDIStatement XDIstatement) {
+
+		this.hash.addAndGet(hash(XDIstatement));
+		this.count.incrementAndGet();
+	}
+
+	public void delStatement(XDIStatement XDIstatement) {
+
+		this.hash.addAndGet(- hash(XDIstatement));
+		this.count.decrementAndGet();
+	}
+
+	public void clear() {
+
+		this.hash.set(0);
+		this.count.set(0);
+	}
+
+	public long getHash() {
+
+		return this.hash.get();
+	}
+
+	public long getCount() {
+
+		return this.count.get();
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	/**
+	 * Calculates a 64-bit hash of a statement, using FNV-1a over its string
+	 * representation, followed by a final bit mix.
+	 */
+	public static long hash(XDIStatement XDIstatement) {
+
+		String string = XDIstatement.toString();
+
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < string.length(); i++) {
+
+			hash ^= string.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+
+		hash ^= (hash >>> 33);
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= (hash >>> 33);
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= (hash >>> 33);
+
+		return hash;
+	}
+
+	/*
+	 * Object methods
+	 */
+
+	@Override
+	public String toString() {
+
+		return Long.toHexString(this.getHash()) + " (" + this.getCount() + " statements)";
+	}
+}
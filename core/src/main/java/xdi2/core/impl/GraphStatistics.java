@@ -0,0 +1,110 @@
+package xdi2.core.impl;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import xdi2.core.ContextNode;
+import xdi2.core.Graph;
+
+/**
+ * The numbers of context nodes, relations, literals and statements in a graph, taken at one point in time.
+ * Graph implementations that maintain these numbers incrementally can return them without iterating over the graph.
+ *
+ * @author markus
+ */
+public class GraphStatistics implements Serializable {
+
+	private static final long serialVersionUID = -2170851457718853032L;
+
+	private final String identifier;
+	private final long contextNodeCount;
+	private final long relationCount;
+	private final long literalCount;
+	private final long statementCount;
+	private final long timestamp;
+
+	public GraphStatistics(String identifier, long contextNodeCount, long relationCount, long literalCount, long statementCount) {
+
+		this.identifier = identifier;
+		this.contextNodeCount = contextNodeCount;
+		this.relationCount = relationCount;
+		this.literalCount = literalCount;
+		this.statementCount = statementCount;
+		this.timestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * Reads the statistics of a graph from the counts of its root context node.
+	 */
+	public static GraphStatistics fromGraph(Graph graph) {
+
+		ContextNode rootContextNode = graph.getRootContextNode(false);
+
+		return new GraphStatistics(
+				graph.getIdentifier(),
+				rootContextNode.getAllContextNodeCount(),
+				rootContextNode.getAllRelationCount(),
+				rootContextNode.getAllLiteralCount(),
+				graph.getAllStatementCount());
+	}
+
+	/**
+	 * Returns the statistics as a map of names to numbers, e.g. for exporting them to a monitoring system.
+	 */
+	public Map<String, Long> toMap() {
+
+		Map<String, Long> map = new LinkedHashMap<String, Long> ();
+
+		map.put("contextNodes", Long.valueOf(this.contextNodeCount));
+		map.put("relations", Long.valueOf(this.relationCount));
+		map.put("literals", Long.valueOf(this.literalCount));
+		map.put("statements", Long.valueOf(this.statementCount));
+
+		return map;
+	}
+
+	/*
+	 * Getters and setters
+	 */
+
+	public String getIdentifier() {
+
+		return this.identifier;
+	}
+
+	public long getContextNodeCount() {
+
+		return this.contextNodeCount;
+	}
+
+	public long getRelationCount() {
+
+		return this.relationCount;
+	}
+
+	public long getLiteralCount() {
+
+		return this.literalCount;
+	}
+
+	public long getStatementCount() {
+
+		return this.statementCount;
+	}
+
+	public long getTimestamp() {
+
+		return this.timestamp;
+	}
+
+	/*
+	 * Object methods
+	 */
+
+	@Override
+	public String toString() {
+
+		return "GraphStatistics[" + this.identifier + ": " + this.toMap() + "]";
+	}
+}
@@ -0,0 +1,40 @@
+package xdi2.core.impl;
+
+import java.util.Iterator;
+
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIStatement;
+
+/**
+ * An index from target node addresses to the relations pointing to them.
+ * Graph implementations that maintain such an index update it whenever
+ * a relation is set or deleted, so that incoming relations of a context node
+ * can be found without traversing the whole graph.
+ *
+ * @author markus
+ */
+public interface IncomingRelationIndex {
+
+	/**
+	 * Adds a relation to the index.
+	 * @param contextNodeXDIAddress The address of the context node of the relation.
+	 * @param XDIaddress The address of the relation.
+	 * @param targetXDIAddress The address of the target node of the relation.
+	 */
+	public void addIncomingRelation(XDIAddress contextNodeXDIAddress, XDIAddress XDIaddress, XDIAddress targetXDIAddress);
+
+	/**
+	 * Removes a relation from the index.
+	 * @param contextNodeXDIAddress The address of the context node of the relation.
+	 * @param XDIaddress The address of the relation.
+	 * @param targetXDIAddress The address of the target node of the relation.
+	 */
+	public void delIncomingRelation(XDIAddress contextNodeXDIAddress, XDIAddress XDIaddress, XDIAddress targetXDIAddress);
+
+	/**
+	 * Returns the relation statements of all relations pointing to a target node.
+	 * @param targetXDIAddress The address of the target node.
+	 * @return An iterator over relation statements.
+	 */
+	public Iterator<XDIStatement> getIncomingRelations(XDIAddress targetXDIAddress);
+}
@@ -14,9 +14,15 @@ import xdi2.core.impl.AbstractGraphFactory;
  */
 public abstract class AbstractJSONGraphFactory extends AbstractGraphFactory implements GraphFactory {
 
+	public static final int DEFAULT_READCACHESIZE = 0;
+
+	private int readCacheSize;
+
 	public AbstractJSONGraphFactory() {
 
 		super();
+
+		this.readCacheSize = DEFAULT_READCACHESIZE;
 	}
 
 	@Override
@@ -26,7 +32,7 @@ public abstract class AbstractJSONGraphFactory extends AbstractGraphFactory impl
 
 		JSONStore jsonStore = this.openJSONStore(identifier);
 
-		return new JSONGraph(this, identifier, jsonStore);
+		return new JSONGraph(this, identifier, jsonStore, this.readCacheSize);
 	}
 
 	/**
@@ -34,4 +40,18 @@ public abstract class AbstractJSONGraphFactory extends AbstractGraphFactory impl
 	 * @param identifier An optional identifier to distinguish JSON stores from one another.
 	 */
 	protected abstract JSONStore openJSONStore(String identifier) throws IOException;
+
+	public int getReadCacheSize() {
+
+		return this.readCacheSize;
+	}
+
+	/**
+	 * Sets the maximum number of parsed JSON objects that a graph keeps across transactions, or 0 for none.
+	 * This should only be enabled if the graph is the only one that writes to its JSON store.
+	 */
+	public void setReadCacheSize(int readCacheSize) {
+
+		this.readCacheSize = readCacheSize;
+	}
 }
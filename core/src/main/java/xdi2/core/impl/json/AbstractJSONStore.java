@@ -116,4 +116,40 @@ public abstract class AbstractJSONStore implements JSONStore {
 	public void rollbackTransaction() {
 
 	}
+
+	/*
+	 * Helper methods
+	 */
+
+	protected static JsonObject deepCopy(JsonObject jsonObject) {
+
+		JsonObject result = new JsonObject();
+
+		for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
+
+			result.add(entry.getKey(), deepCopy(entry.getValue()));
+		}
+
+		return result;
+	}
+
+	private static JsonArray deepCopy(JsonArray jsonArray) {
+
+		JsonArray result = new JsonArray();
+
+		for (JsonElement element : jsonArray) {
+
+			result.add(deepCopy(element));
+		}
+
+		return result;
+	}
+
+	private static JsonElement deepCopy(JsonElement jsonElement) {
+
+		if (jsonElement instanceof JsonObject) return deepCopy((JsonObject) jsonElement);
+		if (jsonElement instanceof JsonArray) return deepCopy((JsonArray) jsonElement);
+
+		return jsonElement;
+	}
 }
@@ -6,9 +6,6 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -29,15 +26,12 @@ import xdi2.core.util.iterators.EmptyIterator;
 import xdi2.core.util.iterators.IteratorContains;
 import xdi2.core.util.iterators.IteratorListMaker;
 import xdi2.core.util.iterators.MappingIterator;
-import xdi2.core.util.iterators.NotNullIterator;
 import xdi2.core.util.iterators.ReadOnlyIterator;
 
 public class JSONContextNode extends AbstractContextNode implements ContextNode {
 
 	private static final long serialVersionUID = 1222781682444161539L;
 
-	private static final Logger log = LoggerFactory.getLogger(JSONContextNode.class);
-
 	private XDIArc XDIarc;
 	private XDIAddress XDIaddress;
 
@@ -96,6 +90,8 @@ public class JSONContextNode extends AbstractContextNode implements ContextNode
 
 		this.setContextNodeSetInnerRoot(XDIarc, contextNode);
 
+		this.modified();
+
 		// done
 
 		return contextNode;
@@ -204,6 +200,8 @@ public class JSONContextNode extends AbstractContextNode implements ContextNode
 
 		((JSONGraph) this.getGraph()).jsonDelete(contextNode.getXDIAddress().toString());
 		((JSONGraph) this.getGraph()).jsonDeleteFromArray(this.getXDIAddress().toString(), XDIConstants.STRING_CONTEXT, new JsonPrimitive(XDIarc.toString()));
+
+		this.modified();
 	}
 
 	@Override
@@ -218,7 +216,12 @@ public class JSONContextNode extends AbstractContextNode implements ContextNode
 		// set the relation
 
 		((JSONGraph) this.getGraph()).jsonSaveToArray(this.getXDIAddress().toString(), XDIaddress.toString(), new JsonPrimitive(targetXDIAddress.toString()));
-		((JSONGraph) this.getGraph()).jsonSaveToArray(targetXDIAddress.toString(), "/" + XDIaddress.toString(), new JsonPrimitive(this.getXDIAddress().toString()));
+
+		// update incoming relation index
+
+		this.getIncomingRelationIndex().addIncomingRelation(this.getXDIAddress(), XDIaddress, targetXDIAddress);
+
+		this.modified();
 
 		JSONRelation relation = new JSONRelation(this, XDIaddress, targetXDIAddress);
 
@@ -227,6 +230,21 @@ public class JSONContextNode extends AbstractContextNode implements ContextNode
 		return relation;
 	}
 
+	@Override
+	public Relation getRelation(XDIAddress XDIaddress, XDIAddress targetXDIAddress) {
+
+		JsonObject jsonObject = ((JSONGraph) this.getGraph()).jsonLoad(this.getXDIAddress().toString());
+
+		final JsonElement jsonElementRelations = jsonObject.get(XDIaddress.toString());
+		if (jsonElementRelations == null || ! jsonElementRelations.isJsonArray()) return null;
+
+		final JsonArray jsonArrayRelations = jsonElementRelations.getAsJsonArray();
+
+		if (! new IteratorContains<JsonElement> (jsonArrayRelations.iterator(), new JsonPrimitive(targetXDIAddress.toString())).contains()) return null;
+
+		return new JSONRelation(this, XDIaddress, targetXDIAddress);
+	}
+
 	@Override
 	public ReadOnlyIterator<Relation> getRelations() {
 
@@ -263,59 +281,22 @@ public class JSONContextNode extends AbstractContextNode implements ContextNode
 		};
 	}
 
-	@Override
-	public ReadOnlyIterator<Relation> getIncomingRelations() {
-
-		JsonObject jsonObject = ((JSONGraph) this.getGraph()).jsonLoad(this.getXDIAddress().toString());
-
-		final Set<Entry<String, JsonElement>> entrySet = new HashSet<Entry<String, JsonElement>> (jsonObject.entrySet());
-
-		return new DescendingIterator<Entry<String, JsonElement>, Relation> (entrySet.iterator()) {
-
-			@Override
-			public Iterator<Relation> descend(Entry<String, JsonElement> entry) {
-
-				if (! entry.getKey().startsWith("/")) return null;
-
-				final XDIAddress XDIaddress = XDIAddress.create(entry.getKey().substring(1));
-
-				JsonArray jsonArrayIncomingRelations = (JsonArray) entry.getValue();
-
-				final List<JsonElement> entryList = new IteratorListMaker<JsonElement> (jsonArrayIncomingRelations.iterator()).list();
-
-				return new NotNullIterator<Relation> (new MappingIterator<JsonElement, Relation> (entryList.iterator()) {
-
-					@Override
-					public Relation map(JsonElement jsonElement) {
-
-						XDIAddress contextNodeXDIAddress = XDIAddress.create(((JsonPrimitive) jsonElement).getAsString());
-
-						ContextNode contextNode = JSONContextNode.this.getGraph().getDeepContextNode(contextNodeXDIAddress, false);
-
-						if (contextNode == null) {
-
-							log.warn("In context node " + JSONContextNode.this.getXDIAddress() + " found incoming relation " + XDIaddress + " from non-existent context node " + contextNodeXDIAddress);
-							return null;
-						}
-
-						return new JSONRelation(contextNode, XDIaddress, JSONContextNode.this.getXDIAddress());
-					}
-				});
-			}
-		};
-	}
-
 	@Override
 	public void delRelation(XDIAddress XDIaddress, XDIAddress targetXDIAddress) {
 
 		// delete the relation
 
 		((JSONGraph) this.getGraph()).jsonDeleteFromArray(this.getXDIAddress().toString(), XDIaddress.toString(), new JsonPrimitive(targetXDIAddress.toString()));
-		((JSONGraph) this.getGraph()).jsonDeleteFromArray(targetXDIAddress.toString(), "/" + XDIaddress.toString(), new JsonPrimitive(this.getXDIAddress().toString()));
+
+		// update incoming relation index
+
+		this.getIncomingRelationIndex().delIncomingRelation(this.getXDIAddress(), XDIaddress, targetXDIAddress);
 
 		// delete inner root
 
 		this.delRelationDelInnerRoot(XDIaddress, targetXDIAddress);
+
+		this.modified();
 	}
 
 	@Override
@@ -329,6 +310,8 @@ public class JSONContextNode extends AbstractContextNode implements ContextNode
 
 		((JSONGraph) this.getGraph()).jsonSaveToObject(this.getXDIAddress().toString(), XDIConstants.XDI_ARC_LITERAL.toString(), AbstractLiteralNode.literalDataToJsonElement(literalData));
 
+		this.modified();
+
 		JSONLiteralNode literalNode = new JSONLiteralNode(this);
 
 		// done
@@ -350,5 +333,17 @@ public class JSONContextNode extends AbstractContextNode implements ContextNode
 	public void delLiteralNode() {
 
 		((JSONGraph) this.getGraph()).jsonDeleteFromObject(this.getXDIAddress().toString(), XDIConstants.XDI_ARC_LITERAL.toString());
+
+		this.modified();
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	@Override
+	protected JSONIncomingRelationIndex getIncomingRelationIndex() {
+
+		return ((JSONGraph) this.getGraph()).getIncomingRelationIndex();
 	}
 }
@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,9 +24,22 @@ import xdi2.core.GraphFactory;
 import xdi2.core.constants.XDIConstants;
 import xdi2.core.exceptions.Xdi2RuntimeException;
 import xdi2.core.impl.AbstractGraph;
+import xdi2.core.util.BoundedCache;
 import xdi2.core.util.iterators.IteratorContains;
 import xdi2.core.util.iterators.IteratorRemover;
 
+/**
+ * A graph that stores its context nodes as JSON objects in a JSONStore.
+ *
+ * Within a transaction, loaded JSON objects are cached until the transaction ends.
+ * Optionally, a size-bounded read cache keeps parsed JSON objects across transactions.
+ * Changes remove the affected objects from the read cache, and a rollback clears it.
+ * Since objects in the transaction cache are changed in place, the two caches never share an object.
+ * Every change to the read cache increases a generation, so that an object that was loaded before
+ * a change is not put into the read cache after the change has removed it.
+ *
+ * @author markus
+ */
 public class JSONGraph extends AbstractGraph implements Graph {
 
 	private static final long serialVersionUID = -7459785412219244590L;
@@ -35,24 +49,30 @@ public class JSONGraph extends AbstractGraph implements Graph {
 	private final JSONStore jsonStore;
 
 	private final JSONContextNode jsonRootContextNode;
+	private final JSONIncomingRelationIndex incomingRelationIndex;
 	private final Map<String, JsonObject> jsonObjectsCached;
 	private final Set<String> jsonObjectsCachedWithPrefix;
+	private final BoundedCache<String, JsonObject> readCache;
+	private final AtomicLong readCacheGeneration;
 
 	private boolean useCache;
 
 	private StringBuffer logBuffer;
 	private boolean logEnabled;
 
-	JSONGraph(GraphFactory graphFactory, String identifier, JSONStore jsonStore) {
+	JSONGraph(GraphFactory graphFactory, String identifier, JSONStore jsonStore, int readCacheSize) {
 
 		super(graphFactory, identifier);
 
 		this.jsonStore = jsonStore;
 
 		this.jsonRootContextNode = new JSONContextNode(this, null, null, XDIConstants.XDI_ADD_ROOT);
+		this.incomingRelationIndex = new JSONIncomingRelationIndex(this);
 
 		this.jsonObjectsCached = new ConcurrentHashMap<String, JsonObject> ();
 		this.jsonObjectsCachedWithPrefix = new HashSet<String> ();
+		this.readCache = readCacheSize > 0 ? new BoundedCache<String, JsonObject> (readCacheSize) : null;
+		this.readCacheGeneration = new AtomicLong();
 
 		this.useCache = false;
 
@@ -111,6 +131,8 @@ public class JSONGraph extends AbstractGraph implements Graph {
 		this.useCache = false;
 
 		this.jsonStore.commitTransaction();
+
+		this.modified();
 	}
 
 	@Override
@@ -122,6 +144,10 @@ public class JSONGraph extends AbstractGraph implements Graph {
 		this.useCache = false;
 
 		this.jsonStore.rollbackTransaction();
+
+		this.clearReadCache();
+
+		this.modified();
 	}
 
 	/*
@@ -133,6 +159,20 @@ public class JSONGraph extends AbstractGraph implements Graph {
 		return this.jsonStore;
 	}
 
+	/**
+	 * Returns the cache of parsed JSON objects that is kept across transactions,
+	 * with its hit and miss statistics, or null if it is disabled.
+	 */
+	public BoundedCache<String, JsonObject> getReadCache() {
+
+		return this.readCache;
+	}
+
+	public JSONIncomingRelationIndex getIncomingRelationIndex() {
+
+		return this.incomingRelationIndex;
+	}
+
 	public StringBuffer getLogBuffer() {
 
 		return this.logBuffer;
@@ -157,6 +197,47 @@ public class JSONGraph extends AbstractGraph implements Graph {
 	 * Helper methods
 	 */
 
+	/**
+	 * Puts a loaded object into the read cache, unless the read cache was changed since the object was loaded.
+	 * The generation is checked after the put, so a change that comes in between removes the object again.
+	 */
+	private void putReadCache(String id, JsonObject jsonObject, long readCacheGeneration) {
+
+		if (this.readCacheGeneration.get() != readCacheGeneration) return;
+
+		this.readCache.put(id, jsonObject);
+
+		if (this.readCacheGeneration.get() != readCacheGeneration) this.readCache.remove(id);
+	}
+
+	private void removeReadCache(String id) {
+
+		if (this.readCache == null) return;
+
+		this.readCacheGeneration.incrementAndGet();
+		this.readCache.remove(id);
+	}
+
+	private void removeReadCacheWithPrefix(String id) {
+
+		if (this.readCache == null) return;
+
+		this.readCacheGeneration.incrementAndGet();
+
+		for (String key : this.readCache.keys()) {
+
+			if (key.startsWith(id)) this.readCache.remove(key);
+		}
+	}
+
+	private void clearReadCache() {
+
+		if (this.readCache == null) return;
+
+		this.readCacheGeneration.incrementAndGet();
+		this.readCache.clear();
+	}
+
 	JsonObject jsonLoad(String id) {
 
 		JsonObject jsonObjectCached = null;
@@ -175,8 +256,28 @@ public class JSONGraph extends AbstractGraph implements Graph {
 				}
 			}
 
+			if (this.readCache != null) {
+
+				jsonObjectCached = this.readCache.get(id);
+
+				if (jsonObjectCached != null) {
+
+					jsonObject = jsonObjectCached;
+
+					if (this.useCache) {
+
+						jsonObject = AbstractJSONStore.deepCopy(jsonObjectCached);
+						this.jsonObjectsCached.put(id, jsonObject);
+					}
+
+					return jsonObject;
+				}
+			}
+
 			try {
 
+				long readCacheGeneration = this.readCacheGeneration.get();
+
 				jsonObject = this.jsonStore.load(id);
 				if (jsonObject == null) jsonObject = new JsonObject();
 
@@ -185,6 +286,11 @@ public class JSONGraph extends AbstractGraph implements Graph {
 					this.jsonObjectsCached.put(id, jsonObject);
 				}
 
+				if (this.readCache != null) {
+
+					this.putReadCache(id, this.useCache ? AbstractJSONStore.deepCopy(jsonObject) : jsonObject, readCacheGeneration);
+				}
+
 				return jsonObject;
 			} catch (IOException ex) {
 
@@ -220,6 +326,8 @@ public class JSONGraph extends AbstractGraph implements Graph {
 
 			try {
 
+				long readCacheGeneration = this.readCacheGeneration.get();
+
 				jsonObjects = this.jsonStore.loadWithPrefix(id);
 
 				if (this.useCache) {
@@ -228,6 +336,14 @@ public class JSONGraph extends AbstractGraph implements Graph {
 					this.jsonObjectsCachedWithPrefix.addAll(jsonObjects.keySet());
 				}
 
+				if (this.readCache != null) {
+
+					for (Entry<String, JsonObject> entry : jsonObjects.entrySet()) {
+
+						this.putReadCache(entry.getKey(), this.useCache ? AbstractJSONStore.deepCopy(entry.getValue()) : entry.getValue(), readCacheGeneration);
+					}
+				}
+
 				return jsonObjects;
 			} catch (IOException ex) {
 
@@ -251,6 +367,8 @@ public class JSONGraph extends AbstractGraph implements Graph {
 
 			this.jsonStore.save(id, jsonObject);
 
+			this.removeReadCache(id);
+
 			if (this.useCache) {
 
 				this.jsonObjectsCached.put(id, jsonObject);
@@ -271,6 +389,8 @@ public class JSONGraph extends AbstractGraph implements Graph {
 
 			this.jsonStore.saveToArray(id, key, jsonPrimitive);
 
+			this.removeReadCache(id);
+
 			if (this.useCache) {
 
 				JsonObject jsonObject = this.jsonObjectsCached.get(id);
@@ -314,6 +434,8 @@ public class JSONGraph extends AbstractGraph implements Graph {
 
 			this.jsonStore.saveToObject(id, key, jsonElement);
 
+			this.removeReadCache(id);
+
 			if (this.useCache) {
 
 				JsonObject jsonObject = this.jsonObjectsCached.get(id);
@@ -345,7 +467,10 @@ public class JSONGraph extends AbstractGraph implements Graph {
 
 			this.jsonStore.delete(id);
 
+			this.removeReadCacheWithPrefix(id);
+
 			if (this.useCache) {
+
 				for (Iterator<Entry<String, JsonObject>> iterator = this.jsonObjectsCached.entrySet().iterator(); iterator.hasNext(); ) {
 
 					if (iterator.next().getKey().startsWith(id)) iterator.remove();
@@ -367,6 +492,8 @@ public class JSONGraph extends AbstractGraph implements Graph {
 
 			this.jsonStore.deleteFromArray(id, key, jsonPrimitive);
 
+			this.removeReadCache(id);
+
 			if (this.useCache) {
 
 				JsonObject jsonObject = this.jsonObjectsCached.get(id);
@@ -395,6 +522,8 @@ public class JSONGraph extends AbstractGraph implements Graph {
 
 			this.jsonStore.deleteFromObject(id, key);
 
+			this.removeReadCache(id);
+
 			if (this.useCache) {
 
 				JsonObject jsonObject = this.jsonObjectsCached.get(id);
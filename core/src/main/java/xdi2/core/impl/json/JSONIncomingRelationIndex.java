@@ -0,0 +1,81 @@
+package xdi2.core.impl.json;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import xdi2.core.impl.IncomingRelationIndex;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.core.util.iterators.DescendingIterator;
+import xdi2.core.util.iterators.IteratorListMaker;
+import xdi2.core.util.iterators.MappingIterator;
+
+/**
+ * An IncomingRelationIndex that keeps its entries in the JSON objects of the target nodes,
+ * as arrays under the relation address prefixed with "/".
+ *
+ * @author markus
+ */
+public class JSONIncomingRelationIndex implements IncomingRelationIndex {
+
+	private JSONGraph graph;
+
+	public JSONIncomingRelationIndex(JSONGraph graph) {
+
+		this.graph = graph;
+	}
+
+	@Override
+	public void addIncomingRelation(XDIAddress contextNodeXDIAddress, XDIAddress XDIaddress, XDIAddress targetXDIAddress) {
+
+		this.graph.jsonSaveToArray(targetXDIAddress.toString(), "/" + XDIaddress.toString(), new JsonPrimitive(contextNodeXDIAddress.toString()));
+	}
+
+	@Override
+	public void delIncomingRelation(XDIAddress contextNodeXDIAddress, XDIAddress XDIaddress, XDIAddress targetXDIAddress) {
+
+		this.graph.jsonDeleteFromArray(targetXDIAddress.toString(), "/" + XDIaddress.toString(), new JsonPrimitive(contextNodeXDIAddress.toString()));
+	}
+
+	@Override
+	public Iterator<XDIStatement> getIncomingRelations(final XDIAddress targetXDIAddress) {
+
+		JsonObject jsonObject = this.graph.jsonLoad(targetXDIAddress.toString());
+
+		final Set<Entry<String, JsonElement>> entrySet = new HashSet<Entry<String, JsonElement>> (jsonObject.entrySet());
+
+		return new DescendingIterator<Entry<String, JsonElement>, XDIStatement> (entrySet.iterator()) {
+
+			@Override
+			public Iterator<XDIStatement> descend(Entry<String, JsonElement> entry) {
+
+				if (! entry.getKey().startsWith("/")) return null;
+
+				final XDIAddress XDIaddress = XDIAddress.create(entry.getKey().substring(1));
+
+				JsonArray jsonArrayIncomingRelations = (JsonArray) entry.getValue();
+
+				final List<JsonElement> entryList = new IteratorListMaker<JsonElement> (jsonArrayIncomingRelations.iterator()).list();
+
+				return new MappingIterator<JsonElement, XDIStatement> (entryList.iterator()) {
+
+					@Override
+					public XDIStatement map(JsonElement jsonElement) {
+
+						XDIAddress contextNodeXDIAddress = XDIAddress.create(((JsonPrimitive) jsonElement).getAsString());
+
+						return XDIStatement.fromRelationComponents(contextNodeXDIAddress, XDIaddress, targetXDIAddress);
+					}
+				};
+			}
+		};
+	}
+}
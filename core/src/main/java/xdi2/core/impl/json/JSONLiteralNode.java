@@ -46,5 +46,7 @@ public class JSONLiteralNode extends AbstractLiteralNode implements LiteralNode
 		JSONContextNode jsonContextNode = (JSONContextNode) this.getContextNode();
 
 		((JSONGraph) this.getGraph()).jsonSaveToObject(jsonContextNode.getXDIAddress().toString(), XDIConstants.XDI_ARC_LITERAL.toString(), AbstractLiteralNode.literalDataToJsonElement(literalData));
+
+		this.modified();
 	}
 }
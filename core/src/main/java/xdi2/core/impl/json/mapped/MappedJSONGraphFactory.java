@@ -0,0 +1,71 @@
+package xdi2.core.impl.json.mapped;
+
+import java.io.IOException;
+
+import xdi2.core.GraphFactory;
+import xdi2.core.impl.json.AbstractJSONGraphFactory;
+import xdi2.core.impl.json.JSONStore;
+
+/**
+ * GraphFactory that creates JSON graphs in memory-mapped segment files.
+ * 
+ * @author markus
+ */
+public class MappedJSONGraphFactory extends AbstractJSONGraphFactory implements GraphFactory {
+
+	private int maxSegmentSize;
+	private long compactionThreshold;
+
+	public MappedJSONGraphFactory() { 
+
+		super();
+
+		this.maxSegmentSize = MappedJSONStore.DEFAULT_MAXSEGMENTSIZE;
+		this.compactionThreshold = MappedJSONStore.DEFAULT_COMPACTIONTHRESHOLD;
+	}
+
+	@Override
+	protected JSONStore openJSONStore(String identifier) throws IOException {
+
+		// check identifier
+
+		String prefix = "xdi2-mapped-json-graph." + identifier;
+
+		// open store
+
+		JSONStore jsonStore;
+
+		try {
+
+			jsonStore = new MappedJSONStore(prefix, this.maxSegmentSize, this.compactionThreshold);
+			jsonStore.init();
+		} catch (Exception ex) {
+
+			throw new IOException("Cannot open JSON store: " + ex.getMessage(), ex);
+		}
+
+		// done
+
+		return jsonStore;
+	}
+
+	public int getMaxSegmentSize() {
+
+		return this.maxSegmentSize;
+	}
+
+	public void setMaxSegmentSize(int maxSegmentSize) {
+
+		this.maxSegmentSize = maxSegmentSize;
+	}
+
+	public long getCompactionThreshold() {
+
+		return this.compactionThreshold;
+	}
+
+	public void setCompactionThreshold(long compactionThreshold) {
+
+		this.compactionThreshold = compactionThreshold;
+	}
+}
@@ -0,0 +1,514 @@
+package xdi2.core.impl.json.mapped;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import xdi2.core.exceptions.Xdi2RuntimeException;
+import xdi2.core.impl.json.AbstractJSONStore;
+import xdi2.core.impl.json.JSONStore;
+
+/**
+ * A JSONStore that packs its JSON objects into a few memory-mapped segment files.
+ *
+ * Every save or delete appends a record to the current segment. When a segment is full, a new one is started.
+ * An in-memory index, sorted by id, points to the latest record of every id, so loads read a single record,
+ * and loads and deletes with a prefix walk a range of the index.
+ *
+ * Records that have been overwritten or deleted are dead. Once there are more dead than live bytes,
+ * and at least the compaction threshold, all live records are copied into new segments and the old
+ * segments are deleted.
+ *
+ * Records are written to the mapped segments, so they survive if the process dies.
+ * The segments are forced to disk when the store is closed, or when sync() is called.
+ *
+ * @author markus
+ */
+public class MappedJSONStore extends AbstractJSONStore implements JSONStore {
+
+	private static final Logger log = LoggerFactory.getLogger(MappedJSONStore.class);
+
+	private static final Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public static final String SEGMENT_SUFFIX = ".segment";
+
+	public static final int DEFAULT_MAXSEGMENTSIZE = 16 * 1024 * 1024;
+	public static final long DEFAULT_COMPACTIONTHRESHOLD = 4 * 1024 * 1024;
+
+	private static final byte RECORD_SAVE = 1;
+	private static final byte RECORD_DELETE = 2;
+
+	private static final int RECORD_HEADER_SIZE = 9;
+
+	private String prefix;
+	private int maxSegmentSize;
+	private long compactionThreshold;
+
+	private List<Segment> segments;
+	private NavigableMap<String, Location> index;
+	private long liveBytes;
+	private long deadBytes;
+
+	public MappedJSONStore(String prefix, int maxSegmentSize, long compactionThreshold) {
+
+		this.prefix = prefix;
+		this.maxSegmentSize = maxSegmentSize;
+		this.compactionThreshold = compactionThreshold;
+
+		this.segments = null;
+		this.index = null;
+		this.liveBytes = 0;
+		this.deadBytes = 0;
+	}
+
+	public MappedJSONStore(String prefix) {
+
+		this(prefix, DEFAULT_MAXSEGMENTSIZE, DEFAULT_COMPACTIONTHRESHOLD);
+	}
+
+	@Override
+	public synchronized void init() throws IOException {
+
+		this.segments = new ArrayList<Segment> ();
+		this.index = new TreeMap<String, Location> ();
+		this.liveBytes = 0;
+		this.deadBytes = 0;
+
+		// open the existing segments in order, and build the index
+
+		for (int number : findSegmentNumbers(this.prefix)) {
+
+			Segment segment = new Segment(number, segmentFile(this.prefix, number), this.maxSegmentSize);
+
+			this.segments.add(segment);
+			this.scan(segment);
+		}
+
+		if (this.segments.isEmpty()) this.segments.add(new Segment(0, segmentFile(this.prefix, 0), this.maxSegmentSize));
+
+		if (log.isDebugEnabled()) log.debug("Opened " + this.segments.size() + " segments with " + this.index.size() + " JSON objects (" + this.liveBytes + " live bytes, " + this.deadBytes + " dead bytes)");
+	}
+
+	@Override
+	public synchronized void close() {
+
+		if (this.segments == null) return;
+
+		for (Segment segment : this.segments) {
+
+			try {
+
+				segment.close(true);
+			} catch (IOException ex) {
+
+				log.warn("Cannot close segment " + segment.file.getAbsolutePath() + ": " + ex.getMessage(), ex);
+			}
+		}
+
+		this.segments = null;
+		this.index = null;
+	}
+
+	@Override
+	public synchronized JsonObject load(String id) throws IOException {
+
+		Location location = this.index.get(id);
+		if (location == null) return null;
+
+		return this.read(location);
+	}
+
+	@Override
+	public synchronized Map<String, JsonObject> loadWithPrefix(String id) throws IOException {
+
+		Map<String, JsonObject> jsonObjects = new HashMap<String, JsonObject> ();
+
+		for (Entry<String, Location> entry : this.index.tailMap(id, true).entrySet()) {
+
+			if (! entry.getKey().startsWith(id)) break;
+
+			jsonObjects.put(entry.getKey(), this.read(entry.getValue()));
+		}
+
+		return jsonObjects;
+	}
+
+	@Override
+	public synchronized void save(String id, JsonObject jsonObject) throws IOException {
+
+		byte[] data = gson.toJson(jsonObject).getBytes(UTF8);
+
+		Location location = this.append(RECORD_SAVE, id.getBytes(UTF8), data);
+
+		Location oldLocation = this.index.put(id, location);
+		if (oldLocation != null) this.dead(oldLocation);
+
+		this.liveBytes += location.size;
+
+		this.compactIfNecessary();
+	}
+
+	@Override
+	public synchronized void delete(String id) throws IOException {
+
+		for (Iterator<Entry<String, Location>> entries = this.index.tailMap(id, true).entrySet().iterator(); entries.hasNext(); ) {
+
+			Entry<String, Location> entry = entries.next();
+			if (! entry.getKey().startsWith(id)) break;
+
+			Location tombstone = this.append(RECORD_DELETE, entry.getKey().getBytes(UTF8), new byte[0]);
+
+			this.dead(entry.getValue());
+			this.deadBytes += tombstone.size;
+
+			entries.remove();
+		}
+
+		this.compactIfNecessary();
+	}
+
+	/**
+	 * Forces all segments to disk.
+	 */
+	public synchronized void sync() {
+
+		for (Segment segment : this.segments) segment.buffer.force();
+	}
+
+	/**
+	 * Copies all live records into new segments, and deletes the old segments.
+	 */
+	public synchronized void compact() throws IOException {
+
+		List<Segment> oldSegments = this.segments;
+
+		if (log.isDebugEnabled()) log.debug("Compacting " + oldSegments.size() + " segments (" + this.liveBytes + " live bytes, " + this.deadBytes + " dead bytes)");
+
+		int number = oldSegments.get(oldSegments.size() - 1).number + 1;
+
+		this.segments = new ArrayList<Segment> ();
+		this.segments.add(new Segment(number, segmentFile(this.prefix, number), this.maxSegmentSize));
+		this.liveBytes = 0;
+		this.deadBytes = 0;
+
+		for (Entry<String, Location> entry : this.index.entrySet()) {
+
+			Location oldLocation = entry.getValue();
+
+			Location location = this.append(RECORD_SAVE, entry.getKey().getBytes(UTF8), oldLocation.segment.readData(oldLocation));
+
+			entry.setValue(location);
+			this.liveBytes += location.size;
+		}
+
+		// only delete the old segments once the new ones are on disk
+
+		this.sync();
+
+		for (Segment oldSegment : oldSegments) {
+
+			oldSegment.close(false);
+			if (! oldSegment.file.delete()) log.warn("Cannot delete segment " + oldSegment.file.getAbsolutePath());
+		}
+
+		if (log.isDebugEnabled()) log.debug("Compacted into " + this.segments.size() + " segments (" + this.liveBytes + " live bytes)");
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private void compactIfNecessary() throws IOException {
+
+		if (this.deadBytes < this.compactionThreshold) return;
+		if (this.deadBytes <= this.liveBytes) return;
+
+		this.compact();
+	}
+
+	private JsonObject read(Location location) throws IOException {
+
+		byte[] data = location.segment.readData(location);
+
+		return gson.getAdapter(JsonObject.class).fromJson(new StringReader(new String(data, UTF8)));
+	}
+
+	private Location append(byte type, byte[] id, byte[] data) throws IOException {
+
+		int size = RECORD_HEADER_SIZE + id.length + data.length;
+		if (size > this.maxSegmentSize) throw new IOException("Record of " + size + " bytes does not fit into a segment of " + this.maxSegmentSize + " bytes.");
+
+		Segment segment = this.segments.get(this.segments.size() - 1);
+
+		if (segment.end + size > segment.buffer.capacity()) {
+
+			segment = new Segment(segment.number + 1, segmentFile(this.prefix, segment.number + 1), this.maxSegmentSize);
+			this.segments.add(segment);
+		}
+
+		return segment.append(type, id, data);
+	}
+
+	private void dead(Location location) {
+
+		this.liveBytes -= location.size;
+		this.deadBytes += location.size;
+	}
+
+	/**
+	 * Reads all records of a segment into the index.
+	 * Reading stops at the first incomplete record.
+	 */
+	private void scan(Segment segment) throws IOException {
+
+		MappedByteBuffer buffer = segment.buffer;
+		int position = 0;
+
+		while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+
+			// the unused rest of a segment is filled with zeros
+
+			byte type = buffer.get(position);
+			if (type != RECORD_SAVE && type != RECORD_DELETE) break;
+
+			int idLength = buffer.getInt(position + 1);
+			int dataLength = buffer.getInt(position + 5);
+			int size = RECORD_HEADER_SIZE + idLength + dataLength;
+
+			if (idLength < 0 || dataLength < 0 || position + size > buffer.capacity()) break;
+
+			Location location = new Location(segment, position, size, idLength);
+			String id = new String(segment.readId(location), UTF8);
+
+			Location oldLocation;
+
+			if (type == RECORD_SAVE) {
+
+				oldLocation = this.index.put(id, location);
+				this.liveBytes += size;
+			} else {
+
+				oldLocation = this.index.remove(id);
+				this.deadBytes += size;
+			}
+
+			if (oldLocation != null) this.dead(oldLocation);
+
+			position += size;
+		}
+
+		segment.end = position;
+	}
+
+	private static File segmentFile(String prefix, int number) {
+
+		return new File(segmentFilenamePrefix(prefix) + number + SEGMENT_SUFFIX);
+	}
+
+	private static String segmentFilenamePrefix(String prefix) {
+
+		try {
+
+			return URLEncoder.encode(prefix, "UTF-8") + ".";
+		} catch (UnsupportedEncodingException ex) {
+
+			throw new Xdi2RuntimeException(ex.getMessage(), ex);
+		}
+	}
+
+	private static List<Integer> findSegmentNumbers(String prefix) {
+
+		final String filenamePrefix = segmentFilenamePrefix(prefix);
+
+		File[] files = new File(".").listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File file, String filename) {
+
+				return filename.startsWith(filenamePrefix) && filename.endsWith(SEGMENT_SUFFIX);
+			}
+		});
+
+		List<Integer> numbers = new ArrayList<Integer> ();
+
+		for (File file : files) {
+
+			String number = file.getName().substring(filenamePrefix.length(), file.getName().length() - SEGMENT_SUFFIX.length());
+
+			try {
+
+				numbers.add(Integer.valueOf(number));
+			} catch (NumberFormatException ex) {
+
+				continue;
+			}
+		}
+
+		Collections.sort(numbers);
+
+		return numbers;
+	}
+
+	public static void cleanup() {
+
+		File[] files = new File(".").listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File file, String filename) {
+
+				return filename.endsWith(SEGMENT_SUFFIX);
+			}
+		});
+
+		for (File file : files) file.delete();
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	private static class Segment {
+
+		private final int number;
+		private final File file;
+		private final RandomAccessFile randomAccessFile;
+		private final FileChannel fileChannel;
+		private final MappedByteBuffer buffer;
+		private int end;
+
+		private Segment(int number, File file, int maxSegmentSize) throws IOException {
+
+			this.number = number;
+			this.file = file;
+			this.randomAccessFile = new RandomAccessFile(file, "rw");
+			this.fileChannel = this.randomAccessFile.getChannel();
+			this.buffer = this.fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(this.fileChannel.size(), maxSegmentSize));
+			this.end = 0;
+		}
+
+		/**
+		 * Appends a record. The type is written last, so an incomplete record is never mistaken for a complete one.
+		 */
+		private Location append(byte type, byte[] id, byte[] data) {
+
+			int position = this.end;
+
+			this.buffer.putInt(position + 1, id.length);
+			this.buffer.putInt(position + 5, data.length);
+
+			this.buffer.position(position + RECORD_HEADER_SIZE);
+			this.buffer.put(id);
+			this.buffer.put(data);
+			this.buffer.put(position, type);
+
+			Location location = new Location(this, position, RECORD_HEADER_SIZE + id.length + data.length, id.length);
+
+			this.end += location.size;
+
+			return location;
+		}
+
+		private byte[] readId(Location location) {
+
+			return this.read(location.position + RECORD_HEADER_SIZE, location.idLength);
+		}
+
+		private byte[] readData(Location location) {
+
+			return this.read(location.position + RECORD_HEADER_SIZE + location.idLength, location.size - RECORD_HEADER_SIZE - location.idLength);
+		}
+
+		private byte[] read(int position, int length) {
+
+			byte[] bytes = new byte[length];
+
+			this.buffer.position(position);
+			this.buffer.get(bytes);
+
+			return bytes;
+		}
+
+		private void close(boolean force) throws IOException {
+
+			if (force) this.buffer.force();
+
+			this.fileChannel.close();
+			this.randomAccessFile.close();
+		}
+	}
+
+	private static class Location {
+
+		private final Segment segment;
+		private final int position;
+		private final int size;
+		private final int idLength;
+
+		private Location(Segment segment, int position, int size, int idLength) {
+
+			this.segment = segment;
+			this.position = position;
+			this.size = size;
+			this.idLength = idLength;
+		}
+	}
+
+	/*
+	 * Getters
+	 */
+
+	public String getPrefix() {
+
+		return this.prefix;
+	}
+
+	public int getMaxSegmentSize() {
+
+		return this.maxSegmentSize;
+	}
+
+	public long getCompactionThreshold() {
+
+		return this.compactionThreshold;
+	}
+
+	public synchronized int getNumSegments() {
+
+		return this.segments.size();
+	}
+
+	public synchronized long getLiveBytes() {
+
+		return this.liveBytes;
+	}
+
+	public synchronized long getDeadBytes() {
+
+		return this.deadBytes;
+	}
+}
@@ -6,8 +6,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import xdi2.core.impl.json.AbstractJSONStore;
@@ -34,37 +32,6 @@ public class MemoryJSONStore extends AbstractJSONStore implements JSONStore {
 		this.jsonObjects = null;
 	}
 
-	private static JsonElement deepCopy(JsonElement jsonElement) {
-
-		if (jsonElement instanceof JsonObject) return deepCopy((JsonObject) jsonElement);
-		if (jsonElement instanceof JsonArray) return deepCopy((JsonArray) jsonElement);
-
-		return jsonElement;
-	}
-
-	private static JsonObject deepCopy(JsonObject jsonObject) {
-
-		JsonObject result = new JsonObject();
-		for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
-
-			result.add(entry.getKey(), deepCopy(entry.getValue()));
-		}
-
-		return result;
-	}
-
-	private static JsonArray deepCopy(JsonArray jsonArray) {
-
-		JsonArray result = new JsonArray();
-
-		for (JsonElement element : jsonArray) {
-
-			result.add(deepCopy(element));
-
-		}
-		return result;
-	}
-
 	@Override
 	public JsonObject load(String id) throws IOException {
 
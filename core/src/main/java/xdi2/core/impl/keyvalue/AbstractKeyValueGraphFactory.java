@@ -14,13 +14,20 @@ import xdi2.core.impl.AbstractGraphFactory;
  */
 public abstract class AbstractKeyValueGraphFactory extends AbstractGraphFactory implements GraphFactory {
 
+	public static final boolean DEFAULT_COMPACT_KEYS = false;
+	public static final boolean DEFAULT_COPY_ITERATORS = true;
+
 	private boolean supportGetContextNodes;
 	private boolean supportGetRelations;
+	private boolean compactKeys;
+	private boolean copyIterators;
 
 	public AbstractKeyValueGraphFactory(boolean supportGetContextNodes, boolean supportGetRelations) {
 
 		this.supportGetContextNodes = supportGetContextNodes;
 		this.supportGetRelations = supportGetRelations;
+		this.compactKeys = DEFAULT_COMPACT_KEYS;
+		this.copyIterators = DEFAULT_COPY_ITERATORS;
 	}
 
 	@Override
@@ -30,7 +37,18 @@ public abstract class AbstractKeyValueGraphFactory extends AbstractGraphFactory
 
 		KeyValueStore keyValueStore = this.openKeyValueStore(identifier);
 
-		return new KeyValueGraph(this, identifier, keyValueStore, this.getSupportGetContextNodes(), this.getSupportGetRelations());
+		// check the key scheme of the store
+
+		try {
+
+			KeyValueCompactKeys.checkKeyScheme(keyValueStore, this.getCompactKeys());
+		} catch (IOException ex) {
+
+			keyValueStore.close();
+			throw ex;
+		}
+
+		return new KeyValueGraph(this, identifier, keyValueStore, this.getSupportGetContextNodes(), this.getSupportGetRelations(), this.getCompactKeys(), this.getCopyIterators());
 	}
 
 	/**
@@ -58,4 +76,35 @@ public abstract class AbstractKeyValueGraphFactory extends AbstractGraphFactory
 
 		this.supportGetRelations = supportGetRelations;
 	}
+
+	public boolean getCompactKeys() {
+
+		return this.compactKeys;
+	}
+
+	/**
+	 * Sets whether graphs use numeric node ids and dictionary-encoded arcs as keys,
+	 * instead of the XDI addresses of their context nodes.
+	 * A store must always be opened with the same setting.
+	 */
+	public void setCompactKeys(boolean compactKeys) {
+
+		this.compactKeys = compactKeys;
+	}
+
+	public boolean getCopyIterators() {
+
+		return this.copyIterators;
+	}
+
+	/**
+	 * Sets whether context nodes and relations are copied into lists when iterating over them.
+	 * This is enabled by default, since the iterators of a store may fail when the store changes
+	 * while iterating over it. Factories whose stores return snapshots can disable it, so that
+	 * iterators read the values of the store lazily.
+	 */
+	public void setCopyIterators(boolean copyIterators) {
+
+		this.copyIterators = copyIterators;
+	}
 }
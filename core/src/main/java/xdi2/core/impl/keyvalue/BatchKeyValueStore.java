@@ -0,0 +1,17 @@
+package xdi2.core.impl.keyvalue;
+
+import java.util.Map;
+
+/**
+ * A KeyValueStore that can replace the values of several keys with a single write.
+ * KeyValueContextNode uses this to update the counts of a context node and all its ancestors at once.
+ *
+ * @author markus
+ */
+public interface BatchKeyValueStore extends KeyValueStore {
+
+	/**
+	 * Replaces all values of every key in the map with the value in the map, or deletes them if it is null.
+	 */
+	public void replace(Map<String, String> values);
+}
@@ -0,0 +1,243 @@
+package xdi2.core.impl.keyvalue;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import xdi2.core.syntax.XDIArc;
+import xdi2.core.util.BoundedCache;
+import xdi2.core.util.iterators.IteratorListMaker;
+import xdi2.core.util.iterators.MappingIterator;
+
+/**
+ * An alternate key scheme for key/value graphs, in which the keys of context nodes do not contain their XDI addresses.
+ *
+ * Every context node has a short numeric node id, which is used as its key. Every arc is stored once in a dictionary
+ * and then referred to by its arc id. The children of a context node are stored as pairs of arc ids and node ids,
+ * and can be looked up by (node id, arc id). The most recently used arcs are kept in memory, so they are rarely parsed again.
+ *
+ * The keys are:
+ * - [node id]/--C: Pairs of arc id and node id of all children.
+ * - [node id]/--A/[arc id]: The node id of a child.
+ * - --N: The next node id.
+ * - --D: The next arc id.
+ * - --D/[arc]: The arc id of an arc.
+ * - --d/[arc id]: The arc of an arc id.
+ * - --K: The key scheme of the store, in both schemes.
+ *
+ * Relations and literals use the same keys as in the default scheme, based on the node id.
+ * The root context node has the empty key, as in the default scheme.
+ *
+ * @author markus
+ */
+class KeyValueCompactKeys {
+
+	private static final int RADIX = 36;
+	private static final char SEPARATOR = '.';
+
+	private static final String KEY_NEXTNODEID = "--N";
+	private static final String KEY_NEXTARCID = "--D";
+	private static final String PREFIX_ARCID = "--D/";
+	private static final String PREFIX_ARC = "--d/";
+	private static final String KEY_KEYSCHEME = "--K";
+
+	private static final String KEYSCHEME_COMPACT = "compact";
+	private static final String KEYSCHEME_DEFAULT = "default";
+
+	private static final int MAX_CACHED_ARCS = 10000;
+
+	private final KeyValueStore keyValueStore;
+
+	private final BoundedCache<String, String> arcIds;
+	private final BoundedCache<String, XDIArc> arcs;
+	private long nextNodeId;
+	private long nextArcId;
+
+	KeyValueCompactKeys(KeyValueStore keyValueStore) {
+
+		this.keyValueStore = keyValueStore;
+
+		this.arcIds = new BoundedCache<String, String> (MAX_CACHED_ARCS);
+		this.arcs = new BoundedCache<String, XDIArc> (MAX_CACHED_ARCS);
+		this.nextNodeId = -1;
+		this.nextArcId = -1;
+	}
+
+	/**
+	 * Returns the key of a child context node, or null if there is no such child.
+	 */
+	synchronized String getContextNodeKey(String key, XDIArc XDIarc) {
+
+		String arcId = this.getArcId(XDIarc, false);
+		if (arcId == null) return null;
+
+		return this.keyValueStore.getOne(getChildKey(key, arcId));
+	}
+
+	/**
+	 * Creates a new child context node and returns its key.
+	 */
+	synchronized String setContextNodeKey(String key, XDIArc XDIarc) {
+
+		String arcId = this.getArcId(XDIarc, true);
+		String nodeId = this.newNodeId();
+
+		this.keyValueStore.set(getChildrenKey(key), arcId + SEPARATOR + nodeId);
+		this.keyValueStore.set(getChildKey(key, arcId), nodeId);
+
+		return nodeId;
+	}
+
+	/**
+	 * Returns the arcs and keys of all child context nodes.
+	 */
+	Iterator<Map.Entry<XDIArc, String>> getContextNodeKeys(String key) {
+
+		return new MappingIterator<String, Map.Entry<XDIArc, String>> (this.keyValueStore.getAll(getChildrenKey(key))) {
+
+			@Override
+			public Map.Entry<XDIArc, String> map(String value) {
+
+				int separator = value.indexOf(SEPARATOR);
+
+				return new AbstractMap.SimpleImmutableEntry<XDIArc, String> (KeyValueCompactKeys.this.getArc(value.substring(0, separator)), value.substring(separator + 1));
+			}
+		};
+	}
+
+	synchronized void delContextNodeKey(String key, XDIArc XDIarc) {
+
+		String arcId = this.getArcId(XDIarc, false);
+		if (arcId == null) return;
+
+		String childKey = getChildKey(key, arcId);
+		String nodeId = this.keyValueStore.getOne(childKey);
+		if (nodeId == null) return;
+
+		this.keyValueStore.delete(getChildrenKey(key), arcId + SEPARATOR + nodeId);
+		this.keyValueStore.delete(childKey);
+	}
+
+	synchronized void delContextNodeKeys(String key) {
+
+		for (String value : new IteratorListMaker<String> (this.keyValueStore.getAll(getChildrenKey(key))).list()) {
+
+			this.keyValueStore.delete(getChildKey(key, value.substring(0, value.indexOf(SEPARATOR))));
+		}
+
+		this.keyValueStore.delete(getChildrenKey(key));
+	}
+
+	/**
+	 * Forgets everything that has been read from the store.
+	 * This must be called when changes to the store are rolled back or the store is cleared.
+	 */
+	synchronized void reset() {
+
+		this.arcIds.clear();
+		this.arcs.clear();
+		this.nextNodeId = -1;
+		this.nextArcId = -1;
+	}
+
+	/**
+	 * Checks that a store uses the configured key scheme, and remembers the key scheme in the store if it is not known yet.
+	 * Stores that were written before the key scheme was remembered use compact keys if they have a next node id,
+	 * and the default keys if their root has children without one.
+	 */
+	static void checkKeyScheme(KeyValueStore keyValueStore, boolean compactKeys) throws IOException {
+
+		String keyScheme = keyValueStore.getOne(KEY_KEYSCHEME);
+		String configuredKeyScheme = compactKeys ? KEYSCHEME_COMPACT : KEYSCHEME_DEFAULT;
+
+		if (keyScheme == null) {
+
+			if (keyValueStore.contains(KEY_NEXTNODEID)) {
+
+				keyScheme = KEYSCHEME_COMPACT;
+			} else if (keyValueStore.contains(getChildrenKey(""))) {
+
+				keyScheme = KEYSCHEME_DEFAULT;
+			}
+
+			if (keyScheme == null || keyScheme.equals(configuredKeyScheme)) keyValueStore.set(KEY_KEYSCHEME, configuredKeyScheme);
+		}
+
+		if (keyScheme != null && ! keyScheme.equals(configuredKeyScheme)) throw new IOException("The store uses " + keyScheme + " keys, but " + configuredKeyScheme + " keys are configured.");
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private String getArcId(XDIArc XDIarc, boolean create) {
+
+		String arcString = XDIarc.toString();
+		String arcId = this.arcIds.get(arcString);
+		if (arcId != null) return arcId;
+
+		arcId = this.keyValueStore.getOne(PREFIX_ARCID + arcString);
+
+		if (arcId == null) {
+
+			if (! create) return null;
+
+			if (this.nextArcId == -1) this.nextArcId = this.loadCounter(KEY_NEXTARCID);
+			arcId = Long.toString(this.nextArcId++, RADIX);
+
+			this.keyValueStore.replace(KEY_NEXTARCID, Long.toString(this.nextArcId, RADIX));
+			this.keyValueStore.set(PREFIX_ARCID + arcString, arcId);
+			this.keyValueStore.set(PREFIX_ARC + arcId, arcString);
+		}
+
+		this.arcIds.put(arcString, arcId);
+		this.arcs.put(arcId, XDIarc);
+
+		return arcId;
+	}
+
+	private synchronized XDIArc getArc(String arcId) {
+
+		XDIArc XDIarc = this.arcs.get(arcId);
+		if (XDIarc != null) return XDIarc;
+
+		String arcString = this.keyValueStore.getOne(PREFIX_ARC + arcId);
+		if (arcString == null) throw new IllegalStateException("Unknown arc id " + arcId);
+
+		XDIarc = XDIArc.create(arcString);
+
+		this.arcIds.put(arcString, arcId);
+		this.arcs.put(arcId, XDIarc);
+
+		return XDIarc;
+	}
+
+	private String newNodeId() {
+
+		if (this.nextNodeId == -1) this.nextNodeId = this.loadCounter(KEY_NEXTNODEID);
+
+		String nodeId = Long.toString(this.nextNodeId++, RADIX);
+
+		this.keyValueStore.replace(KEY_NEXTNODEID, Long.toString(this.nextNodeId, RADIX));
+
+		return nodeId;
+	}
+
+	private long loadCounter(String key) {
+
+		String value = this.keyValueStore.getOne(key);
+
+		return value == null ? 1 : Long.parseLong(value, RADIX);
+	}
+
+	private static String getChildrenKey(String key) {
+
+		return key + "/--C";
+	}
+
+	private static String getChildKey(String key, String arcId) {
+
+		return key + "/--A/" + arcId;
+	}
+}
@@ -1,12 +1,16 @@
 package xdi2.core.impl.keyvalue;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import xdi2.core.ContextNode;
 import xdi2.core.LiteralNode;
 import xdi2.core.Node;
 import xdi2.core.Relation;
+import xdi2.core.Statement;
 import xdi2.core.impl.AbstractContextNode;
 import xdi2.core.impl.AbstractLiteralNode;
 import xdi2.core.syntax.XDIAddress;
@@ -42,6 +46,9 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 		if (this.isRootContextNode()) {
 
 			this.keyValueStore.clear();
+
+			KeyValueCompactKeys compactKeys = this.getCompactKeys();
+			if (compactKeys != null) compactKeys.reset();
 		} else {
 
 			super.clear();
@@ -67,26 +74,50 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 
 		// set the context node
 
-		String contextNodesKey = this.getContextNodesKey();
-		String contextNodeKey = this.getContextNodeKey(XDIarc);
+		KeyValueCompactKeys compactKeys = this.getCompactKeys();
+		String contextNodeKey;
 
-		if (this.keyValueStore.contains(contextNodesKey, XDIarc.toString())) {
+		if (compactKeys != null) {
 
-			KeyValueContextNode contextNode = new KeyValueContextNode((KeyValueGraph) this.getGraph(), this, this.keyValueStore, contextNodeKey, XDIarc);
-			return contextNode;
-		}
+			contextNodeKey = compactKeys.getContextNodeKey(this.getKeyPrefix(), XDIarc);
+
+			if (contextNodeKey != null) {
+
+				KeyValueContextNode contextNode = new KeyValueContextNode((KeyValueGraph) this.getGraph(), this, this.keyValueStore, contextNodeKey, XDIarc);
+				return contextNode;
+			}
+
+			contextNodeKey = compactKeys.setContextNodeKey(this.getKeyPrefix(), XDIarc);
+		} else {
+
+			String contextNodesKey = this.getContextNodesKey();
+			contextNodeKey = this.getContextNodeKey(XDIarc);
+
+			if (this.keyValueStore.contains(contextNodesKey, XDIarc.toString())) {
+
+				KeyValueContextNode contextNode = new KeyValueContextNode((KeyValueGraph) this.getGraph(), this, this.keyValueStore, contextNodeKey, XDIarc);
+				return contextNode;
+			}
 
-		this.keyValueStore.set(contextNodesKey, XDIarc.toString());
-		this.keyValueStore.delete(contextNodeKey + "/--C");
-		this.keyValueStore.delete(contextNodeKey + "/--R");
-		this.keyValueStore.delete(contextNodeKey + "/--L");
+			this.keyValueStore.set(contextNodesKey, XDIarc.toString());
+			this.keyValueStore.delete(contextNodeKey + "/--C");
+			this.keyValueStore.delete(contextNodeKey + "/--R");
+			this.keyValueStore.delete(contextNodeKey + "/--L");
+			this.keyValueStore.delete(contextNodeKey + "/--S");
+		}
 
 		KeyValueContextNode contextNode = new KeyValueContextNode((KeyValueGraph) this.getGraph(), this, this.keyValueStore, contextNodeKey, XDIarc);
 
+		// update counts
+
+		this.updateCounts(1, 0, 0);
+
 		// set inner root
 
 		this.setContextNodeSetInnerRoot(XDIarc, contextNode);
 
+		this.modified();
+
 		// done
 
 		return contextNode;
@@ -95,26 +126,63 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 	@Override
 	public ReadOnlyIterator<ContextNode> getContextNodes() {
 
-		String contextNodesKey = this.getContextNodesKey();
+		KeyValueCompactKeys compactKeys = this.getCompactKeys();
 
-		List<ContextNode> list = new IteratorListMaker<ContextNode> (new MappingIterator<String, ContextNode> (this.keyValueStore.getAll(contextNodesKey)) {
+		Iterator<ContextNode> iterator;
 
-			@Override
-			public ContextNode map(String item) {
+		if (compactKeys != null) {
 
-				XDIArc XDIarc = XDIArc.create(item);
-				String contextNodeKey = KeyValueContextNode.this.getContextNodeKey(XDIarc);
+			iterator = new MappingIterator<Map.Entry<XDIArc, String>, ContextNode> (compactKeys.getContextNodeKeys(this.getKeyPrefix())) {
 
-				return new KeyValueContextNode((KeyValueGraph) KeyValueContextNode.this.getGraph(), KeyValueContextNode.this, KeyValueContextNode.this.keyValueStore, contextNodeKey, XDIarc);
-			}
-		}).list();
+				@Override
+				public ContextNode map(Map.Entry<XDIArc, String> contextNodeKey) {
+
+					return new KeyValueContextNode((KeyValueGraph) KeyValueContextNode.this.getGraph(), KeyValueContextNode.this, KeyValueContextNode.this.keyValueStore, contextNodeKey.getValue(), contextNodeKey.getKey());
+				}
+			};
+		} else {
+
+			String contextNodesKey = this.getContextNodesKey();
+
+			iterator = new MappingIterator<String, ContextNode> (this.keyValueStore.getAll(contextNodesKey)) {
 
-		return new ReadOnlyIterator<ContextNode> (list.iterator());
+				@Override
+				public ContextNode map(String item) {
+
+					XDIArc XDIarc = XDIArc.create(item);
+					String contextNodeKey = KeyValueContextNode.this.getContextNodeKey(XDIarc);
+
+					return new KeyValueContextNode((KeyValueGraph) KeyValueContextNode.this.getGraph(), KeyValueContextNode.this, KeyValueContextNode.this.keyValueStore, contextNodeKey, XDIarc);
+				}
+			};
+		}
+
+		if (this.getCopyIterators()) iterator = new IteratorListMaker<ContextNode> (iterator).list().iterator();
+
+		return new ReadOnlyIterator<ContextNode> (iterator);
+	}
+
+	@Override
+	public ReadOnlyIterator<ContextNode> getAllContextNodes() {
+
+		if (! this.supportsSubgraph()) return super.getAllContextNodes();
+
+		return new ReadOnlyIterator<ContextNode> (new KeyValueSubgraph(this).getAllContextNodes());
 	}
 
 	@Override
 	public ContextNode getContextNode(XDIArc XDIarc, boolean subgraph) {
 
+		KeyValueCompactKeys compactKeys = this.getCompactKeys();
+
+		if (compactKeys != null) {
+
+			String contextNodeKey = compactKeys.getContextNodeKey(this.getKeyPrefix(), XDIarc);
+			if (contextNodeKey == null) return null;
+
+			return new KeyValueContextNode((KeyValueGraph) this.getGraph(), this, this.keyValueStore, contextNodeKey, XDIarc);
+		}
+
 		String contextNodesKey = this.getContextNodesKey();
 		String contextNodeKey = this.getContextNodeKey(XDIarc);
 
@@ -126,6 +194,9 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 	@Override
 	public boolean containsContextNode(XDIArc XDIarc) {
 
+		KeyValueCompactKeys compactKeys = this.getCompactKeys();
+		if (compactKeys != null) return compactKeys.getContextNodeKey(this.getKeyPrefix(), XDIarc) != null;
+
 		String contextNodesKey = this.getContextNodesKey();
 
 		return this.keyValueStore.contains(contextNodesKey, XDIarc.toString());
@@ -147,14 +218,34 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 
 		// delete all relations and incoming relations
 
-		((KeyValueContextNode) contextNode).delContextNodeDelAllInnerRoots();
+		((KeyValueContextNode) contextNode).delContextNodeDelAllRelations();
 		((KeyValueContextNode) contextNode).delContextNodeDelAllIncomingRelations();
 
+		// the context node may have been deleted as an inner root in the meantime
+
+		if (! this.containsContextNode(XDIarc)) return;
+
+		long[] counts = ((KeyValueContextNode) contextNode).getCounts();
+
 		// delete this context node
 
-		String contextNodesKey = this.getContextNodesKey();
+		KeyValueCompactKeys compactKeys = this.getCompactKeys();
+
+		if (compactKeys != null) {
+
+			compactKeys.delContextNodeKey(this.getKeyPrefix(), XDIarc);
+		} else {
 
-		this.keyValueStore.delete(contextNodesKey, XDIarc.toString());
+			String contextNodesKey = this.getContextNodesKey();
+
+			this.keyValueStore.delete(contextNodesKey, XDIarc.toString());
+		}
+
+		// update counts
+
+		this.updateCounts(- 1 - counts[0], - counts[1], - counts[2]);
+
+		this.modified();
 	}
 
 	@Override
@@ -162,17 +253,42 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 
 		// delete all relations and incoming relations
 
-		for (ContextNode contextNode : this.getContextNodes()) {
+		for (ContextNode contextNode : new IteratorListMaker<ContextNode> (this.getContextNodes()).list()) {
+
+			for (Relation relation : new IteratorListMaker<Relation> (contextNode.getAllRelations()).list()) relation.delete();
+			for (Relation relation : new IteratorListMaker<Relation> (contextNode.getAllIncomingRelations()).list()) relation.delete();
+		}
+
+		long[] counts = new long[3];
+
+		for (ContextNode contextNode : new IteratorListMaker<ContextNode> (this.getContextNodes()).list()) {
 
-			for (Relation relation : contextNode.getAllRelations()) relation.delete();
-			for (Relation relation : contextNode.getAllIncomingRelations()) relation.delete();
+			long[] contextNodeCounts = ((KeyValueContextNode) contextNode).getCounts();
+
+			counts[0] += 1 + contextNodeCounts[0];
+			counts[1] += contextNodeCounts[1];
+			counts[2] += contextNodeCounts[2];
 		}
 
 		// delete context nodes
 
-		String contextNodesKey = this.getContextNodesKey();
+		KeyValueCompactKeys compactKeys = this.getCompactKeys();
+
+		if (compactKeys != null) {
 
-		this.keyValueStore.delete(contextNodesKey);
+			compactKeys.delContextNodeKeys(this.getKeyPrefix());
+		} else {
+
+			String contextNodesKey = this.getContextNodesKey();
+
+			this.keyValueStore.delete(contextNodesKey);
+		}
+
+		// update counts
+
+		this.updateCounts(- counts[0], - counts[1], - counts[2]);
+
+		this.modified();
 	}
 
 	@Override
@@ -183,6 +299,12 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 		return this.keyValueStore.count(contextNodesKey);
 	}
 
+	@Override
+	public long getAllContextNodeCount() {
+
+		return this.getCounts()[0];
+	}
+
 	/*
 	 * Methods related to relations of this context node
 	 */
@@ -201,9 +323,21 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 		String relationsKey = this.getRelationsKey();
 		String relationKey = this.getRelationKey(XDIaddress);
 
+		boolean exists = this.keyValueStore.contains(relationsKey, XDIaddress.toString()) && this.keyValueStore.contains(relationKey, targetXDIAddress.toString());
+
 		this.keyValueStore.set(relationsKey, XDIaddress.toString());
 		this.keyValueStore.set(relationKey, targetXDIAddress.toString());
 
+		// update counts
+
+		if (! exists) this.updateCounts(0, 1, 0);
+
+		// update incoming relation index
+
+		this.getIncomingRelationIndex().addIncomingRelation(this.getXDIAddress(), XDIaddress, targetXDIAddress);
+
+		this.modified();
+
 		KeyValueRelation relation = new KeyValueRelation(this, this.keyValueStore, relationKey, XDIaddress, targetXDIAddress);
 
 		// done
@@ -246,7 +380,7 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 		if (! this.keyValueStore.contains(relationsKey, XDIaddress.toString())) return new EmptyIterator<Relation> ();
 		if (! this.keyValueStore.contains(relationKey)) return new EmptyIterator<Relation> ();
 
-		List<Relation> list = new IteratorListMaker<Relation> (new MappingIterator<String, Relation> (this.keyValueStore.getAll(relationKey)) {
+		Iterator<Relation> iterator = new MappingIterator<String, Relation> (this.keyValueStore.getAll(relationKey)) {
 
 			@Override
 			public Relation map(String relationAddressString) {
@@ -255,9 +389,11 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 
 				return new KeyValueRelation(KeyValueContextNode.this, KeyValueContextNode.this.keyValueStore, relationKey, XDIaddress, relationAddress);
 			}
-		}).list();
+		};
+
+		if (this.getCopyIterators()) iterator = new IteratorListMaker<Relation> (iterator).list().iterator();
 
-		return new ReadOnlyIterator<Relation> (list.iterator());
+		return new ReadOnlyIterator<Relation> (iterator);
 	}
 
 	@Override
@@ -265,7 +401,7 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 
 		String relationsKey = this.getRelationsKey();
 
-		List<Relation> list = new IteratorListMaker<Relation> (new DescendingIterator<String, Relation> (this.keyValueStore.getAll(relationsKey)) {
+		Iterator<Relation> iterator = new DescendingIterator<String, Relation> (this.keyValueStore.getAll(relationsKey)) {
 
 			@Override
 			public Iterator<Relation> descend(String item) {
@@ -282,9 +418,19 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 					}
 				};
 			}
-		}).list();
+		};
 
-		return new ReadOnlyIterator<Relation> (list.iterator());
+		if (this.getCopyIterators()) iterator = new IteratorListMaker<Relation> (iterator).list().iterator();
+
+		return new ReadOnlyIterator<Relation> (iterator);
+	}
+
+	@Override
+	public ReadOnlyIterator<Relation> getAllRelations() {
+
+		if (! this.supportsSubgraph()) return super.getAllRelations();
+
+		return new ReadOnlyIterator<Relation> (new KeyValueSubgraph(this).getAllRelations());
 	}
 
 	@Override
@@ -321,6 +467,8 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 		String relationsKey = this.getRelationsKey();
 		String relationKey = this.getRelationKey(XDIaddress);
 
+		boolean exists = this.keyValueStore.contains(relationsKey, XDIaddress.toString()) && this.keyValueStore.contains(relationKey, targetXDIAddress.toString());
+
 		this.keyValueStore.delete(relationKey, targetXDIAddress.toString());
 
 		if (! this.keyValueStore.contains(relationKey)) {
@@ -328,34 +476,53 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 			this.keyValueStore.delete(relationsKey, XDIaddress.toString());
 		}
 
+		// update counts
+
+		if (exists) this.updateCounts(0, -1, 0);
+
+		// update incoming relation index
+
+		this.getIncomingRelationIndex().delIncomingRelation(this.getXDIAddress(), XDIaddress, targetXDIAddress);
+
 		// delete inner root
 
 		this.delRelationDelInnerRoot(XDIaddress, targetXDIAddress);
+
+		this.modified();
 	}
 
 	@Override
 	public synchronized void delRelations(XDIAddress XDIaddress) {
 
-		ReadOnlyIterator<Relation> relations = this.getRelations(XDIaddress);
+		List<Relation> relations = new IteratorListMaker<Relation> (this.getRelations(XDIaddress)).list();
 
 		// delete relations
 
 		String relationsKey = this.getRelationsKey();
+		String relationKey = this.getRelationKey(XDIaddress);
 
 		this.keyValueStore.delete(relationsKey, XDIaddress.toString());
+		this.keyValueStore.delete(relationKey);
+
+		// update counts
+
+		this.updateCounts(0, - relations.size(), 0);
 
 		// delete inner roots
 
 		for (Relation relation : relations) {
 
+			this.getIncomingRelationIndex().delIncomingRelation(this.getXDIAddress(), relation.getXDIAddress(), relation.getTargetXDIAddress());
 			this.delRelationDelInnerRoot(relation.getXDIAddress(), relation.getTargetXDIAddress());
 		}
+
+		this.modified();
 	}
 
 	@Override
 	public synchronized void delRelations() {
 
-		ReadOnlyIterator<Relation> relations = this.getRelations();
+		List<Relation> relations = new IteratorListMaker<Relation> (this.getRelations()).list();
 
 		// delete relations
 
@@ -363,12 +530,21 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 
 		this.keyValueStore.delete(relationsKey);
 
+		// update counts
+
+		this.updateCounts(0, - relations.size(), 0);
+
 		// delete inner roots
 
 		for (Relation relation : relations) {
 
+			this.keyValueStore.delete(((KeyValueRelation) relation).getKey());
+
+			this.getIncomingRelationIndex().delIncomingRelation(this.getXDIAddress(), relation.getXDIAddress(), relation.getTargetXDIAddress());
 			this.delRelationDelInnerRoot(relation.getXDIAddress(), relation.getTargetXDIAddress());
 		}
+
+		this.modified();
 	}
 
 	@Override
@@ -394,6 +570,12 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 		return sum;
 	}
 
+	@Override
+	public long getAllRelationCount() {
+
+		return this.getCounts()[1];
+	}
+
 	@Override
 	public long getRelationCount(XDIAddress XDIaddress) {
 
@@ -420,8 +602,16 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 
 		String literalKey = this.getLiteralKey();
 
+		boolean exists = this.keyValueStore.contains(literalKey);
+
 		this.keyValueStore.replace(literalKey, AbstractLiteralNode.literalDataToString(literalData));
 
+		// update counts
+
+		if (! exists) this.updateCounts(0, 0, 1);
+
+		this.modified();
+
 		KeyValueLiteralNode literalNode = new KeyValueLiteralNode(this, this.keyValueStore, literalKey, literalData);
 
 		// done
@@ -439,6 +629,14 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 		return new KeyValueLiteralNode(this, this.keyValueStore, literalKey, null);
 	}
 
+	@Override
+	public ReadOnlyIterator<LiteralNode> getAllLiteralNodes() {
+
+		if (! this.supportsSubgraph()) return super.getAllLiteralNodes();
+
+		return new ReadOnlyIterator<LiteralNode> (new KeyValueSubgraph(this).getAllLiteralNodes());
+	}
+
 	@Override
 	public boolean containsLiteralNode() {
 
@@ -452,38 +650,177 @@ public class KeyValueContextNode extends AbstractContextNode implements ContextN
 
 		String literalKey = this.getLiteralKey();
 
+		if (! this.keyValueStore.contains(literalKey)) return;
+
 		this.keyValueStore.delete(literalKey);
+
+		// update counts
+
+		this.updateCounts(0, 0, -1);
+
+		this.modified();
+	}
+
+	@Override
+	public long getAllLiteralCount() {
+
+		return this.getCounts()[2];
+	}
+
+	/*
+	 * Methods related to statements
+	 */
+
+	@Override
+	public ReadOnlyIterator<Statement> getAllStatements() {
+
+		if (! this.supportsSubgraph()) return super.getAllStatements();
+
+		return new ReadOnlyIterator<Statement> (new KeyValueSubgraph(this).getAllStatements());
+	}
+
+	@Override
+	public long getAllStatementCount() {
+
+		long[] counts = this.getCounts();
+
+		return counts[0] + counts[1] + counts[2];
 	}
 
 	/*
 	 * Helper methods
 	 */
 
-	private String getContextNodesKey() {
+	@Override
+	protected KeyValueIncomingRelationIndex getIncomingRelationIndex() {
+
+		return ((KeyValueGraph) this.getGraph()).getIncomingRelationIndex();
+	}
+
+	/**
+	 * Whole subgraphs can be read with a single prefix scan if the store is ordered,
+	 * and if the keys of context nodes start with the keys of their parents.
+	 */
+	private boolean supportsSubgraph() {
+
+		return this.keyValueStore instanceof OrderedKeyValueStore && this.getCompactKeys() == null;
+	}
+
+	/**
+	 * Returns the numbers of context nodes, relations and literals below this context node.
+	 * Stores that were written before these numbers were kept do not have them yet, so in that case they are calculated.
+	 */
+	long[] getCounts() {
+
+		String value = this.keyValueStore.getOne(this.getCountsKey());
+		if (value != null) return stringToCounts(value);
+
+		if (this.isEmpty()) return new long[3];
+
+		return new long[] { super.getAllContextNodeCount(), super.getAllRelationCount(), super.getAllLiteralCount() };
+	}
+
+	/**
+	 * Adds to the counts of this context node and all its ancestors.
+	 * This must be called after the change has been made to the store, since missing counts are calculated from the store.
+	 */
+	private void updateCounts(long contextNodes, long relations, long literals) {
+
+		if (contextNodes == 0 && relations == 0 && literals == 0) return;
+
+		synchronized (this.keyValueStore) {
+
+			Map<String, String> values = new LinkedHashMap<String, String> ();
+
+			for (KeyValueContextNode contextNode = this; contextNode != null; contextNode = (KeyValueContextNode) contextNode.getContextNode()) {
+
+				String countsKey = contextNode.getCountsKey();
+				String value = this.keyValueStore.getOne(countsKey);
+				long[] counts;
+
+				if (value != null) {
+
+					counts = stringToCounts(value);
+					counts[0] += contextNodes;
+					counts[1] += relations;
+					counts[2] += literals;
+				} else {
+
+					counts = contextNode.getCounts();
+				}
+
+				values.put(countsKey, countsToString(counts));
+			}
+
+			// write the counts of all ancestors at once, if possible
+
+			if (this.keyValueStore instanceof BatchKeyValueStore) {
+
+				((BatchKeyValueStore) this.keyValueStore).replace(values);
+			} else {
+
+				for (Map.Entry<String, String> entry : values.entrySet()) this.keyValueStore.replace(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private static long[] stringToCounts(String value) {
+
+		String[] parts = value.split(" ");
+
+		return new long[] { Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]) };
+	}
+
+	private static String countsToString(long[] counts) {
+
+		return counts[0] + " " + counts[1] + " " + counts[2];
+	}
+
+	private boolean getCopyIterators() {
+
+		return ((KeyValueGraph) this.getGraph()).getCopyIterators();
+	}
+
+	private KeyValueCompactKeys getCompactKeys() {
+
+		return ((KeyValueGraph) this.getGraph()).getCompactKeys();
+	}
+
+	String getKeyPrefix() {
+
+		return this.isRootContextNode() ? "" : this.key;
+	}
+
+	String getContextNodesKey() {
 
 		return (this.isRootContextNode() ? "" : this.key) + "/--C";
 	}
 
-	private String getContextNodeKey(XDIArc XDIarc) {
+	String getContextNodeKey(XDIArc XDIarc) {
 
 		return (this.isRootContextNode() ? "" : this.key) + XDIarc.toString();
 	}
 
-	private String getRelationsKey() {
+	String getRelationsKey() {
 
 		return (this.isRootContextNode() ? "" : this.key) + "/--R";
 	}
 
-	private String getRelationKey(XDIAddress XDIaddress) {
+	String getRelationKey(XDIAddress XDIaddress) {
 
 		return (this.isRootContextNode() ? "" : this.key) + "/" + XDIaddress.toString();
 	}
 
-	private String getLiteralKey() {
+	String getLiteralKey() {
 
 		return (this.isRootContextNode() ? "" : this.key) + "/--L";
 	}
 
+	String getCountsKey() {
+
+		return (this.isRootContextNode() ? "" : this.key) + "/--S";
+	}
+
 	KeyValueStore getKeyValueStore() {
 
 		return this.keyValueStore;
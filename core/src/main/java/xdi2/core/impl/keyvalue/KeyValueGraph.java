@@ -14,8 +14,11 @@ public class KeyValueGraph extends AbstractGraph implements Graph {
 	private final boolean supportGetRelations;
 
 	private final KeyValueContextNode rootContextNode;
+	private final KeyValueIncomingRelationIndex incomingRelationIndex;
+	private final KeyValueCompactKeys compactKeys;
+	private final boolean copyIterators;
 
-	KeyValueGraph(AbstractKeyValueGraphFactory graphFactory, String identifier, KeyValueStore keyValueStore, boolean supportGetContextNodes, boolean supportGetRelations) {
+	KeyValueGraph(AbstractKeyValueGraphFactory graphFactory, String identifier, KeyValueStore keyValueStore, boolean supportGetContextNodes, boolean supportGetRelations, boolean compactKeys, boolean copyIterators) {
 
 		super(graphFactory, identifier);
 
@@ -25,6 +28,9 @@ public class KeyValueGraph extends AbstractGraph implements Graph {
 		this.supportGetRelations = supportGetRelations;
 
 		this.rootContextNode = new KeyValueContextNode(this, null, keyValueStore, "", null);
+		this.incomingRelationIndex = new KeyValueIncomingRelationIndex(keyValueStore);
+		this.compactKeys = compactKeys ? new KeyValueCompactKeys(keyValueStore) : null;
+		this.copyIterators = copyIterators;
 	}
 
 	@Override
@@ -59,12 +65,18 @@ public class KeyValueGraph extends AbstractGraph implements Graph {
 	public void commitTransaction() {
 
 		this.keyValueStore.commitTransaction();
+
+		this.modified();
 	}
 
 	@Override
 	public void rollbackTransaction() {
 
 		this.keyValueStore.rollbackTransaction();
+
+		if (this.compactKeys != null) this.compactKeys.reset();
+
+		this.modified();
 	}
 
 	/*
@@ -81,6 +93,35 @@ public class KeyValueGraph extends AbstractGraph implements Graph {
 		return this.keyValueStore;
 	}
 
+	/**
+	 * @return The index of incoming relations, which is kept in the key/value store.
+	 */
+	public KeyValueIncomingRelationIndex getIncomingRelationIndex() {
+
+		return this.incomingRelationIndex;
+	}
+
+	/**
+	 * @return True, if this key/value graph uses numeric node ids and dictionary-encoded arcs as keys.
+	 */
+	public boolean getCompactKeysEnabled() {
+
+		return this.compactKeys != null;
+	}
+
+	/**
+	 * @return True, if context nodes and relations are copied into lists when iterating over them.
+	 */
+	public boolean getCopyIterators() {
+
+		return this.copyIterators;
+	}
+
+	KeyValueCompactKeys getCompactKeys() {
+
+		return this.compactKeys;
+	}
+
 	/**
 	 * @return True, if this key/value graph supports enumerating contexts.
 	 */
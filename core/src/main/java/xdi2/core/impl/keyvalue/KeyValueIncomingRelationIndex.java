@@ -0,0 +1,89 @@
+package xdi2.core.impl.keyvalue;
+
+import java.util.Iterator;
+
+import xdi2.core.impl.IncomingRelationIndex;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.core.util.iterators.DescendingIterator;
+import xdi2.core.util.iterators.IteratorListMaker;
+import xdi2.core.util.iterators.MappingIterator;
+
+/**
+ * An IncomingRelationIndex that keeps its entries in the key/value store of a graph,
+ * next to the keys of the target nodes.
+ *
+ * @author markus
+ */
+public class KeyValueIncomingRelationIndex implements IncomingRelationIndex {
+
+	private KeyValueStore keyValueStore;
+
+	public KeyValueIncomingRelationIndex(KeyValueStore keyValueStore) {
+
+		this.keyValueStore = keyValueStore;
+	}
+
+	@Override
+	public void addIncomingRelation(XDIAddress contextNodeXDIAddress, XDIAddress XDIaddress, XDIAddress targetXDIAddress) {
+
+		String incomingRelationsKey = getIncomingRelationsKey(targetXDIAddress);
+		String incomingRelationKey = getIncomingRelationKey(targetXDIAddress, XDIaddress);
+
+		this.keyValueStore.set(incomingRelationsKey, XDIaddress.toString());
+		this.keyValueStore.set(incomingRelationKey, contextNodeXDIAddress.toString());
+	}
+
+	@Override
+	public void delIncomingRelation(XDIAddress contextNodeXDIAddress, XDIAddress XDIaddress, XDIAddress targetXDIAddress) {
+
+		String incomingRelationsKey = getIncomingRelationsKey(targetXDIAddress);
+		String incomingRelationKey = getIncomingRelationKey(targetXDIAddress, XDIaddress);
+
+		this.keyValueStore.delete(incomingRelationKey, contextNodeXDIAddress.toString());
+
+		if (! this.keyValueStore.contains(incomingRelationKey)) {
+
+			this.keyValueStore.delete(incomingRelationsKey, XDIaddress.toString());
+		}
+	}
+
+	@Override
+	public Iterator<XDIStatement> getIncomingRelations(final XDIAddress targetXDIAddress) {
+
+		String incomingRelationsKey = getIncomingRelationsKey(targetXDIAddress);
+
+		return new IteratorListMaker<XDIStatement> (new DescendingIterator<String, XDIStatement> (this.keyValueStore.getAll(incomingRelationsKey)) {
+
+			@Override
+			public Iterator<XDIStatement> descend(String item) {
+
+				final XDIAddress XDIaddress = XDIAddress.create(item);
+				String incomingRelationKey = getIncomingRelationKey(targetXDIAddress, XDIaddress);
+
+				return new MappingIterator<String, XDIStatement> (KeyValueIncomingRelationIndex.this.keyValueStore.getAll(incomingRelationKey)) {
+
+					@Override
+					public XDIStatement map(String contextNodeXDIAddressString) {
+
+						return XDIStatement.fromRelationComponents(XDIAddress.create(contextNodeXDIAddressString), XDIaddress, targetXDIAddress);
+					}
+				};
+			}
+		}).list().iterator();
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private static String getIncomingRelationsKey(XDIAddress targetXDIAddress) {
+
+		return targetXDIAddress.toString() + "/--I";
+	}
+
+	private static String getIncomingRelationKey(XDIAddress targetXDIAddress, XDIAddress XDIaddress) {
+
+		return targetXDIAddress.toString() + "/--I/" + XDIaddress.toString();
+	}
+}
@@ -39,6 +39,8 @@ public class KeyValueLiteralNode extends AbstractLiteralNode implements LiteralN
 		this.keyValueStore.replace(this.key, literalDataToString(literalData));
 
 		this.literalData = literalData;
+
+		this.modified();
 	}
 
 	/*
@@ -0,0 +1,257 @@
+package xdi2.core.impl.keyvalue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import xdi2.core.ContextNode;
+import xdi2.core.LiteralNode;
+import xdi2.core.Relation;
+import xdi2.core.Statement;
+import xdi2.core.impl.AbstractLiteralNode;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
+import xdi2.core.util.iterators.ReadOnlyIterator;
+
+/**
+ * All context nodes, relations, literals and statements below a context node, read from an OrderedKeyValueStore.
+ * This is used by KeyValueContextNode to return them in the same order as AbstractContextNode, with a single
+ * prefix scan for every context node instead of a lookup in the store for every key of it.
+ *
+ * The subgraph is walked lazily, so only the keys of the context nodes on the current path are in memory.
+ * The keys of a context node's whole subgraph cannot be read in a single scan, since they also contain
+ * the keys of deleted context nodes and of siblings, and only the nodes that can be reached from the
+ * context node are returned.
+ *
+ * @author markus
+ */
+class KeyValueSubgraph {
+
+	private final KeyValueContextNode contextNode;
+
+	KeyValueSubgraph(KeyValueContextNode contextNode) {
+
+		this.contextNode = contextNode;
+	}
+
+	Iterator<ContextNode> getAllContextNodes() {
+
+		return new SubgraphIterator<ContextNode> (this.contextNode) {
+
+			@Override
+			protected void enter(Node node, List<ContextNode> items) {
+
+				items.addAll(node.getContextNodes());
+			}
+		};
+	}
+
+	Iterator<Relation> getAllRelations() {
+
+		return new SubgraphIterator<Relation> (this.contextNode) {
+
+			@Override
+			protected void enter(Node node, List<Relation> items) {
+
+				items.addAll(node.getRelations());
+			}
+		};
+	}
+
+	Iterator<LiteralNode> getAllLiteralNodes() {
+
+		return new SubgraphIterator<LiteralNode> (this.contextNode) {
+
+			@Override
+			protected void enter(Node node, List<LiteralNode> items) {
+
+				LiteralNode literalNode = node.getLiteralNode();
+				if (literalNode != null) items.add(literalNode);
+			}
+		};
+	}
+
+	Iterator<Statement> getAllStatements() {
+
+		final KeyValueContextNode contextNode = this.contextNode;
+
+		return new SubgraphIterator<Statement> (this.contextNode) {
+
+			@Override
+			protected void enter(Node node, List<Statement> items) {
+
+				if (node.contextNode != contextNode) items.add(node.contextNode.getStatement());
+			}
+
+			@Override
+			protected void leave(Node node, List<Statement> items) {
+
+				for (Relation relation : node.getRelations()) items.add(relation.getStatement());
+
+				LiteralNode literalNode = node.getLiteralNode();
+				if (literalNode != null) items.add(literalNode.getStatement());
+			}
+		};
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	/**
+	 * Walks the subgraph depth-first, and reads the keys of every context node when it is entered.
+	 */
+	private abstract static class SubgraphIterator<T> extends ReadOnlyIterator<T> {
+
+		private final LinkedList<Node> path;
+		private final LinkedList<T> items;
+
+		private SubgraphIterator(KeyValueContextNode contextNode) {
+
+			super(null);
+
+			this.path = new LinkedList<Node> ();
+			this.items = new LinkedList<T> ();
+
+			this.push(contextNode);
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			while (this.items.isEmpty() && ! this.path.isEmpty()) {
+
+				Node node = this.path.getLast();
+
+				if (node.children.hasNext()) {
+
+					this.push(node.children.next());
+				} else {
+
+					this.path.removeLast();
+					this.leave(node, this.items);
+				}
+			}
+
+			return ! this.items.isEmpty();
+		}
+
+		@Override
+		public T next() {
+
+			if (! this.hasNext()) throw new NoSuchElementException();
+
+			return this.items.removeFirst();
+		}
+
+		protected abstract void enter(Node node, List<T> items);
+
+		protected void leave(Node node, List<T> items) {
+
+		}
+
+		private void push(KeyValueContextNode contextNode) {
+
+			Node node = new Node(contextNode);
+
+			this.path.addLast(node);
+			this.enter(node, this.items);
+		}
+	}
+
+	/**
+	 * The keys of a single context node, read with a prefix scan.
+	 */
+	private static class Node {
+
+		private final KeyValueContextNode contextNode;
+		private final Map<String, List<String>> map;
+		private final List<KeyValueContextNode> contextNodes;
+		private final Iterator<KeyValueContextNode> children;
+
+		private Node(KeyValueContextNode contextNode) {
+
+			this.contextNode = contextNode;
+			this.map = new HashMap<String, List<String>> ();
+
+			// read all key/value pairs of the context node
+
+			OrderedKeyValueStore keyValueStore = (OrderedKeyValueStore) contextNode.getKeyValueStore();
+
+			for (Iterator<Map.Entry<String, String>> entries = keyValueStore.getAllWithPrefix(contextNode.getKeyPrefix() + "/"); entries.hasNext(); ) {
+
+				Map.Entry<String, String> entry = entries.next();
+
+				List<String> values = this.map.get(entry.getKey());
+
+				if (values == null) {
+
+					values = new ArrayList<String> (1);
+					this.map.put(entry.getKey(), values);
+				}
+
+				values.add(entry.getValue());
+			}
+
+			// create the child context nodes
+
+			List<String> values = this.getValues(contextNode.getContextNodesKey());
+
+			this.contextNodes = new ArrayList<KeyValueContextNode> (values.size());
+
+			for (String value : values) {
+
+				XDIArc XDIarc = XDIArc.create(value);
+
+				this.contextNodes.add(new KeyValueContextNode((KeyValueGraph) contextNode.getGraph(), contextNode, contextNode.getKeyValueStore(), contextNode.getContextNodeKey(XDIarc), XDIarc));
+			}
+
+			this.children = this.contextNodes.iterator();
+		}
+
+		private List<KeyValueContextNode> getContextNodes() {
+
+			return this.contextNodes;
+		}
+
+		private List<Relation> getRelations() {
+
+			List<Relation> relations = new ArrayList<Relation> ();
+
+			for (String value : this.getValues(this.contextNode.getRelationsKey())) {
+
+				XDIAddress XDIaddress = XDIAddress.create(value);
+				String relationKey = this.contextNode.getRelationKey(XDIaddress);
+
+				for (String targetValue : this.getValues(relationKey)) {
+
+					relations.add(new KeyValueRelation(this.contextNode, this.contextNode.getKeyValueStore(), relationKey, XDIaddress, XDIAddress.create(targetValue)));
+				}
+			}
+
+			return relations;
+		}
+
+		private LiteralNode getLiteralNode() {
+
+			String literalKey = this.contextNode.getLiteralKey();
+			List<String> values = this.getValues(literalKey);
+
+			if (values.isEmpty()) return null;
+
+			return new KeyValueLiteralNode(this.contextNode, this.contextNode.getKeyValueStore(), literalKey, AbstractLiteralNode.stringToLiteralData(values.get(0)));
+		}
+
+		private List<String> getValues(String key) {
+
+			List<String> values = this.map.get(key);
+
+			return values == null ? Collections.<String>emptyList() : values;
+		}
+	}
+}
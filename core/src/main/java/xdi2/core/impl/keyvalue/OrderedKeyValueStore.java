@@ -0,0 +1,20 @@
+package xdi2.core.impl.keyvalue;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A KeyValueStore that keeps its keys in order, and can therefore
+ * return all keys that start with a prefix in a single scan.
+ * KeyValueContextNode uses this to read all keys of a context node at once.
+ *
+ * @author markus
+ */
+public interface OrderedKeyValueStore extends KeyValueStore {
+
+	/**
+	 * Returns all key/value pairs whose keys start with a prefix, ordered by key and value.
+	 * The iterator must not be affected by changes of the store while it is in use.
+	 */
+	public Iterator<Map.Entry<String, String>> getAllWithPrefix(String prefix);
+}
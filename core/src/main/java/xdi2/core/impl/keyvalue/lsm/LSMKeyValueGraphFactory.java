@@ -0,0 +1,79 @@
+package xdi2.core.impl.keyvalue.lsm;
+
+import java.io.File;
+import java.io.IOException;
+
+import xdi2.core.GraphFactory;
+import xdi2.core.impl.keyvalue.AbstractKeyValueGraphFactory;
+import xdi2.core.impl.keyvalue.KeyValueStore;
+
+/**
+ * GraphFactory that creates log-structured merge store graphs.
+ * 
+ * @author markus
+ */
+public class LSMKeyValueGraphFactory extends AbstractKeyValueGraphFactory implements GraphFactory {
+
+	public static final boolean DEFAULT_SUPPORT_GET_CONTEXTNODES = true; 
+	public static final boolean DEFAULT_SUPPORT_GET_RELATIONS = true; 
+
+	private int maxMemTableSize;
+	private int maxRuns;
+
+	public LSMKeyValueGraphFactory() {
+
+		super(DEFAULT_SUPPORT_GET_CONTEXTNODES, DEFAULT_SUPPORT_GET_RELATIONS);
+
+		this.maxMemTableSize = LSMKeyValueStore.DEFAULT_MAXMEMTABLESIZE;
+		this.maxRuns = LSMKeyValueStore.DEFAULT_MAXRUNS;
+
+		// the store returns snapshots, so iterators don't need to be copied
+
+		this.setCopyIterators(false);
+	}
+
+	@Override
+	protected KeyValueStore openKeyValueStore(String identifier) throws IOException {
+
+		// check identifier
+
+		File directory = new File("xdi2-lsm-keyvalue-graph." + identifier);
+
+		// open store
+
+		KeyValueStore keyValueStore;
+
+		keyValueStore = new LSMKeyValueStore(directory, this.maxMemTableSize, this.maxRuns);
+		keyValueStore.init();
+
+		// done
+
+		return keyValueStore;
+	}
+
+	public int getMaxMemTableSize() {
+
+		return this.maxMemTableSize;
+	}
+
+	/**
+	 * Sets the number of entries kept in memory before they are written to a sorted run.
+	 */
+	public void setMaxMemTableSize(int maxMemTableSize) {
+
+		this.maxMemTableSize = maxMemTableSize;
+	}
+
+	public int getMaxRuns() {
+
+		return this.maxRuns;
+	}
+
+	/**
+	 * Sets the number of sorted runs after which they are merged into one.
+	 */
+	public void setMaxRuns(int maxRuns) {
+
+		this.maxRuns = maxRuns;
+	}
+}
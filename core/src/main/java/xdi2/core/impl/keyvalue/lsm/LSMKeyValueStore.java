@@ -0,0 +1,731 @@
+package xdi2.core.impl.keyvalue.lsm;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import xdi2.core.exceptions.Xdi2RuntimeException;
+import xdi2.core.impl.keyvalue.AbstractKeyValueStore;
+import xdi2.core.impl.keyvalue.BatchKeyValueStore;
+import xdi2.core.impl.keyvalue.KeyValueStore;
+import xdi2.core.impl.keyvalue.OrderedKeyValueStore;
+import xdi2.core.util.iterators.MappingIterator;
+
+/**
+ * This class defines access to a log-structured merge store in a directory. It is used by the
+ * LSMKeyValueGraphFactory class to create graphs stored in such directories.
+ *
+ * Every key/value pair is kept as a composite key made of the key, a separator and the value.
+ * Changes go to a sorted in-memory table and to a write-ahead log. When the in-memory table is full,
+ * it is written to a new immutable sorted run file, and the log is emptied. When there are too many
+ * sorted runs, they are merged into one. Reads merge the in-memory table and the sorted runs,
+ * and since all of them are sorted, all keys with a common prefix can be read in a single scan.
+ * Larger scans read from a snapshot: the in-memory tables are copied before they are changed again,
+ * and sorted runs are only closed and deleted when no scan reads from them anymore.
+ *
+ * Changes made in a transaction are kept in memory, and written to the log as a single group when
+ * the transaction is committed.
+ *
+ * @author markus
+ */
+public class LSMKeyValueStore extends AbstractKeyValueStore implements KeyValueStore, OrderedKeyValueStore, BatchKeyValueStore {
+
+	private static final Logger log = LoggerFactory.getLogger(LSMKeyValueStore.class);
+
+	public static final String WAL_FILENAME = "wal.log";
+	public static final String RUN_PREFIX = "run-";
+	public static final String RUN_SUFFIX = ".dat";
+
+	public static final int DEFAULT_MAXMEMTABLESIZE = 10000;
+	public static final int DEFAULT_MAXRUNS = 8;
+
+	private static final char SEPARATOR = '\u0000';
+	private static final int MAX_EAGER_SCAN = 256;
+
+	private File directory;
+	private int maxMemTableSize;
+	private int maxRuns;
+
+	private TreeMap<String, Boolean> memTable;
+	private boolean memTableShared;
+	private List<SortedRun> runs;
+	private int nextRunNumber;
+	private WriteAheadLog writeAheadLog;
+
+	private TreeMap<String, Boolean> transactionTable;
+	private boolean transactionTableShared;
+	private boolean transactionCleared;
+
+	/**
+	 * @param directory The directory of the store.
+	 * @param maxMemTableSize The number of entries in memory after which they are written to a sorted run.
+	 * @param maxRuns The number of sorted runs after which they are merged into one.
+	 */
+	public LSMKeyValueStore(File directory, int maxMemTableSize, int maxRuns) {
+
+		this.directory = directory;
+		this.maxMemTableSize = maxMemTableSize;
+		this.maxRuns = maxRuns;
+
+		this.memTable = null;
+		this.memTableShared = false;
+		this.runs = null;
+		this.nextRunNumber = 0;
+		this.writeAheadLog = null;
+
+		this.transactionTable = null;
+		this.transactionTableShared = false;
+		this.transactionCleared = false;
+	}
+
+	public LSMKeyValueStore(File directory) {
+
+		this(directory, DEFAULT_MAXMEMTABLESIZE, DEFAULT_MAXRUNS);
+	}
+
+	@Override
+	public synchronized void init() throws IOException {
+
+		if (! this.directory.exists() && ! this.directory.mkdirs()) throw new IOException("Cannot create directory " + this.directory.getAbsolutePath());
+
+		// delete incomplete run files
+
+		for (File file : this.directory.listFiles()) {
+
+			if (file.getName().endsWith(".tmp")) file.delete();
+		}
+
+		// open sorted runs
+
+		this.memTable = new TreeMap<String, Boolean> ();
+		this.memTableShared = false;
+		this.runs = new ArrayList<SortedRun> ();
+
+		for (File file : this.directory.listFiles(new RunFilenameFilter())) {
+
+			int number = runNumber(file);
+
+			this.runs.add(SortedRun.open(number, file));
+			if (number >= this.nextRunNumber) this.nextRunNumber = number + 1;
+		}
+
+		Collections.sort(this.runs, new RunComparator());
+
+		// replay the write-ahead log
+
+		this.writeAheadLog = new WriteAheadLog(new File(this.directory, WAL_FILENAME));
+
+		for (List<Entry<String, Byte>> group : this.writeAheadLog.replay()) this.apply(group);
+
+		this.writeAheadLog.open();
+
+		if (log.isDebugEnabled()) log.debug("Opened " + this.directory.getAbsolutePath() + " with " + this.runs.size() + " runs and " + this.memTable.size() + " entries in memory.");
+	}
+
+	@Override
+	public synchronized void close() {
+
+		if (this.writeAheadLog == null) return;
+
+		try {
+
+			this.writeAheadLog.close();
+			for (SortedRun run : this.runs) run.release();
+		} catch (IOException ex) {
+
+			throw new Xdi2RuntimeException("Cannot close store " + this.directory.getAbsolutePath() + ": " + ex.getMessage(), ex);
+		}
+
+		this.memTable = null;
+		this.runs = null;
+		this.writeAheadLog = null;
+		this.transactionTable = null;
+	}
+
+	@Override
+	public synchronized void set(String key, String value) {
+
+		this.write(Collections.singletonList(entry(composite(key, value), SortedRun.ENTRY_PRESENT)));
+	}
+
+	@Override
+	public synchronized Iterator<String> getAll(String key) {
+
+		List<String> values = new ArrayList<String> ();
+
+		for (Iterator<String> compositeKeys = this.scan(key + SEPARATOR); compositeKeys.hasNext(); ) {
+
+			values.add(value(compositeKeys.next()));
+		}
+
+		return values.iterator();
+	}
+
+	@Override
+	public synchronized boolean contains(String key) {
+
+		return this.scan(key + SEPARATOR).hasNext();
+	}
+
+	@Override
+	public synchronized boolean contains(String key, String value) {
+
+		return this.lookup(composite(key, value));
+	}
+
+	@Override
+	public synchronized void delete(String key) {
+
+		List<Entry<String, Byte>> group = new ArrayList<Entry<String, Byte>> ();
+
+		for (Iterator<String> compositeKeys = this.scan(key + SEPARATOR); compositeKeys.hasNext(); ) {
+
+			group.add(entry(compositeKeys.next(), SortedRun.ENTRY_TOMBSTONE));
+		}
+
+		if (! group.isEmpty()) this.write(group);
+	}
+
+	@Override
+	public synchronized void delete(String key, String value) {
+
+		String compositeKey = composite(key, value);
+
+		if (this.lookup(compositeKey)) this.write(Collections.singletonList(entry(compositeKey, SortedRun.ENTRY_TOMBSTONE)));
+	}
+
+	@Override
+	public synchronized void replace(String key, String value) {
+
+		this.replace(Collections.singletonMap(key, value));
+	}
+
+	@Override
+	public synchronized void replace(Map<String, String> values) {
+
+		List<Entry<String, Byte>> group = new ArrayList<Entry<String, Byte>> ();
+
+		for (Entry<String, String> value : values.entrySet()) {
+
+			for (Iterator<String> compositeKeys = this.scan(value.getKey() + SEPARATOR); compositeKeys.hasNext(); ) {
+
+				group.add(entry(compositeKeys.next(), SortedRun.ENTRY_TOMBSTONE));
+			}
+
+			if (value.getValue() != null) group.add(entry(composite(value.getKey(), value.getValue()), SortedRun.ENTRY_PRESENT));
+		}
+
+		if (! group.isEmpty()) this.write(group);
+	}
+
+	@Override
+	public synchronized long count(String key) {
+
+		long count = 0;
+
+		for (Iterator<String> compositeKeys = this.scan(key + SEPARATOR); compositeKeys.hasNext(); compositeKeys.next()) count++;
+
+		return count;
+	}
+
+	@Override
+	public synchronized void clear() {
+
+		if (this.transactionTable != null) {
+
+			this.transactionTable = new TreeMap<String, Boolean> ();
+			this.transactionTableShared = false;
+			this.transactionCleared = true;
+
+			return;
+		}
+
+		this.write(Collections.singletonList(entry("", SortedRun.ENTRY_CLEAR)));
+	}
+
+	@Override
+	public synchronized Iterator<Map.Entry<String, String>> getAllWithPrefix(String prefix) {
+
+		// small scans are read right away, larger ones from a snapshot
+
+		List<String> compositeKeys = new ArrayList<String> ();
+
+		for (Iterator<String> iterator = this.scan(prefix); iterator.hasNext(); ) {
+
+			if (compositeKeys.size() == MAX_EAGER_SCAN) return entries(this.snapshot(prefix));
+
+			compositeKeys.add(iterator.next());
+		}
+
+		return entries(compositeKeys.iterator());
+	}
+
+	@Override
+	public boolean supportsTransactions() {
+
+		return true;
+	}
+
+	@Override
+	public synchronized void beginTransaction() {
+
+		if (this.transactionTable != null) throw new Xdi2RuntimeException("Already have an open transaction.");
+
+		this.transactionTable = new TreeMap<String, Boolean> ();
+		this.transactionTableShared = false;
+		this.transactionCleared = false;
+	}
+
+	@Override
+	public synchronized void commitTransaction() {
+
+		if (this.transactionTable == null) throw new Xdi2RuntimeException("No open transaction.");
+
+		// write all changes of the transaction as a single group
+
+		List<Entry<String, Byte>> group = new ArrayList<Entry<String, Byte>> ();
+
+		if (this.transactionCleared) group.add(entry("", SortedRun.ENTRY_CLEAR));
+
+		for (Entry<String, Boolean> entry : this.transactionTable.entrySet()) {
+
+			group.add(entry(entry.getKey(), entry.getValue().booleanValue() ? SortedRun.ENTRY_PRESENT : SortedRun.ENTRY_TOMBSTONE));
+		}
+
+		this.transactionTable = null;
+		this.transactionCleared = false;
+
+		if (! group.isEmpty()) this.write(group, true);
+	}
+
+	@Override
+	public synchronized void rollbackTransaction() {
+
+		if (this.transactionTable == null) throw new Xdi2RuntimeException("No open transaction.");
+
+		this.transactionTable = null;
+		this.transactionCleared = false;
+	}
+
+	/**
+	 * Writes the in-memory table to a new sorted run, and empties the write-ahead log.
+	 */
+	public synchronized void flush() {
+
+		if (this.memTable.isEmpty()) return;
+
+		try {
+
+			SortedRun run = SortedRun.write(this.nextRunNumber, this.runFile(this.nextRunNumber), this.memTable.entrySet().iterator());
+			this.nextRunNumber++;
+
+			this.runs.add(0, run);
+			this.memTable = new TreeMap<String, Boolean> ();
+			this.memTableShared = false;
+			this.writeAheadLog.reset();
+
+			if (log.isDebugEnabled()) log.debug("Flushed " + run.getCount() + " entries to " + run.getFile().getName());
+
+			if (this.runs.size() > this.maxRuns) this.compact();
+		} catch (IOException ex) {
+
+			throw new Xdi2RuntimeException("Cannot flush store " + this.directory.getAbsolutePath() + ": " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Merges all sorted runs into a single one, and drops all deleted entries.
+	 */
+	public synchronized void compact() {
+
+		if (this.runs.size() < 2) return;
+
+		try {
+
+			// merge the runs from newest to oldest
+
+			List<Iterator<Entry<String, Boolean>>> iterators = new ArrayList<Iterator<Entry<String, Boolean>>> ();
+			for (SortedRun run : this.runs) iterators.add(run.iterator(""));
+
+			Iterator<Entry<String, Boolean>> entries = new MappingIterator<String, Entry<String, Boolean>> (new MergingIterator(iterators)) {
+
+				@Override
+				public Entry<String, Boolean> map(String compositeKey) {
+
+					return new AbstractMap.SimpleImmutableEntry<String, Boolean> (compositeKey, Boolean.TRUE);
+				}
+			};
+
+			SortedRun run = SortedRun.write(this.nextRunNumber, this.runFile(this.nextRunNumber), entries);
+			this.nextRunNumber++;
+
+			// delete the old runs from oldest to newest, so that a crash never uncovers deleted entries
+
+			List<SortedRun> oldRuns = new ArrayList<SortedRun> (this.runs);
+			Collections.reverse(oldRuns);
+
+			this.runs.clear();
+			this.runs.add(run);
+
+			this.deleteRuns(oldRuns);
+
+			if (log.isDebugEnabled()) log.debug("Compacted " + oldRuns.size() + " runs into " + run.getFile().getName() + " with " + run.getCount() + " entries.");
+		} catch (IOException ex) {
+
+			throw new Xdi2RuntimeException("Cannot compact store " + this.directory.getAbsolutePath() + ": " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Deletes all store directories in the current directory.
+	 */
+	public static void cleanup() {
+
+		File[] directories = new File(".").listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File dir, String name) {
+
+				return name.startsWith("xdi2-lsm-keyvalue-graph.");
+			}
+		});
+
+		for (File directory : directories) {
+
+			File[] files = directory.listFiles();
+			if (files != null) for (File file : files) file.delete();
+
+			directory.delete();
+		}
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private void write(List<Entry<String, Byte>> group) {
+
+		this.write(group, false);
+	}
+
+	private void write(List<Entry<String, Byte>> group, boolean sync) {
+
+		// in a transaction, only remember the changes
+
+		if (this.transactionTable != null) {
+
+			if (this.transactionTableShared) {
+
+				this.transactionTable = new TreeMap<String, Boolean> (this.transactionTable);
+				this.transactionTableShared = false;
+			}
+
+			for (Entry<String, Byte> entry : group) this.transactionTable.put(entry.getKey(), Boolean.valueOf(entry.getValue().byteValue() == SortedRun.ENTRY_PRESENT));
+
+			return;
+		}
+
+		// log the changes, then apply them
+
+		try {
+
+			this.writeAheadLog.append(group, sync);
+			this.apply(group);
+		} catch (IOException ex) {
+
+			throw new Xdi2RuntimeException("Cannot write to store " + this.directory.getAbsolutePath() + ": " + ex.getMessage(), ex);
+		}
+
+		if (this.memTable.size() >= this.maxMemTableSize) this.flush();
+	}
+
+	private void apply(List<Entry<String, Byte>> group) throws IOException {
+
+		for (Entry<String, Byte> entry : group) {
+
+			byte type = entry.getValue().byteValue();
+
+			if (type == SortedRun.ENTRY_CLEAR) {
+
+				// all sorted runs are older than the log, so they can all be deleted
+
+				this.memTable = new TreeMap<String, Boolean> ();
+				this.memTableShared = false;
+
+				List<SortedRun> oldRuns = new ArrayList<SortedRun> (this.runs);
+				Collections.reverse(oldRuns);
+
+				this.runs.clear();
+				this.deleteRuns(oldRuns);
+			} else {
+
+				if (this.memTableShared) {
+
+					this.memTable = new TreeMap<String, Boolean> (this.memTable);
+					this.memTableShared = false;
+				}
+
+				this.memTable.put(entry.getKey(), Boolean.valueOf(type == SortedRun.ENTRY_PRESENT));
+			}
+		}
+	}
+
+	private boolean lookup(String compositeKey) {
+
+		Boolean present;
+
+		if (this.transactionTable != null) {
+
+			present = this.transactionTable.get(compositeKey);
+			if (present != null) return present.booleanValue();
+			if (this.transactionCleared) return false;
+		}
+
+		present = this.memTable.get(compositeKey);
+		if (present != null) return present.booleanValue();
+
+		try {
+
+			for (SortedRun run : this.runs) {
+
+				present = run.get(compositeKey);
+				if (present != null) return present.booleanValue();
+			}
+		} catch (IOException ex) {
+
+			throw new Xdi2RuntimeException("Cannot read from store " + this.directory.getAbsolutePath() + ": " + ex.getMessage(), ex);
+		}
+
+		return false;
+	}
+
+	private Iterator<String> scan(String prefix) {
+
+		List<Iterator<Entry<String, Boolean>>> iterators = new ArrayList<Iterator<Entry<String, Boolean>>> ();
+
+		if (this.transactionTable != null) {
+
+			iterators.add(prefixIterator(this.transactionTable, prefix));
+		}
+
+		if (this.transactionTable == null || ! this.transactionCleared) {
+
+			iterators.add(prefixIterator(this.memTable, prefix));
+			for (SortedRun run : this.runs) iterators.add(run.iterator(prefix));
+		}
+
+		return new MergingIterator(iterators);
+	}
+
+	private Iterator<String> snapshot(String prefix) {
+
+		// the tables are copied before they are changed again, and the runs stay open until the scan is done
+
+		this.memTableShared = true;
+		if (this.transactionTable != null) this.transactionTableShared = true;
+
+		List<SortedRun> runs = new ArrayList<SortedRun> (this.runs);
+		for (SortedRun run : runs) run.retain();
+
+		return new SnapshotIterator(this.scan(prefix), runs);
+	}
+
+	private void deleteRuns(List<SortedRun> runs) throws IOException {
+
+		for (SortedRun run : runs) {
+
+			run.delete();
+			if (! run.release()) log.warn("Cannot delete " + run.getFile().getAbsolutePath());
+		}
+	}
+
+	private File runFile(int number) {
+
+		return new File(this.directory, RUN_PREFIX + number + RUN_SUFFIX);
+	}
+
+	private static int runNumber(File file) {
+
+		String name = file.getName();
+
+		return Integer.parseInt(name.substring(RUN_PREFIX.length(), name.length() - RUN_SUFFIX.length()));
+	}
+
+	private static Iterator<Entry<String, Boolean>> prefixIterator(TreeMap<String, Boolean> table, final String prefix) {
+
+		final Iterator<Entry<String, Boolean>> iterator = table.tailMap(prefix, true).entrySet().iterator();
+
+		return new Iterator<Entry<String, Boolean>> () {
+
+			private Entry<String, Boolean> next = null;
+
+			@Override
+			public boolean hasNext() {
+
+				if (this.next == null && iterator.hasNext()) {
+
+					Entry<String, Boolean> entry = iterator.next();
+					if (entry.getKey().startsWith(prefix)) this.next = entry;
+				}
+
+				return this.next != null;
+			}
+
+			@Override
+			public Entry<String, Boolean> next() {
+
+				if (! this.hasNext()) throw new NoSuchElementException();
+
+				Entry<String, Boolean> next = this.next;
+				this.next = null;
+
+				return next;
+			}
+
+			@Override
+			public void remove() {
+
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private static Iterator<Map.Entry<String, String>> entries(Iterator<String> compositeKeys) {
+
+		return new MappingIterator<String, Map.Entry<String, String>> (compositeKeys) {
+
+			@Override
+			public Map.Entry<String, String> map(String compositeKey) {
+
+				int separator = compositeKey.indexOf(SEPARATOR);
+
+				return new AbstractMap.SimpleImmutableEntry<String, String> (compositeKey.substring(0, separator), compositeKey.substring(separator + 1));
+			}
+		};
+	}
+
+	private static String composite(String key, String value) {
+
+		return key + SEPARATOR + value;
+	}
+
+	private static String value(String compositeKey) {
+
+		return compositeKey.substring(compositeKey.indexOf(SEPARATOR) + 1);
+	}
+
+	private static Entry<String, Byte> entry(String compositeKey, byte type) {
+
+		return new AbstractMap.SimpleImmutableEntry<String, Byte> (compositeKey, Byte.valueOf(type));
+	}
+
+	/*
+	 * Getters and setters
+	 */
+
+	public File getDirectory() {
+
+		return this.directory;
+	}
+
+	public synchronized int getMemTableSize() {
+
+		return this.memTable.size();
+	}
+
+	public synchronized int getRunCount() {
+
+		return this.runs.size();
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	private static class RunFilenameFilter implements FilenameFilter {
+
+		@Override
+		public boolean accept(File dir, String name) {
+
+			return name.startsWith(RUN_PREFIX) && name.endsWith(RUN_SUFFIX);
+		}
+	}
+
+	private static class RunComparator implements Comparator<SortedRun> {
+
+		@Override
+		public int compare(SortedRun run1, SortedRun run2) {
+
+			// newest first
+
+			return run2.getNumber() < run1.getNumber() ? -1 : (run2.getNumber() == run1.getNumber() ? 0 : 1);
+		}
+	}
+
+	/**
+	 * A scan of a snapshot, which releases the sorted runs of the snapshot when it is done.
+	 */
+	private static class SnapshotIterator implements Iterator<String> {
+
+		private final Iterator<String> iterator;
+		private List<SortedRun> runs;
+
+		private SnapshotIterator(Iterator<String> iterator, List<SortedRun> runs) {
+
+			this.iterator = iterator;
+			this.runs = runs;
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			if (this.runs == null) return false;
+			if (this.iterator.hasNext()) return true;
+
+			// release the sorted runs
+
+			try {
+
+				for (SortedRun run : this.runs) {
+
+					if (! run.release()) log.warn("Cannot delete " + run.getFile().getAbsolutePath());
+				}
+			} catch (IOException ex) {
+
+				throw new Xdi2RuntimeException("Cannot close run: " + ex.getMessage(), ex);
+			} finally {
+
+				this.runs = null;
+			}
+
+			return false;
+		}
+
+		@Override
+		public String next() {
+
+			if (! this.hasNext()) throw new NoSuchElementException();
+
+			return this.iterator.next();
+		}
+
+		@Override
+		public void remove() {
+
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package xdi2.core.impl.keyvalue.lsm;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+/**
+ * Merges sorted iterators of entries into a sorted iterator of the composite keys that are present.
+ * If more than one iterator has an entry for the same key, the entry of the first of them wins,
+ * so the iterators must be given from newest to oldest.
+ *
+ * @author markus
+ */
+class MergingIterator implements Iterator<String> {
+
+	private final Iterator<Entry<String, Boolean>>[] iterators;
+	private final Entry<String, Boolean>[] heads;
+	private String next;
+
+	@SuppressWarnings("unchecked")
+	MergingIterator(List<Iterator<Entry<String, Boolean>>> iterators) {
+
+		this.iterators = iterators.toArray(new Iterator[iterators.size()]);
+		this.heads = new Entry[iterators.size()];
+		this.next = null;
+
+		for (int i = 0; i < this.iterators.length; i++) this.advance(i);
+	}
+
+	@Override
+	public boolean hasNext() {
+
+		while (this.next == null) {
+
+			// find the smallest key, and the newest entry for it
+
+			int winner = -1;
+
+			for (int i = 0; i < this.heads.length; i++) {
+
+				if (this.heads[i] == null) continue;
+				if (winner == -1 || this.heads[i].getKey().compareTo(this.heads[winner].getKey()) < 0) winner = i;
+			}
+
+			if (winner == -1) return false;
+
+			Entry<String, Boolean> entry = this.heads[winner];
+
+			// skip older entries for the same key
+
+			for (int i = 0; i < this.heads.length; i++) {
+
+				if (this.heads[i] != null && this.heads[i].getKey().equals(entry.getKey())) this.advance(i);
+			}
+
+			if (entry.getValue().booleanValue()) this.next = entry.getKey();
+		}
+
+		return true;
+	}
+
+	@Override
+	public String next() {
+
+		if (! this.hasNext()) throw new NoSuchElementException();
+
+		String next = this.next;
+		this.next = null;
+
+		return next;
+	}
+
+	@Override
+	public void remove() {
+
+		throw new UnsupportedOperationException();
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private void advance(int i) {
+
+		this.heads[i] = this.iterators[i].hasNext() ? this.iterators[i].next() : null;
+	}
+}
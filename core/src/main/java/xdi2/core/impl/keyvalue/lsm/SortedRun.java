@@ -0,0 +1,364 @@
+package xdi2.core.impl.keyvalue.lsm;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import xdi2.core.exceptions.Xdi2RuntimeException;
+
+/**
+ * An immutable file of entries sorted by their composite keys, as written by a flush of
+ * the memtable or by a compaction. Every entry is either present or a tombstone.
+ *
+ * The entries are grouped into blocks. The first key and file offset of every block are kept
+ * at the end of the file, and in memory while the run is open, so a lookup reads a single block.
+ *
+ * @author markus
+ */
+class SortedRun {
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	static final byte ENTRY_TOMBSTONE = 0;
+	static final byte ENTRY_PRESENT = 1;
+	static final byte ENTRY_CLEAR = 2;
+
+	private static final int BLOCK_SIZE = 64;
+	private static final int MAGIC = 0x58444932;
+
+	private final int number;
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final String[] blockFirstKeys;
+	private final long[] blockOffsets;
+	private final long count;
+
+	private int references;
+	private boolean deleted;
+
+	private SortedRun(int number, File file, RandomAccessFile randomAccessFile, String[] blockFirstKeys, long[] blockOffsets, long count) {
+
+		this.number = number;
+		this.file = file;
+		this.randomAccessFile = randomAccessFile;
+		this.blockFirstKeys = blockFirstKeys;
+		this.blockOffsets = blockOffsets;
+		this.count = count;
+
+		this.references = 1;
+		this.deleted = false;
+	}
+
+	/**
+	 * Writes sorted entries into a new run file.
+	 * The file is written under a temporary name and renamed when it is complete.
+	 */
+	static SortedRun write(int number, File file, Iterator<Entry<String, Boolean>> entries) throws IOException {
+
+		File tempFile = new File(file.getPath() + ".tmp");
+
+		FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+		DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+
+		List<String> blockFirstKeys = new ArrayList<String> ();
+		List<Long> blockOffsets = new ArrayList<Long> ();
+		long offset = 0;
+		long count = 0;
+
+		try {
+
+			// write the entries
+
+			while (entries.hasNext()) {
+
+				Entry<String, Boolean> entry = entries.next();
+
+				if (count % BLOCK_SIZE == 0) {
+
+					blockFirstKeys.add(entry.getKey());
+					blockOffsets.add(Long.valueOf(offset));
+				}
+
+				offset += writeEntry(dataOutputStream, entry.getValue().booleanValue() ? ENTRY_PRESENT : ENTRY_TOMBSTONE, entry.getKey());
+				count++;
+			}
+
+			// write the block index
+
+			long indexOffset = offset;
+
+			dataOutputStream.writeInt(blockFirstKeys.size());
+
+			for (int i = 0; i < blockFirstKeys.size(); i++) {
+
+				writeEntry(dataOutputStream, ENTRY_PRESENT, blockFirstKeys.get(i));
+				dataOutputStream.writeLong(blockOffsets.get(i).longValue());
+			}
+
+			dataOutputStream.writeLong(count);
+			dataOutputStream.writeLong(indexOffset);
+			dataOutputStream.writeInt(MAGIC);
+
+			dataOutputStream.flush();
+			fileOutputStream.getFD().sync();
+		} finally {
+
+			dataOutputStream.close();
+		}
+
+		if (! tempFile.renameTo(file)) throw new IOException("Cannot rename " + tempFile.getAbsolutePath() + " to " + file.getAbsolutePath());
+
+		return open(number, file);
+	}
+
+	/**
+	 * Opens an existing run file and reads its block index.
+	 */
+	static SortedRun open(int number, File file) throws IOException {
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+
+		try {
+
+			long length = randomAccessFile.length();
+			if (length < 20) throw new IOException("Invalid run file " + file.getAbsolutePath());
+
+			randomAccessFile.seek(length - 20);
+			long count = randomAccessFile.readLong();
+			long indexOffset = randomAccessFile.readLong();
+			if (randomAccessFile.readInt() != MAGIC) throw new IOException("Invalid run file " + file.getAbsolutePath());
+
+			randomAccessFile.seek(indexOffset);
+			int blocks = randomAccessFile.readInt();
+
+			String[] blockFirstKeys = new String[blocks];
+			long[] blockOffsets = new long[blocks + 1];
+
+			for (int i = 0; i < blocks; i++) {
+
+				randomAccessFile.readByte();
+				blockFirstKeys[i] = readString(randomAccessFile);
+				blockOffsets[i] = randomAccessFile.readLong();
+			}
+
+			blockOffsets[blocks] = indexOffset;
+
+			return new SortedRun(number, file, randomAccessFile, blockFirstKeys, blockOffsets, count);
+		} catch (IOException ex) {
+
+			randomAccessFile.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Looks up a composite key.
+	 * @return TRUE if it is present, FALSE if it is a tombstone, or null if it is not in this run.
+	 */
+	Boolean get(String compositeKey) throws IOException {
+
+		int block = this.findBlock(compositeKey);
+		if (block < 0) return null;
+
+		for (Entry<String, Boolean> entry : this.readBlock(block)) {
+
+			int compare = entry.getKey().compareTo(compositeKey);
+
+			if (compare == 0) return entry.getValue();
+			if (compare > 0) break;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the entries whose composite keys start with a prefix, in order.
+	 */
+	Iterator<Entry<String, Boolean>> iterator(final String prefix) {
+
+		final int firstBlock = Math.max(this.findBlock(prefix), 0);
+
+		return new Iterator<Entry<String, Boolean>> () {
+
+			private int block = firstBlock;
+			private Iterator<Entry<String, Boolean>> blockEntries = null;
+			private Entry<String, Boolean> next = null;
+			private boolean done = false;
+
+			@Override
+			public boolean hasNext() {
+
+				while (this.next == null && ! this.done) {
+
+					if (this.blockEntries == null || ! this.blockEntries.hasNext()) {
+
+						if (this.block >= SortedRun.this.blockFirstKeys.length) { this.done = true; break; }
+
+						try {
+
+							this.blockEntries = SortedRun.this.readBlock(this.block++).iterator();
+						} catch (IOException ex) {
+
+							throw new Xdi2RuntimeException("Cannot read run " + SortedRun.this.file.getAbsolutePath() + ": " + ex.getMessage(), ex);
+						}
+
+						continue;
+					}
+
+					Entry<String, Boolean> entry = this.blockEntries.next();
+
+					if (entry.getKey().startsWith(prefix)) {
+
+						this.next = entry;
+					} else if (entry.getKey().compareTo(prefix) > 0) {
+
+						this.done = true;
+					}
+				}
+
+				return this.next != null;
+			}
+
+			@Override
+			public Entry<String, Boolean> next() {
+
+				if (! this.hasNext()) throw new NoSuchElementException();
+
+				Entry<String, Boolean> next = this.next;
+				this.next = null;
+
+				return next;
+			}
+
+			@Override
+			public void remove() {
+
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Keeps the run open until release() is called, e.g. while a scan still reads from it.
+	 */
+	synchronized void retain() {
+
+		this.references++;
+	}
+
+	/**
+	 * Gives up a reference to the run. The last one closes the run, and deletes its file if delete() was called.
+	 * @return False if the file could not be deleted.
+	 */
+	synchronized boolean release() throws IOException {
+
+		if (--this.references > 0) return true;
+
+		this.randomAccessFile.close();
+
+		return ! this.deleted || this.file.delete();
+	}
+
+	/**
+	 * Deletes the file of the run when the last reference to it is released.
+	 */
+	synchronized void delete() {
+
+		this.deleted = true;
+	}
+
+	int getNumber() {
+
+		return this.number;
+	}
+
+	File getFile() {
+
+		return this.file;
+	}
+
+	long getCount() {
+
+		return this.count;
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	/**
+	 * Returns the last block whose first key is not greater than the given key, or -1.
+	 */
+	private int findBlock(String compositeKey) {
+
+		int index = Arrays.binarySearch(this.blockFirstKeys, compositeKey);
+
+		return index >= 0 ? index : -index - 2;
+	}
+
+	private List<Entry<String, Boolean>> readBlock(int block) throws IOException {
+
+		byte[] bytes = new byte[(int) (this.blockOffsets[block + 1] - this.blockOffsets[block])];
+
+		synchronized (this.randomAccessFile) {
+
+			this.randomAccessFile.seek(this.blockOffsets[block]);
+			this.randomAccessFile.readFully(bytes);
+		}
+
+		DataInputStream dataInputStream = new DataInputStream(new ByteArrayInputStream(bytes));
+		List<Entry<String, Boolean>> entries = new ArrayList<Entry<String, Boolean>> (BLOCK_SIZE);
+
+		while (dataInputStream.available() > 0) {
+
+			byte type = dataInputStream.readByte();
+			String compositeKey = readString(dataInputStream);
+
+			entries.add(new AbstractMap.SimpleImmutableEntry<String, Boolean> (compositeKey, Boolean.valueOf(type == ENTRY_PRESENT)));
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Writes an entry as its type, the length of its key, and its key.
+	 * @return The number of bytes written.
+	 */
+	static int writeEntry(DataOutput dataOutput, byte type, String compositeKey) throws IOException {
+
+		byte[] bytes = compositeKey.getBytes(UTF8);
+
+		dataOutput.writeByte(type);
+		dataOutput.writeInt(bytes.length);
+		dataOutput.write(bytes);
+
+		return 5 + bytes.length;
+	}
+
+	static String readString(DataInput dataInput) throws IOException {
+
+		int length = dataInput.readInt();
+		if (length < 0) throw new EOFException("Invalid length " + length);
+
+		byte[] bytes = new byte[length];
+		dataInput.readFully(bytes);
+
+		return new String(bytes, UTF8);
+	}
+}
@@ -0,0 +1,151 @@
+package xdi2.core.impl.keyvalue.lsm;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The log of all changes that are in the memtable but not yet in a sorted run.
+ *
+ * Changes are appended in groups. A group is written as the number of its entries,
+ * the entries, and the number of entries again, so that a group which was only partially
+ * written before a crash can be detected and discarded when the log is replayed.
+ *
+ * @author markus
+ */
+class WriteAheadLog {
+
+	private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+	private final File file;
+	private FileOutputStream fileOutputStream;
+
+	WriteAheadLog(File file) {
+
+		this.file = file;
+		this.fileOutputStream = null;
+	}
+
+	/**
+	 * Reads all complete groups from the log, and truncates an incomplete group at its end.
+	 */
+	List<List<Entry<String, Byte>>> replay() throws IOException {
+
+		List<List<Entry<String, Byte>>> groups = new ArrayList<List<Entry<String, Byte>>> ();
+		if (! this.file.exists()) return groups;
+
+		long validLength = 0;
+
+		DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+
+		try {
+
+			while (true) {
+
+				int count = dataInputStream.readInt();
+				int length = 4;
+
+				List<Entry<String, Byte>> group = new ArrayList<Entry<String, Byte>> (Math.max(count, 0));
+
+				for (int i = 0; i < count; i++) {
+
+					byte type = dataInputStream.readByte();
+					String compositeKey = SortedRun.readString(dataInputStream);
+
+					group.add(new AbstractMap.SimpleImmutableEntry<String, Byte> (compositeKey, Byte.valueOf(type)));
+					length += 5 + compositeKey.getBytes(SortedRun.UTF8).length;
+				}
+
+				if (dataInputStream.readInt() != count) break;
+				length += 4;
+
+				groups.add(group);
+				validLength += length;
+			}
+		} catch (EOFException ex) {
+
+		} finally {
+
+			dataInputStream.close();
+		}
+
+		// truncate an incomplete group
+
+		if (validLength < this.file.length()) {
+
+			log.warn("Discarding incomplete changes at the end of " + this.file.getAbsolutePath());
+
+			RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+
+			try {
+
+				randomAccessFile.setLength(validLength);
+			} finally {
+
+				randomAccessFile.close();
+			}
+		}
+
+		return groups;
+	}
+
+	void open() throws IOException {
+
+		this.fileOutputStream = new FileOutputStream(this.file, true);
+	}
+
+	/**
+	 * Appends a group of changes.
+	 * @param sync Whether to force the log to the disk before returning.
+	 */
+	void append(List<Entry<String, Byte>> group, boolean sync) throws IOException {
+
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+
+		dataOutputStream.writeInt(group.size());
+		for (Entry<String, Byte> entry : group) SortedRun.writeEntry(dataOutputStream, entry.getValue().byteValue(), entry.getKey());
+		dataOutputStream.writeInt(group.size());
+		dataOutputStream.flush();
+
+		this.fileOutputStream.write(byteArrayOutputStream.toByteArray());
+		if (sync) this.fileOutputStream.getFD().sync();
+	}
+
+	/**
+	 * Empties the log, after its changes have been written to a sorted run.
+	 */
+	void reset() throws IOException {
+
+		this.fileOutputStream.getChannel().truncate(0);
+		this.fileOutputStream.getFD().sync();
+	}
+
+	void close() throws IOException {
+
+		if (this.fileOutputStream == null) return;
+
+		this.fileOutputStream.getFD().sync();
+		this.fileOutputStream.close();
+		this.fileOutputStream = null;
+	}
+
+	long length() {
+
+		return this.file.length();
+	}
+}
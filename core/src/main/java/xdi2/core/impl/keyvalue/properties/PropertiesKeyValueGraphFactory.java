@@ -16,9 +16,19 @@ public class PropertiesKeyValueGraphFactory extends AbstractKeyValueGraphFactory
 	public static final boolean DEFAULT_SUPPORT_GET_CONTEXTNODES = true; 
 	public static final boolean DEFAULT_SUPPORT_GET_RELATIONS = true; 
 
+	private int maxDirty;
+	private long flushInterval;
+
 	public PropertiesKeyValueGraphFactory() {
 
 		super(DEFAULT_SUPPORT_GET_CONTEXTNODES, DEFAULT_SUPPORT_GET_RELATIONS);
+
+		this.maxDirty = PropertiesKeyValueStore.DEFAULT_MAXDIRTY;
+		this.flushInterval = PropertiesKeyValueStore.DEFAULT_FLUSHINTERVAL;
+
+		// the store returns snapshots, so iterators don't need to be copied
+
+		this.setCopyIterators(false);
 	}
 
 	@Override
@@ -32,11 +42,38 @@ public class PropertiesKeyValueGraphFactory extends AbstractKeyValueGraphFactory
 
 		KeyValueStore keyValueStore;
 
-		keyValueStore = new PropertiesKeyValueStore(path);
+		keyValueStore = new PropertiesKeyValueStore(path, this.maxDirty, this.flushInterval);
 		keyValueStore.init();
 
 		// done
 
 		return keyValueStore;
 	}
+
+	public int getMaxDirty() {
+
+		return this.maxDirty;
+	}
+
+	/**
+	 * Sets the number of changes outside of a transaction after which the properties file is saved.
+	 * Values greater than 1 (or 0 for no limit) enable write-behind.
+	 */
+	public void setMaxDirty(int maxDirty) {
+
+		this.maxDirty = maxDirty;
+	}
+
+	public long getFlushInterval() {
+
+		return this.flushInterval;
+	}
+
+	/**
+	 * Sets the interval in milliseconds in which pending changes are saved by a background thread.
+	 */
+	public void setFlushInterval(long flushInterval) {
+
+		this.flushInterval = flushInterval;
+	}
 }
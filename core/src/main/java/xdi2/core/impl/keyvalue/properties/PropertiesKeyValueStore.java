@@ -13,8 +13,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
@@ -22,91 +27,105 @@ import org.slf4j.LoggerFactory;
 
 import xdi2.core.exceptions.Xdi2RuntimeException;
 import xdi2.core.impl.keyvalue.AbstractKeyValueStore;
+import xdi2.core.impl.keyvalue.BatchKeyValueStore;
 import xdi2.core.impl.keyvalue.KeyValueStore;
 
 /**
  * This class defines access to a properties file. It is used by the
  * PropertiesKeyValueGraphFactory class to create graphs stored in properties files.
  * 
+ * Outside of a transaction, the file is saved after every change by default.
+ * In write-behind mode, the file is only saved once a number of changes has accumulated,
+ * and/or periodically by a background thread. Closing the store, committing a transaction
+ * and calling flush() always save pending changes. The file is replaced atomically
+ * by writing a temporary file first and renaming it.
+ * 
  * @author markus
  */
-public class PropertiesKeyValueStore extends AbstractKeyValueStore implements KeyValueStore {
+public class PropertiesKeyValueStore extends AbstractKeyValueStore implements KeyValueStore, BatchKeyValueStore {
 
 	private static final Logger log = LoggerFactory.getLogger(PropertiesKeyValueStore.class);
 
+	public static final String TEMP_SUFFIX = ".tmp";
+
+	public static final int DEFAULT_MAXDIRTY = 1;
+	public static final long DEFAULT_FLUSHINTERVAL = 0;
+
 	private String path;
+	private int maxDirty;
+	private long flushInterval;
 
 	private Properties properties;
 	private boolean transaction;
-
-	public PropertiesKeyValueStore(String path) {
+	private int dirty;
+	private ScheduledExecutorService flushExecutorService;
+
+	/**
+	 * @param path The path of the properties file.
+	 * @param maxDirty The number of changes outside of a transaction after which the file is saved,
+	 * or 0 to only save on flush, commit and close.
+	 * @param flushInterval The interval in milliseconds in which pending changes are saved by a background thread,
+	 * or 0 for no background thread.
+	 */
+	public PropertiesKeyValueStore(String path, int maxDirty, long flushInterval) {
 
 		this.path = path;
+		this.maxDirty = maxDirty;
+		this.flushInterval = flushInterval;
 
 		this.properties = null;
 		this.transaction = false;
+		this.dirty = 0;
+		this.flushExecutorService = null;
 	}
 
-	@Override
-	public void init() throws IOException {
-
-		this.load();
-	}
-
-	@Override
-	public void close() {
-
-		this.save();
+	public PropertiesKeyValueStore(String path) {
 
-		this.path = null;
-		this.properties = null;
+		this(path, DEFAULT_MAXDIRTY, DEFAULT_FLUSHINTERVAL);
 	}
 
 	@Override
-	public void set(String key, String value) {
-
-		String hash = sha512String(value);
-
-		// find index
-
-		String index;
+	public void init() throws IOException {
 
-		try {
+		this.load();
 
-			index = this.properties.getProperty(key + "___" + hash);
-		} catch(Exception ex) {
+		if (this.flushInterval > 0) {
 
-			index = null;
+			this.flushExecutorService = Executors.newSingleThreadScheduledExecutor(new FlushThreadFactory());
+			this.flushExecutorService.scheduleWithFixedDelay(new FlushRunnable(), this.flushInterval, this.flushInterval, TimeUnit.MILLISECONDS);
 		}
+	}
 
-		// find index list
-
-		String indexlist;
-
-		try {
+	@Override
+	public synchronized void close() {
 
-			indexlist = this.properties.getProperty(key + "___");
-			if (indexlist.trim().equals("")) indexlist = null;
-		} catch (Exception ex) {
+		if (this.flushExecutorService != null) {
 
-			indexlist = null;
+			this.flushExecutorService.shutdown();
+			this.flushExecutorService = null;
 		}
 
-		String[] indices = indexlist == null ? new String[0] : indexlist.trim().split(" ");
+		this.save();
 
-		// check if it exists
+		this.path = null;
+		this.properties = null;
+	}
 
-		if (Arrays.asList(indices).contains(index)) return;
+	/**
+	 * Saves pending changes that have been made outside of a transaction.
+	 */
+	public synchronized void flush() {
 
-		// add new content
+		if (this.transaction || this.properties == null) return;
+		if (this.dirty == 0) return;
 
-		String newindex = UUID.randomUUID().toString();
+		this.save();
+	}
 
-		this.properties.setProperty(key + "___", (indexlist == null ? "" : indexlist + " ") + newindex);
-		this.properties.setProperty(key + "___" + newindex, value);
-		this.properties.setProperty(key + "___" + hash, newindex);
+	@Override
+	public synchronized void set(String key, String value) {
 
-		if (! this.transaction) this.save();
+		if (this.add(key, value)) this.changed();
 	}
 
 	@Override
@@ -209,15 +228,15 @@ public class PropertiesKeyValueStore extends AbstractKeyValueStore implements Ke
 	}
 
 	@Override
-	public void delete(String key) {
+	public synchronized void delete(String key) {
 
-		this.properties.remove(key + "___");
+		this.remove(key);
 
-		if (! this.transaction) this.save();
+		this.changed();
 	}
 
 	@Override
-	public void delete(String key, String value) {
+	public synchronized void delete(String key, String value) {
 
 		String hash = sha512String(value);
 
@@ -266,15 +285,36 @@ public class PropertiesKeyValueStore extends AbstractKeyValueStore implements Ke
 		this.properties.remove(key + "___" + index);
 		this.properties.remove(key + "___" + hash);
 
-		if (! this.transaction) this.save();
+		this.changed();
+	}
+
+	@Override
+	public synchronized void replace(String key, String value) {
+
+		this.remove(key);
+		if (value != null) this.add(key, value);
+
+		this.changed();
 	}
 
 	@Override
-	public void clear() {
+	public synchronized void replace(Map<String, String> values) {
+
+		for (Map.Entry<String, String> value : values.entrySet()) {
+
+			this.remove(value.getKey());
+			if (value.getValue() != null) this.add(value.getKey(), value.getValue());
+		}
+
+		this.changed();
+	}
+
+	@Override
+	public synchronized void clear() {
 
 		this.properties.clear();
 
-		if (! this.transaction) this.save();
+		this.changed();
 	}
 
 	@Override
@@ -284,7 +324,7 @@ public class PropertiesKeyValueStore extends AbstractKeyValueStore implements Ke
 	}
 
 	@Override
-	public void beginTransaction() {
+	public synchronized void beginTransaction() {
 
 		log.trace("beginTransaction()");
 
@@ -294,6 +334,8 @@ public class PropertiesKeyValueStore extends AbstractKeyValueStore implements Ke
 
 		try {
 
+			if (this.dirty > 0) this.save();
+
 			this.load();
 			this.transaction = true;
 		} catch (Exception ex) {
@@ -305,7 +347,7 @@ public class PropertiesKeyValueStore extends AbstractKeyValueStore implements Ke
 	}
 
 	@Override
-	public void commitTransaction() {
+	public synchronized void commitTransaction() {
 
 		log.trace("commitTransaction()");
 
@@ -324,7 +366,7 @@ public class PropertiesKeyValueStore extends AbstractKeyValueStore implements Ke
 	}
 
 	@Override
-	public void rollbackTransaction() {
+	public synchronized void rollbackTransaction() {
 
 		log.trace("rollbackTransaction()");
 
@@ -347,6 +389,104 @@ public class PropertiesKeyValueStore extends AbstractKeyValueStore implements Ke
 		return this.path;
 	}
 
+	public int getMaxDirty() {
+
+		return this.maxDirty;
+	}
+
+	public long getFlushInterval() {
+
+		return this.flushInterval;
+	}
+
+	/**
+	 * Returns the number of changes that have not been saved yet.
+	 */
+	public synchronized int getDirty() {
+
+		return this.dirty;
+	}
+
+	private boolean add(String key, String value) {
+
+		String hash = sha512String(value);
+
+		// find index
+
+		String index;
+
+		try {
+
+			index = this.properties.getProperty(key + "___" + hash);
+		} catch(Exception ex) {
+
+			index = null;
+		}
+
+		// find index list
+
+		String indexlist;
+
+		try {
+
+			indexlist = this.properties.getProperty(key + "___");
+			if (indexlist.trim().equals("")) indexlist = null;
+		} catch (Exception ex) {
+
+			indexlist = null;
+		}
+
+		String[] indices = indexlist == null ? new String[0] : indexlist.trim().split(" ");
+
+		// check if it exists
+
+		if (Arrays.asList(indices).contains(index)) return false;
+
+		// add new content
+
+		String newindex = UUID.randomUUID().toString();
+
+		this.properties.setProperty(key + "___", (indexlist == null ? "" : indexlist + " ") + newindex);
+		this.properties.setProperty(key + "___" + newindex, value);
+		this.properties.setProperty(key + "___" + hash, newindex);
+
+		return true;
+	}
+
+	/**
+	 * Removes all values of a key, together with their hashes.
+	 */
+	private void remove(String key) {
+
+		for (Iterator<String> indices = this.getIndices(key); indices.hasNext(); ) {
+
+			String index = indices.next();
+			String content = this.properties.getProperty(key + "___" + index);
+
+			if (content != null) this.properties.remove(key + "___" + sha512String(content));
+			this.properties.remove(key + "___" + index);
+		}
+
+		this.properties.remove(key + "___");
+	}
+
+	private Iterator<String> getIndices(String key) {
+
+		String indexlist = this.properties.getProperty(key + "___");
+		if (indexlist == null || indexlist.trim().equals("")) return Arrays.<String>asList().iterator();
+
+		return Arrays.asList(indexlist.trim().split(" ")).iterator();
+	}
+
+	private void changed() {
+
+		if (this.transaction) return;
+
+		this.dirty++;
+
+		if (this.maxDirty > 0 && this.dirty >= this.maxDirty) this.save();
+	}
+
 	private void load() {
 
 		this.properties = new Properties();
@@ -371,12 +511,20 @@ public class PropertiesKeyValueStore extends AbstractKeyValueStore implements Ke
 		try {
 
 			File file = new File(this.path);
-			if (! file.exists()) file.createNewFile();
+			File tempFile = new File(this.path + TEMP_SUFFIX);
 
-			Writer writer = new FileWriter(file);
+			Writer writer = new FileWriter(tempFile);
 
 			this.properties.store(writer, null);
 			writer.close();
+
+			if (! tempFile.renameTo(file)) {
+
+				file.delete();
+				if (! tempFile.renameTo(file)) throw new IOException("Cannot rename " + tempFile.getAbsolutePath() + " to " + file.getAbsolutePath());
+			}
+
+			this.dirty = 0;
 		} catch (Exception ex) {
 
 			throw new Xdi2RuntimeException("Cannot save properties file at " + this.path, ex);
@@ -412,10 +560,41 @@ public class PropertiesKeyValueStore extends AbstractKeyValueStore implements Ke
 			@Override
 			public boolean accept(File dir, String name) {
 
-				return name.startsWith("xdi2-properties-keyvalue-graph.") && name.endsWith(".properties");
+				return name.startsWith("xdi2-properties-keyvalue-graph.") && (name.endsWith(".properties") || name.endsWith(".properties" + TEMP_SUFFIX));
 			}
 		});
 
 		for (File file : files) file.delete();
 	}
+
+	/*
+	 * Helper classes
+	 */
+
+	private class FlushRunnable implements Runnable {
+
+		@Override
+		public void run() {
+
+			try {
+
+				PropertiesKeyValueStore.this.flush();
+			} catch (Exception ex) {
+
+				log.warn("Exception while flushing properties file: " + ex.getMessage(), ex);
+			}
+		}
+	}
+
+	private static class FlushThreadFactory implements ThreadFactory {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+
+			Thread thread = new Thread(runnable, PropertiesKeyValueStore.class.getSimpleName() + "-flush");
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
 }
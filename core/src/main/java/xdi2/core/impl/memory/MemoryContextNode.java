@@ -2,19 +2,27 @@ package xdi2.core.impl.memory;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import xdi2.core.ContextNode;
 import xdi2.core.LiteralNode;
 import xdi2.core.Node;
 import xdi2.core.Relation;
+import xdi2.core.Statement;
 import xdi2.core.impl.AbstractContextNode;
+import xdi2.core.impl.GraphHash;
 import xdi2.core.syntax.XDIAddress;
 import xdi2.core.syntax.XDIArc;
+import xdi2.core.util.iterators.CastingIterator;
+import xdi2.core.util.iterators.DescendingIterator;
 import xdi2.core.util.iterators.EmptyIterator;
 import xdi2.core.util.iterators.ReadOnlyIterator;
 
@@ -24,9 +32,31 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 
 	private XDIArc XDIarc;
 
-	private Map<XDIArc, MemoryContextNode> contextNodes;
-	private Map<XDIAddress, Map<XDIAddress, MemoryRelation>> relations;
-	private MemoryLiteralNode literalNode;
+	private volatile Map<XDIArc, MemoryContextNode> contextNodes;
+	private volatile Map<XDIAddress, Map<XDIAddress, MemoryRelation>> relations;
+	private volatile MemoryLiteralNode literalNode;
+
+	/*
+	 * A map that has been handed out to an iterator is never changed again.
+	 * Instead, it is copied before the next change.
+	 * This is not necessary for concurrent graphs, whose maps can be iterated while they change.
+	 */
+
+	private boolean contextNodesShared;
+	private boolean relationsShared;
+
+	/*
+	 * The numbers of context nodes, relations and literals in the subtree below this context node.
+	 * They are updated in this context node and all its ancestors whenever something is added or removed.
+	 * Every count is shifted left by one bit, and the lowest bit is set once the context node is deleted.
+	 * After that, changes below it no longer reach its ancestors.
+	 */
+
+	private static final int COUNT_CONTEXTNODES = 0;
+	private static final int COUNT_RELATIONS = 1;
+	private static final int COUNT_LITERALS = 2;
+
+	private final AtomicLongArray counts;
 
 	MemoryContextNode(MemoryGraph graph, MemoryContextNode contextNode, XDIArc XDIarc) {
 
@@ -34,22 +64,14 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 
 		this.XDIarc = XDIarc;
 
-		if (graph.getSortMode() == MemoryGraphFactory.SORTMODE_ALPHA) {
-
-			this.contextNodes = new TreeMap<XDIArc, MemoryContextNode> ();
-			this.relations = new TreeMap<XDIAddress, Map<XDIAddress, MemoryRelation>> ();
-			this.literalNode = null;
-		} else if (graph.getSortMode() == MemoryGraphFactory.SORTMODE_ORDER) {
+		this.contextNodes = newMap(graph, null);
+		this.relations = newMap(graph, null);
+		this.literalNode = null;
 
-			this.contextNodes = new LinkedHashMap<XDIArc, MemoryContextNode> ();
-			this.relations = new LinkedHashMap<XDIAddress, Map<XDIAddress, MemoryRelation>> ();
-			this.literalNode = null;
-		} else {
+		this.contextNodesShared = false;
+		this.relationsShared = false;
 
-			this.contextNodes = new HashMap<XDIArc, MemoryContextNode> ();
-			this.relations = new HashMap<XDIAddress, Map<XDIAddress, MemoryRelation>> ();
-			this.literalNode = null;
-		}
+		this.counts = new AtomicLongArray(3);
 	}
 
 	@Override
@@ -80,12 +102,20 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 
 		contextNode = new MemoryContextNode((MemoryGraph) this.getGraph(), this, XDIarc);
 
+		this.writeContextNodes();
 		this.contextNodes.put(XDIarc, (MemoryContextNode) contextNode);
 
+		// update graph hash and counts
+
+		this.getGraphHash().addStatement(contextNode.getStatement().getXDIStatement());
+		this.updateCounts(1, 0, 0);
+
 		// set inner root
 
 		this.setContextNodeSetInnerRoot(XDIarc, contextNode);
 
+		this.modified();
+
 		// done
 
 		return contextNode;
@@ -100,9 +130,16 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 	@Override
 	public ReadOnlyIterator<ContextNode> getContextNodes() {
 
-		List<ContextNode> list = new ArrayList<ContextNode> (this.contextNodes.values());
+		if (this.getCopyIterators()) {
+
+			List<ContextNode> list = new ArrayList<ContextNode> (this.contextNodes.values());
 
-		return new ReadOnlyIterator<ContextNode> (list.iterator());
+			return new ReadOnlyIterator<ContextNode> (list.iterator());
+		}
+
+		Map<XDIArc, MemoryContextNode> contextNodes = this.getConcurrent() ? this.contextNodes : this.shareContextNodes();
+
+		return new ReadOnlyIterator<ContextNode> (new CastingIterator<MemoryContextNode, ContextNode> (contextNodes.values().iterator()));
 	}
 
 	@Override
@@ -123,14 +160,32 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 		ContextNode contextNode = this.getContextNode(XDIarc, true);
 		if (contextNode == null) return;
 
-		// delete all inner roots and incoming relations
+		// delete all relations and incoming relations
 
-		((MemoryContextNode) contextNode).delContextNodeDelAllInnerRoots();
+		((MemoryContextNode) contextNode).delContextNodeDelAllRelations();
 		((MemoryContextNode) contextNode).delContextNodeDelAllIncomingRelations();
 
+		// the context node may have been deleted as an inner root in the meantime
+
+		if (this.contextNodes.get(XDIarc) != contextNode) return;
+
+		// update graph hash and counts
+
+		this.delContextNodeUpdateGraphHash((MemoryContextNode) contextNode);
+		this.delContextNodeUpdateCounts((MemoryContextNode) contextNode);
+
 		// delete this context node
 
+		this.writeContextNodes();
 		this.contextNodes.remove(XDIarc);
+
+		this.modified();
+	}
+
+	@Override
+	public long getAllContextNodeCount() {
+
+		return this.getCount(COUNT_CONTEXTNODES);
 	}
 
 	@Override
@@ -144,9 +199,20 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 			for (Relation relation : contextNode.getAllIncomingRelations()) relation.delete();
 		}
 
+		// update graph hash and counts
+
+		for (MemoryContextNode contextNode : this.contextNodes.values()) {
+
+			this.delContextNodeUpdateGraphHash(contextNode);
+			this.delContextNodeUpdateCounts(contextNode);
+		}
+
 		// delete context nodes
 
-		this.contextNodes.clear();
+		this.contextNodes = newMap((MemoryGraph) this.getGraph(), null);
+		this.contextNodesShared = false;
+
+		this.modified();
 	}
 
 	/*
@@ -167,19 +233,12 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 		Relation relation = this.getRelation(XDIaddress, targetXDIAddress);
 		if (relation != null) return relation;
 
+		this.writeRelations();
+
 		Map<XDIAddress, MemoryRelation> relations = this.relations.get(XDIaddress);
 		if (relations == null) {
 
-			if (((MemoryGraph) this.getGraph()).getSortMode() == MemoryGraphFactory.SORTMODE_ALPHA) {
-
-				relations = new TreeMap<XDIAddress, MemoryRelation> ();
-			} else if (((MemoryGraph) this.getGraph()).getSortMode() == MemoryGraphFactory.SORTMODE_ORDER) {
-
-				relations = new LinkedHashMap<XDIAddress, MemoryRelation> ();
-			} else {
-
-				relations = new HashMap<XDIAddress, MemoryRelation> ();
-			}
+			relations = newMap((MemoryGraph) this.getGraph(), null);
 
 			this.relations.put(XDIaddress, relations);
 		}
@@ -188,6 +247,17 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 
 		relations.put(targetXDIAddress, (MemoryRelation) relation);
 
+		// update graph hash and counts
+
+		this.getGraphHash().addStatement(relation.getStatement().getXDIStatement());
+		this.updateCounts(0, 1, 0);
+
+		// update incoming relation index
+
+		this.getIncomingRelationIndex().addIncomingRelation(this.getXDIAddress(), XDIaddress, targetXDIAddress);
+
+		this.modified();
+
 		// done
 
 		return relation;
@@ -205,25 +275,53 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 	@Override
 	public ReadOnlyIterator<Relation> getRelations(XDIAddress XDIaddress) {
 
-		Map<XDIAddress, MemoryRelation> relations = this.relations.get(XDIaddress);
-		if (relations == null) return new EmptyIterator<Relation> ();
+		if (this.getCopyIterators()) {
+
+			Map<XDIAddress, MemoryRelation> relations = this.relations.get(XDIaddress);
+			if (relations == null) return new EmptyIterator<Relation> ();
+
+			List<Relation> list = new ArrayList<Relation> (relations.values());
+
+			return new ReadOnlyIterator<Relation> (list.iterator());
+		}
 
-		List<Relation> list = new ArrayList<Relation> (relations.values());
+		Map<XDIAddress, MemoryRelation> relations = (this.getConcurrent() ? this.relations : this.shareRelations()).get(XDIaddress);
+		if (relations == null) return new EmptyIterator<Relation> ();
 
-		return new ReadOnlyIterator<Relation> (list.iterator());
+		return new ReadOnlyIterator<Relation> (new CastingIterator<MemoryRelation, Relation> (relations.values().iterator()));
 	}
 
 	@Override
 	public ReadOnlyIterator<Relation> getRelations() {
 
-		List<Relation> list = new ArrayList<Relation> ();
+		if (this.getCopyIterators()) {
+
+			List<Relation> list = new ArrayList<Relation> ();
+
+			for (Entry<XDIAddress, Map<XDIAddress, MemoryRelation>> relations : this.relations.entrySet()) {
 
-		for (Entry<XDIAddress, Map<XDIAddress, MemoryRelation>> relations : this.relations.entrySet()) {
+				list.addAll(relations.getValue().values());
+			}
 
-			list.addAll(relations.getValue().values());
+			return new ReadOnlyIterator<Relation> (list.iterator());
 		}
 
-		return new ReadOnlyIterator<Relation> (list.iterator());
+		Map<XDIAddress, Map<XDIAddress, MemoryRelation>> relations = this.getConcurrent() ? this.relations : this.shareRelations();
+
+		return new ReadOnlyIterator<Relation> (new DescendingIterator<Map<XDIAddress, MemoryRelation>, Relation> (relations.values().iterator()) {
+
+			@Override
+			public Iterator<Relation> descend(Map<XDIAddress, MemoryRelation> relations) {
+
+				return new CastingIterator<MemoryRelation, Relation> (relations.values().iterator());
+			}
+		});
+	}
+
+	@Override
+	public long getAllRelationCount() {
+
+		return this.getCount(COUNT_RELATIONS);
 	}
 
 	@Override
@@ -254,18 +352,29 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 
 		Map<XDIAddress, MemoryRelation> relations = this.relations.get(XDIaddress);
 		if (relations == null) return;
+		if (! relations.containsKey(targetXDIAddress)) return;
 
+		this.writeRelations();
+
+		relations = this.relations.get(XDIaddress);
 		MemoryRelation relation = relations.remove(targetXDIAddress);
-		if (relation == null) return;
 
 		if (relations.isEmpty()) {
 
 			this.relations.remove(XDIaddress);
 		}
 
+		// update graph hash, counts and incoming relation index
+
+		this.getGraphHash().delStatement(relation.getStatement().getXDIStatement());
+		this.updateCounts(0, -1, 0);
+		this.getIncomingRelationIndex().delIncomingRelation(this.getXDIAddress(), XDIaddress, targetXDIAddress);
+
 		// delete inner root
 
 		this.delRelationDelInnerRoot(XDIaddress, targetXDIAddress);
+
+		this.modified();
 	}
 
 	@Override
@@ -275,14 +384,27 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 
 		// delete relations
 
+		this.writeRelations();
 		this.relations.remove(XDIaddress);
 
 		// delete inner roots
 
+		long count = 0;
+
 		for (Relation relation : relations) {
 
+			this.getGraphHash().delStatement(relation.getStatement().getXDIStatement());
+			this.getIncomingRelationIndex().delIncomingRelation(this.getXDIAddress(), relation.getXDIAddress(), relation.getTargetXDIAddress());
 			this.delRelationDelInnerRoot(relation.getXDIAddress(), relation.getTargetXDIAddress());
+
+			count++;
 		}
+
+		// update counts
+
+		this.updateCounts(0, -count, 0);
+
+		this.modified();
 	}
 
 	@Override
@@ -292,14 +414,27 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 
 		// delete relations
 
-		this.relations.clear();
+		this.relations = newMap((MemoryGraph) this.getGraph(), null);
+		this.relationsShared = false;
 
 		// delete inner roots
 
+		long count = 0;
+
 		for (Relation relation : relations) {
 
+			this.getGraphHash().delStatement(relation.getStatement().getXDIStatement());
+			this.getIncomingRelationIndex().delIncomingRelation(this.getXDIAddress(), relation.getXDIAddress(), relation.getTargetXDIAddress());
 			this.delRelationDelInnerRoot(relation.getXDIAddress(), relation.getTargetXDIAddress());
+
+			count++;
 		}
+
+		// update counts
+
+		this.updateCounts(0, -count, 0);
+
+		this.modified();
 	}
 
 	/*
@@ -315,8 +450,15 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 
 		// set the literal
 
+		if (this.literalNode != null) this.getGraphHash().delStatement(this.literalNode.getStatement().getXDIStatement());
+		if (this.literalNode == null) this.updateCounts(0, 0, 1);
+
 		this.literalNode = new MemoryLiteralNode(this, literalData);
 
+		this.getGraphHash().addStatement(this.literalNode.getStatement().getXDIStatement());
+
+		this.modified();
+
 		// done
 
 		return this.literalNode;
@@ -337,6 +479,204 @@ public class MemoryContextNode extends AbstractContextNode implements ContextNod
 	@Override
 	public synchronized void delLiteralNode() {
 
+		if (this.literalNode == null) return;
+
+		this.getGraphHash().delStatement(this.literalNode.getStatement().getXDIStatement());
+		this.updateCounts(0, 0, -1);
+
 		this.literalNode = null;
+
+		this.modified();
+	}
+
+	@Override
+	public long getAllLiteralCount() {
+
+		return this.getCount(COUNT_LITERALS);
+	}
+
+	/*
+	 * Methods related to statements
+	 */
+
+	@Override
+	public long getAllStatementCount() {
+
+		return this.getCount(COUNT_CONTEXTNODES) + this.getCount(COUNT_RELATIONS) + this.getCount(COUNT_LITERALS);
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	@Override
+	protected MemoryIncomingRelationIndex getIncomingRelationIndex() {
+
+		return ((MemoryGraph) this.getGraph()).getIncomingRelationIndex();
+	}
+
+	private boolean getCopyIterators() {
+
+		return ((MemoryGraph) this.getGraph()).getCopyIterators();
+	}
+
+	private boolean getConcurrent() {
+
+		return ((MemoryGraph) this.getGraph()).getConcurrent();
+	}
+
+	/**
+	 * Marks the map of context nodes as handed out to an iterator, and returns it.
+	 */
+	private synchronized Map<XDIArc, MemoryContextNode> shareContextNodes() {
+
+		this.contextNodesShared = true;
+
+		return this.contextNodes;
+	}
+
+	/**
+	 * Marks the maps of relations as handed out to an iterator, and returns them.
+	 */
+	private synchronized Map<XDIAddress, Map<XDIAddress, MemoryRelation>> shareRelations() {
+
+		this.relationsShared = true;
+
+		return this.relations;
+	}
+
+	/**
+	 * Copies the map of context nodes before it is changed, if it has been handed out to an iterator.
+	 */
+	private void writeContextNodes() {
+
+		if (! this.contextNodesShared) return;
+
+		this.contextNodes = newMap((MemoryGraph) this.getGraph(), this.contextNodes);
+		this.contextNodesShared = false;
+	}
+
+	/**
+	 * Copies the maps of relations before they are changed, if they have been handed out to an iterator.
+	 */
+	private void writeRelations() {
+
+		if (! this.relationsShared) return;
+
+		MemoryGraph graph = (MemoryGraph) this.getGraph();
+		Map<XDIAddress, Map<XDIAddress, MemoryRelation>> relations = newMap(graph, null);
+
+		for (Entry<XDIAddress, Map<XDIAddress, MemoryRelation>> entry : this.relations.entrySet()) {
+
+			relations.put(entry.getKey(), newMap(graph, entry.getValue()));
+		}
+
+		this.relations = relations;
+		this.relationsShared = false;
+	}
+
+	/**
+	 * Creates a map for the sort mode of the graph, optionally with the contents of another map.
+	 * Concurrent graphs cannot keep the insertion order.
+	 */
+	private static <K, V> Map<K, V> newMap(MemoryGraph graph, Map<K, V> map) {
+
+		Map<K, V> newMap;
+
+		if (graph.getConcurrent()) {
+
+			if (graph.getSortMode() == MemoryGraphFactory.SORTMODE_ALPHA) {
+
+				newMap = new ConcurrentSkipListMap<K, V> ();
+			} else {
+
+				newMap = new ConcurrentHashMap<K, V> ();
+			}
+		} else if (graph.getSortMode() == MemoryGraphFactory.SORTMODE_ALPHA) {
+
+			newMap = new TreeMap<K, V> ();
+		} else if (graph.getSortMode() == MemoryGraphFactory.SORTMODE_ORDER) {
+
+			newMap = new LinkedHashMap<K, V> ();
+		} else {
+
+			newMap = new HashMap<K, V> ();
+		}
+
+		if (map != null) newMap.putAll(map);
+
+		return newMap;
+	}
+
+	GraphHash getGraphHash() {
+
+		return ((MemoryGraph) this.getGraph()).getGraphHash();
+	}
+
+	private long getCount(int index) {
+
+		return this.counts.get(index) >> 1;
+	}
+
+	/**
+	 * Adds to the counts of this context node and all its ancestors.
+	 */
+	private void updateCounts(long contextNodes, long relations, long literals) {
+
+		this.updateCount(COUNT_CONTEXTNODES, contextNodes);
+		this.updateCount(COUNT_RELATIONS, relations);
+		this.updateCount(COUNT_LITERALS, literals);
+	}
+
+	/**
+	 * Adds to one count of this context node and all its ancestors, without a lock.
+	 * The counts of a deleted context node have already been subtracted from its ancestors,
+	 * so the change stops at the first deleted context node.
+	 */
+	private void updateCount(int index, long delta) {
+
+		if (delta == 0) return;
+
+		for (MemoryContextNode contextNode = this; contextNode != null; contextNode = (MemoryContextNode) contextNode.getContextNode()) {
+
+			long count = contextNode.counts.getAndAdd(index, delta << 1);
+
+			if ((count & 1) != 0) break;
+		}
+	}
+
+	/**
+	 * When a context node is deleted, it and everything below it have to be subtracted from the counts.
+	 * Every count is marked as deleted and read in a single atomic step, so a concurrent change below it
+	 * is either included in the count and subtracted here, or it stops at the deleted context node.
+	 */
+	private void delContextNodeUpdateCounts(MemoryContextNode contextNode) {
+
+		for (int index = COUNT_CONTEXTNODES; index <= COUNT_LITERALS; index++) {
+
+			while (true) {
+
+				long count = contextNode.counts.get(index);
+				if ((count & 1) != 0) break;
+
+				if (contextNode.counts.compareAndSet(index, count, count | 1)) {
+
+					this.updateCount(index, - (count >> 1) - (index == COUNT_CONTEXTNODES ? 1 : 0));
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * When a context node is deleted, its statement and all statements below it have to be removed from the graph hash.
+	 */
+	private void delContextNodeUpdateGraphHash(MemoryContextNode contextNode) {
+
+		GraphHash graphHash = this.getGraphHash();
+
+		graphHash.delStatement(contextNode.getStatement().getXDIStatement());
+
+		for (Statement statement : contextNode.getAllStatements()) graphHash.delStatement(statement.getXDIStatement());
 	}
 }
@@ -3,22 +3,31 @@ package xdi2.core.impl.memory;
 import xdi2.core.ContextNode;
 import xdi2.core.Graph;
 import xdi2.core.impl.AbstractGraph;
+import xdi2.core.impl.GraphHash;
 
 public class MemoryGraph extends AbstractGraph implements Graph {
 
 	private static final long serialVersionUID = 8979035878235290607L;
 
 	private int sortmode;
+	private boolean copyIterators;
+	private boolean concurrent;
 
 	private MemoryContextNode rootContextNode;
+	private MemoryIncomingRelationIndex incomingRelationIndex;
+	private GraphHash graphHash;
 
-	MemoryGraph(MemoryGraphFactory graphFactory, String identifier, int sortmode) {
+	MemoryGraph(MemoryGraphFactory graphFactory, String identifier, int sortmode, boolean copyIterators, boolean concurrent) {
 
 		super(graphFactory, identifier);
 
 		this.sortmode = sortmode;
+		this.copyIterators = copyIterators;
+		this.concurrent = concurrent;
 
 		this.rootContextNode = new MemoryContextNode(this, null, null);
+		this.incomingRelationIndex = new MemoryIncomingRelationIndex(concurrent);
+		this.graphHash = new GraphHash();
 	}
 
 	@Override
@@ -31,6 +40,14 @@ public class MemoryGraph extends AbstractGraph implements Graph {
 	public void close() {
 
 		this.rootContextNode = null;
+		this.incomingRelationIndex.clear();
+		this.graphHash.clear();
+	}
+
+	@Override
+	public long getAllStatementCount() {
+
+		return this.graphHash.getCount();
 	}
 
 	/*
@@ -41,4 +58,31 @@ public class MemoryGraph extends AbstractGraph implements Graph {
 
 		return this.sortmode;
 	}
+
+	/**
+	 * @return True, if context nodes and relations are copied into lists when iterating over them.
+	 */
+	public boolean getCopyIterators() {
+
+		return this.copyIterators;
+	}
+
+	/**
+	 * @return True, if this graph can be read and changed by several threads at the same time.
+	 */
+	public boolean getConcurrent() {
+
+		return this.concurrent;
+	}
+
+	@Override
+	public GraphHash getGraphHash() {
+
+		return this.graphHash;
+	}
+
+	public MemoryIncomingRelationIndex getIncomingRelationIndex() {
+
+		return this.incomingRelationIndex;
+	}
 }
@@ -19,13 +19,20 @@ public class MemoryGraphFactory extends AbstractGraphFactory implements GraphFac
 
 	private static MemoryGraphFactory instance = null;
 
+	public static final boolean DEFAULT_COPY_ITERATORS = false;
+	public static final boolean DEFAULT_CONCURRENT = false;
+
 	private int sortmode;
+	private boolean copyIterators;
+	private boolean concurrent;
 
 	private Map<String, MemoryGraph> graphs;
 
 	public MemoryGraphFactory() { 
 
 		this.sortmode = SORTMODE_NONE;
+		this.copyIterators = DEFAULT_COPY_ITERATORS;
+		this.concurrent = DEFAULT_CONCURRENT;
 
 		this.graphs = new HashMap<String, MemoryGraph> ();
 	}
@@ -42,17 +49,17 @@ public class MemoryGraphFactory extends AbstractGraphFactory implements GraphFac
 
 		// create new graph
 
-		return new MemoryGraph(this, null, this.sortmode);
+		return new MemoryGraph(this, null, this.sortmode, this.copyIterators, this.concurrent);
 	}
 
 	@Override
-	public MemoryGraph openGraph(String identifier) {
+	public synchronized MemoryGraph openGraph(String identifier) {
 
 		MemoryGraph graph = this.graphs.get(identifier);
 
 		if (graph == null || graph.getRootContextNode() == null) {
 
-			graph = new MemoryGraph(this, identifier, this.sortmode);
+			graph = new MemoryGraph(this, identifier, this.sortmode, this.copyIterators, this.concurrent);
 
 			this.graphs.put(identifier, graph);
 		}
@@ -69,4 +76,35 @@ public class MemoryGraphFactory extends AbstractGraphFactory implements GraphFac
 
 		this.sortmode = sortmode;
 	}
+
+	public boolean getCopyIterators() {
+
+		return this.copyIterators;
+	}
+
+	/**
+	 * Sets whether context nodes and relations are copied into lists when iterating over them.
+	 * By default, iterators read the maps of a context node directly, and a map is only copied
+	 * when it is changed after an iterator has been handed out.
+	 */
+	public void setCopyIterators(boolean copyIterators) {
+
+		this.copyIterators = copyIterators;
+	}
+
+	public boolean getConcurrent() {
+
+		return this.concurrent;
+	}
+
+	/**
+	 * Sets whether graphs can be read and changed by several threads at the same time.
+	 * Concurrent graphs keep their context nodes and relations in concurrent maps, which are read
+	 * without locking. Changes only lock the context node that is changed.
+	 * Concurrent graphs do not support SORTMODE_ORDER, and keep no particular order instead.
+	 */
+	public void setConcurrent(boolean concurrent) {
+
+		this.concurrent = concurrent;
+	}
 }
@@ -0,0 +1,127 @@
+package xdi2.core.impl.memory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import xdi2.core.impl.IncomingRelationIndex;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.core.util.iterators.EmptyIterator;
+
+/**
+ * An IncomingRelationIndex that keeps its entries in memory.
+ *
+ * In concurrent mode, the entries are kept in concurrent maps and sets, so they can be read without locking.
+ * Changes lock one of several stripes, chosen by the target of the relation.
+ *
+ * @author markus
+ */
+public class MemoryIncomingRelationIndex implements IncomingRelationIndex {
+
+	private static final int STRIPES = 32;
+
+	private Map<XDIAddress, Set<XDIStatement>> incomingRelations;
+	private Object[] locks;
+
+	public MemoryIncomingRelationIndex(boolean concurrent) {
+
+		if (concurrent) {
+
+			this.incomingRelations = new ConcurrentHashMap<XDIAddress, Set<XDIStatement>> ();
+			this.locks = new Object[STRIPES];
+
+			for (int i = 0; i < STRIPES; i++) this.locks[i] = new Object();
+		} else {
+
+			this.incomingRelations = new HashMap<XDIAddress, Set<XDIStatement>> ();
+			this.locks = null;
+		}
+	}
+
+	public MemoryIncomingRelationIndex() {
+
+		this(false);
+	}
+
+	@Override
+	public void addIncomingRelation(XDIAddress contextNodeXDIAddress, XDIAddress XDIaddress, XDIAddress targetXDIAddress) {
+
+		synchronized (this.getLock(targetXDIAddress)) {
+
+			Set<XDIStatement> incomingRelations = this.incomingRelations.get(targetXDIAddress);
+
+			if (incomingRelations == null) {
+
+				incomingRelations = this.locks != null ? Collections.newSetFromMap(new ConcurrentHashMap<XDIStatement, Boolean> ()) : new LinkedHashSet<XDIStatement> ();
+				this.incomingRelations.put(targetXDIAddress, incomingRelations);
+			}
+
+			incomingRelations.add(XDIStatement.fromRelationComponents(contextNodeXDIAddress, XDIaddress, targetXDIAddress));
+		}
+	}
+
+	@Override
+	public void delIncomingRelation(XDIAddress contextNodeXDIAddress, XDIAddress XDIaddress, XDIAddress targetXDIAddress) {
+
+		synchronized (this.getLock(targetXDIAddress)) {
+
+			Set<XDIStatement> incomingRelations = this.incomingRelations.get(targetXDIAddress);
+			if (incomingRelations == null) return;
+
+			incomingRelations.remove(XDIStatement.fromRelationComponents(contextNodeXDIAddress, XDIaddress, targetXDIAddress));
+
+			if (incomingRelations.isEmpty()) {
+
+				this.incomingRelations.remove(targetXDIAddress);
+			}
+		}
+	}
+
+	@Override
+	public Iterator<XDIStatement> getIncomingRelations(XDIAddress targetXDIAddress) {
+
+		if (this.locks != null) {
+
+			Set<XDIStatement> incomingRelations = this.incomingRelations.get(targetXDIAddress);
+			if (incomingRelations == null) return new EmptyIterator<XDIStatement> ();
+
+			return incomingRelations.iterator();
+		}
+
+		synchronized (this) {
+
+			Set<XDIStatement> incomingRelations = this.incomingRelations.get(targetXDIAddress);
+			if (incomingRelations == null) return new EmptyIterator<XDIStatement> ();
+
+			List<XDIStatement> list = new ArrayList<XDIStatement> (incomingRelations);
+
+			return list.iterator();
+		}
+	}
+
+	public void clear() {
+
+		synchronized (this.getLock(null)) {
+
+			this.incomingRelations.clear();
+		}
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private Object getLock(XDIAddress targetXDIAddress) {
+
+		if (this.locks == null || targetXDIAddress == null) return this;
+
+		return this.locks[(targetXDIAddress.hashCode() & 0x7fffffff) % STRIPES];
+	}
+}
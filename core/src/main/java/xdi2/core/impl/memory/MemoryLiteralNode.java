@@ -2,6 +2,7 @@ package xdi2.core.impl.memory;
 
 import xdi2.core.LiteralNode;
 import xdi2.core.impl.AbstractLiteralNode;
+import xdi2.core.impl.GraphHash;
 
 public class MemoryLiteralNode extends AbstractLiteralNode implements LiteralNode {
 
@@ -25,6 +26,14 @@ public class MemoryLiteralNode extends AbstractLiteralNode implements LiteralNod
 	@Override
 	public void setLiteralData(Object literalData) {
 
+		GraphHash graphHash = ((MemoryContextNode) this.getContextNode()).getGraphHash();
+
+		graphHash.delStatement(this.getStatement().getXDIStatement());
+
 		this.literalData = literalData;
+
+		graphHash.addStatement(this.getStatement().getXDIStatement());
+
+		this.modified();
 	}
 }
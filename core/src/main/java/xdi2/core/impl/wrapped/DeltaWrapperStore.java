@@ -0,0 +1,63 @@
+package xdi2.core.impl.wrapped;
+
+import java.util.List;
+
+import xdi2.core.impl.memory.MemoryGraph;
+import xdi2.core.syntax.XDIStatement;
+
+/**
+ * A WrapperStore that can save only the statements that have been set and deleted since
+ * the last save, instead of the whole graph.
+ * A WrappedGraph with such a store records its changes and passes them to saveDelta()
+ * when a transaction is committed.
+ *
+ * @author markus
+ */
+public interface DeltaWrapperStore extends WrapperStore {
+
+	/**
+	 * Saves the changes that have been made to the graph, in the order in which they were made.
+	 */
+	public void saveDelta(MemoryGraph memoryGraph, List<Delta> delta);
+
+	/**
+	 * Releases the resources of the store when the graph is closed.
+	 */
+	public void close();
+
+	/**
+	 * A statement that has been set or deleted.
+	 */
+	public static class Delta {
+
+		private final boolean set;
+		private final XDIStatement XDIstatement;
+
+		public Delta(boolean set, XDIStatement XDIstatement) {
+
+			this.set = set;
+			this.XDIstatement = XDIstatement;
+		}
+
+		public boolean isSet() {
+
+			return this.set;
+		}
+
+		public boolean isDel() {
+
+			return ! this.set;
+		}
+
+		public XDIStatement getXDIStatement() {
+
+			return this.XDIstatement;
+		}
+
+		@Override
+		public String toString() {
+
+			return (this.set ? "+" : "-") + this.XDIstatement;
+		}
+	}
+}
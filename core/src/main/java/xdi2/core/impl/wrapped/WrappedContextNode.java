@@ -7,6 +7,7 @@ import xdi2.core.LiteralNode;
 import xdi2.core.Node;
 import xdi2.core.Relation;
 import xdi2.core.impl.AbstractContextNode;
+import xdi2.core.impl.IncomingRelationIndex;
 import xdi2.core.impl.memory.MemoryContextNode;
 import xdi2.core.impl.memory.MemoryLiteralNode;
 import xdi2.core.impl.memory.MemoryRelation;
@@ -41,8 +42,12 @@ public class WrappedContextNode extends AbstractContextNode implements ContextNo
 	@Override
 	public synchronized ContextNode setContextNode(XDIArc XDIarc) {
 
+		boolean exists = this.memoryContextNode.containsContextNode(XDIarc);
+
 		MemoryContextNode ret = (MemoryContextNode) this.memoryContextNode.setContextNode(XDIarc);
 
+		if (! exists) this.getWrappedGraph().recordSetStatement(ret.getStatement().getXDIStatement());
+
 		return new WrappedContextNode((WrappedGraph) this.getGraph(), this, ret);
 	}
 
@@ -77,12 +82,23 @@ public class WrappedContextNode extends AbstractContextNode implements ContextNo
 	@Override
 	public synchronized void delContextNode(XDIArc XDIarc) {
 
+		ContextNode contextNode = this.memoryContextNode.getContextNode(XDIarc, false);
+		if (contextNode != null) this.getWrappedGraph().recordDelStatement(contextNode.getStatement().getXDIStatement());
+
 		this.memoryContextNode.delContextNode(XDIarc);
 	}
 
 	@Override
 	public synchronized void delContextNodes() {
 
+		if (this.getWrappedGraph().isRecordingDelta()) {
+
+			for (Iterator<ContextNode> contextNodes = this.memoryContextNode.getContextNodes(); contextNodes.hasNext(); ) {
+
+				this.getWrappedGraph().recordDelStatement(contextNodes.next().getStatement().getXDIStatement());
+			}
+		}
+
 		this.memoryContextNode.delContextNodes();
 	}
 
@@ -93,8 +109,12 @@ public class WrappedContextNode extends AbstractContextNode implements ContextNo
 	@Override
 	public synchronized Relation setRelation(XDIAddress XDIaddress, Node targetNode) {
 
+		boolean exists = this.memoryContextNode.containsRelation(XDIaddress, targetNode.getXDIAddress());
+
 		MemoryRelation ret = (MemoryRelation) this.memoryContextNode.setRelation(XDIaddress, targetNode);
 
+		if (! exists) this.getWrappedGraph().recordSetStatement(ret.getStatement().getXDIStatement());
+
 		return new WrappedRelation(this, ret);
 	}
 
@@ -143,18 +163,37 @@ public class WrappedContextNode extends AbstractContextNode implements ContextNo
 	@Override
 	public synchronized void delRelation(XDIAddress XDIaddress, XDIAddress targetXDIAddress) {
 
+		Relation relation = this.memoryContextNode.getRelation(XDIaddress, targetXDIAddress);
+		if (relation != null) this.getWrappedGraph().recordDelStatement(relation.getStatement().getXDIStatement());
+
 		this.memoryContextNode.delRelation(XDIaddress, targetXDIAddress);
 	}
 
 	@Override
 	public synchronized void delRelations(XDIAddress XDIaddress) {
 
+		if (this.getWrappedGraph().isRecordingDelta()) {
+
+			for (Iterator<Relation> relations = this.memoryContextNode.getRelations(XDIaddress); relations.hasNext(); ) {
+
+				this.getWrappedGraph().recordDelStatement(relations.next().getStatement().getXDIStatement());
+			}
+		}
+
 		this.memoryContextNode.delRelations(XDIaddress);
 	}
 
 	@Override
 	public synchronized void delRelations() {
 
+		if (this.getWrappedGraph().isRecordingDelta()) {
+
+			for (Iterator<Relation> relations = this.memoryContextNode.getRelations(); relations.hasNext(); ) {
+
+				this.getWrappedGraph().recordDelStatement(relations.next().getStatement().getXDIStatement());
+			}
+		}
+
 		this.memoryContextNode.delRelations();
 	}
 
@@ -167,6 +206,8 @@ public class WrappedContextNode extends AbstractContextNode implements ContextNo
 
 		MemoryLiteralNode ret = (MemoryLiteralNode) this.memoryContextNode.setLiteralNode(literalData);
 
+		if (ret != null) this.getWrappedGraph().recordSetStatement(ret.getStatement().getXDIStatement());
+
 		return ret == null ? null : new WrappedLiteralNode(this, ret);
 	}
 
@@ -187,9 +228,27 @@ public class WrappedContextNode extends AbstractContextNode implements ContextNo
 	@Override
 	public synchronized void delLiteralNode() {
 
+		LiteralNode literalNode = this.memoryContextNode.getLiteralNode();
+		if (literalNode != null) this.getWrappedGraph().recordDelStatement(literalNode.getStatement().getXDIStatement());
+
 		this.memoryContextNode.delLiteralNode();
 	}
 
+	/*
+	 * Helper methods
+	 */
+
+	WrappedGraph getWrappedGraph() {
+
+		return (WrappedGraph) this.getGraph();
+	}
+
+	@Override
+	protected IncomingRelationIndex getIncomingRelationIndex() {
+
+		return ((WrappedGraph) this.getGraph()).getMemoryGraph().getIncomingRelationIndex();
+	}
+
 	private class WrappedContextNodeMappingIterator extends MappingIterator<ContextNode, ContextNode> {
 
 		public WrappedContextNodeMappingIterator(Iterator<ContextNode> iterator) {
@@ -1,10 +1,16 @@
 package xdi2.core.impl.wrapped;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import xdi2.core.ContextNode;
 import xdi2.core.Graph;
 import xdi2.core.impl.AbstractGraph;
+import xdi2.core.impl.GraphHash;
 import xdi2.core.impl.memory.MemoryContextNode;
 import xdi2.core.impl.memory.MemoryGraph;
+import xdi2.core.impl.wrapped.DeltaWrapperStore.Delta;
+import xdi2.core.syntax.XDIStatement;
 
 public class WrappedGraph extends AbstractGraph implements Graph {
 
@@ -12,6 +18,7 @@ public class WrappedGraph extends AbstractGraph implements Graph {
 
 	private WrapperStore wrapperStore;
 	private MemoryGraph memoryGraph;
+	private List<Delta> delta;
 
 	WrappedGraph(WrappedGraphFactory graphFactory, String identifier, WrapperStore wrapperStore, MemoryGraph memoryGraph) {
 
@@ -19,6 +26,7 @@ public class WrappedGraph extends AbstractGraph implements Graph {
 
 		this.wrapperStore = wrapperStore;
 		this.memoryGraph = memoryGraph;
+		this.delta = (wrapperStore instanceof DeltaWrapperStore) ? new ArrayList<Delta> () : null;
 	}
 
 	@Override
@@ -32,10 +40,36 @@ public class WrappedGraph extends AbstractGraph implements Graph {
 	@Override
 	public void close() {
 
-		this.getWrapperStore().save(this.getMemoryGraph());
+		if (this.delta != null) {
+
+			this.saveDelta();
+			((DeltaWrapperStore) this.getWrapperStore()).close();
+		} else {
+
+			this.getWrapperStore().save(this.getMemoryGraph());
+		}
+
 		this.getMemoryGraph().close();
 	}
 
+	@Override
+	public long getAllStatementCount() {
+
+		return this.getMemoryGraph().getAllStatementCount();
+	}
+
+	@Override
+	public GraphHash getGraphHash() {
+
+		return this.getMemoryGraph().getGraphHash();
+	}
+
+	@Override
+	public long getModificationCount() {
+
+		return this.getMemoryGraph().getModificationCount();
+	}
+
 	@Override
 	public boolean supportsTransactions() {
 
@@ -50,7 +84,13 @@ public class WrappedGraph extends AbstractGraph implements Graph {
 	@Override
 	public void commitTransaction() {
 
-		this.getWrapperStore().save(this.getMemoryGraph());
+		if (this.delta != null) {
+
+			this.saveDelta();
+		} else {
+
+			this.getWrapperStore().save(this.getMemoryGraph());
+		}
 	}
 
 	@Override
@@ -58,6 +98,60 @@ public class WrappedGraph extends AbstractGraph implements Graph {
 
 	}
 
+	/*
+	 * Helper methods
+	 */
+
+	/**
+	 * Records a statement that has been set, if the store can save deltas.
+	 */
+	void recordSetStatement(XDIStatement XDIstatement) {
+
+		if (this.delta == null) return;
+
+		synchronized (this.delta) {
+
+			this.delta.add(new Delta(true, XDIstatement));
+		}
+	}
+
+	/**
+	 * Records a statement that is about to be deleted, if the store can save deltas.
+	 */
+	void recordDelStatement(XDIStatement XDIstatement) {
+
+		if (this.delta == null) return;
+
+		synchronized (this.delta) {
+
+			this.delta.add(new Delta(false, XDIstatement));
+		}
+	}
+
+	boolean isRecordingDelta() {
+
+		return this.delta != null;
+	}
+
+	private synchronized void saveDelta() {
+
+		List<Delta> delta;
+
+		synchronized (this.delta) {
+
+			if (this.delta.isEmpty()) return;
+
+			delta = new ArrayList<Delta> (this.delta);
+			this.delta.clear();
+		}
+
+		((DeltaWrapperStore) this.getWrapperStore()).saveDelta(this.getMemoryGraph(), delta);
+	}
+
+	/*
+	 * Getters and setters
+	 */
+
 	public WrapperStore getWrapperStore() {
 
 		return this.wrapperStore;
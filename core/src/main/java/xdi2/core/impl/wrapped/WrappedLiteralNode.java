@@ -27,5 +27,7 @@ public class WrappedLiteralNode extends AbstractLiteralNode implements LiteralNo
 	public void setLiteralData(Object literalData) {
 
 		this.memoryLiteral.setLiteralData(literalData);
+
+		((WrappedContextNode) this.getContextNode()).getWrappedGraph().recordSetStatement(this.memoryLiteral.getStatement().getXDIStatement());
 	}
 }
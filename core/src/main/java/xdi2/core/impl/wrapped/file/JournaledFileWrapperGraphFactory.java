@@ -0,0 +1,42 @@
+package xdi2.core.impl.wrapped.file;
+
+import java.io.IOException;
+
+import xdi2.core.GraphFactory;
+import xdi2.core.impl.wrapped.WrapperStore;
+
+/**
+ * GraphFactory that creates file-based graphs, which append their changes to a journal
+ * on every commit instead of rewriting the whole file.
+ *
+ * @author markus
+ */
+public class JournaledFileWrapperGraphFactory extends FileWrapperGraphFactory implements GraphFactory {
+
+	private long maxJournalSize;
+
+	public JournaledFileWrapperGraphFactory() {
+
+		super();
+
+		this.maxJournalSize = JournaledFileWrapperStore.DEFAULT_MAXJOURNALSIZE;
+	}
+
+	@Override
+	public WrapperStore openWrapper(String identifier) throws IOException {
+
+		FileWrapperStore fileWrapperStore = (FileWrapperStore) super.openWrapper(identifier);
+
+		return new JournaledFileWrapperStore(fileWrapperStore.getPath(), fileWrapperStore.getMimeType(), fileWrapperStore.getXdiReader(), fileWrapperStore.getXdiWriter(), this.maxJournalSize);
+	}
+
+	public long getMaxJournalSize() {
+
+		return this.maxJournalSize;
+	}
+
+	public void setMaxJournalSize(long maxJournalSize) {
+
+		this.maxJournalSize = maxJournalSize;
+	}
+}
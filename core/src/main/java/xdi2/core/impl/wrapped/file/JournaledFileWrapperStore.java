@@ -0,0 +1,462 @@
+package xdi2.core.impl.wrapped.file;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import xdi2.core.Statement;
+import xdi2.core.exceptions.Xdi2RuntimeException;
+import xdi2.core.impl.memory.MemoryGraph;
+import xdi2.core.impl.memory.MemoryGraphFactory;
+import xdi2.core.impl.wrapped.DeltaWrapperStore;
+import xdi2.core.io.XDIReader;
+import xdi2.core.io.XDIWriter;
+import xdi2.core.syntax.XDIStatement;
+
+/**
+ * A file-based WrapperStore that keeps a snapshot of the graph and a journal of changes.
+ *
+ * On every commit, the statements that have been set and deleted are appended to the journal,
+ * followed by a commit marker, and the journal is synced to disk once. On load, the snapshot is read
+ * and the journal is replayed on top of it. Changes after the last commit marker are incomplete and are ignored.
+ *
+ * When the journal grows beyond a maximum size, it is set aside, and a background thread
+ * replays it onto the snapshot and writes a new snapshot. New commits go into a new journal in the meantime.
+ *
+ * @author markus
+ */
+public class JournaledFileWrapperStore extends FileWrapperStore implements DeltaWrapperStore {
+
+	private static final Logger log = LoggerFactory.getLogger(JournaledFileWrapperStore.class);
+
+	public static final String JOURNAL_SUFFIX = ".journal";
+	public static final String COMPACTING_SUFFIX = ".compacting";
+	public static final String TEMP_SUFFIX = ".tmp";
+
+	public static final long DEFAULT_MAXJOURNALSIZE = 1024L * 1024L;
+
+	private static final char JOURNAL_SET = '+';
+	private static final char JOURNAL_DEL = '-';
+	private static final String JOURNAL_COMMIT = ".";
+
+	private static final String JOURNAL_CHARSET = "UTF-8";
+
+	private long maxJournalSize;
+
+	private FileOutputStream journalOutputStream;
+	private long journalSize;
+	private ExecutorService compactionExecutorService;
+	private Future<?> compaction;
+
+	public JournaledFileWrapperStore(String path, String mimeType, XDIReader xdiReader, XDIWriter xdiWriter, long maxJournalSize) {
+
+		super(path, mimeType, xdiReader, xdiWriter);
+
+		this.maxJournalSize = maxJournalSize;
+
+		this.journalOutputStream = null;
+		this.journalSize = 0;
+		this.compactionExecutorService = null;
+		this.compaction = null;
+	}
+
+	public JournaledFileWrapperStore(String path, String mimeType, XDIReader xdiReader, XDIWriter xdiWriter) {
+
+		this(path, mimeType, xdiReader, xdiWriter, DEFAULT_MAXJOURNALSIZE);
+	}
+
+	@Override
+	public synchronized void load(MemoryGraph memoryGraph) {
+
+		this.waitForCompaction();
+		this.closeJournal();
+
+		// read the snapshot
+
+		super.load(memoryGraph);
+
+		// replay the journal that was being compacted, and the current journal
+
+		try {
+
+			replayJournal(memoryGraph, this.getCompactingFile());
+
+			long validJournalSize = replayJournal(memoryGraph, this.getJournalFile());
+
+			// cut off an incomplete commit at the end of the journal, so new commits can be appended
+
+			if (this.getJournalFile().exists() && this.getJournalFile().length() > validJournalSize) {
+
+				log.warn("Discarding " + (this.getJournalFile().length() - validJournalSize) + " bytes of incomplete changes at the end of journal " + this.getJournalFile().getAbsolutePath());
+
+				RandomAccessFile randomAccessFile = new RandomAccessFile(this.getJournalFile(), "rw");
+				randomAccessFile.setLength(validJournalSize);
+				randomAccessFile.close();
+			}
+
+			this.journalSize = validJournalSize;
+		} catch (IOException ex) {
+
+			throw new Xdi2RuntimeException("Cannot replay journal at " + this.getPath(), ex);
+		}
+	}
+
+	/**
+	 * Writes a new snapshot of the whole graph and discards the journal.
+	 */
+	@Override
+	public synchronized void save(MemoryGraph memoryGraph) {
+
+		this.waitForCompaction();
+		this.closeJournal();
+
+		try {
+
+			this.writeSnapshot(memoryGraph);
+		} catch (IOException ex) {
+
+			throw new Xdi2RuntimeException("Cannot save file at " + this.getPath(), ex);
+		}
+
+		this.getJournalFile().delete();
+		this.getCompactingFile().delete();
+
+		this.journalSize = 0;
+	}
+
+	@Override
+	public synchronized void saveDelta(MemoryGraph memoryGraph, List<Delta> delta) {
+
+		if (delta.isEmpty()) return;
+
+		// append the changes and a commit marker
+
+		try {
+
+			StringBuilder buffer = new StringBuilder();
+
+			for (Delta d : delta) {
+
+				buffer.append(d.isSet() ? JOURNAL_SET : JOURNAL_DEL);
+				buffer.append(d.getXDIStatement().toString());
+				buffer.append('\n');
+			}
+
+			buffer.append(JOURNAL_COMMIT);
+			buffer.append('\n');
+
+			byte[] bytes = buffer.toString().getBytes(JOURNAL_CHARSET);
+
+			if (this.journalOutputStream == null) this.journalOutputStream = new FileOutputStream(this.getJournalFile(), true);
+
+			this.journalOutputStream.write(bytes);
+			this.journalOutputStream.getFD().sync();
+
+			this.journalSize += bytes.length;
+		} catch (IOException ex) {
+
+			throw new Xdi2RuntimeException("Cannot write journal at " + this.getJournalFile().getAbsolutePath(), ex);
+		}
+
+		if (log.isDebugEnabled()) log.debug("Appended " + delta.size() + " changes to journal " + this.getJournalFile().getAbsolutePath() + " (" + this.journalSize + " bytes)");
+
+		// compact?
+
+		if (this.maxJournalSize > 0 && this.journalSize >= this.maxJournalSize) this.startCompaction();
+	}
+
+	@Override
+	public synchronized void close() {
+
+		this.waitForCompaction();
+		this.closeJournal();
+
+		if (this.compactionExecutorService != null) {
+
+			this.compactionExecutorService.shutdown();
+			this.compactionExecutorService = null;
+		}
+	}
+
+	/**
+	 * Waits until a running compaction has finished.
+	 */
+	public synchronized void waitForCompaction() {
+
+		if (this.compaction == null) return;
+
+		try {
+
+			this.compaction.get();
+		} catch (InterruptedException ex) {
+
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException ex) {
+
+			log.warn("Compaction of " + this.getPath() + " failed: " + ex.getCause().getMessage(), ex.getCause());
+		} finally {
+
+			this.compaction = null;
+		}
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private void startCompaction() {
+
+		if (this.compaction != null && ! this.compaction.isDone()) return;
+
+		// set the journal aside, unless an earlier journal still needs to be compacted
+
+		if (! this.getCompactingFile().exists()) {
+
+			this.closeJournal();
+
+			if (! this.getJournalFile().renameTo(this.getCompactingFile())) {
+
+				log.warn("Cannot rename journal " + this.getJournalFile().getAbsolutePath() + " for compaction.");
+				return;
+			}
+
+			this.journalSize = 0;
+		}
+
+		if (this.compactionExecutorService == null) this.compactionExecutorService = Executors.newSingleThreadExecutor(new CompactionThreadFactory());
+
+		this.compaction = this.compactionExecutorService.submit(new CompactionRunnable());
+	}
+
+	/**
+	 * Replays the journal that has been set aside onto the snapshot, and writes a new snapshot.
+	 * This only reads files, so it does not interfere with the graph that is in use.
+	 */
+	private void compact() throws IOException {
+
+		File compactingFile = this.getCompactingFile();
+		if (! compactingFile.exists()) return;
+
+		if (log.isDebugEnabled()) log.debug("Compacting journal " + compactingFile.getAbsolutePath());
+
+		MemoryGraph memoryGraph = MemoryGraphFactory.getInstance().openGraph();
+
+		try {
+
+			super.load(memoryGraph);
+			replayJournal(memoryGraph, compactingFile);
+
+			this.writeSnapshot(memoryGraph);
+		} finally {
+
+			memoryGraph.close();
+		}
+
+		// replaying the journal again on the new snapshot would not change it, so it does not matter if we fail before this
+
+		compactingFile.delete();
+	}
+
+	private void writeSnapshot(MemoryGraph memoryGraph) throws IOException {
+
+		File file = new File(this.getPath());
+		File tempFile = new File(this.getPath() + TEMP_SUFFIX);
+
+		if (log.isDebugEnabled()) log.debug("Writing snapshot " + file.getAbsolutePath());
+
+		FileOutputStream outputStream = new FileOutputStream(tempFile);
+		Writer writer = new OutputStreamWriter(outputStream);
+
+		try {
+
+			this.getXdiWriter().write(memoryGraph, writer);
+			writer.flush();
+			outputStream.getFD().sync();
+		} finally {
+
+			writer.close();
+		}
+
+		if (! tempFile.renameTo(file)) {
+
+			file.delete();
+			if (! tempFile.renameTo(file)) throw new IOException("Cannot rename " + tempFile.getAbsolutePath() + " to " + file.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Applies the committed changes in a journal to a graph.
+	 * @return The number of bytes of the journal up to and including the last commit marker.
+	 */
+	private static long replayJournal(MemoryGraph memoryGraph, File journalFile) throws IOException {
+
+		if (! journalFile.exists()) return 0;
+
+		if (log.isDebugEnabled()) log.debug("Replaying journal " + journalFile.getAbsolutePath());
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), JOURNAL_CHARSET));
+
+		List<String> lines = new ArrayList<String> ();
+		long size = 0, validSize = 0;
+		int commits = 0;
+
+		try {
+
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+
+				size += line.getBytes(JOURNAL_CHARSET).length + 1;
+
+				if (! JOURNAL_COMMIT.equals(line)) {
+
+					lines.add(line);
+					continue;
+				}
+
+				for (String l : lines) replayLine(memoryGraph, l);
+
+				lines.clear();
+				validSize = size;
+				commits++;
+			}
+		} finally {
+
+			reader.close();
+		}
+
+		if (log.isDebugEnabled()) log.debug("Replayed " + commits + " commits from journal " + journalFile.getAbsolutePath());
+
+		return validSize;
+	}
+
+	private static void replayLine(MemoryGraph memoryGraph, String line) {
+
+		if (line.isEmpty()) return;
+
+		XDIStatement XDIstatement = XDIStatement.create(line.substring(1));
+
+		if (line.charAt(0) == JOURNAL_SET) {
+
+			memoryGraph.setStatement(XDIstatement);
+		} else if (line.charAt(0) == JOURNAL_DEL) {
+
+			Statement statement = memoryGraph.getStatement(XDIstatement);
+			if (statement != null) statement.delete();
+		} else {
+
+			throw new Xdi2RuntimeException("Invalid journal line: " + line);
+		}
+	}
+
+	private void closeJournal() {
+
+		if (this.journalOutputStream == null) return;
+
+		try {
+
+			this.journalOutputStream.close();
+		} catch (IOException ex) {
+
+			log.warn("Cannot close journal " + this.getJournalFile().getAbsolutePath() + ": " + ex.getMessage(), ex);
+		} finally {
+
+			this.journalOutputStream = null;
+		}
+	}
+
+	public static void cleanup() {
+
+		FileWrapperStore.cleanup();
+
+		File[] files = new File(".").listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File dir, String name) {
+
+				if (! name.startsWith(FileWrapperGraphFactory.FILE_PREFIX)) return false;
+
+				return name.contains(FileWrapperGraphFactory.FILE_SUFFIX + JOURNAL_SUFFIX) || name.endsWith(FileWrapperGraphFactory.FILE_SUFFIX + TEMP_SUFFIX);
+			}
+		});
+
+		for (File file : files) file.delete();
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	private class CompactionRunnable implements Runnable {
+
+		@Override
+		public void run() {
+
+			try {
+
+				JournaledFileWrapperStore.this.compact();
+			} catch (Exception ex) {
+
+				throw new Xdi2RuntimeException("Cannot compact journal at " + JournaledFileWrapperStore.this.getPath(), ex);
+			}
+		}
+	}
+
+	private static class CompactionThreadFactory implements ThreadFactory {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+
+			Thread thread = new Thread(runnable, JournaledFileWrapperStore.class.getSimpleName() + "-compaction");
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+
+	/*
+	 * Getters and setters
+	 */
+
+	public long getMaxJournalSize() {
+
+		return this.maxJournalSize;
+	}
+
+	public void setMaxJournalSize(long maxJournalSize) {
+
+		this.maxJournalSize = maxJournalSize;
+	}
+
+	public long getJournalSize() {
+
+		return this.journalSize;
+	}
+
+	public File getJournalFile() {
+
+		return new File(this.getPath() + JOURNAL_SUFFIX);
+	}
+
+	public File getCompactingFile() {
+
+		return new File(this.getPath() + JOURNAL_SUFFIX + COMPACTING_SUFFIX);
+	}
+}
@@ -35,6 +35,7 @@ public abstract class AbstractXDIWriter implements XDIWriter {
 	private boolean writeOrdered;
 	private boolean writePretty;
 	private boolean writeHtml;
+	private boolean writeStream;
 
 	public AbstractXDIWriter(Properties parameters) {
 
@@ -51,8 +52,9 @@ public abstract class AbstractXDIWriter implements XDIWriter {
 		this.writeOrdered = "1".equals(this.parameters.getProperty(XDIWriterRegistry.PARAMETER_ORDERED, XDIWriterRegistry.DEFAULT_ORDERED));
 		this.writePretty = "1".equals(this.parameters.getProperty(XDIWriterRegistry.PARAMETER_PRETTY, XDIWriterRegistry.DEFAULT_PRETTY));
 		this.writeHtml = "1".equals(this.parameters.getProperty(XDIWriterRegistry.PARAMETER_HTML, XDIWriterRegistry.DEFAULT_HTML));
+		this.writeStream = "1".equals(this.parameters.getProperty(XDIWriterRegistry.PARAMETER_STREAM, XDIWriterRegistry.DEFAULT_STREAM));
 
-		if (log.isTraceEnabled()) log.trace("Parameters: writeImplied=" + this.writeImplied + ", writeOrdered=" + this.writeOrdered + ", writePretty=" + this.writePretty + ", writeHtml=" + this.writeHtml);
+		if (log.isTraceEnabled()) log.trace("Parameters: writeImplied=" + this.writeImplied + ", writeOrdered=" + this.writeOrdered + ", writePretty=" + this.writePretty + ", writeHtml=" + this.writeHtml + ", writeStream=" + this.writeStream);
 	}
 
 	@Override
@@ -157,4 +159,13 @@ public abstract class AbstractXDIWriter implements XDIWriter {
 
 		return this.writeHtml;
 	}
+
+	/**
+	 * Returns whether the graph should be written without building the whole output in memory first.
+	 * Writers that cannot do this ignore it.
+	 */
+	public boolean isWriteStream() {
+
+		return this.writeStream;
+	}
 }
@@ -1,10 +1,20 @@
 package xdi2.core.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.SignatureException;
+import java.util.Iterator;
 import java.util.Properties;
 
+import javax.crypto.Mac;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,14 +27,18 @@ import xdi2.core.features.signatures.Signatures.NoSignaturesCopyStrategy;
 import xdi2.core.impl.memory.MemoryGraphFactory;
 import xdi2.core.io.readers.XDIJSONReader;
 import xdi2.core.io.writers.XDIJSONWriter;
+import xdi2.core.syntax.XDIStatement;
 import xdi2.core.util.CopyUtil;
 import xdi2.core.util.CopyUtil.CompoundCopyStrategy;
 import xdi2.core.util.CopyUtil.CopyStrategy;
+import xdi2.core.util.SortedCopyTraversal;
 
 public class Normalization {
 
 	private static Logger log = LoggerFactory.getLogger(Normalization.class.getName());
 
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
 	public static final XDIWriter XDIWRITER;
 	public static final XDIReader XDIREADER;
 
@@ -100,6 +114,119 @@ public class Normalization {
 		return serialize(graph, null);
 	}
 
+	/**
+	 * Writes the normalized serialization of a context node to an output stream as UTF-8.
+	 * This writes the same bytes as serialize(), but traverses the context node in sorted order instead
+	 * of copying it into a temporary graph first.
+	 */
+	public static void serialize(ContextNode contextNode, CopyStrategy copyStrategy, OutputStream outputStream) throws IOException {
+
+		Iterator<XDIStatement> XDIstatements = SortedCopyTraversal.getAllStatements(contextNode, copyStrategy);
+
+		// if the copy strategy cannot be traversed, we have to copy
+
+		if (XDIstatements == null) {
+
+			outputStream.write(serialize(contextNode, copyStrategy).getBytes(UTF8));
+			outputStream.flush();
+
+			return;
+		}
+
+		Writer writer = new OutputStreamWriter(outputStream, UTF8);
+
+		((XDIJSONWriter) XDIWRITER).write(XDIstatements, writer);
+	}
+
+	/**
+	 * Returns the normalized serialization of a context node as UTF-8 bytes.
+	 */
+	public static byte[] serializeBytes(ContextNode contextNode, CopyStrategy copyStrategy) {
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		try {
+
+			serialize(contextNode, copyStrategy, buffer);
+		} catch (IOException ex) {
+
+			throw new Xdi2RuntimeException("Cannot serialize " + contextNode + ": " + ex.getMessage(), ex);
+		}
+
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Feeds the normalized serialization of a context node into a JCE signature.
+	 */
+	public static void update(ContextNode contextNode, CopyStrategy copyStrategy, final java.security.Signature jceSignature) throws SignatureException {
+
+		OutputStream outputStream = new UpdateOutputStream() {
+
+			@Override
+			protected void update(byte[] bytes, int off, int len) throws SignatureException {
+
+				jceSignature.update(bytes, off, len);
+			}
+		};
+
+		try {
+
+			serialize(contextNode, copyStrategy, outputStream);
+		} catch (IOException ex) {
+
+			if (ex.getCause() instanceof SignatureException) throw (SignatureException) ex.getCause();
+
+			throw new Xdi2RuntimeException("Cannot serialize " + contextNode + ": " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Feeds the normalized serialization of a context node into a JCE MAC.
+	 */
+	public static void update(ContextNode contextNode, CopyStrategy copyStrategy, final Mac jceMac) {
+
+		OutputStream outputStream = new UpdateOutputStream() {
+
+			@Override
+			protected void update(byte[] bytes, int off, int len) {
+
+				jceMac.update(bytes, off, len);
+			}
+		};
+
+		try {
+
+			serialize(contextNode, copyStrategy, outputStream);
+		} catch (IOException ex) {
+
+			throw new Xdi2RuntimeException("Cannot serialize " + contextNode + ": " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Feeds the normalized serialization of a context node into a JCE message digest.
+	 */
+	public static void update(ContextNode contextNode, CopyStrategy copyStrategy, final MessageDigest jceMessageDigest) {
+
+		OutputStream outputStream = new UpdateOutputStream() {
+
+			@Override
+			protected void update(byte[] bytes, int off, int len) {
+
+				jceMessageDigest.update(bytes, off, len);
+			}
+		};
+
+		try {
+
+			serialize(contextNode, copyStrategy, outputStream);
+		} catch (IOException ex) {
+
+			throw new Xdi2RuntimeException("Cannot serialize " + contextNode + ": " + ex.getMessage(), ex);
+		}
+	}
+
 	/**
 	 * Returns the graph from a normalized string.
 	 */
@@ -124,7 +251,7 @@ public class Normalization {
 	}
 
 	/*
-	 * Helper class
+	 * Helper classes
 	 */
 
 	public static class NormalizationCopyStrategy extends CompoundCopyStrategy {
@@ -134,4 +261,30 @@ public class Normalization {
 			super(new NoSignaturesCopyStrategy(), new NoDigestsCopyStrategy());
 		}
 	}
+
+	/**
+	 * An output stream that passes all bytes to the update() method of a JCE engine.
+	 */
+	private static abstract class UpdateOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+
+			this.write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int off, int len) throws IOException {
+
+			try {
+
+				this.update(bytes, off, len);
+			} catch (SignatureException ex) {
+
+				throw new IOException("Cannot update: " + ex.getMessage(), ex);
+			}
+		}
+
+		protected abstract void update(byte[] bytes, int off, int len) throws SignatureException;
+	}
 }
@@ -34,10 +34,12 @@ public final class XDIWriterRegistry {
 	public static final String PARAMETER_ORDERED = "ordered";
 	public static final String PARAMETER_PRETTY = "pretty";
 	public static final String PARAMETER_HTML = "html";
+	public static final String PARAMETER_STREAM = "stream";
 	public static final String DEFAULT_IMPLIED = "0";
 	public static final String DEFAULT_ORDERED = "0";
 	public static final String DEFAULT_PRETTY = "0";
 	public static final String DEFAULT_HTML = "0";
+	public static final String DEFAULT_STREAM = "0";
 
 	public static final Properties PROPERTIES_IMPLIED;
 	public static final Properties PROPERTIES_ORDERED;
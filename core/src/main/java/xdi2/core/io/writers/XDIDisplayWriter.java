@@ -3,9 +3,6 @@ package xdi2.core.io.writers;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Properties;
 
 import xdi2.core.ContextNode;
@@ -24,12 +21,8 @@ import xdi2.core.io.MimeType;
 import xdi2.core.syntax.XDIAddress;
 import xdi2.core.syntax.XDIArc;
 import xdi2.core.syntax.XDIStatement;
-import xdi2.core.util.CopyUtil;
-import xdi2.core.util.iterators.CompositeIterator;
+import xdi2.core.util.SortedGraphTraversal;
 import xdi2.core.util.iterators.IterableIterator;
-import xdi2.core.util.iterators.MappingContextNodeStatementIterator;
-import xdi2.core.util.iterators.MappingLiteralNodeStatementIterator;
-import xdi2.core.util.iterators.MappingRelationStatementIterator;
 import xdi2.core.util.iterators.SelectingNotImpliedStatementIterator;
 
 public class XDIDisplayWriter extends AbstractXDIWriter {
@@ -62,22 +55,11 @@ public class XDIDisplayWriter extends AbstractXDIWriter {
 
 		// write ordered?
 
-		Graph orderedGraph = null;
 		IterableIterator<Statement> statements;
 
 		if (this.isWriteOrdered()) {
 
-			MemoryGraphFactory memoryGraphFactory = new MemoryGraphFactory();
-			memoryGraphFactory.setSortmode(MemoryGraphFactory.SORTMODE_ALPHA);
-			orderedGraph = memoryGraphFactory.openGraph();
-			CopyUtil.copyGraph(graph, orderedGraph, null);
-
-			List<Iterator<? extends Statement>> list = new ArrayList<Iterator<? extends Statement>> ();
-			list.add(new MappingContextNodeStatementIterator(orderedGraph.getRootContextNode(true).getAllContextNodes()));
-			list.add(new MappingRelationStatementIterator(orderedGraph.getRootContextNode(true).getAllRelations()));
-			list.add(new MappingLiteralNodeStatementIterator(orderedGraph.getRootContextNode(true).getAllLiteralNodes()));
-
-			statements = new CompositeIterator<Statement> (list.iterator());
+			statements = SortedGraphTraversal.getAllStatements(graph.getRootContextNode(true));
 		} else {
 
 			statements = graph.getRootContextNode(true).getAllStatements();
@@ -111,10 +93,6 @@ public class XDIDisplayWriter extends AbstractXDIWriter {
 		}
 
 		bufferedWriter.flush();
-
-		// done
-
-		if (orderedGraph != null) orderedGraph.close();
 	}
 
 	private void writeStatement(BufferedWriter bufferedWriter, XDIStatement XDIstatement) throws IOException {
@@ -2,9 +2,6 @@ package xdi2.core.io.writers;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Properties;
 
 import com.google.gson.Gson;
@@ -19,19 +16,14 @@ import xdi2.core.Graph;
 import xdi2.core.Statement;
 import xdi2.core.constants.XDIConstants;
 import xdi2.core.impl.AbstractLiteralNode;
-import xdi2.core.impl.memory.MemoryGraphFactory;
 import xdi2.core.io.AbstractXDIWriter;
 import xdi2.core.io.MimeType;
 import xdi2.core.syntax.XDIAddress;
 import xdi2.core.syntax.XDIArc;
 import xdi2.core.syntax.XDIStatement;
 import xdi2.core.syntax.XDIXRef;
-import xdi2.core.util.CopyUtil;
-import xdi2.core.util.iterators.CompositeIterator;
+import xdi2.core.util.SortedGraphTraversal;
 import xdi2.core.util.iterators.IterableIterator;
-import xdi2.core.util.iterators.MappingContextNodeStatementIterator;
-import xdi2.core.util.iterators.MappingLiteralNodeStatementIterator;
-import xdi2.core.util.iterators.MappingRelationStatementIterator;
 import xdi2.core.util.iterators.SelectingNotImpliedStatementIterator;
 
 public class XDIJSONPARSEWriter extends AbstractXDIWriter {
@@ -54,22 +46,11 @@ public class XDIJSONPARSEWriter extends AbstractXDIWriter {
 
 		// write ordered?
 
-		Graph orderedGraph = null;
 		IterableIterator<Statement> statements;
 
 		if (this.isWriteOrdered()) {
 
-			MemoryGraphFactory memoryGraphFactory = new MemoryGraphFactory();
-			memoryGraphFactory.setSortmode(MemoryGraphFactory.SORTMODE_ALPHA);
-			orderedGraph = memoryGraphFactory.openGraph();
-			CopyUtil.copyGraph(graph, orderedGraph, null);
-
-			List<Iterator<? extends Statement>> list = new ArrayList<Iterator<? extends Statement>> ();
-			list.add(new MappingContextNodeStatementIterator(orderedGraph.getRootContextNode(true).getAllContextNodes()));
-			list.add(new MappingRelationStatementIterator(orderedGraph.getRootContextNode(true).getAllRelations()));
-			list.add(new MappingLiteralNodeStatementIterator(orderedGraph.getRootContextNode(true).getAllLiteralNodes()));
-
-			statements = new CompositeIterator<Statement> (list.iterator());
+			statements = SortedGraphTraversal.getAllStatements(graph.getRootContextNode(true));
 		} else {
 
 			statements = graph.getRootContextNode(true).getAllStatements();
@@ -92,8 +73,6 @@ public class XDIJSONPARSEWriter extends AbstractXDIWriter {
 
 		// done
 
-		if (orderedGraph != null) orderedGraph.close();
-
 		return writer;
 	}
 
@@ -2,6 +2,11 @@ package xdi2.core.io.writers;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import com.google.gson.Gson;
@@ -26,13 +31,22 @@ import xdi2.core.features.nodetypes.XdiCommonRoot;
 import xdi2.core.features.nodetypes.XdiCommonVariable;
 import xdi2.core.features.nodetypes.XdiEntityCollection;
 import xdi2.core.impl.AbstractLiteralNode;
-import xdi2.core.impl.memory.MemoryGraphFactory;
 import xdi2.core.io.AbstractXDIWriter;
 import xdi2.core.io.MimeType;
 import xdi2.core.syntax.XDIAddress;
-import xdi2.core.util.CopyUtil;
+import xdi2.core.util.SortedGraphTraversal;
 import xdi2.core.util.XDIAddressUtil;
-
+import xdi2.core.util.iterators.ReadOnlyIterator;
+
+/**
+ * Writes a graph as XDI/JSON/QUAD.
+ * 
+ * By default, the graph is first put into a tree of JSON objects, which is then written out.
+ * If the "stream" parameter is set, the JSON objects are instead written directly to a JSON writer
+ * while the graph is walked. In this case, the keys of a JSON object may come in a different order.
+ * 
+ * @author markus
+ */
 public class XDIJSONQuadWriter extends AbstractXDIWriter {
 
 	private static final long serialVersionUID = 1077789049204778292L;
@@ -59,18 +73,16 @@ public class XDIJSONQuadWriter extends AbstractXDIWriter {
 	@Override
 	public Writer write(Graph graph, Writer writer) throws IOException {
 
-		// write ordered?
-
-		Graph orderedGraph = null;
+		// write streaming?
 
-		if (this.isWriteOrdered()) {
+		if (this.isWriteStream()) {
 
-			MemoryGraphFactory memoryGraphFactory = new MemoryGraphFactory();
-			memoryGraphFactory.setSortmode(MemoryGraphFactory.SORTMODE_ALPHA);
-			orderedGraph = memoryGraphFactory.openGraph();
-			CopyUtil.copyGraph(graph, orderedGraph, null);
+			JsonWriter jsonWriter = new JsonWriter(writer);
+			if (this.isWritePretty()) jsonWriter.setIndent("  ");
+			this.write(graph, jsonWriter);
+			writer.flush();
 
-			graph = orderedGraph;
+			return writer;
 		}
 
 		// write
@@ -88,6 +100,18 @@ public class XDIJSONQuadWriter extends AbstractXDIWriter {
 		return writer;
 	}
 
+	/**
+	 * Writes a graph directly to a JSON writer, without building JSON objects first.
+	 */
+	public void write(Graph graph, JsonWriter jsonWriter) throws IOException {
+
+		jsonWriter.beginObject();
+		this.writeRoot(graph.getRootContextNode(), jsonWriter);
+		jsonWriter.endObject();
+
+		jsonWriter.flush();
+	}
+
 	private void putRootIntoJsonObject(ContextNode rootContextNode, JsonObject jsonObject) throws IOException {
 
 		JsonObject rootJsonObject;
@@ -105,7 +129,7 @@ public class XDIJSONQuadWriter extends AbstractXDIWriter {
 
 		// context nodes
 
-		for (ContextNode contextNode : rootContextNode.getContextNodes()) {
+		for (ContextNode contextNode : this.getContextNodes(rootContextNode)) {
 
 			if (this.isWriteImplied()) this.putContextNodeIntoJsonObject(contextNode, rootJsonObject);
 
@@ -138,7 +162,7 @@ public class XDIJSONQuadWriter extends AbstractXDIWriter {
 
 		// relations
 
-		for (Relation relation : rootContextNode.getRelations()) {
+		for (Relation relation : this.getRelations(rootContextNode)) {
 
 			this.putRelationIntoJsonObject(relation, rootJsonObject);
 		}
@@ -174,7 +198,7 @@ public class XDIJSONQuadWriter extends AbstractXDIWriter {
 
 		// context nodes
 
-		for (ContextNode contextNode : entityContextNode.getContextNodes()) {
+		for (ContextNode contextNode : this.getContextNodes(entityContextNode)) {
 
 			if (this.isWriteImplied()) this.putContextNodeIntoJsonObject(contextNode, entityJsonObject);
 
@@ -201,7 +225,7 @@ public class XDIJSONQuadWriter extends AbstractXDIWriter {
 
 		// relations
 
-		for (Relation relation : entityContextNode.getRelations()) {
+		for (Relation relation : this.getRelations(entityContextNode)) {
 
 			this.putRelationIntoJsonObject(relation, entityJsonObject);
 		}
@@ -234,7 +258,7 @@ public class XDIJSONQuadWriter extends AbstractXDIWriter {
 
 		// context nodes
 
-		for (ContextNode contextNode : attributeContextNode.getContextNodes()) {
+		for (ContextNode contextNode : this.getContextNodes(attributeContextNode)) {
 
 			if (this.isWriteImplied()) this.putContextNodeIntoJsonObject(contextNode, attributeJsonObject);
 
@@ -255,7 +279,7 @@ public class XDIJSONQuadWriter extends AbstractXDIWriter {
 
 		// relations
 
-		for (Relation relation : attributeContextNode.getRelations()) {
+		for (Relation relation : this.getRelations(attributeContextNode)) {
 
 			this.putRelationIntoJsonObject(relation, attributeJsonObject);
 		}
@@ -287,6 +311,16 @@ public class XDIJSONQuadWriter extends AbstractXDIWriter {
 		attributeJsonObject.add(localXDIAddress.toString(), literalJsonElement);
 	}
 
+	private ReadOnlyIterator<ContextNode> getContextNodes(ContextNode contextNode) {
+
+		return this.isWriteOrdered() ? SortedGraphTraversal.getContextNodes(contextNode) : contextNode.getContextNodes();
+	}
+
+	private ReadOnlyIterator<Relation> getRelations(ContextNode contextNode) {
+
+		return this.isWriteOrdered() ? SortedGraphTraversal.getRelations(contextNode) : contextNode.getRelations();
+	}
+
 	private void putContextNodeIntoJsonObject(ContextNode contextNode, JsonObject jsonObject) {
 
 		JsonArray contextNodeJsonArray = jsonObject.getAsJsonArray("//");
@@ -314,4 +348,372 @@ public class XDIJSONQuadWriter extends AbstractXDIWriter {
 
 		relationJsonArray.add(new JsonPrimitive(relation.getTargetXDIAddress().toString()));
 	}
+
+	/*
+	 * Streaming
+	 */
+
+	/**
+	 * Writes the keys that putRootIntoJsonObject() puts into a JSON object.
+	 * Roots below a root that is not the common root are written after the JSON object of that root.
+	 */
+	private void writeRoot(ContextNode rootContextNode, JsonWriter jsonWriter) throws IOException {
+
+		if (XdiCommonRoot.isValid(rootContextNode)) {
+
+			this.writeRootContents(rootContextNode, true, jsonWriter);
+			return;
+		}
+
+		// write the root, unless it is implied and empty
+
+		if (! this.isRemovedRoot(rootContextNode)) {
+
+			jsonWriter.name(rootContextNode.getXDIAddress().toString());
+			jsonWriter.beginObject();
+			this.writeRootContents(rootContextNode, false, jsonWriter);
+			jsonWriter.endObject();
+		}
+
+		// write the roots below it
+
+		for (ContextNode contextNode : this.getContextNodeList(rootContextNode)) {
+
+			if (isRootVariableOrDefinition(contextNode)) continue;
+			if (XdiAbstractRoot.isValid(contextNode)) this.writeRoot(contextNode, jsonWriter);
+		}
+	}
+
+	private void writeRootContents(ContextNode rootContextNode, boolean commonRoot, JsonWriter jsonWriter) throws IOException {
+
+		List<ContextNode> contextNodes = this.getContextNodeList(rootContextNode);
+
+		// context nodes
+
+		if (this.isWriteImplied()) this.writeContextNodeArray(contextNodes, jsonWriter);
+
+		for (ContextNode contextNode : contextNodes) {
+
+			if (isRootVariableOrDefinition(contextNode)) {
+
+				this.writeRoot(contextNode, jsonWriter);
+				continue;
+			}
+
+			if (XdiAbstractRoot.isValid(contextNode)) {
+
+				if (commonRoot) this.writeRoot(contextNode, jsonWriter);
+				continue;
+			}
+
+			if (XdiAbstractEntity.isValid(contextNode) || XdiEntityCollection.isValid(contextNode)) {
+
+				this.writeEntity(contextNode, rootContextNode.getXDIAddress(), jsonWriter);
+				continue;
+			}
+
+			if (XdiAbstractAttribute.isValid(contextNode) || XdiAttributeCollection.isValid(contextNode)) {
+
+				this.writeAttribute(contextNode, rootContextNode.getXDIAddress(), jsonWriter);
+				continue;
+			}
+
+			throw new Xdi2RuntimeException("Unexpected context node: " + contextNode + " on root context node: " + rootContextNode);
+		}
+
+		// relations
+
+		this.writeRelations(rootContextNode, jsonWriter);
+
+		// literal node
+
+		if (rootContextNode.containsLiteralNode()) {
+
+			throw new Xdi2RuntimeException("Unexpected literal node on root context node: " + rootContextNode);
+		}
+	}
+
+	/**
+	 * Writes the keys that putEntityIntoJsonObject() puts into a JSON object.
+	 * Entities below an entity are written after the JSON object of that entity.
+	 */
+	private void writeEntity(ContextNode entityContextNode, XDIAddress parentXDIAddress, JsonWriter jsonWriter) throws IOException {
+
+		XDIAddress XDIaddress = entityContextNode.getXDIAddress();
+		XDIAddress localXDIAddress = XDIAddressUtil.localXDIAddress(XDIaddress, - parentXDIAddress.getNumXDIArcs());
+
+		List<ContextNode> contextNodes = this.getContextNodeList(entityContextNode);
+
+		// write the entity, unless it is implied and empty
+
+		if (! this.isRemovedEntity(entityContextNode)) {
+
+			jsonWriter.name(localXDIAddress.toString());
+			jsonWriter.beginObject();
+
+			// context nodes
+
+			if (this.isWriteImplied()) this.writeContextNodeArray(contextNodes, jsonWriter);
+
+			for (ContextNode contextNode : contextNodes) {
+
+				if (isEntityOrVariableOrDefinition(contextNode)) continue;
+
+				if (XdiAbstractAttribute.isValid(contextNode) || XdiAttributeCollection.isValid(contextNode)) {
+
+					this.writeAttribute(contextNode, XDIaddress, jsonWriter);
+					continue;
+				}
+
+				throw new Xdi2RuntimeException("Unexpected context node: " + contextNode + " on entity context node: " + entityContextNode);
+			}
+
+			// relations
+
+			this.writeRelations(entityContextNode, jsonWriter);
+
+			// literal node
+
+			if (entityContextNode.containsLiteralNode()) {
+
+				throw new Xdi2RuntimeException("Unexpected literal node on entity context node: " + entityContextNode);
+			}
+
+			jsonWriter.endObject();
+		}
+
+		// write the entities below it
+
+		for (ContextNode contextNode : contextNodes) {
+
+			if (isEntityOrVariableOrDefinition(contextNode)) this.writeEntity(contextNode, parentXDIAddress, jsonWriter);
+		}
+	}
+
+	/**
+	 * Writes the keys that putAttributeIntoJsonObject() puts into a JSON object.
+	 * Attributes below an attribute are written after the JSON object of that attribute.
+	 */
+	private void writeAttribute(ContextNode attributeContextNode, XDIAddress parentXDIAddress, JsonWriter jsonWriter) throws IOException {
+
+		XDIAddress XDIaddress = attributeContextNode.getXDIAddress();
+		XDIAddress localXDIAddress = XDIAddressUtil.localXDIAddress(XDIaddress, - parentXDIAddress.getNumXDIArcs());
+
+		List<ContextNode> contextNodes = this.getContextNodeList(attributeContextNode);
+
+		// write the attribute, unless it is implied and empty
+
+		if (! this.isRemovedAttribute(attributeContextNode)) {
+
+			jsonWriter.name(localXDIAddress.toString());
+			jsonWriter.beginObject();
+
+			// context nodes
+
+			if (this.isWriteImplied()) this.writeContextNodeArray(contextNodes, jsonWriter);
+
+			// relations
+
+			this.writeRelations(attributeContextNode, jsonWriter);
+
+			// literal node
+
+			LiteralNode literalNode = attributeContextNode.getLiteralNode();
+
+			if (literalNode != null) {
+
+				jsonWriter.name(XDIAddressUtil.localXDIAddress(literalNode.getXDIAddress(), - XDIaddress.getNumXDIArcs()).toString());
+				gson.toJson(AbstractLiteralNode.literalDataToJsonElement(literalNode.getLiteralData()), jsonWriter);
+			}
+
+			jsonWriter.endObject();
+		}
+
+		// write the attributes below it
+
+		for (ContextNode contextNode : contextNodes) {
+
+			if (isAttributeOrVariableOrDefinition(contextNode)) {
+
+				this.writeAttribute(contextNode, parentXDIAddress, jsonWriter);
+				continue;
+			}
+
+			throw new Xdi2RuntimeException("Unexpected context node: " + contextNode + " on attribute context node: " + attributeContextNode);
+		}
+	}
+
+	private void writeContextNodeArray(List<ContextNode> contextNodes, JsonWriter jsonWriter) throws IOException {
+
+		if (contextNodes.isEmpty()) return;
+
+		jsonWriter.name("//");
+		jsonWriter.beginArray();
+		for (ContextNode contextNode : contextNodes) jsonWriter.value(contextNode.getXDIArc().toString());
+		jsonWriter.endArray();
+	}
+
+	private void writeRelations(ContextNode contextNode, JsonWriter jsonWriter) throws IOException {
+
+		Map<XDIAddress, List<Relation>> relations = new LinkedHashMap<XDIAddress, List<Relation>> ();
+
+		for (Iterator<Relation> i = this.getRelations(contextNode); i.hasNext(); ) {
+
+			Relation relation = i.next();
+			if (! this.isWriteImplied() && relation.getStatement().isImplied()) continue;
+
+			List<Relation> list = relations.get(relation.getXDIAddress());
+
+			if (list == null) {
+
+				list = new ArrayList<Relation> ();
+				relations.put(relation.getXDIAddress(), list);
+			}
+
+			list.add(relation);
+		}
+
+		for (Map.Entry<XDIAddress, List<Relation>> entry : relations.entrySet()) {
+
+			jsonWriter.name("/" + entry.getKey().toString());
+			jsonWriter.beginArray();
+			for (Relation relation : entry.getValue()) jsonWriter.value(relation.getTargetXDIAddress().toString());
+			jsonWriter.endArray();
+		}
+	}
+
+	/*
+	 * Checks whether the put...IntoJsonObject() methods would remove the JSON object of a context node again,
+	 * because it is implied and empty, and whether they would put anything into the JSON object of its parent.
+	 * Since the streaming methods cannot remove keys that have already been written, they check this first.
+	 */
+
+	private boolean isRemovedRoot(ContextNode rootContextNode) {
+
+		if (this.isWriteImplied() || ! rootContextNode.getStatement().isImplied()) return false;
+
+		for (ContextNode contextNode : this.getContextNodeList(rootContextNode)) {
+
+			if (isRootVariableOrDefinition(contextNode)) {
+
+				if (this.isWrittenRoot(contextNode)) return false;
+				continue;
+			}
+
+			if (XdiAbstractRoot.isValid(contextNode)) continue;
+
+			if (XdiAbstractEntity.isValid(contextNode) || XdiEntityCollection.isValid(contextNode)) {
+
+				if (this.isWrittenEntity(contextNode)) return false;
+				continue;
+			}
+
+			if (XdiAbstractAttribute.isValid(contextNode) || XdiAttributeCollection.isValid(contextNode)) {
+
+				if (this.isWrittenAttribute(contextNode)) return false;
+				continue;
+			}
+
+			throw new Xdi2RuntimeException("Unexpected context node: " + contextNode + " on root context node: " + rootContextNode);
+		}
+
+		return ! this.hasRelations(rootContextNode) && ! rootContextNode.containsLiteralNode();
+	}
+
+	private boolean isWrittenRoot(ContextNode rootContextNode) {
+
+		if (! this.isRemovedRoot(rootContextNode)) return true;
+
+		for (ContextNode contextNode : this.getContextNodeList(rootContextNode)) {
+
+			if (isRootVariableOrDefinition(contextNode)) continue;
+			if (XdiAbstractRoot.isValid(contextNode) && this.isWrittenRoot(contextNode)) return true;
+		}
+
+		return false;
+	}
+
+	private boolean isRemovedEntity(ContextNode entityContextNode) {
+
+		if (this.isWriteImplied() || ! entityContextNode.getStatement().isImplied()) return false;
+
+		for (ContextNode contextNode : this.getContextNodeList(entityContextNode)) {
+
+			if (isEntityOrVariableOrDefinition(contextNode)) continue;
+
+			if (XdiAbstractAttribute.isValid(contextNode) || XdiAttributeCollection.isValid(contextNode)) {
+
+				if (this.isWrittenAttribute(contextNode)) return false;
+				continue;
+			}
+
+			throw new Xdi2RuntimeException("Unexpected context node: " + contextNode + " on entity context node: " + entityContextNode);
+		}
+
+		return ! this.hasRelations(entityContextNode) && ! entityContextNode.containsLiteralNode();
+	}
+
+	private boolean isWrittenEntity(ContextNode entityContextNode) {
+
+		if (! this.isRemovedEntity(entityContextNode)) return true;
+
+		for (ContextNode contextNode : this.getContextNodeList(entityContextNode)) {
+
+			if (isEntityOrVariableOrDefinition(contextNode) && this.isWrittenEntity(contextNode)) return true;
+		}
+
+		return false;
+	}
+
+	private boolean isRemovedAttribute(ContextNode attributeContextNode) {
+
+		if (this.isWriteImplied() || ! attributeContextNode.getStatement().isImplied()) return false;
+
+		return ! this.hasRelations(attributeContextNode) && ! attributeContextNode.containsLiteralNode();
+	}
+
+	private boolean isWrittenAttribute(ContextNode attributeContextNode) {
+
+		if (! this.isRemovedAttribute(attributeContextNode)) return true;
+
+		for (ContextNode contextNode : this.getContextNodeList(attributeContextNode)) {
+
+			if (isAttributeOrVariableOrDefinition(contextNode) && this.isWrittenAttribute(contextNode)) return true;
+		}
+
+		return false;
+	}
+
+	private boolean hasRelations(ContextNode contextNode) {
+
+		for (Iterator<Relation> i = contextNode.getRelations(); i.hasNext(); ) {
+
+			if (this.isWriteImplied() || ! i.next().getStatement().isImplied()) return true;
+		}
+
+		return false;
+	}
+
+	private List<ContextNode> getContextNodeList(ContextNode contextNode) {
+
+		List<ContextNode> list = new ArrayList<ContextNode> ();
+		for (Iterator<ContextNode> i = this.getContextNodes(contextNode); i.hasNext(); ) list.add(i.next());
+
+		return list;
+	}
+
+	private static boolean isRootVariableOrDefinition(ContextNode contextNode) {
+
+		return XdiCommonVariable.isValid(contextNode) || XdiCommonDefinition.isValid(contextNode);
+	}
+
+	private static boolean isEntityOrVariableOrDefinition(ContextNode contextNode) {
+
+		return XdiCommonVariable.isValid(contextNode) || XdiCommonDefinition.isValid(contextNode) || XdiAbstractEntity.isValid(contextNode) || XdiEntityCollection.isValid(contextNode);
+	}
+
+	private static boolean isAttributeOrVariableOrDefinition(ContextNode contextNode) {
+
+		return XdiCommonVariable.isValid(contextNode) || XdiCommonDefinition.isValid(contextNode) || XdiAbstractAttribute.isValid(contextNode) || XdiAttributeCollection.isValid(contextNode);
+	}
 }
@@ -3,9 +3,13 @@ package xdi2.core.io.writers;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -15,24 +19,35 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.stream.JsonWriter;
 
+import xdi2.core.ContextNode;
 import xdi2.core.Graph;
+import xdi2.core.LiteralNode;
+import xdi2.core.Relation;
 import xdi2.core.Statement;
+import xdi2.core.constants.XDIConstants;
+import xdi2.core.features.nodetypes.XdiInnerRoot;
 import xdi2.core.impl.AbstractLiteralNode;
-import xdi2.core.impl.memory.MemoryGraphFactory;
 import xdi2.core.io.AbstractXDIWriter;
 import xdi2.core.io.MimeType;
+import xdi2.core.io.XDIWriterRegistry;
 import xdi2.core.syntax.XDIAddress;
 import xdi2.core.syntax.XDIArc;
 import xdi2.core.syntax.XDIStatement;
-import xdi2.core.util.CopyUtil;
+import xdi2.core.util.SortedGraphTraversal;
 import xdi2.core.util.XDIStatementUtil;
-import xdi2.core.util.iterators.CompositeIterator;
 import xdi2.core.util.iterators.IterableIterator;
-import xdi2.core.util.iterators.MappingContextNodeStatementIterator;
-import xdi2.core.util.iterators.MappingLiteralNodeStatementIterator;
-import xdi2.core.util.iterators.MappingRelationStatementIterator;
 import xdi2.core.util.iterators.SelectingNotImpliedStatementIterator;
 
+/**
+ * Writes a graph as XDI/JSON.
+ * 
+ * By default, all statements are first put into a JSON object, which is then written out.
+ * If the "stream" parameter is set, the context node tree of the graph is instead walked
+ * depth-first, and the statements of each context node are written directly to a JSON writer.
+ * In this case, the keys of the JSON object are grouped by context node.
+ * 
+ * @author markus
+ */
 public class XDIJSONWriter extends AbstractXDIWriter {
 
 	private static final long serialVersionUID = -5510592554616900152L;
@@ -41,6 +56,8 @@ public class XDIJSONWriter extends AbstractXDIWriter {
 	public static final String FILE_EXTENSION = "json";
 	public static final MimeType MIME_TYPE = null;
 
+	public static final String PARAMETER_STREAM = XDIWriterRegistry.PARAMETER_STREAM;
+
 	private static final Gson gson = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
 
 	public XDIJSONWriter(Properties parameters) {
@@ -52,22 +69,11 @@ public class XDIJSONWriter extends AbstractXDIWriter {
 
 		// write ordered?
 
-		Graph orderedGraph = null;
 		IterableIterator<Statement> statements;
 
 		if (this.isWriteOrdered()) {
 
-			MemoryGraphFactory memoryGraphFactory = new MemoryGraphFactory();
-			memoryGraphFactory.setSortmode(MemoryGraphFactory.SORTMODE_ALPHA);
-			orderedGraph = memoryGraphFactory.openGraph();
-			CopyUtil.copyGraph(graph, orderedGraph, null);
-
-			List<Iterator<? extends Statement>> list = new ArrayList<Iterator<? extends Statement>> ();
-			list.add(new MappingContextNodeStatementIterator(orderedGraph.getRootContextNode(true).getAllContextNodes()));
-			list.add(new MappingRelationStatementIterator(orderedGraph.getRootContextNode(true).getAllRelations()));
-			list.add(new MappingLiteralNodeStatementIterator(orderedGraph.getRootContextNode(true).getAllLiteralNodes()));
-
-			statements = new CompositeIterator<Statement> (list.iterator());
+			statements = SortedGraphTraversal.getAllStatements(graph.getRootContextNode(true));
 		} else {
 
 			statements = graph.getRootContextNode(true).getAllStatements();
@@ -87,16 +93,24 @@ public class XDIJSONWriter extends AbstractXDIWriter {
 
 			this.putStatementIntoJsonObject(XDIstatement, jsonObject);
 		}
-
-		// done
-
-		if (orderedGraph != null) orderedGraph.close();
 	}
 
 	@SuppressWarnings("resource")
 	@Override
 	public Writer write(Graph graph, Writer writer) throws IOException {
 
+		// write streaming?
+
+		if (this.isWriteStream()) {
+
+			JsonWriter jsonWriter = new JsonWriter(writer);
+			if (this.isWritePretty()) jsonWriter.setIndent("  ");
+			this.write(graph, jsonWriter);
+			writer.flush();
+
+			return writer;
+		}
+
 		// write
 
 		JsonObject jsonObject = new JsonObject();
@@ -112,6 +126,37 @@ public class XDIJSONWriter extends AbstractXDIWriter {
 		return writer;
 	}
 
+	/**
+	 * Writes statements in the order in which they are given, e.g. statements that have already been sorted,
+	 * without a graph.
+	 */
+	public Writer write(Iterator<XDIStatement> XDIstatements, Writer writer) throws IOException {
+
+		// write
+
+		JsonObject jsonObject = new JsonObject();
+
+		while (XDIstatements.hasNext()) this.putStatementIntoJsonObject(XDIstatements.next(), jsonObject);
+
+		JsonWriter jsonWriter = new JsonWriter(writer);
+		if (this.isWritePretty()) jsonWriter.setIndent("  ");
+		gson.toJson(jsonObject, jsonWriter);
+		jsonWriter.flush();
+		writer.flush();
+
+		return writer;
+	}
+
+	/**
+	 * Writes a graph directly to a JSON writer, without building a JSON object first.
+	 */
+	public void write(Graph graph, JsonWriter jsonWriter) throws IOException {
+
+		this.writeInnerContextNodes(graph.getRootContextNode(true), jsonWriter);
+
+		jsonWriter.flush();
+	}
+
 	private void putStatementIntoJsonObject(XDIStatement XDIstatement, JsonObject jsonObject) throws IOException {
 
 		// nested JSON object?
@@ -198,4 +243,165 @@ public class XDIJSONWriter extends AbstractXDIWriter {
 			jsonArray.add(new JsonPrimitive(XDIstatement.getObject().toString()));
 		}
 	}
+
+	/*
+	 * Streaming
+	 */
+
+	/**
+	 * Writes a JSON object with the statements of a root context node and all context nodes below it.
+	 * Inner roots directly below the root context node are written as nested JSON objects, next to their
+	 * predicate relations if there are any, and at the end otherwise.
+	 */
+	private void writeInnerContextNodes(ContextNode rootContextNode, JsonWriter jsonWriter) throws IOException {
+
+		Set<XDIArc> writtenInnerRootXDIArcs = new HashSet<XDIArc> ();
+
+		jsonWriter.beginObject();
+
+		// write the context nodes
+
+		this.writeContextNode(rootContextNode, rootContextNode, writtenInnerRootXDIArcs, jsonWriter);
+
+		// write the inner roots that don't have predicate relations
+
+		for (ContextNode innerRootContextNode : this.getContextNodes(rootContextNode)) {
+
+			XDIArc innerRootXDIArc = innerRootContextNode.getXDIArc();
+
+			if (! isInnerRootXDIArc(innerRootXDIArc)) continue;
+			if (writtenInnerRootXDIArcs.contains(innerRootXDIArc)) continue;
+			if (! this.hasStatements(innerRootContextNode)) continue;
+
+			jsonWriter.name("" + innerRootXDIArc.getXRef().getPartialSubject() + "/" + innerRootXDIArc.getXRef().getPartialPredicate());
+			jsonWriter.beginArray();
+			this.writeInnerContextNodes(innerRootContextNode, jsonWriter);
+			jsonWriter.endArray();
+		}
+
+		jsonWriter.endObject();
+	}
+
+	private void writeContextNode(ContextNode contextNode, ContextNode rootContextNode, Set<XDIArc> writtenInnerRootXDIArcs, JsonWriter jsonWriter) throws IOException {
+
+		XDIAddress XDIaddress = contextNode.getXDIAddress();
+		XDIaddress = XDIaddress.subXDIAddress(rootContextNode.getXDIAddress().getNumXDIArcs(), XDIaddress.getNumXDIArcs());
+
+		List<ContextNode> contextNodes = this.getContextNodes(contextNode);
+
+		// write the context node statements
+
+		boolean empty = true;
+
+		for (ContextNode childContextNode : contextNodes) {
+
+			if (! this.isWriteImplied() && childContextNode.getStatement().isImplied()) continue;
+
+			if (empty) { jsonWriter.name(XDIaddress + "/"); jsonWriter.beginArray(); empty = false; }
+
+			jsonWriter.value(childContextNode.getXDIArc().toString());
+		}
+
+		if (! empty) jsonWriter.endArray();
+
+		// write the relation statements, and the inner roots of the relations
+
+		for (Map.Entry<XDIAddress, List<Relation>> entry : this.getRelations(contextNode).entrySet()) {
+
+			XDIArc innerRootXDIArc = XdiInnerRoot.createInnerRootXDIArc(XDIaddress, entry.getKey());
+			ContextNode innerRootContextNode = rootContextNode.getContextNode(innerRootXDIArc, false);
+			if (innerRootContextNode != null && ! this.hasStatements(innerRootContextNode)) innerRootContextNode = null;
+
+			empty = true;
+
+			if (innerRootContextNode != null) {
+
+				jsonWriter.name(XDIaddress + "/" + entry.getKey());
+				jsonWriter.beginArray();
+				empty = false;
+
+				this.writeInnerContextNodes(innerRootContextNode, jsonWriter);
+				writtenInnerRootXDIArcs.add(innerRootXDIArc);
+			}
+
+			for (Relation relation : entry.getValue()) {
+
+				if (! this.isWriteImplied() && relation.getStatement().isImplied()) continue;
+
+				if (empty) { jsonWriter.name(XDIaddress + "/" + entry.getKey()); jsonWriter.beginArray(); empty = false; }
+
+				jsonWriter.value(relation.getTargetXDIAddress().toString());
+			}
+
+			if (! empty) jsonWriter.endArray();
+		}
+
+		// write the literal statement
+
+		LiteralNode literalNode = contextNode.getLiteralNode();
+
+		if (literalNode != null) {
+
+			jsonWriter.name(XDIaddress + "/" + XDIConstants.XDI_ARC_LITERAL);
+			gson.toJson(AbstractLiteralNode.literalDataToJsonElement(literalNode.getLiteralData()), jsonWriter);
+		}
+
+		// descend into the context nodes, except inner roots directly below the root context node
+
+		for (ContextNode childContextNode : contextNodes) {
+
+			if (contextNode == rootContextNode && isInnerRootXDIArc(childContextNode.getXDIArc())) continue;
+
+			this.writeContextNode(childContextNode, rootContextNode, writtenInnerRootXDIArcs, jsonWriter);
+		}
+	}
+
+	private List<ContextNode> getContextNodes(ContextNode contextNode) {
+
+		Iterator<ContextNode> contextNodes = this.isWriteOrdered() ? SortedGraphTraversal.getContextNodes(contextNode) : contextNode.getContextNodes();
+
+		List<ContextNode> list = new ArrayList<ContextNode> ();
+		while (contextNodes.hasNext()) list.add(contextNodes.next());
+
+		return list;
+	}
+
+	private Map<XDIAddress, List<Relation>> getRelations(ContextNode contextNode) {
+
+		Iterator<Relation> relations = this.isWriteOrdered() ? SortedGraphTraversal.getRelations(contextNode) : contextNode.getRelations();
+
+		Map<XDIAddress, List<Relation>> map = new LinkedHashMap<XDIAddress, List<Relation>> ();
+
+		while (relations.hasNext()) {
+
+			Relation relation = relations.next();
+			List<Relation> list = map.get(relation.getXDIAddress());
+
+			if (list == null) {
+
+				list = new ArrayList<Relation> ();
+				map.put(relation.getXDIAddress(), list);
+			}
+
+			list.add(relation);
+		}
+
+		return map;
+	}
+
+	/**
+	 * Checks if an inner root has any statements that would be written.
+	 */
+	private boolean hasStatements(ContextNode innerRootContextNode) {
+
+		Iterator<Statement> statements = innerRootContextNode.getAllStatements();
+		if (! this.isWriteImplied()) statements = new SelectingNotImpliedStatementIterator(statements);
+
+		return statements.hasNext();
+	}
+
+	private static boolean isInnerRootXDIArc(XDIArc XDIarc) {
+
+		return XDIarc.hasXRef() && XDIarc.getXRef().hasPartialSubjectAndPredicate();
+	}
 }
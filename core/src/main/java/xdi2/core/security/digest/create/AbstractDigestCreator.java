@@ -1,6 +1,5 @@
 package xdi2.core.security.digest.create;
 
-import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
 
 import xdi2.core.ContextNode;
@@ -29,7 +28,7 @@ public abstract class AbstractDigestCreator <DIGEST extends Digest> implements D
 
 		// get normalized serialization
 
-		byte[] normalizedSerialization = Normalization.serialize(contextNode, new NoDigestsCopyStrategy()).getBytes(Charset.forName("UTF-8"));
+		byte[] normalizedSerialization = Normalization.serializeBytes(contextNode, new NoDigestsCopyStrategy());
 
 		// create digest
 
@@ -43,7 +42,7 @@ public abstract class AbstractDigestCreator <DIGEST extends Digest> implements D
 
 		// get normalized serialization
 
-		byte[] normalizedSerialization = Normalization.serialize(digest.getBaseContextNode(), new NormalizationCopyStrategy()).getBytes(Charset.forName("UTF-8"));
+		byte[] normalizedSerialization = Normalization.serializeBytes(digest.getBaseContextNode(), new NormalizationCopyStrategy());
 
 		// set digest value
 
@@ -1,6 +1,5 @@
 package xdi2.core.security.digest.validate;
 
-import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
 
 import xdi2.core.features.digests.Digest;
@@ -28,10 +27,6 @@ public abstract class AbstractDigestValidator <DIGEST extends Digest> implements
 
 		if (digest == null) throw new NullPointerException();
 
-		// get normalized serialization
-
-		byte[] normalizedSerialization = Normalization.serialize(digest.getBaseContextNode(), new NormalizationCopyStrategy()).getBytes(Charset.forName("UTF-8"));
-
 		// get digest value
 
 		byte[] digestValue = digest.getDigestValue();
@@ -39,7 +34,19 @@ public abstract class AbstractDigestValidator <DIGEST extends Digest> implements
 
 		// validate digest
 
-		return this.validate(normalizedSerialization, digestValue, (DIGEST) digest);
+		return this.validate(digestValue, (DIGEST) digest);
+	}
+
+	/**
+	 * Validates a digest value against the normalized serialization of the digest's base context node.
+	 * By default, the normalized serialization is created and passed to validate(byte[], byte[], DIGEST).
+	 * Subclasses can override this to feed it into the JCE engine with Normalization.update() instead.
+	 */
+	public boolean validate(byte[] digestValue, DIGEST digest) throws GeneralSecurityException {
+
+		byte[] normalizedSerialization = Normalization.serializeBytes(digest.getBaseContextNode(), new NormalizationCopyStrategy());
+
+		return this.validate(normalizedSerialization, digestValue, digest);
 	}
 
 	public abstract boolean validate(byte[] normalizedSerialization, byte[] digestValue, DIGEST digest) throws GeneralSecurityException;
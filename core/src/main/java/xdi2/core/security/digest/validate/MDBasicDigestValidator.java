@@ -7,6 +7,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import xdi2.core.features.digests.MDDigest;
+import xdi2.core.io.Normalization;
+import xdi2.core.io.Normalization.NormalizationCopyStrategy;
 
 /**
  * This is a MDValidator that validate an XDI MDDigest.
@@ -19,6 +21,17 @@ public class MDBasicDigestValidator extends AbstractMDDigestValidator implements
 
 	}
 
+	@Override
+	public boolean validate(byte[] digestValue, MDDigest digest) throws GeneralSecurityException {
+
+		return this.validate(null, digestValue, digest);
+	}
+
+	/**
+	 * Validates a digest value.
+	 * @param normalizedSerialization The normalized serialization, or null to feed the normalized serialization
+	 * of the digest's base context node into the JCE engine with Normalization.update().
+	 */
 	@Override
 	public boolean validate(byte[] normalizedSerialization, byte[] digestValue, MDDigest digest) throws GeneralSecurityException {
 
@@ -29,7 +42,11 @@ public class MDBasicDigestValidator extends AbstractMDDigestValidator implements
 		if (log.isDebugEnabled()) log.debug("Validating for " + digest.getClass().getSimpleName() + " with algorithm " + jceAlgorithm);
 
 		java.security.MessageDigest jceMessageDigest = java.security.MessageDigest.getInstance(jceAlgorithm);
-		jceMessageDigest.update(normalizedSerialization);
+
+		if (normalizedSerialization != null)
+			jceMessageDigest.update(normalizedSerialization);
+		else
+			Normalization.update(digest.getBaseContextNode(), new NormalizationCopyStrategy(), jceMessageDigest);
 
 		return Arrays.equals(jceMessageDigest.digest(), digestValue);
 	}
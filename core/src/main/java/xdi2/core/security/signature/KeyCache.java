@@ -0,0 +1,198 @@
+package xdi2.core.security.signature;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Base64;
+
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.util.BoundedCache;
+
+/**
+ * A bounded cache of decoded keys, so that signature creators and validators do not have to
+ * look up and decode the key of a signer for every signature.
+ *
+ * Keys are cached by their type, the XDI address of the signer, and optionally the fingerprint of the
+ * encoded key. Creators and validators that read the encoded key from a graph use the fingerprint,
+ * so a changed key in the graph is decoded again. Creators and validators that retrieve keys from
+ * somewhere else, e.g. with discovery, cache them without a fingerprint. They use their own cache
+ * by default, since keys from different sources cannot be told apart, and should invalidate them
+ * if the keys change.
+ *
+ * Entries expire after a time to live. The fact that a signer has no key can also be cached,
+ * with a separate, usually shorter time to live.
+ *
+ * @author markus
+ */
+public class KeyCache {
+
+	public static final int DEFAULT_MAXSIZE = 1000;
+	public static final long DEFAULT_TTL = 5 * 60 * 1000L;
+	public static final long DEFAULT_NEGATIVE_TTL = 60 * 1000L;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final KeyCache instance = new KeyCache();
+
+	private final BoundedCache<String, CachedKey<?>> cache;
+	private volatile long ttl;
+	private volatile long negativeTtl;
+
+	public KeyCache(int maxSize, long ttl, long negativeTtl) {
+
+		this.cache = new BoundedCache<String, CachedKey<?>> (maxSize);
+		this.ttl = ttl;
+		this.negativeTtl = negativeTtl;
+	}
+
+	public KeyCache() {
+
+		this(DEFAULT_MAXSIZE, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL);
+	}
+
+	/**
+	 * Returns the cache that is shared by all creators and validators, unless they are given another one.
+	 */
+	public static KeyCache getInstance() {
+
+		return instance;
+	}
+
+	/**
+	 * Returns a cached key, or null if there is no cached key or it has expired.
+	 * If it has been cached that the signer has no key, this returns an entry whose key is null.
+	 * @param keyClass The type of the key.
+	 * @param signerXDIAddress The XDI address of the signer.
+	 * @param fingerprint The fingerprint of the encoded key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public <K extends Key> CachedKey<K> get(Class<K> keyClass, XDIAddress signerXDIAddress, String fingerprint) {
+
+		String cacheKey = cacheKey(keyClass, signerXDIAddress, fingerprint);
+
+		CachedKey<?> cachedKey = this.cache.get(cacheKey);
+		if (cachedKey == null) return null;
+
+		if (cachedKey.isExpired()) {
+
+			this.cache.remove(cacheKey);
+			return null;
+		}
+
+		return (CachedKey<K>) cachedKey;
+	}
+
+	/**
+	 * Caches a key.
+	 * @param keyClass The type of the key.
+	 * @param signerXDIAddress The XDI address of the signer.
+	 * @param fingerprint The fingerprint of the encoded key, or null.
+	 * @param key The key, or null to cache that the signer has no key.
+	 */
+	public <K extends Key> void put(Class<K> keyClass, XDIAddress signerXDIAddress, String fingerprint, K key) {
+
+		long ttl = key == null ? this.negativeTtl : this.ttl;
+		if (ttl <= 0) return;
+
+		this.cache.put(cacheKey(keyClass, signerXDIAddress, fingerprint), new CachedKey<K> (key, System.currentTimeMillis() + ttl));
+	}
+
+	/**
+	 * Removes all cached keys of a signer.
+	 */
+	public void invalidate(XDIAddress signerXDIAddress) {
+
+		String signer = " " + signerXDIAddress + " ";
+
+		for (String cacheKey : this.cache.keys()) {
+
+			if (cacheKey.contains(signer)) this.cache.remove(cacheKey);
+		}
+	}
+
+	/**
+	 * Removes all cached keys, e.g. after a key graph has changed.
+	 */
+	public void invalidateAll() {
+
+		this.cache.clear();
+	}
+
+	/**
+	 * Returns the fingerprint of an encoded key.
+	 */
+	public static String fingerprint(String keyString) throws GeneralSecurityException {
+
+		MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+
+		return new String(Base64.encodeBase64(messageDigest.digest(keyString.getBytes(UTF8))), UTF8);
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private static String cacheKey(Class<? extends Key> keyClass, XDIAddress signerXDIAddress, String fingerprint) {
+
+		return keyClass.getName() + " " + signerXDIAddress + " " + (fingerprint == null ? "" : fingerprint);
+	}
+
+	/*
+	 * Getters and setters
+	 */
+
+	public BoundedCache<String, CachedKey<?>> getCache() {
+
+		return this.cache;
+	}
+
+	public long getTtl() {
+
+		return this.ttl;
+	}
+
+	public void setTtl(long ttl) {
+
+		this.ttl = ttl;
+	}
+
+	public long getNegativeTtl() {
+
+		return this.negativeTtl;
+	}
+
+	public void setNegativeTtl(long negativeTtl) {
+
+		this.negativeTtl = negativeTtl;
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	public static class CachedKey<K extends Key> {
+
+		private final K key;
+		private final long expires;
+
+		private CachedKey(K key, long expires) {
+
+			this.key = key;
+			this.expires = expires;
+		}
+
+		/**
+		 * Returns the key, or null if it has been cached that the signer has no key.
+		 */
+		public K getKey() {
+
+			return this.key;
+		}
+
+		public boolean isExpired() {
+
+			return System.currentTimeMillis() >= this.expires;
+		}
+	}
+}
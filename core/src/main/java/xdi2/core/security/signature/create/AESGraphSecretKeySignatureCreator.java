@@ -72,7 +72,7 @@ public class AESGraphSecretKeySignatureCreator extends AESSecretKeySignatureCrea
 
 		// find secret key
 
-		SecretKey secretKey = aesSecretKeyFromSecretKeyString(Keys.getSecretKey(signerXdiEntity));
+		SecretKey secretKey = this.secretKeyFromKeyCache(signerXDIAddress, Keys.getSecretKey(signerXdiEntity));
 
 		// done
 
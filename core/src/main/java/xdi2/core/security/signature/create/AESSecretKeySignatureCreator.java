@@ -14,6 +14,10 @@ import org.slf4j.LoggerFactory;
 import xdi2.core.ContextNode;
 import xdi2.core.features.signatures.AESSignature;
 import xdi2.core.features.signatures.Signatures;
+import xdi2.core.io.Normalization;
+import xdi2.core.io.Normalization.NormalizationCopyStrategy;
+import xdi2.core.security.signature.KeyCache;
+import xdi2.core.security.signature.KeyCache.CachedKey;
 import xdi2.core.syntax.XDIAddress;
 
 /**
@@ -24,13 +28,18 @@ public abstract class AESSecretKeySignatureCreator extends AbstractAESSignatureC
 
 	private static Logger log = LoggerFactory.getLogger(AESSecretKeySignatureCreator.class.getName());
 
+	private KeyCache keyCache;
+
 	public AESSecretKeySignatureCreator(String digestAlgorithm, Integer digestLength) {
 
 		super(digestAlgorithm, digestLength);
+
+		this.keyCache = KeyCache.getInstance();
 	}
 
 	public AESSecretKeySignatureCreator() {
 
+		this.keyCache = KeyCache.getInstance();
 	}
 
 	@Override
@@ -104,7 +113,11 @@ public abstract class AESSecretKeySignatureCreator extends AbstractAESSignatureC
 
 		Mac jceMac = Mac.getInstance(jceAlgorithm);
 		jceMac.init(secretKey);
-		jceMac.update(normalizedSerialization);
+
+		if (normalizedSerialization != null)
+			jceMac.update(normalizedSerialization);
+		else
+			Normalization.update(signature.getBaseContextNode(), new NormalizationCopyStrategy(), jceMac);
 
 		byte[] signatureValue = jceMac.doFinal();
 
@@ -117,6 +130,27 @@ public abstract class AESSecretKeySignatureCreator extends AbstractAESSignatureC
 	 * Helper methods
 	 */
 
+	/**
+	 * Decodes the key of a signer, or returns it from the key cache if it has been decoded before.
+	 */
+	protected SecretKey secretKeyFromKeyCache(XDIAddress signerXDIAddress, String secretKeyString) throws GeneralSecurityException {
+
+		if (secretKeyString == null) return null;
+
+		KeyCache keyCache = this.getKeyCache();
+		if (keyCache == null) return aesSecretKeyFromSecretKeyString(secretKeyString);
+
+		String fingerprint = KeyCache.fingerprint(secretKeyString);
+
+		CachedKey<SecretKey> cachedKey = keyCache.get(SecretKey.class, signerXDIAddress, fingerprint);
+		if (cachedKey != null && cachedKey.getKey() != null) return cachedKey.getKey();
+
+		SecretKey secretKey = aesSecretKeyFromSecretKeyString(secretKeyString);
+		if (secretKey != null) keyCache.put(SecretKey.class, signerXDIAddress, fingerprint, secretKey);
+
+		return secretKey;
+	}
+
 	public static SecretKey aesSecretKeyFromSecretKeyString(String secretKeyString) throws GeneralSecurityException {
 
 		if (secretKeyString == null) return null;
@@ -135,4 +169,21 @@ public abstract class AESSecretKeySignatureCreator extends AbstractAESSignatureC
 
 		return Integer.valueOf(secretKey.getEncoded().length * 8);
 	}
+
+	/*
+	 * Getters and setters
+	 */
+
+	/**
+	 * Returns the cache of decoded keys, or null if keys are not cached.
+	 */
+	public KeyCache getKeyCache() {
+
+		return this.keyCache;
+	}
+
+	public void setKeyCache(KeyCache keyCache) {
+
+		this.keyCache = keyCache;
+	}
 }
@@ -1,6 +1,5 @@
 package xdi2.core.security.signature.create;
 
-import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
 
 import xdi2.core.ContextNode;
@@ -31,7 +30,7 @@ public abstract class AbstractSignatureCreator <SIGNATURE extends Signature> imp
 
 		// get normalized serialization
 
-		byte[] normalizedSerialization = Normalization.serialize(contextNode, new NormalizationCopyStrategy()).getBytes(Charset.forName("UTF-8"));
+		byte[] normalizedSerialization = Normalization.serializeBytes(contextNode, new NormalizationCopyStrategy());
 
 		// create signature
 
@@ -49,13 +48,9 @@ public abstract class AbstractSignatureCreator <SIGNATURE extends Signature> imp
 
 		if (signature == null) throw new NullPointerException();
 
-		// get normalized serialization
-
-		byte[] normalizedSerialization = Normalization.serialize(signature.getBaseContextNode(), new NormalizationCopyStrategy()).getBytes(Charset.forName("UTF-8"));
-
-		// set signature value
+		// set signature value, with the normalized serialization of the base context node
 
-		this.setValue(normalizedSerialization, signature, signerXDIAddress);
+		this.setValue(null, signature, signerXDIAddress);
 	}
 
 	@Override
@@ -66,5 +61,10 @@ public abstract class AbstractSignatureCreator <SIGNATURE extends Signature> imp
 
 	public abstract SIGNATURE create(byte[] normalizedSerialization, ContextNode contextNode, XDIAddress signerXDIAddress) throws GeneralSecurityException;
 
+	/**
+	 * Sets a signature value.
+	 * @param normalizedSerialization The normalized serialization, or null to feed the normalized serialization
+	 * of the signature's base context node into the JCE engine with Normalization.update().
+	 */
 	public abstract void setValue(byte[] normalizedSerialization, SIGNATURE signature, XDIAddress signerXDIAddress) throws GeneralSecurityException;
 }
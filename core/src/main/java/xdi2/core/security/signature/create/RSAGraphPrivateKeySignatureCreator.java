@@ -71,7 +71,7 @@ public class RSAGraphPrivateKeySignatureCreator extends RSAPrivateKeySignatureCr
 
 		// find private key
 
-		RSAPrivateKey privateKey = rsaPrivateKeyFromPrivateKeyString(Keys.getSignaturePrivateKey(signerXdiEntity));
+		RSAPrivateKey privateKey = this.privateKeyFromKeyCache(signerXDIAddress, Keys.getSignaturePrivateKey(signerXdiEntity));
 
 		// done
 
@@ -15,6 +15,10 @@ import org.slf4j.LoggerFactory;
 import xdi2.core.ContextNode;
 import xdi2.core.features.signatures.RSASignature;
 import xdi2.core.features.signatures.Signatures;
+import xdi2.core.io.Normalization;
+import xdi2.core.io.Normalization.NormalizationCopyStrategy;
+import xdi2.core.security.signature.KeyCache;
+import xdi2.core.security.signature.KeyCache.CachedKey;
 import xdi2.core.syntax.XDIAddress;
 
 /**
@@ -25,14 +29,20 @@ public abstract class RSAPrivateKeySignatureCreator extends AbstractRSASignature
 
 	private static Logger log = LoggerFactory.getLogger(RSAPrivateKeySignatureCreator.class.getName());
 
+	private KeyCache keyCache;
+
 	public RSAPrivateKeySignatureCreator(String digestAlgorithm, Integer digestLength) {
 
 		super(digestAlgorithm, digestLength);
+
+		this.keyCache = KeyCache.getInstance();
 	}
 
 	public RSAPrivateKeySignatureCreator() {
 
 		super();
+
+		this.keyCache = KeyCache.getInstance();
 	}
 
 	@Override
@@ -106,7 +116,11 @@ public abstract class RSAPrivateKeySignatureCreator extends AbstractRSASignature
 
 		java.security.Signature jceSignature = java.security.Signature.getInstance(jceAlgorithm);
 		jceSignature.initSign(privateKey);
-		jceSignature.update(normalizedSerialization);
+
+		if (normalizedSerialization != null)
+			jceSignature.update(normalizedSerialization);
+		else
+			Normalization.update(signature.getBaseContextNode(), new NormalizationCopyStrategy(), jceSignature);
 
 		byte[] signatureValue = jceSignature.sign();
 
@@ -119,6 +133,27 @@ public abstract class RSAPrivateKeySignatureCreator extends AbstractRSASignature
 	 * Helper methods
 	 */
 
+	/**
+	 * Decodes the key of a signer, or returns it from the key cache if it has been decoded before.
+	 */
+	protected RSAPrivateKey privateKeyFromKeyCache(XDIAddress signerXDIAddress, String privateKeyString) throws GeneralSecurityException {
+
+		if (privateKeyString == null) return null;
+
+		KeyCache keyCache = this.getKeyCache();
+		if (keyCache == null) return rsaPrivateKeyFromPrivateKeyString(privateKeyString);
+
+		String fingerprint = KeyCache.fingerprint(privateKeyString);
+
+		CachedKey<RSAPrivateKey> cachedKey = keyCache.get(RSAPrivateKey.class, signerXDIAddress, fingerprint);
+		if (cachedKey != null && cachedKey.getKey() != null) return cachedKey.getKey();
+
+		RSAPrivateKey privateKey = rsaPrivateKeyFromPrivateKeyString(privateKeyString);
+		if (privateKey != null) keyCache.put(RSAPrivateKey.class, signerXDIAddress, fingerprint, privateKey);
+
+		return privateKey;
+	}
+
 	public static RSAPrivateKey rsaPrivateKeyFromPrivateKeyString(String privateKeyString) throws GeneralSecurityException {
 
 		if (privateKeyString == null) return null;
@@ -143,4 +178,21 @@ public abstract class RSAPrivateKeySignatureCreator extends AbstractRSASignature
 
 		throw new IllegalArgumentException("Cannot determine key length for private key.");
 	}
+
+	/*
+	 * Getters and setters
+	 */
+
+	/**
+	 * Returns the cache of decoded keys, or null if keys are not cached.
+	 */
+	public KeyCache getKeyCache() {
+
+		return this.keyCache;
+	}
+
+	public void setKeyCache(KeyCache keyCache) {
+
+		this.keyCache = keyCache;
+	}
 }
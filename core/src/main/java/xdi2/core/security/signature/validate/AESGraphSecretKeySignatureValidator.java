@@ -58,7 +58,7 @@ public class AESGraphSecretKeySignatureValidator extends AESSecretKeySignatureVa
 
 		// find secret key
 
-		SecretKey secretKey = aesSecretKeyFromSecretKeyString(Keys.getSecretKey(signerXdiEntity));
+		SecretKey secretKey = this.secretKeyFromKeyCache(signerXDIAddress, Keys.getSecretKey(signerXdiEntity));
 
 		// done
 
@@ -13,6 +13,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import xdi2.core.features.signatures.AESSignature;
+import xdi2.core.io.Normalization;
+import xdi2.core.io.Normalization.NormalizationCopyStrategy;
+import xdi2.core.security.signature.KeyCache;
+import xdi2.core.security.signature.KeyCache.CachedKey;
 import xdi2.core.syntax.XDIAddress;
 
 /**
@@ -23,10 +27,24 @@ public abstract class AESSecretKeySignatureValidator extends AbstractAESSignatur
 
 	private static Logger log = LoggerFactory.getLogger(AESSecretKeySignatureValidator.class.getName());
 
+	private KeyCache keyCache;
+
 	public AESSecretKeySignatureValidator() {
 
+		this.keyCache = KeyCache.getInstance();
 	}
 
+	@Override
+	public boolean validate(byte[] signatureValue, AESSignature signature, XDIAddress signerXDIAddress) throws GeneralSecurityException {
+
+		return this.validate(null, signatureValue, signature, signerXDIAddress);
+	}
+
+	/**
+	 * Validates a signature value.
+	 * @param normalizedSerialization The normalized serialization, or null to feed the normalized serialization
+	 * of the signature's base context node into the JCE engine with Normalization.update().
+	 */
 	@Override
 	public boolean validate(byte[] normalizedSerialization, byte[] signatureValue, AESSignature signature, XDIAddress signerXDIAddress) throws GeneralSecurityException {
 
@@ -50,7 +68,11 @@ public abstract class AESSecretKeySignatureValidator extends AbstractAESSignatur
 
 		Mac jceMac = Mac.getInstance(jceAlgorithm);
 		jceMac.init(secretKey);
-		jceMac.update(normalizedSerialization);
+
+		if (normalizedSerialization != null)
+			jceMac.update(normalizedSerialization);
+		else
+			Normalization.update(signature.getBaseContextNode(), new NormalizationCopyStrategy(), jceMac);
 
 		return Arrays.equals(signatureValue, jceMac.doFinal());
 	}
@@ -61,6 +83,27 @@ public abstract class AESSecretKeySignatureValidator extends AbstractAESSignatur
 	 * Helper methods
 	 */
 
+	/**
+	 * Decodes the key of a signer, or returns it from the key cache if it has been decoded before.
+	 */
+	protected SecretKey secretKeyFromKeyCache(XDIAddress signerXDIAddress, String secretKeyString) throws GeneralSecurityException {
+
+		if (secretKeyString == null) return null;
+
+		KeyCache keyCache = this.getKeyCache();
+		if (keyCache == null) return aesSecretKeyFromSecretKeyString(secretKeyString);
+
+		String fingerprint = KeyCache.fingerprint(secretKeyString);
+
+		CachedKey<SecretKey> cachedKey = keyCache.get(SecretKey.class, signerXDIAddress, fingerprint);
+		if (cachedKey != null && cachedKey.getKey() != null) return cachedKey.getKey();
+
+		SecretKey secretKey = aesSecretKeyFromSecretKeyString(secretKeyString);
+		if (secretKey != null) keyCache.put(SecretKey.class, signerXDIAddress, fingerprint, secretKey);
+
+		return secretKey;
+	}
+
 	public static SecretKey aesSecretKeyFromSecretKeyString(String secretKeyString) throws GeneralSecurityException {
 
 		if (secretKeyString == null) return null;
@@ -69,4 +112,21 @@ public abstract class AESSecretKeySignatureValidator extends AbstractAESSignatur
 
 		return new SecretKeySpec(secretKeyBytes, 0, secretKeyBytes.length, "AES");
 	}
+
+	/*
+	 * Getters and setters
+	 */
+
+	/**
+	 * Returns the cache of decoded keys, or null if keys are not cached.
+	 */
+	public KeyCache getKeyCache() {
+
+		return this.keyCache;
+	}
+
+	public void setKeyCache(KeyCache keyCache) {
+
+		this.keyCache = keyCache;
+	}
 }
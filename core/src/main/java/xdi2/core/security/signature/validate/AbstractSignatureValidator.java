@@ -1,6 +1,5 @@
 package xdi2.core.security.signature.validate;
 
-import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
 
 import xdi2.core.features.signatures.Signature;
@@ -29,10 +28,6 @@ public abstract class AbstractSignatureValidator <SIGNATURE extends Signature> i
 
 		if (signature == null) throw new NullPointerException();
 
-		// get normalized serialization
-
-		byte[] normalizedSerialization = Normalization.serialize(signature.getBaseContextNode(), new NormalizationCopyStrategy()).getBytes(Charset.forName("UTF-8"));
-
 		// get signature value
 
 		byte[] signatureValue = signature.getSignatureValue();
@@ -40,7 +35,7 @@ public abstract class AbstractSignatureValidator <SIGNATURE extends Signature> i
 
 		// validate signature
 
-		return this.validate(normalizedSerialization, signatureValue, (SIGNATURE) signature, signerXDIAddress);
+		return this.validate(signatureValue, (SIGNATURE) signature, signerXDIAddress);
 	}
 
 	@Override
@@ -49,5 +44,17 @@ public abstract class AbstractSignatureValidator <SIGNATURE extends Signature> i
 		return this.validateSignature(signature, null);
 	}
 
+	/**
+	 * Validates a signature value against the normalized serialization of the signature's base context node.
+	 * By default, the normalized serialization is created and passed to validate(byte[], byte[], SIGNATURE, XDIAddress).
+	 * Subclasses can override this to feed it into the JCE engine with Normalization.update() instead.
+	 */
+	public boolean validate(byte[] signatureValue, SIGNATURE signature, XDIAddress signerXDIAddress) throws GeneralSecurityException {
+
+		byte[] normalizedSerialization = Normalization.serializeBytes(signature.getBaseContextNode(), new NormalizationCopyStrategy());
+
+		return this.validate(normalizedSerialization, signatureValue, signature, signerXDIAddress);
+	}
+
 	public abstract boolean validate(byte[] normalizedSerialization, byte[] signatureValue, SIGNATURE signature, XDIAddress signerXDIAddress) throws GeneralSecurityException;
 }
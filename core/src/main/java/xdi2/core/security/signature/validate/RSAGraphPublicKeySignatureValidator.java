@@ -57,7 +57,7 @@ public class RSAGraphPublicKeySignatureValidator extends RSAPublicKeySignatureVa
 
 		// find public key
 
-		RSAPublicKey publicKey = rsaPublicKeyFromPublicKeyString(Keys.getSignaturePublicKey(signerXdiEntity));
+		RSAPublicKey publicKey = this.publicKeyFromKeyCache(signerXDIAddress, Keys.getSignaturePublicKey(signerXdiEntity));
 
 		// done
 
@@ -11,6 +11,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import xdi2.core.features.signatures.RSASignature;
+import xdi2.core.io.Normalization;
+import xdi2.core.io.Normalization.NormalizationCopyStrategy;
+import xdi2.core.security.signature.KeyCache;
+import xdi2.core.security.signature.KeyCache.CachedKey;
 import xdi2.core.syntax.XDIAddress;
 
 /**
@@ -21,10 +25,24 @@ public abstract class RSAPublicKeySignatureValidator extends AbstractRSASignatur
 
 	private static Logger log = LoggerFactory.getLogger(RSAPublicKeySignatureValidator.class.getName());
 
+	private KeyCache keyCache;
+
 	public RSAPublicKeySignatureValidator() {
 
+		this.keyCache = KeyCache.getInstance();
 	}
 
+	@Override
+	public boolean validate(byte[] signatureValue, RSASignature signature, XDIAddress signerXDIAddress) throws GeneralSecurityException {
+
+		return this.validate(null, signatureValue, signature, signerXDIAddress);
+	}
+
+	/**
+	 * Validates a signature value.
+	 * @param normalizedSerialization The normalized serialization, or null to feed the normalized serialization
+	 * of the signature's base context node into the JCE engine with Normalization.update().
+	 */
 	@Override
 	public boolean validate(byte[] normalizedSerialization, byte[] signatureValue, RSASignature signature, XDIAddress signerXDIAddress) throws GeneralSecurityException {
 
@@ -48,7 +66,11 @@ public abstract class RSAPublicKeySignatureValidator extends AbstractRSASignatur
 
 		java.security.Signature jceSignature = java.security.Signature.getInstance(jceAlgorithm);
 		jceSignature.initVerify(publicKey);
-		jceSignature.update(normalizedSerialization);
+
+		if (normalizedSerialization != null)
+			jceSignature.update(normalizedSerialization);
+		else
+			Normalization.update(signature.getBaseContextNode(), new NormalizationCopyStrategy(), jceSignature);
 
 		return jceSignature.verify(signatureValue);
 	}
@@ -59,6 +81,27 @@ public abstract class RSAPublicKeySignatureValidator extends AbstractRSASignatur
 	 * Helper methods
 	 */
 
+	/**
+	 * Decodes the key of a signer, or returns it from the key cache if it has been decoded before.
+	 */
+	protected RSAPublicKey publicKeyFromKeyCache(XDIAddress signerXDIAddress, String publicKeyString) throws GeneralSecurityException {
+
+		if (publicKeyString == null) return null;
+
+		KeyCache keyCache = this.getKeyCache();
+		if (keyCache == null) return rsaPublicKeyFromPublicKeyString(publicKeyString);
+
+		String fingerprint = KeyCache.fingerprint(publicKeyString);
+
+		CachedKey<RSAPublicKey> cachedKey = keyCache.get(RSAPublicKey.class, signerXDIAddress, fingerprint);
+		if (cachedKey != null && cachedKey.getKey() != null) return cachedKey.getKey();
+
+		RSAPublicKey publicKey = rsaPublicKeyFromPublicKeyString(publicKeyString);
+		if (publicKey != null) keyCache.put(RSAPublicKey.class, signerXDIAddress, fingerprint, publicKey);
+
+		return publicKey;
+	}
+
 	public static RSAPublicKey rsaPublicKeyFromPublicKeyString(String publicKeyString) throws GeneralSecurityException {
 
 		if (publicKeyString == null) return null;
@@ -68,4 +111,21 @@ public abstract class RSAPublicKeySignatureValidator extends AbstractRSASignatur
 
 		return (RSAPublicKey) keyFactory.generatePublic(keySpec);
 	}
+
+	/*
+	 * Getters and setters
+	 */
+
+	/**
+	 * Returns the cache of decoded keys, or null if keys are not cached.
+	 */
+	public KeyCache getKeyCache() {
+
+		return this.keyCache;
+	}
+
+	public void setKeyCache(KeyCache keyCache) {
+
+		this.keyCache = keyCache;
+	}
 }
@@ -8,17 +8,32 @@ import java.util.List;
 import xdi2.core.syntax.parser.ParserRegistry;
 import xdi2.core.util.XDIAddressUtil;
 
+/**
+ * An XDI address, i.e. a sequence of arcs.
+ * The arcs are kept in an array that may be shared between addresses, together with
+ * an offset and a length. This makes it cheap to derive parent, local and sub-addresses.
+ * The string form and the hash code are computed lazily.
+ */
 public final class XDIAddress extends XDIIdentifier {
 
 	private static final long serialVersionUID = 2153450076797516335L;
 
-	private List<XDIArc> arcs;
+	private static final XDIArc[] EMPTY_XDIARCS = new XDIArc[0];
 
-	private XDIAddress(String string, List<XDIArc> arcs) {
+	private final XDIArc[] arcs;
+	private final int offset;
+	private final int length;
+
+	private transient int hash;
+	private transient List<XDIArc> arcsList;
+
+	private XDIAddress(String string, XDIArc[] arcs, int offset, int length) {
 
 		super(string);
 
 		this.arcs = arcs;
+		this.offset = offset;
+		this.length = length;
 	}
 
 	public static XDIAddress create(String string) {
@@ -28,15 +43,9 @@ public final class XDIAddress extends XDIIdentifier {
 
 	static XDIAddress fromComponents(String string, List<XDIArc> XDIarcs) {
 
-		if (string == null) {
-
-			StringBuffer buffer = new StringBuffer();
-			for (XDIArc XDIarc : XDIarcs) buffer.append(XDIarc.toString());
-
-			string = buffer.toString();
-		}
+		XDIArc[] arcs = XDIarcs.isEmpty() ? EMPTY_XDIARCS : XDIarcs.toArray(new XDIArc[XDIarcs.size()]);
 
-		return new XDIAddress(string, XDIarcs);
+		return new XDIAddress(string, arcs, 0, arcs.length);
 	}
 
 	/*
@@ -50,7 +59,55 @@ public final class XDIAddress extends XDIIdentifier {
 
 	public static XDIAddress fromComponent(XDIArc XDIarc) {
 
-		return new XDIAddress(XDIarc.toString(), Collections.singletonList(XDIarc));
+		return new XDIAddress(XDIarc.toString(), new XDIArc[] { XDIarc }, 0, 1);
+	}
+
+	/**
+	 * Concats addresses into a new address. Null addresses are skipped.
+	 * This copies only the arc references, not the arcs or their strings.
+	 */
+	public static XDIAddress fromComponents(XDIAddress... XDIaddresses) {
+
+		int length = 0;
+		XDIAddress nonEmptyXDIAddress = null;
+		int nonEmptyXDIAddresses = 0;
+
+		for (XDIAddress XDIaddress : XDIaddresses) {
+
+			if (XDIaddress == null || XDIaddress.length == 0) continue;
+
+			length += XDIaddress.length;
+			nonEmptyXDIAddress = XDIaddress;
+			nonEmptyXDIAddresses++;
+		}
+
+		if (nonEmptyXDIAddresses == 0) return new XDIAddress("", EMPTY_XDIARCS, 0, 0);
+		if (nonEmptyXDIAddresses == 1) return nonEmptyXDIAddress;
+
+		XDIArc[] arcs = new XDIArc[length];
+		int pos = 0;
+
+		for (XDIAddress XDIaddress : XDIaddresses) {
+
+			if (XDIaddress == null || XDIaddress.length == 0) continue;
+
+			System.arraycopy(XDIaddress.arcs, XDIaddress.offset, arcs, pos, XDIaddress.length);
+			pos += XDIaddress.length;
+		}
+
+		return new XDIAddress(null, arcs, 0, length);
+	}
+
+	/**
+	 * Returns the address consisting of the arcs from startIndex (inclusive) to endIndex (exclusive).
+	 * The new address shares the arcs of this address.
+	 */
+	public XDIAddress subXDIAddress(int startIndex, int endIndex) {
+
+		if (startIndex < 0 || endIndex > this.length || startIndex > endIndex) throw new IndexOutOfBoundsException("Invalid sub-address " + startIndex + "-" + endIndex + " of address with " + this.length + " arcs.");
+		if (startIndex == 0 && endIndex == this.length) return this;
+
+		return new XDIAddress(null, this.arcs, this.offset + startIndex, endIndex - startIndex);
 	}
 
 	public XDIAddress concatXDIAddress(XDIArc XDIarc) {
@@ -77,31 +134,35 @@ public final class XDIAddress extends XDIIdentifier {
 
 	public List<XDIArc> getXDIArcs() {
 
-		return this.arcs;
+		if (this.arcsList == null) this.arcsList = Collections.unmodifiableList(Arrays.asList(this.arcs).subList(this.offset, this.offset + this.length));
+
+		return this.arcsList;
 	}
 
 	public int getNumXDIArcs() {
 
-		return this.arcs.size();
+		return this.length;
 	}
 
 	public XDIArc getXDIArc(int i) {
 
-		return this.arcs.get(i);
+		if (i < 0 || i >= this.length) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + this.length);
+
+		return this.arcs[this.offset + i];
 	}
 
 	public XDIArc getFirstXDIArc() {
 
-		if (this.arcs.size() < 1) return null;
+		if (this.length < 1) return null;
 
-		return this.arcs.get(0);
+		return this.arcs[this.offset];
 	}
 
 	public XDIArc getLastXDIArc() {
 
-		if (this.arcs.size() < 1) return null;
+		if (this.length < 1) return null;
 
-		return this.arcs.get(this.arcs.size() - 1);
+		return this.arcs[this.offset + this.length - 1];
 	}
 
 	public XDIAddress getContextNodeXDIAddress() {
@@ -122,4 +183,102 @@ public final class XDIAddress extends XDIIdentifier {
 
 		return XDIarc.isLiteralNodeXDIArc();
 	}
+
+	/*
+	 * Object methods
+	 */
+
+	@Override
+	public boolean equals(Object object) {
+
+		if (object == this) return true;
+		if (! (object instanceof XDIAddress)) return super.equals(object);
+
+		XDIAddress other = (XDIAddress) object;
+
+		if (this.hashCode() != other.hashCode()) return false;
+
+		// most of the time, equal addresses consist of equal arcs
+
+		if (this.length == other.length) {
+
+			boolean equalXDIArcs = true;
+
+			for (int i = 0; i < this.length; i++) {
+
+				if (! this.arcs[this.offset + i].equals(other.arcs[other.offset + i])) { equalXDIArcs = false; break; }
+			}
+
+			if (equalXDIArcs) return true;
+		}
+
+		return super.equals(object);
+	}
+
+	/**
+	 * The hash code is the same as the hash code of the string form of the address,
+	 * but it is computed from the (cached) hash codes of the arcs' strings,
+	 * so that the string form of the address does not have to be built.
+	 */
+	@Override
+	public int hashCode() {
+
+		int hash = this.hash;
+
+		if (hash == 0) {
+
+			if (this.string != null) {
+
+				hash = this.string.hashCode();
+			} else {
+
+				for (int i = this.offset; i < this.offset + this.length; i++) {
+
+					String arcString = this.arcs[i].toString();
+
+					hash = hash * pow31(arcString.length()) + arcString.hashCode();
+				}
+			}
+
+			this.hash = hash;
+		}
+
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+
+		String string = this.string;
+
+		if (string == null) {
+
+			StringBuilder builder = new StringBuilder();
+			for (int i = this.offset; i < this.offset + this.length; i++) builder.append(this.arcs[i].toString());
+
+			string = builder.toString();
+
+			this.string = string;
+		}
+
+		return string;
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private static int pow31(int exponent) {
+
+		int result = 1, base = 31;
+
+		while (exponent > 0) {
+
+			if ((exponent & 1) != 0) result *= base;
+			base *= base;
+			exponent >>= 1;
+		}
+
+		return result;
+	}
 }
@@ -19,9 +19,12 @@ public abstract class XDIIdentifier implements Serializable, Cloneable, Comparab
 		if (other == this) return 0;
 		if (other == null) throw new NullPointerException();
 
-		if (this.string == null || other.string == null) throw new NullPointerException();
+		String string = this.toString();
+		String otherString = other.toString();
 
-		return this.string.compareTo(other.string);
+		if (string == null || otherString == null) throw new NullPointerException();
+
+		return string.compareTo(otherString);
 	}
 
 	@Override
@@ -34,17 +37,22 @@ public abstract class XDIIdentifier implements Serializable, Cloneable, Comparab
 
 		XDIIdentifier other = (XDIIdentifier) object;
 
-		if (this.string == null || other.string == null) return false;
+		String string = this.toString();
+		String otherString = other.toString();
+
+		if (string == null || otherString == null) return false;
 
-		return this.string.equals(other.string);
+		return string.equals(otherString);
 	}
 
 	@Override
 	public int hashCode() {
 
-		if (this.string == null) return 0;
+		String string = this.toString();
+
+		if (string == null) return 0;
 
-		return this.string.hashCode();
+		return string.hashCode();
 	}
 
 	@Override
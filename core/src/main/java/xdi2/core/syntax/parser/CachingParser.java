@@ -0,0 +1,194 @@
+package xdi2.core.syntax.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import xdi2.core.syntax.Parser;
+import xdi2.core.syntax.ParserAbstract;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.core.syntax.XDIXRef;
+import xdi2.core.util.BoundedCache;
+
+/**
+ * A parser that remembers the results of another parser in bounded caches,
+ * so that parsing the same string again returns the same instance.
+ * Optionally, the arcs of parsed addresses and the components of parsed statements
+ * are interned as well, so that repeated arcs share a single instance.
+ *
+ * @author markus
+ */
+public class CachingParser extends ParserAbstract implements Parser {
+
+	public static final int DEFAULT_MAX_SIZE = 10000;
+	public static final boolean DEFAULT_INTERN = true;
+
+	private Parser parser;
+	private boolean intern;
+
+	private BoundedCache<String, XDIStatement> XDIStatementCache;
+	private BoundedCache<String, XDIAddress> XDIAddressCache;
+	private BoundedCache<String, XDIArc> XDIArcCache;
+	private BoundedCache<String, XDIXRef> XDIXRefCache;
+
+	public CachingParser(Parser parser, int maxSize, boolean intern) {
+
+		this.parser = parser;
+		this.intern = intern;
+
+		this.XDIStatementCache = new BoundedCache<String, XDIStatement> (maxSize);
+		this.XDIAddressCache = new BoundedCache<String, XDIAddress> (maxSize);
+		this.XDIArcCache = new BoundedCache<String, XDIArc> (maxSize);
+		this.XDIXRefCache = new BoundedCache<String, XDIXRef> (maxSize);
+	}
+
+	public CachingParser(Parser parser) {
+
+		this(parser, DEFAULT_MAX_SIZE, DEFAULT_INTERN);
+	}
+
+	@Override
+	public XDIStatement parseXDIStatement(String string) {
+
+		XDIStatement XDIstatement = this.XDIStatementCache.get(string);
+		if (XDIstatement != null) return XDIstatement;
+
+		XDIstatement = this.parser.parseXDIStatement(string);
+
+		if (this.intern) {
+
+			XDIstatement = this.newXDIStatement(
+					XDIstatement.toString(),
+					this.internXDIAddress(XDIstatement.getSubject()),
+					this.internComponent(XDIstatement.getPredicate()),
+					this.internComponent(XDIstatement.getObject()));
+		}
+
+		return this.XDIStatementCache.putIfAbsent(string, XDIstatement);
+	}
+
+	@Override
+	public XDIAddress parseXDIAddress(String string) {
+
+		XDIAddress XDIaddress = this.XDIAddressCache.get(string);
+		if (XDIaddress != null) return XDIaddress;
+
+		XDIaddress = this.parser.parseXDIAddress(string);
+
+		if (this.intern) {
+
+			List<XDIArc> XDIarcs = new ArrayList<XDIArc> (XDIaddress.getNumXDIArcs());
+			for (XDIArc XDIarc : XDIaddress.getXDIArcs()) XDIarcs.add(this.internXDIArc(XDIarc));
+
+			XDIaddress = this.newXDIAddress(XDIaddress.toString(), XDIarcs);
+		}
+
+		return this.XDIAddressCache.putIfAbsent(string, XDIaddress);
+	}
+
+	@Override
+	public XDIArc parseXDIArc(String string) {
+
+		XDIArc XDIarc = this.XDIArcCache.get(string);
+		if (XDIarc != null) return XDIarc;
+
+		XDIarc = this.parser.parseXDIArc(string);
+
+		return this.XDIArcCache.putIfAbsent(string, XDIarc);
+	}
+
+	@Override
+	public XDIXRef parseXDIXRef(String string) {
+
+		XDIXRef XDIxref = this.XDIXRefCache.get(string);
+		if (XDIxref != null) return XDIxref;
+
+		XDIxref = this.parser.parseXDIXRef(string);
+
+		return this.XDIXRefCache.putIfAbsent(string, XDIxref);
+	}
+
+	/**
+	 * Removes all entries from the caches.
+	 */
+	public void clear() {
+
+		this.XDIStatementCache.clear();
+		this.XDIAddressCache.clear();
+		this.XDIArcCache.clear();
+		this.XDIXRefCache.clear();
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private XDIAddress internXDIAddress(XDIAddress XDIaddress) {
+
+		XDIAddress internedXDIAddress = this.XDIAddressCache.get(XDIaddress.toString());
+		if (internedXDIAddress != null) return internedXDIAddress;
+
+		List<XDIArc> XDIarcs = new ArrayList<XDIArc> (XDIaddress.getNumXDIArcs());
+		for (XDIArc XDIarc : XDIaddress.getXDIArcs()) XDIarcs.add(this.internXDIArc(XDIarc));
+
+		return this.XDIAddressCache.putIfAbsent(XDIaddress.toString(), this.newXDIAddress(XDIaddress.toString(), XDIarcs));
+	}
+
+	private XDIArc internXDIArc(XDIArc XDIarc) {
+
+		return this.XDIArcCache.putIfAbsent(XDIarc.toString(), XDIarc);
+	}
+
+	private Object internComponent(Object component) {
+
+		if (component instanceof XDIAddress) return this.internXDIAddress((XDIAddress) component);
+		if (component instanceof XDIArc) return this.internXDIArc((XDIArc) component);
+
+		return component;
+	}
+
+	/*
+	 * Getters and setters
+	 */
+
+	public Parser getParser() {
+
+		return this.parser;
+	}
+
+	public boolean isIntern() {
+
+		return this.intern;
+	}
+
+	public BoundedCache<String, XDIStatement> getXDIStatementCache() {
+
+		return this.XDIStatementCache;
+	}
+
+	public BoundedCache<String, XDIAddress> getXDIAddressCache() {
+
+		return this.XDIAddressCache;
+	}
+
+	public BoundedCache<String, XDIArc> getXDIArcCache() {
+
+		return this.XDIArcCache;
+	}
+
+	public BoundedCache<String, XDIXRef> getXDIXRefCache() {
+
+		return this.XDIXRefCache;
+	}
+
+	/*
+	 * Object methods
+	 */
+
+	@Override
+	public String toString() {
+
+		return this.getClass().getSimpleName() + " [statements: " + this.XDIStatementCache + "; addresses: " + this.XDIAddressCache + "; arcs: " + this.XDIArcCache + "; xrefs: " + this.XDIXRefCache + "]";
+	}
+}
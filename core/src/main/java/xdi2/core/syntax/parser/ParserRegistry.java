@@ -2,9 +2,14 @@ package xdi2.core.syntax.parser;
 
 import xdi2.core.syntax.Parser;
 
+/**
+ * Holds the parser that is used by XDIStatement.create(), XDIAddress.create(), XDIArc.create() and XDIXRef.create().
+ * By default this is a SinglePassParserImpl wrapped in a CachingParser, so that parsing the same identifiers
+ * again and again does not repeat the work.
+ */
 public class ParserRegistry {
 
-	private static ParserRegistry instance = new ParserRegistry(new ParserImpl());
+	private static ParserRegistry instance = new ParserRegistry(new CachingParser(new SinglePassParserImpl()));
 
 	private Parser parser;
 
@@ -0,0 +1,285 @@
+package xdi2.core.syntax.parser;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import xdi2.core.syntax.Parser;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
+import xdi2.core.syntax.XDIXRef;
+
+/**
+ * An XDI parser that parses addresses and arcs in a single pass over the input string.
+ * Character classes are looked up in a table, open pairs are tracked on a primitive char stack,
+ * and arcs are built directly from offsets into the input string.
+ * Statements and cross references are parsed the same way as in ParserImpl.
+ *
+ * It can be used by calling ParserRegistry.getInstance().setParser(new SinglePassParserImpl()),
+ * or wrapped in a CachingParser.
+ */
+public class SinglePassParserImpl extends ParserImpl implements Parser {
+
+	private static final Logger log = LoggerFactory.getLogger(SinglePassParserImpl.class);
+
+	private static final int C_CS = 1;
+	private static final int C_IMMUTABLE = 2;
+	private static final int C_RELATIVE = 4;
+	private static final int C_OPEN = 8;
+	private static final int C_LITERAL = 16;
+
+	/*
+	 * The character tables are built from literals rather than from XDIConstants,
+	 * since XDIConstants itself uses the parser during its static initialization.
+	 */
+
+	private static final char XS_VARIABLE_OPEN = '{';
+	private static final char XS_DEFINITION_OPEN = '|';
+	private static final char XS_COLLECTION_OPEN = '[';
+	private static final char XS_ATTRIBUTE_OPEN = '<';
+	private static final char XS_ROOT_OPEN = '(';
+
+	private static final int[] CLASSES = new int[128];
+	private static final char[] CLOSING = new char[128];
+
+	static {
+
+		for (char c : new char[] { '=', '+', '$', '#', '@', '*', '&' }) CLASSES[c] |= C_CS;
+
+		CLASSES['!'] |= C_IMMUTABLE;
+		CLASSES['~'] |= C_RELATIVE;
+
+		for (String xs : new String[] { "{}", "||", "[]", "<>", "()" }) {
+
+			CLASSES[xs.charAt(0)] |= C_OPEN;
+			CLOSING[xs.charAt(0)] = xs.charAt(1);
+		}
+
+		for (char c = 'A'; c <= 'Z'; c++) CLASSES[c] |= C_LITERAL;
+		for (char c = 'a'; c <= 'z'; c++) CLASSES[c] |= C_LITERAL;
+		for (char c = '0'; c <= '9'; c++) CLASSES[c] |= C_LITERAL;
+		for (char c : new char[] { '-', '.', ':', '_', '~' }) CLASSES[c] |= C_LITERAL;
+	}
+
+	@Override
+	public XDIAddress parseXDIAddress(String string) {
+
+		if (log.isTraceEnabled()) log.trace("Parsing address: " + string);
+
+		int len = string.length();
+		int start = 0, pos = 0;
+
+		char[] stack = new char[8];
+		int depth = 0;
+
+		List<XDIArc> arcs = new ArrayList<XDIArc> (4);
+
+		while (pos < len) {
+
+			// parse beginning of arc
+
+			char c;
+
+			if (pos < len && (c = string.charAt(pos)) == XS_VARIABLE_OPEN) { stack = push(stack, depth++, c); pos++; }
+			if (pos < len && (c = string.charAt(pos)) == XS_DEFINITION_OPEN) { stack = push(stack, depth++, c); pos++; }
+			if (pos < len && (c = string.charAt(pos)) == XS_COLLECTION_OPEN) { stack = push(stack, depth++, c); pos++; }
+			if (pos < len && (c = string.charAt(pos)) == XS_ATTRIBUTE_OPEN) { stack = push(stack, depth++, c); pos++; }
+			if (pos < len && is(string.charAt(pos), C_CS)) pos++;
+			if (pos < len && is(string.charAt(pos), C_IMMUTABLE)) pos++;
+			if (pos < len && is(string.charAt(pos), C_RELATIVE)) pos++;
+			if (pos < len && (c = string.charAt(pos)) == XS_ROOT_OPEN) { stack = push(stack, depth++, c); pos++; }
+
+			// parse to the end of the arc
+
+			while (pos < len) {
+
+				c = string.charAt(pos);
+
+				if (depth == 0) {
+
+					// reached beginning of the next arc
+					// intentionally don't check for relative here, since it's a valid character
+
+					if (is(c, C_OPEN | C_CS | C_IMMUTABLE)) break;
+				} else {
+
+					// pair being closed?
+
+					if (c == stack[depth - 1]) {
+
+						depth--;
+						pos++;
+						continue;
+					}
+
+					// new pair being opened?
+
+					if (is(c, C_OPEN)) {
+
+						stack = push(stack, depth++, c);
+						pos++;
+						continue;
+					}
+				}
+
+				pos++;
+			}
+
+			if (depth > 0) throw new ParserException("Missing closing character '" + stack[depth - 1] + "' at position " + pos + ".");
+
+			arcs.add(this.parseXDIArc(string, start, pos));
+
+			start = pos;
+		}
+
+		// done
+
+		return this.newXDIAddress(string, arcs);
+	}
+
+	@Override
+	public XDIArc parseXDIArc(String string) {
+
+		return this.parseXDIArc(string, 0, string.length());
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	/**
+	 * Parses the arc between the given offsets of a string.
+	 */
+	private XDIArc parseXDIArc(String string, int start, int end) {
+
+		String arcString = (start == 0 && end == string.length()) ? string : string.substring(start, end);
+
+		if (log.isTraceEnabled()) log.trace("Parsing arc: " + arcString);
+
+		boolean variable = false;
+		boolean definition = false;
+		boolean collection = false;
+		boolean attribute = false;
+		Character cs = null;
+		boolean immutable = false;
+		boolean relative = false;
+		String literal = null;
+		XDIXRef xref = null;
+
+		int pos = start, len = end;
+
+		// extract pairs
+
+		if (pos < len && string.charAt(pos) == XS_VARIABLE_OPEN) { checkClosing(arcString, string, start, pos, len, "variable"); variable = true; pos++; len--; }
+		if (pos < len && string.charAt(pos) == XS_DEFINITION_OPEN) { checkClosing(arcString, string, start, pos, len, "definition"); definition = true; pos++; len--; }
+		if (pos < len && string.charAt(pos) == XS_COLLECTION_OPEN) { checkClosing(arcString, string, start, pos, len, "collection"); collection = true; pos++; len--; }
+		if (pos < len && string.charAt(pos) == XS_ATTRIBUTE_OPEN) { checkClosing(arcString, string, start, pos, len, "attribute"); attribute = true; pos++; len--; }
+
+		// extract cs, immutable, relative
+
+		if (pos < len && is(string.charAt(pos), C_CS)) { cs = Character.valueOf(string.charAt(pos)); pos++; }
+		if (pos < len && is(string.charAt(pos), C_IMMUTABLE)) { immutable = true; pos++; }
+		if (pos < len && is(string.charAt(pos), C_RELATIVE)) { relative = true; pos++; }
+
+		// parse the rest, either xref or literal
+
+		if (pos < len) {
+
+			if (string.charAt(pos) == XS_ROOT_OPEN) {
+
+				xref = this.parseXDIXRef(string.substring(pos, len));
+			} else {
+
+				if (pos == start) throw new ParserException("Invalid arc: " + arcString + " (no context symbol or cross reference)");
+				literal = parseLiteral(string, pos, len);
+			}
+		}
+
+		// done
+
+		return this.newXDIArc(arcString, cs, variable, definition, collection, attribute, immutable, relative, literal, xref);
+	}
+
+	private static void checkClosing(String arcString, String string, int start, int pos, int len, String what) {
+
+		char closing = CLOSING[string.charAt(pos)];
+
+		if (string.charAt(len - 1) != closing) throw new ParserException("Invalid arc: " + arcString + " (invalid closing '" + closing + "' character for " + what + " at position " + (pos - start) + ")");
+	}
+
+	private static String parseLiteral(String string, int start, int end) {
+
+		// only decode if there is anything to decode
+
+		for (int pos = start; pos < end; pos++) {
+
+			char c = string.charAt(pos);
+
+			if (c == '%' || c == '+') return checkLiteral(urlDecode(string.substring(start, end)));
+		}
+
+		for (int pos = start; pos < end; pos++) {
+
+			if (! isLiteral(string.charAt(pos))) return checkLiteral(string.substring(start, end));
+		}
+
+		return string.substring(start, end);
+	}
+
+	private static String checkLiteral(String string) {
+
+		for (int pos = 0; pos < string.length(); pos++) {
+
+			char c = string.charAt(pos);
+
+			if (! isLiteral(c)) throw new ParserException("Invalid character '" + c + "' at position " + pos + " of literal " + string);
+		}
+
+		return string;
+	}
+
+	private static String urlDecode(String string) {
+
+		try {
+
+			return URLDecoder.decode(string, "UTF-8");
+		} catch (UnsupportedEncodingException ex) {
+
+			throw new ParserException(ex.getMessage(), ex);
+		}
+	}
+
+	private static boolean isLiteral(char c) {
+
+		if (c < 128) return (CLASSES[c] & C_LITERAL) != 0;
+
+		if (c >= 0xA0 && c <= 0xD7FF) return true;
+		if (c >= 0xF900 && c <= 0xFDCF) return true;
+		if (c >= 0xFDF0 && c <= 0xFFEF) return true;
+
+		return false;
+	}
+
+	private static boolean is(char c, int classes) {
+
+		return c < 128 && (CLASSES[c] & classes) != 0;
+	}
+
+	private static char[] push(char[] stack, int depth, char open) {
+
+		if (depth == stack.length) {
+
+			char[] newStack = new char[stack.length * 2];
+			System.arraycopy(stack, 0, newStack, 0, stack.length);
+			stack = newStack;
+		}
+
+		stack[depth] = CLOSING[open];
+
+		return stack;
+	}
+}
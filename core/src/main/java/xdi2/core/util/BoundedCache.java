@@ -0,0 +1,244 @@
+package xdi2.core.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe, size-limited cache with least-recently-used eviction.
+ * The entries are spread over a number of independently locked segments,
+ * so that concurrent readers rarely contend for the same lock.
+ * The cache keeps counters of hits, misses and evictions.
+ *
+ * @author markus
+ */
+public class BoundedCache<K, V> {
+
+	public static final int DEFAULT_SEGMENTS = 16;
+
+	private final Segment<K, V>[] segments;
+	private final int maxSize;
+
+	private final AtomicLong hitCount;
+	private final AtomicLong missCount;
+	private final AtomicLong evictionCount;
+
+	@SuppressWarnings("unchecked")
+	public BoundedCache(int maxSize, int segments) {
+
+		if (maxSize < 1) throw new IllegalArgumentException("Invalid maximum size: " + maxSize);
+		if (segments < 1) throw new IllegalArgumentException("Invalid number of segments: " + segments);
+		if (segments > maxSize) segments = maxSize;
+
+		this.segments = new Segment[segments];
+		this.maxSize = maxSize;
+
+		this.hitCount = new AtomicLong();
+		this.missCount = new AtomicLong();
+		this.evictionCount = new AtomicLong();
+
+		int segmentSize = (maxSize + segments - 1) / segments;
+
+		for (int i = 0; i < segments; i++) this.segments[i] = new Segment<K, V> (segmentSize, this.evictionCount);
+	}
+
+	public BoundedCache(int maxSize) {
+
+		this(maxSize, DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * Returns the cached value for a key, or null if there is none.
+	 */
+	public V get(K key) {
+
+		Segment<K, V> segment = this.segmentFor(key);
+
+		V value;
+
+		synchronized (segment) {
+
+			value = segment.get(key);
+		}
+
+		if (value == null) this.missCount.incrementAndGet(); else this.hitCount.incrementAndGet();
+
+		return value;
+	}
+
+	/**
+	 * Stores a value for a key, replacing any existing value.
+	 */
+	public void put(K key, V value) {
+
+		if (value == null) throw new NullPointerException();
+
+		Segment<K, V> segment = this.segmentFor(key);
+
+		synchronized (segment) {
+
+			segment.put(key, value);
+		}
+	}
+
+	/**
+	 * Stores a value for a key, unless there already is one.
+	 * @return The value that is in the cache after the call, i.e. either the
+	 * existing value or the given one. This can be used to canonicalize instances.
+	 */
+	public V putIfAbsent(K key, V value) {
+
+		if (value == null) throw new NullPointerException();
+
+		Segment<K, V> segment = this.segmentFor(key);
+
+		synchronized (segment) {
+
+			V existingValue = segment.get(key);
+			if (existingValue != null) return existingValue;
+
+			segment.put(key, value);
+
+			return value;
+		}
+	}
+
+	public V remove(K key) {
+
+		Segment<K, V> segment = this.segmentFor(key);
+
+		synchronized (segment) {
+
+			return segment.remove(key);
+		}
+	}
+
+	public void clear() {
+
+		for (Segment<K, V> segment : this.segments) {
+
+			synchronized (segment) {
+
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the keys that are currently in the cache.
+	 */
+	public List<K> keys() {
+
+		List<K> keys = new ArrayList<K> ();
+
+		for (Segment<K, V> segment : this.segments) {
+
+			synchronized (segment) {
+
+				keys.addAll(segment.keySet());
+			}
+		}
+
+		return keys;
+	}
+
+	public int size() {
+
+		int size = 0;
+
+		for (Segment<K, V> segment : this.segments) {
+
+			synchronized (segment) {
+
+				size += segment.size();
+			}
+		}
+
+		return size;
+	}
+
+	public int getMaxSize() {
+
+		return this.maxSize;
+	}
+
+	public long getHitCount() {
+
+		return this.hitCount.get();
+	}
+
+	public long getMissCount() {
+
+		return this.missCount.get();
+	}
+
+	public long getEvictionCount() {
+
+		return this.evictionCount.get();
+	}
+
+	public double getHitRate() {
+
+		long hitCount = this.getHitCount();
+		long requestCount = hitCount + this.getMissCount();
+
+		return requestCount == 0 ? 0.0d : (double) hitCount / (double) requestCount;
+	}
+
+	public void resetStatistics() {
+
+		this.hitCount.set(0);
+		this.missCount.set(0);
+		this.evictionCount.set(0);
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private Segment<K, V> segmentFor(K key) {
+
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+
+		return this.segments[(hash & 0x7fffffff) % this.segments.length];
+	}
+
+	private static class Segment<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = -2385624935893104862L;
+
+		private final int maxSize;
+		private final AtomicLong evictionCount;
+
+		private Segment(int maxSize, AtomicLong evictionCount) {
+
+			super(16, 0.75f, true);
+
+			this.maxSize = maxSize;
+			this.evictionCount = evictionCount;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+
+			if (this.size() <= this.maxSize) return false;
+
+			this.evictionCount.incrementAndGet();
+
+			return true;
+		}
+	}
+
+	/*
+	 * Object methods
+	 */
+
+	@Override
+	public String toString() {
+
+		return this.size() + "/" + this.getMaxSize() + " entries, " + this.getHitCount() + " hits, " + this.getMissCount() + " misses, " + this.getEvictionCount() + " evictions";
+	}
+}
@@ -1,5 +1,7 @@
 package xdi2.core.util;
 
+import java.util.concurrent.Executor;
+
 import xdi2.core.ContextNode;
 import xdi2.core.Graph;
 import xdi2.core.impl.memory.MemoryGraphFactory;
@@ -12,6 +14,12 @@ import xdi2.core.impl.memory.MemoryGraphFactory;
 public final class CloneUtil {
 
 	private static final MemoryGraphFactory graphFactory = MemoryGraphFactory.getInstance();
+	private static final MemoryGraphFactory concurrentGraphFactory = new MemoryGraphFactory();
+
+	static {
+
+		concurrentGraphFactory.setConcurrent(true);
+	}
 
 	private CloneUtil() { }
 
@@ -28,6 +36,21 @@ public final class CloneUtil {
 		return newGraph;
 	}
 
+	/**
+	 * Creates a clone of the given graph with the same contents, using several threads.
+	 * The clone is a concurrent memory graph, which does not keep the order in which statements were added.
+	 * @param graph The graph to clone.
+	 * @param executor The executor to run the tasks on, or null for the default executor.
+	 * @return The cloned graph.
+	 */
+	public static Graph cloneGraph(Graph graph, Executor executor) {
+
+		Graph newGraph = concurrentGraphFactory.openGraph();
+		CopyUtil.copyGraph(graph, newGraph, null, executor);
+
+		return newGraph;
+	}
+
 	/**
 	 * Creates a clone of the given context node with the same contents.
 	 * @param contextNode The context node to clone.
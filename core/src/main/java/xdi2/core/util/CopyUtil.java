@@ -9,6 +9,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +60,32 @@ public final class CopyUtil {
 		copyContextNodeContents(graph.getRootContextNode(true), targetGraph, copyStrategy);
 	}
 
+	/**
+	 * Copies a whole graph into a target graph with several threads, one for every subtree down to ParallelGraphTraversal.DEFAULT_SPLITDEPTH.
+	 * The target graph must support changes from several threads, e.g. a graph from MemoryGraphFactory with concurrent mode,
+	 * and the copy strategy must be thread-safe. The order of the statements in the target graph may differ between copies,
+	 * but writers with the "ordered" parameter write all copies the same way.
+	 * @param graph A graph.
+	 * @param targetGraph The target graph.
+	 * @param copyStrategy The strategy to determine what to copy.
+	 * @param executor The executor to run the tasks on, or null for ParallelGraphTraversal's default executor.
+	 */
+	public static void copyGraph(Graph graph, Graph targetGraph, CopyStrategy copyStrategy, Executor executor) {
+
+		if (graph == null) throw new NullPointerException();
+		if (targetGraph == null) throw new NullPointerException();
+		if (copyStrategy == null) copyStrategy = DEFAULT_COPY_STRATEGY;
+		if (executor == null) executor = ParallelGraphTraversal.getDefaultExecutorService();
+
+		if (graph == targetGraph) throw new Xdi2RuntimeException("Source and target graph cannot be the same.");
+
+		TaskGroup taskGroup = new TaskGroup(executor);
+
+		forkCopyContextNodeContents(graph.getRootContextNode(true), targetGraph.getRootContextNode(false), copyStrategy, taskGroup, ParallelGraphTraversal.DEFAULT_SPLITDEPTH);
+
+		taskGroup.join();
+	}
+
 	/*
 	 * Methods for copying context nodes
 	 */
@@ -408,6 +435,61 @@ public final class CopyUtil {
 		return null;
 	}
 
+	/*
+	 * Helper methods
+	 */
+
+	/**
+	 * Like copyContextNodeContents(), but forks a task for copying every child context node, down to a split depth.
+	 */
+	private static void forkCopyContextNodeContents(ContextNode contextNode, final ContextNode targetContextNode, final CopyStrategy copyStrategy, final TaskGroup taskGroup, final int splitDepth) {
+
+		for (Iterator<ContextNode> innerContextNodes = contextNode.getContextNodes(); innerContextNodes.hasNext(); ) {
+
+			final ContextNode innerContextNode = innerContextNodes.next();
+
+			if (splitDepth > 0) {
+
+				taskGroup.fork(new Runnable() {
+
+					@Override
+					public void run() {
+
+						forkCopyContextNode(innerContextNode, targetContextNode, copyStrategy, taskGroup, splitDepth - 1);
+					}
+				});
+			} else {
+
+				copyContextNode(innerContextNode, targetContextNode, copyStrategy);
+			}
+		}
+
+		copyRelations(contextNode, targetContextNode, copyStrategy);
+		copyLiteralNode(contextNode, targetContextNode, copyStrategy);
+	}
+
+	/**
+	 * Like copyContextNode(), but forks a task for copying every child context node, down to a split depth.
+	 */
+	private static void forkCopyContextNode(ContextNode contextNode, ContextNode targetContextNode, CopyStrategy copyStrategy, TaskGroup taskGroup, int splitDepth) {
+
+		List<ContextNode> copyContextNodes = copyStrategy.replaceContextNode(contextNode);
+		if (copyContextNodes == null) copyContextNodes = Collections.singletonList(contextNode);
+
+		for (ContextNode copyContextNode : copyContextNodes) {
+
+			XDIArc copyContextNodeXDIArc = copyContextNode.getXDIArc();
+			ContextNode targetCopiedContextNode;
+
+			if (copyContextNodeXDIArc != null)
+				targetCopiedContextNode = targetContextNode.setContextNode(copyContextNodeXDIArc);
+			else
+				targetCopiedContextNode = targetContextNode;
+
+			forkCopyContextNodeContents(copyContextNode, targetCopiedContextNode, copyStrategy, taskGroup, splitDepth);
+		}
+	}
+
 	/*
 	 * Helper classes
 	 */
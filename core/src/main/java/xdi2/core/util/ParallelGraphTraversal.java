@@ -0,0 +1,107 @@
+package xdi2.core.util;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import xdi2.core.ContextNode;
+import xdi2.core.Graph;
+
+/**
+ * Traverses the context nodes of a graph with several threads.
+ * The traversal is split by child subtrees: down to a split depth, every child context node
+ * is visited in a task of its own, and below the split depth, subtrees are visited by the
+ * task that reached them.
+ *
+ * Context nodes are visited in no particular order, and the visitor is called from several threads at the same time.
+ * The graph must support reading from several threads, and must not be changed during the traversal.
+ *
+ * @author markus
+ */
+public final class ParallelGraphTraversal {
+
+	public static final int DEFAULT_SPLITDEPTH = 2;
+
+	private ParallelGraphTraversal() { }
+
+	/**
+	 * Visits all context nodes of a graph.
+	 * @param graph A graph.
+	 * @param visitor The visitor to call for every context node.
+	 * @param executor The executor to run the tasks on, or null for the default executor.
+	 */
+	public static void visitAllContextNodes(Graph graph, ContextNodeVisitor visitor, Executor executor) {
+
+		visitAllContextNodes(graph.getRootContextNode(true), visitor, executor, DEFAULT_SPLITDEPTH);
+	}
+
+	/**
+	 * Visits all context nodes below a context node, not including the context node itself.
+	 * @param contextNode A context node.
+	 * @param visitor The visitor to call for every context node.
+	 * @param executor The executor to run the tasks on, or null for the default executor.
+	 * @param splitDepth The number of levels below the context node for which tasks are forked.
+	 */
+	public static void visitAllContextNodes(ContextNode contextNode, ContextNodeVisitor visitor, Executor executor, int splitDepth) {
+
+		if (contextNode == null) throw new NullPointerException();
+		if (visitor == null) throw new NullPointerException();
+		if (executor == null) executor = getDefaultExecutorService();
+
+		TaskGroup taskGroup = new TaskGroup(executor);
+
+		visitContextNodes(contextNode, visitor, taskGroup, splitDepth);
+
+		taskGroup.join();
+	}
+
+	/**
+	 * Returns the shared executor of TaskGroup, with one daemon thread for every available processor.
+	 */
+	public static ExecutorService getDefaultExecutorService() {
+
+		return TaskGroup.getDefaultExecutorService();
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private static void visitContextNodes(ContextNode contextNode, final ContextNodeVisitor visitor, final TaskGroup taskGroup, final int splitDepth) {
+
+		for (Iterator<ContextNode> innerContextNodes = contextNode.getContextNodes(); innerContextNodes.hasNext(); ) {
+
+			final ContextNode innerContextNode = innerContextNodes.next();
+
+			if (splitDepth > 0) {
+
+				taskGroup.fork(new Runnable() {
+
+					@Override
+					public void run() {
+
+						visitor.visitContextNode(innerContextNode);
+						visitContextNodes(innerContextNode, visitor, taskGroup, splitDepth - 1);
+					}
+				});
+			} else {
+
+				visitor.visitContextNode(innerContextNode);
+				visitContextNodes(innerContextNode, visitor, taskGroup, 0);
+			}
+		}
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	/**
+	 * Called for every context node of a parallel traversal.
+	 * Implementations must be thread-safe.
+	 */
+	public interface ContextNodeVisitor {
+
+		public void visitContextNode(ContextNode contextNode);
+	}
+}
@@ -0,0 +1,441 @@
+package xdi2.core.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import xdi2.core.ContextNode;
+import xdi2.core.LiteralNode;
+import xdi2.core.Relation;
+import xdi2.core.constants.XDIConstants;
+import xdi2.core.features.nodetypes.XdiCommonRoot;
+import xdi2.core.features.nodetypes.XdiInnerRoot;
+import xdi2.core.features.nodetypes.XdiRoot;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.core.util.CopyUtil.AllCopyStrategy;
+import xdi2.core.util.CopyUtil.CopyStrategy;
+import xdi2.core.util.iterators.CompositeIterator;
+import xdi2.core.util.iterators.DescendingIterator;
+import xdi2.core.util.iterators.EmptyIterator;
+import xdi2.core.util.iterators.IterableIterator;
+import xdi2.core.util.iterators.MappingIterator;
+import xdi2.core.util.iterators.SingleItemIterator;
+
+/**
+ * Traverses the statements that a copy of a context node into an empty graph with
+ * CopyUtil.copyContextNode() would contain, in sorted order, without making the copy.
+ * Like in the copy, this includes the context nodes above the copied context node, the target
+ * context nodes of copied relations, the contents of the inner roots of copied relations, and the
+ * subjects and predicate relations of inner roots.
+ * The order is the same as SortedGraphTraversal.getAllStatements() on the root context node of the copy.
+ *
+ * @author markus
+ */
+public final class SortedCopyTraversal {
+
+	private static final Comparator<XDIStatement> RELATION_XDISTATEMENT_COMPARATOR = new Comparator<XDIStatement> () {
+
+		@Override
+		public int compare(XDIStatement XDIstatement1, XDIStatement XDIstatement2) {
+
+			int compare = XDIstatement1.getRelationXDIAddress().compareTo(XDIstatement2.getRelationXDIAddress());
+			if (compare != 0) return compare;
+
+			return XDIstatement1.getTargetXDIAddress().compareTo(XDIstatement2.getTargetXDIAddress());
+		}
+	};
+
+	private final CopyStrategy copyStrategy;
+
+	private final Map<XDIAddress, Set<XDIArc>> createdXDIArcs;
+	private final Map<XDIAddress, Set<XDIStatement>> createdRelationXDIStatements;
+	private final Map<XDIAddress, List<ContextNode>> mountedContextNodes;
+
+	private SortedCopyTraversal(CopyStrategy copyStrategy) {
+
+		this.copyStrategy = copyStrategy;
+
+		this.createdXDIArcs = new HashMap<XDIAddress, Set<XDIArc>> ();
+		this.createdRelationXDIStatements = new HashMap<XDIAddress, Set<XDIStatement>> ();
+		this.mountedContextNodes = new HashMap<XDIAddress, List<ContextNode>> ();
+	}
+
+	/**
+	 * Returns all statements of a copy of a context node.
+	 * @param contextNode A context node from any graph.
+	 * @param copyStrategy The strategy to determine what to copy.
+	 * @return The statements, or null if the copy strategy replaces context nodes or relations in a way
+	 * that cannot be traversed without making the copy.
+	 */
+	public static IterableIterator<XDIStatement> getAllStatements(ContextNode contextNode, CopyStrategy copyStrategy) {
+
+		if (contextNode == null) throw new NullPointerException();
+		if (copyStrategy == null) copyStrategy = new AllCopyStrategy();
+
+		SortedCopyTraversal sortedCopyTraversal = new SortedCopyTraversal(copyStrategy);
+
+		// find the context nodes that the copy creates, and the context nodes whose contents it copies
+
+		XDIAddress contextNodeXDIAddress = contextNode.getXDIAddress();
+
+		sortedCopyTraversal.create(contextNodeXDIAddress);
+		if (! sortedCopyTraversal.mount(contextNodeXDIAddress, contextNode)) return null;
+
+		// traverse the copy
+
+		CopyNode rootCopyNode = sortedCopyTraversal.new CopyNode(XDIConstants.XDI_ADD_ROOT, null, new ArrayList<ContextNode> ());
+
+		List<Iterator<? extends XDIStatement>> list = new ArrayList<Iterator<? extends XDIStatement>> ();
+		list.add(getAllContextNodeXDIStatements(rootCopyNode));
+		list.add(getAllRelationXDIStatements(rootCopyNode));
+		list.add(getAllLiteralXDIStatements(rootCopyNode));
+
+		return new CompositeIterator<XDIStatement> (list.iterator());
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private static IterableIterator<XDIStatement> getAllContextNodeXDIStatements(final CopyNode copyNode) {
+
+		List<CopyNode> copyNodes = copyNode.getCopyNodes();
+
+		MappingIterator<CopyNode, XDIStatement> mappingIterator = new MappingIterator<CopyNode, XDIStatement> (copyNodes.iterator()) {
+
+			@Override
+			public XDIStatement map(CopyNode innerCopyNode) {
+
+				return XDIStatement.fromContextNodeComponents(copyNode.getXDIAddress(), innerCopyNode.getXDIArc());
+			}
+		};
+
+		DescendingIterator<CopyNode, XDIStatement> descendingIterator = new DescendingIterator<CopyNode, XDIStatement> (copyNodes.iterator()) {
+
+			@Override
+			public Iterator<XDIStatement> descend(CopyNode innerCopyNode) {
+
+				return getAllContextNodeXDIStatements(innerCopyNode);
+			}
+		};
+
+		List<Iterator<? extends XDIStatement>> list = new ArrayList<Iterator<? extends XDIStatement>> ();
+		list.add(mappingIterator);
+		list.add(descendingIterator);
+
+		return new CompositeIterator<XDIStatement> (list.iterator());
+	}
+
+	private static IterableIterator<XDIStatement> getAllRelationXDIStatements(CopyNode copyNode) {
+
+		DescendingIterator<CopyNode, XDIStatement> descendingIterator = new DescendingIterator<CopyNode, XDIStatement> (copyNode.getCopyNodes().iterator()) {
+
+			@Override
+			public Iterator<XDIStatement> descend(CopyNode innerCopyNode) {
+
+				return getAllRelationXDIStatements(innerCopyNode);
+			}
+		};
+
+		List<Iterator<? extends XDIStatement>> list = new ArrayList<Iterator<? extends XDIStatement>> ();
+		list.add(copyNode.getRelationXDIStatements().iterator());
+		list.add(descendingIterator);
+
+		return new CompositeIterator<XDIStatement> (list.iterator());
+	}
+
+	private static IterableIterator<XDIStatement> getAllLiteralXDIStatements(CopyNode copyNode) {
+
+		DescendingIterator<CopyNode, XDIStatement> descendingIterator = new DescendingIterator<CopyNode, XDIStatement> (copyNode.getCopyNodes().iterator()) {
+
+			@Override
+			public Iterator<XDIStatement> descend(CopyNode innerCopyNode) {
+
+				return getAllLiteralXDIStatements(innerCopyNode);
+			}
+		};
+
+		XDIStatement literalXDIStatement = copyNode.getLiteralXDIStatement();
+
+		List<Iterator<? extends XDIStatement>> list = new ArrayList<Iterator<? extends XDIStatement>> ();
+		list.add(literalXDIStatement == null ? new EmptyIterator<XDIStatement> () : new SingleItemIterator<XDIStatement> (literalXDIStatement));
+		list.add(descendingIterator);
+
+		return new CompositeIterator<XDIStatement> (list.iterator());
+	}
+
+	/**
+	 * Remembers the context nodes that the copy creates for an address, like Graph.setDeepContextNode().
+	 */
+	private void create(XDIAddress XDIaddress) {
+
+		for (int i = 0; i < XDIaddress.getNumXDIArcs(); i++) {
+
+			XDIAddress parentXDIAddress = i == 0 ? XDIConstants.XDI_ADD_ROOT : XDIaddress.subXDIAddress(0, i);
+
+			Set<XDIArc> XDIarcs = this.createdXDIArcs.get(parentXDIAddress);
+
+			if (XDIarcs == null) {
+
+				XDIarcs = new HashSet<XDIArc> ();
+				this.createdXDIArcs.put(parentXDIAddress, XDIarcs);
+			}
+
+			if (XDIarcs.add(XDIaddress.getXDIArc(i))) this.createInnerRoot(parentXDIAddress, XDIaddress.getXDIArc(i));
+		}
+	}
+
+	/**
+	 * Remembers the subject and the predicate relation that the copy creates for an inner root, like ContextNode.setContextNode().
+	 */
+	private void createInnerRoot(XDIAddress XDIaddress, XDIArc XDIarc) {
+
+		if (! XdiInnerRoot.isValidXDIArc(XDIarc)) return;
+
+		XDIAddress subjectXDIAddress = XDIaddress.concatXDIAddress(XdiInnerRoot.getSubjectOfInnerRootXDIArc(XDIarc));
+		XDIAddress predicateXDIAddress = XdiInnerRoot.getPredicateOfInnerRootXDIArc(XDIarc);
+
+		this.create(subjectXDIAddress);
+
+		if (predicateXDIAddress.getNumXDIArcs() < 1) return;
+
+		Set<XDIStatement> XDIstatements = this.createdRelationXDIStatements.get(subjectXDIAddress);
+
+		if (XDIstatements == null) {
+
+			XDIstatements = new HashSet<XDIStatement> ();
+			this.createdRelationXDIStatements.put(subjectXDIAddress, XDIstatements);
+		}
+
+		XDIstatements.add(XDIStatement.fromRelationComponents(subjectXDIAddress, predicateXDIAddress, XDIaddress.concatXDIAddress(XDIarc)));
+	}
+
+	/**
+	 * Remembers that the copy copies the contents of a context node to an address, like CopyUtil.copyContextNodeContents().
+	 */
+	private boolean mount(XDIAddress XDIaddress, ContextNode contextNode) {
+
+		List<ContextNode> contextNodes = this.mountedContextNodes.get(XDIaddress);
+
+		if (contextNodes == null) {
+
+			contextNodes = new ArrayList<ContextNode> ();
+			this.mountedContextNodes.put(XDIaddress, contextNodes);
+		}
+
+		if (contextNodes.contains(contextNode)) return true;
+
+		contextNodes.add(contextNode);
+
+		return this.find(XDIaddress, contextNode);
+	}
+
+	/**
+	 * Finds the target context nodes and inner roots of all relations that the copy copies
+	 * from a context node to an address.
+	 */
+	private boolean find(XDIAddress XDIaddress, ContextNode contextNode) {
+
+		for (Iterator<ContextNode> innerContextNodes = contextNode.getContextNodes(); innerContextNodes.hasNext(); ) {
+
+			for (ContextNode copyContextNode : this.replaceContextNode(innerContextNodes.next())) {
+
+				if (copyContextNode.getXDIArc() == null) return false;
+
+				this.createInnerRoot(XDIaddress, copyContextNode.getXDIArc());
+
+				if (! this.find(XDIaddress.concatXDIAddress(copyContextNode.getXDIArc()), copyContextNode)) return false;
+			}
+		}
+
+		for (Iterator<Relation> relations = contextNode.getRelations(); relations.hasNext(); ) {
+
+			for (Relation copyRelation : this.replaceRelation(relations.next())) {
+
+				XDIAddress targetXDIAddress = copyRelation.getTargetXDIAddress();
+				if (targetXDIAddress.isLiteralNodeXDIAddress()) return false;
+
+				this.create(targetXDIAddress);
+
+				if (! isInnerRootRelation(copyRelation)) continue;
+				if (! copyRelation.getContextNode().getXDIAddress().equals(XDIaddress)) return false;
+
+				if (! this.mount(targetXDIAddress, copyRelation.followContextNode())) return false;
+			}
+		}
+
+		return true;
+	}
+
+	private List<ContextNode> replaceContextNode(ContextNode contextNode) {
+
+		List<ContextNode> copyContextNodes = this.copyStrategy.replaceContextNode(contextNode);
+
+		return copyContextNodes == null ? Collections.singletonList(contextNode) : copyContextNodes;
+	}
+
+	private List<Relation> replaceRelation(Relation relation) {
+
+		List<Relation> copyRelations = this.copyStrategy.replaceRelation(relation);
+
+		return copyRelations == null ? Collections.singletonList(relation) : copyRelations;
+	}
+
+	/**
+	 * Checks if a relation establishes an inner root, in the same way as CopyUtil.copyRelation().
+	 */
+	private static boolean isInnerRootRelation(Relation relation) {
+
+		XDIAddress relationContextNodeXDIAddress = relation.getContextNode().getXDIAddress();
+
+		XdiRoot relationContextNodeXdiRoot = XdiCommonRoot.findCommonRoot(relation.getContextNode().getGraph()).getRoot(relationContextNodeXDIAddress, false);
+
+		XDIAddress relativeRelationContextNodeXDIAddress = relationContextNodeXdiRoot.absoluteToRelativeXDIAddress(relationContextNodeXDIAddress);
+		XDIAddress relativeRelationTargetXDIAddress = relationContextNodeXdiRoot.absoluteToRelativeXDIAddress(relation.getTargetXDIAddress());
+
+		return relativeRelationTargetXDIAddress != null &&
+				relativeRelationTargetXDIAddress.getNumXDIArcs() == 1 &&
+				XdiInnerRoot.isValidXDIArc(relativeRelationTargetXDIAddress.getFirstXDIArc()) &&
+				XdiInnerRoot.getSubjectOfInnerRootXDIArc(relativeRelationTargetXDIAddress.getFirstXDIArc()).equals(relativeRelationContextNodeXDIAddress) &&
+				XdiInnerRoot.getPredicateOfInnerRootXDIArc(relativeRelationTargetXDIAddress.getFirstXDIArc()).equals(relation.getXDIAddress());
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	/**
+	 * A context node of the copy, with the context nodes whose contents are copied to it.
+	 */
+	private class CopyNode {
+
+		private final XDIAddress XDIaddress;
+		private final XDIArc XDIarc;
+		private final List<ContextNode> contextNodes;
+
+		private List<CopyNode> copyNodes;
+
+		private CopyNode(XDIAddress XDIaddress, XDIArc XDIarc, List<ContextNode> contextNodes) {
+
+			this.XDIaddress = XDIaddress;
+			this.XDIarc = XDIarc;
+			this.contextNodes = contextNodes;
+
+			List<ContextNode> mountedContextNodes = SortedCopyTraversal.this.mountedContextNodes.get(XDIaddress);
+
+			if (mountedContextNodes != null) {
+
+				for (ContextNode mountedContextNode : mountedContextNodes) {
+
+					if (! this.contextNodes.contains(mountedContextNode)) this.contextNodes.add(mountedContextNode);
+				}
+			}
+
+			this.copyNodes = null;
+		}
+
+		private XDIAddress getXDIAddress() {
+
+			return this.XDIaddress;
+		}
+
+		private XDIArc getXDIArc() {
+
+			return this.XDIarc;
+		}
+
+		private List<CopyNode> getCopyNodes() {
+
+			if (this.copyNodes != null) return this.copyNodes;
+
+			TreeMap<XDIArc, List<ContextNode>> map = new TreeMap<XDIArc, List<ContextNode>> ();
+
+			for (ContextNode contextNode : this.contextNodes) {
+
+				for (Iterator<ContextNode> innerContextNodes = contextNode.getContextNodes(); innerContextNodes.hasNext(); ) {
+
+					for (ContextNode copyContextNode : SortedCopyTraversal.this.replaceContextNode(innerContextNodes.next())) {
+
+						List<ContextNode> list = map.get(copyContextNode.getXDIArc());
+
+						if (list == null) {
+
+							list = new ArrayList<ContextNode> ();
+							map.put(copyContextNode.getXDIArc(), list);
+						}
+
+						if (! list.contains(copyContextNode)) list.add(copyContextNode);
+					}
+				}
+			}
+
+			Set<XDIArc> createdXDIArcs = SortedCopyTraversal.this.createdXDIArcs.get(this.XDIaddress);
+
+			if (createdXDIArcs != null) {
+
+				for (XDIArc createdXDIArc : createdXDIArcs) {
+
+					if (! map.containsKey(createdXDIArc)) map.put(createdXDIArc, new ArrayList<ContextNode> ());
+				}
+			}
+
+			this.copyNodes = new ArrayList<CopyNode> (map.size());
+
+			for (Map.Entry<XDIArc, List<ContextNode>> entry : map.entrySet()) {
+
+				this.copyNodes.add(new CopyNode(this.XDIaddress.concatXDIAddress(entry.getKey()), entry.getKey(), entry.getValue()));
+			}
+
+			return this.copyNodes;
+		}
+
+		private Set<XDIStatement> getRelationXDIStatements() {
+
+			Set<XDIStatement> XDIstatements = new TreeSet<XDIStatement> (RELATION_XDISTATEMENT_COMPARATOR);
+
+			for (ContextNode contextNode : this.contextNodes) {
+
+				for (Iterator<Relation> relations = contextNode.getRelations(); relations.hasNext(); ) {
+
+					for (Relation copyRelation : SortedCopyTraversal.this.replaceRelation(relations.next())) {
+
+						XDIstatements.add(XDIStatement.fromRelationComponents(this.XDIaddress, copyRelation.getXDIAddress(), copyRelation.getTargetXDIAddress()));
+					}
+				}
+			}
+
+			Set<XDIStatement> createdRelationXDIStatements = SortedCopyTraversal.this.createdRelationXDIStatements.get(this.XDIaddress);
+			if (createdRelationXDIStatements != null) XDIstatements.addAll(createdRelationXDIStatements);
+
+			return XDIstatements;
+		}
+
+		private XDIStatement getLiteralXDIStatement() {
+
+			LiteralNode copyLiteralNode = null;
+
+			for (ContextNode contextNode : this.contextNodes) {
+
+				LiteralNode literalNode = contextNode.getLiteralNode();
+				if (literalNode == null) continue;
+
+				literalNode = SortedCopyTraversal.this.copyStrategy.replaceLiteralNode(literalNode);
+				if (literalNode != null) copyLiteralNode = literalNode;
+			}
+
+			if (copyLiteralNode == null) return null;
+
+			return XDIStatement.fromLiteralComponents(this.XDIaddress, copyLiteralNode.getLiteralData());
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package xdi2.core.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import xdi2.core.ContextNode;
+import xdi2.core.LiteralNode;
+import xdi2.core.Relation;
+import xdi2.core.Statement;
+import xdi2.core.impl.memory.MemoryGraphFactory;
+import xdi2.core.util.iterators.CompositeIterator;
+import xdi2.core.util.iterators.DescendingIterator;
+import xdi2.core.util.iterators.IterableIterator;
+import xdi2.core.util.iterators.MappingContextNodeStatementIterator;
+import xdi2.core.util.iterators.MappingLiteralNodeStatementIterator;
+import xdi2.core.util.iterators.MappingRelationStatementIterator;
+import xdi2.core.util.iterators.ReadOnlyIterator;
+import xdi2.core.util.iterators.SingleItemIterator;
+
+/**
+ * Traverses the context nodes, relations and literal nodes of any graph in sorted order.
+ * The children of a context node are only sorted when the traversal reaches it, so
+ * the graph does not have to be copied into a graph with MemoryGraphFactory.SORTMODE_ALPHA.
+ * The order is the same as when traversing such a copy.
+ *
+ * @author markus
+ */
+public final class SortedGraphTraversal {
+
+	private static final Comparator<ContextNode> CONTEXT_NODE_COMPARATOR = new Comparator<ContextNode> () {
+
+		@Override
+		public int compare(ContextNode contextNode1, ContextNode contextNode2) {
+
+			return contextNode1.getXDIArc().compareTo(contextNode2.getXDIArc());
+		}
+	};
+
+	private static final Comparator<Relation> RELATION_COMPARATOR = new Comparator<Relation> () {
+
+		@Override
+		public int compare(Relation relation1, Relation relation2) {
+
+			int compare = relation1.getXDIAddress().compareTo(relation2.getXDIAddress());
+			if (compare != 0) return compare;
+
+			return relation1.getTargetXDIAddress().compareTo(relation2.getTargetXDIAddress());
+		}
+	};
+
+	private SortedGraphTraversal() { }
+
+	/**
+	 * Returns the context nodes of a context node, sorted by their arcs.
+	 */
+	public static ReadOnlyIterator<ContextNode> getContextNodes(ContextNode contextNode) {
+
+		return new ReadOnlyIterator<ContextNode> (sortedContextNodes(contextNode).iterator());
+	}
+
+	/**
+	 * Returns the relations of a context node, sorted by their arcs and target addresses.
+	 */
+	public static ReadOnlyIterator<Relation> getRelations(ContextNode contextNode) {
+
+		List<Relation> list = new ArrayList<Relation> ();
+		for (Iterator<Relation> relations = contextNode.getRelations(); relations.hasNext(); ) list.add(relations.next());
+
+		Collections.sort(list, RELATION_COMPARATOR);
+
+		return new ReadOnlyIterator<Relation> (list.iterator());
+	}
+
+	/**
+	 * Returns all context nodes below a context node, in the same order as ContextNode.getAllContextNodes()
+	 * on a sorted copy.
+	 */
+	public static ReadOnlyIterator<ContextNode> getAllContextNodes(ContextNode contextNode) {
+
+		List<ContextNode> contextNodes = sortedContextNodes(contextNode);
+
+		DescendingIterator<ContextNode, ContextNode> descendingIterator = new DescendingIterator<ContextNode, ContextNode> (contextNodes.iterator()) {
+
+			@Override
+			public Iterator<ContextNode> descend(ContextNode contextNode) {
+
+				return getAllContextNodes(contextNode);
+			}
+		};
+
+		List<Iterator<? extends ContextNode>> list = new ArrayList<Iterator<? extends ContextNode>> ();
+		list.add(contextNodes.iterator());
+		list.add(descendingIterator);
+
+		return new CompositeIterator<ContextNode> (list.iterator());
+	}
+
+	/**
+	 * Returns all relations of and below a context node, in the same order as ContextNode.getAllRelations()
+	 * on a sorted copy.
+	 */
+	public static ReadOnlyIterator<Relation> getAllRelations(ContextNode contextNode) {
+
+		DescendingIterator<ContextNode, Relation> descendingIterator = new DescendingIterator<ContextNode, Relation> (getContextNodes(contextNode)) {
+
+			@Override
+			public Iterator<Relation> descend(ContextNode contextNode) {
+
+				return getAllRelations(contextNode);
+			}
+		};
+
+		List<Iterator<? extends Relation>> list = new ArrayList<Iterator<? extends Relation>> ();
+		list.add(getRelations(contextNode));
+		list.add(descendingIterator);
+
+		return new CompositeIterator<Relation> (list.iterator());
+	}
+
+	/**
+	 * Returns all literal nodes of and below a context node, in the same order as ContextNode.getAllLiteralNodes()
+	 * on a sorted copy.
+	 */
+	public static ReadOnlyIterator<LiteralNode> getAllLiteralNodes(ContextNode contextNode) {
+
+		DescendingIterator<ContextNode, LiteralNode> descendingIterator = new DescendingIterator<ContextNode, LiteralNode> (getContextNodes(contextNode)) {
+
+			@Override
+			public Iterator<LiteralNode> descend(ContextNode contextNode) {
+
+				return getAllLiteralNodes(contextNode);
+			}
+		};
+
+		LiteralNode literalNode = contextNode.getLiteralNode();
+
+		List<Iterator<? extends LiteralNode>> list = new ArrayList<Iterator<? extends LiteralNode>> ();
+		if (literalNode != null) list.add(new SingleItemIterator<LiteralNode> (literalNode));
+		list.add(descendingIterator);
+
+		return new CompositeIterator<LiteralNode> (list.iterator());
+	}
+
+	/**
+	 * Returns all statements below a context node, sorted the way the writers write ordered graphs:
+	 * first all context node statements, then all relation statements, then all literal statements.
+	 * This is used instead of copying the graph into a graph with {@link MemoryGraphFactory#SORTMODE_ALPHA}.
+	 */
+	public static IterableIterator<Statement> getAllStatements(ContextNode contextNode) {
+
+		List<Iterator<? extends Statement>> list = new ArrayList<Iterator<? extends Statement>> ();
+		list.add(new MappingContextNodeStatementIterator(getAllContextNodes(contextNode)));
+		list.add(new MappingRelationStatementIterator(getAllRelations(contextNode)));
+		list.add(new MappingLiteralNodeStatementIterator(getAllLiteralNodes(contextNode)));
+
+		return new CompositeIterator<Statement> (list.iterator());
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private static List<ContextNode> sortedContextNodes(ContextNode contextNode) {
+
+		List<ContextNode> list = new ArrayList<ContextNode> ();
+		for (Iterator<ContextNode> contextNodes = contextNode.getContextNodes(); contextNodes.hasNext(); ) list.add(contextNodes.next());
+
+		Collections.sort(list, CONTEXT_NODE_COMPARATOR);
+
+		return list;
+	}
+}
@@ -0,0 +1,175 @@
+package xdi2.core.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import xdi2.core.exceptions.Xdi2RuntimeException;
+
+/**
+ * A group of tasks that run on an executor, and that can fork more tasks into the same group.
+ * The tasks never wait for each other, only join() waits until all tasks of the group have finished,
+ * so a bounded executor cannot run out of threads while tasks are waiting.
+ *
+ * If the executor rejects a task, it is run in the thread that forks it.
+ * A task group that is created in a thread of the default executor runs all its tasks in that thread,
+ * since waiting for other threads of the same executor could use up all of them.
+ * After a task has failed, no more tasks are forked, and join() throws the first exception.
+ *
+ * @author markus
+ */
+public class TaskGroup {
+
+	private static ExecutorService defaultExecutorService = null;
+
+	private final Executor executor;
+	private final boolean inline;
+
+	private int pending;
+	private Throwable throwable;
+
+	public TaskGroup(Executor executor) {
+
+		this.executor = executor;
+		this.inline = Thread.currentThread() instanceof TaskGroupThread;
+
+		this.pending = 0;
+		this.throwable = null;
+	}
+
+	public void fork(final Runnable runnable) {
+
+		synchronized (this) {
+
+			if (this.throwable != null) return;
+
+			this.pending++;
+		}
+
+		Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+
+				try {
+
+					runnable.run();
+				} catch (Throwable ex) {
+
+					TaskGroup.this.failed(ex);
+				} finally {
+
+					TaskGroup.this.finished();
+				}
+			}
+		};
+
+		if (this.inline) {
+
+			task.run();
+			return;
+		}
+
+		try {
+
+			this.executor.execute(task);
+		} catch (RejectedExecutionException ex) {
+
+			task.run();
+		}
+	}
+
+	/**
+	 * Waits until all tasks have finished, and throws the first exception of a task, if any.
+	 */
+	public synchronized void join() {
+
+		this.join(0);
+	}
+
+	/**
+	 * Waits until all tasks have finished or a timeout has passed, and throws the first exception of a task, if any.
+	 * @param timeout The maximum time to wait in milliseconds, or 0 to wait until all tasks have finished.
+	 * @return False, if the timeout has passed before all tasks have finished.
+	 */
+	public synchronized boolean join(long timeout) {
+
+		long end = System.currentTimeMillis() + timeout;
+
+		while (this.pending > 0) {
+
+			long wait = timeout == 0 ? 0 : end - System.currentTimeMillis();
+			if (timeout != 0 && wait <= 0) return false;
+
+			try {
+
+				this.wait(wait);
+			} catch (InterruptedException ex) {
+
+				Thread.currentThread().interrupt();
+				throw new Xdi2RuntimeException("Interrupted while waiting for " + this.pending + " tasks.", ex);
+			}
+		}
+
+		if (this.throwable instanceof RuntimeException) throw (RuntimeException) this.throwable;
+		if (this.throwable instanceof Error) throw (Error) this.throwable;
+		if (this.throwable != null) throw new Xdi2RuntimeException("Task failed: " + this.throwable.getMessage(), this.throwable);
+
+		return true;
+	}
+
+	/**
+	 * Returns a shared executor with one daemon thread for every available processor.
+	 */
+	public static synchronized ExecutorService getDefaultExecutorService() {
+
+		if (defaultExecutorService == null) defaultExecutorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new TaskGroupThreadFactory());
+
+		return defaultExecutorService;
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private synchronized void failed(Throwable throwable) {
+
+		if (this.throwable == null) this.throwable = throwable;
+	}
+
+	private synchronized void finished() {
+
+		this.pending--;
+
+		if (this.pending == 0) this.notifyAll();
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	private static class TaskGroupThread extends Thread {
+
+		private TaskGroupThread(Runnable runnable, String name) {
+
+			super(runnable, name);
+		}
+	}
+
+	private static class TaskGroupThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+
+			Thread thread = new TaskGroupThread(runnable, TaskGroup.class.getSimpleName() + "-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+}
@@ -260,22 +260,18 @@ public final class XDIAddressUtil {
 
 		try {
 
-			List<XDIArc> XDIarcs = new ArrayList<XDIArc> ();
-
 			if (numXDIArcs > 0) {
 
-				for (int i = 0; i < numXDIArcs; i++) XDIarcs.add(XDIaddress.getXDIArc(i));
+				{ result = XDIaddress.subXDIAddress(0, numXDIArcs); return result; }
 			} else if (numXDIArcs < 0) {
 
-				for (int i = 0; i < XDIaddress.getNumXDIArcs() - (- numXDIArcs); i++) XDIarcs.add(XDIaddress.getXDIArc(i));
+				if (XDIaddress.getNumXDIArcs() + numXDIArcs <= 0) { result = null; return result; }
+
+				{ result = XDIaddress.subXDIAddress(0, XDIaddress.getNumXDIArcs() + numXDIArcs); return result; }
 			} else {
 
 				{ result = XDIaddress; return result; }
 			}
-
-			if (XDIarcs.size() == 0) { result = null; return result; }
-
-			{ result = XDIAddress.fromComponents(XDIarcs); return result; }
 		} finally {
 
 			if (log.isTraceEnabled()) log.trace("parentXDIAddress(" + XDIaddress + "," + numXDIArcs + ") --> " + result);
@@ -297,22 +293,18 @@ public final class XDIAddressUtil {
 
 		try {
 
-			List<XDIArc> XDIarcs = new ArrayList<XDIArc> ();
-
 			if (numXDIArcs > 0) {
 
-				for (int i = XDIaddress.getNumXDIArcs() - numXDIArcs; i < XDIaddress.getNumXDIArcs(); i++) XDIarcs.add(XDIaddress.getXDIArc(i));
+				{ result = XDIaddress.subXDIAddress(XDIaddress.getNumXDIArcs() - numXDIArcs, XDIaddress.getNumXDIArcs()); return result; }
 			} else if (numXDIArcs < 0) {
 
-				for (int i = (- numXDIArcs); i < XDIaddress.getNumXDIArcs(); i++) XDIarcs.add(XDIaddress.getXDIArc(i));
+				if (XDIaddress.getNumXDIArcs() + numXDIArcs <= 0) { result = null; return result; }
+
+				{ result = XDIaddress.subXDIAddress(- numXDIArcs, XDIaddress.getNumXDIArcs()); return result; }
 			} else {
 
 				{ result = XDIaddress; return XDIaddress; }
 			}
-
-			if (XDIarcs.size() == 0) { result = null; return result; }
-
-			{ result = XDIAddress.fromComponents(XDIarcs); return result; }
 		} finally {
 
 			if (log.isTraceEnabled()) log.trace("localXDIAddress(" + XDIaddress + "," + numXDIArcs + ") --> " + result);
@@ -665,19 +657,9 @@ public final class XDIAddressUtil {
 
 		try {
 
-			List<XDIArc> XDIarcs = new ArrayList<XDIArc> ();
-
-			if (XDIaddresses != null) {
-
-				for (XDIAddress XDIaddress : XDIaddresses) {
+			if (XDIaddresses == null) { result = XDIAddress.fromComponents(XDIConstants.XDI_ADD_ROOT); return result; }
 
-					if (XDIaddress != null) XDIarcs.addAll(XDIaddress.getXDIArcs());
-				}
-			}
-
-			if (XDIarcs.size() == 0) XDIarcs.addAll(XDIConstants.XDI_ADD_ROOT.getXDIArcs());
-
-			{ result = XDIAddress.fromComponents(XDIarcs); return result; }
+			{ result = XDIAddress.fromComponents(XDIaddresses); return result; }
 		} finally {
 
 			if (log.isTraceEnabled()) log.trace("concatXDIAddresses(" + Arrays.asList(XDIaddresses) + ") --> " + result);
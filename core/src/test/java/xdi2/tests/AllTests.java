@@ -18,23 +18,34 @@ import xdi2.tests.core.features.signatures.SignaturesTest;
 import xdi2.tests.core.features.timestamps.TimestampsTest;
 import xdi2.tests.core.features.variables.VariablesTest;
 import xdi2.tests.core.impl.AbstractLiteralTest;
+import xdi2.tests.core.impl.json.CachingFileJSONGraphTest;
 import xdi2.tests.core.impl.json.FileJSONGraphTest;
+import xdi2.tests.core.impl.json.MappedJSONGraphTest;
 import xdi2.tests.core.impl.json.MemoryJSONGraphTest;
+import xdi2.tests.core.impl.keyvalue.CompactKeyValueGraphTest;
+import xdi2.tests.core.impl.keyvalue.LSMKeyValueGraphTest;
+import xdi2.tests.core.impl.keyvalue.LSMKeyValueTest;
 import xdi2.tests.core.impl.keyvalue.MapKeyValueGraphTest;
 import xdi2.tests.core.impl.keyvalue.MapKeyValueTest;
 import xdi2.tests.core.impl.keyvalue.PropertiesKeyValueGraphTest;
 import xdi2.tests.core.impl.keyvalue.PropertiesKeyValueTest;
+import xdi2.tests.core.impl.memory.ConcurrentMemoryGraphTest;
 import xdi2.tests.core.impl.memory.MemoryGraphTest;
 import xdi2.tests.core.impl.wrapped.FileWrapperGraphTest;
+import xdi2.tests.core.impl.wrapped.JournaledFileWrapperGraphTest;
 import xdi2.tests.core.io.NormalizationTest;
 import xdi2.tests.core.io.ReaderWriterRegistryTest;
 import xdi2.tests.core.io.ReaderWriterTest;
 import xdi2.tests.core.io.util.JXDMappingTest;
+import xdi2.tests.core.syntax.CachingParserTest;
 import xdi2.tests.core.syntax.CloudNameTest;
 import xdi2.tests.core.syntax.CloudNumberTest;
 import xdi2.tests.core.syntax.ParserImplTest;
+import xdi2.tests.core.syntax.SinglePassParserImplTest;
 import xdi2.tests.core.util.CopyUtilTest;
 import xdi2.tests.core.util.GraphUtilTest;
+import xdi2.tests.core.util.ParallelGraphTraversalTest;
+import xdi2.tests.core.util.SortedGraphTraversalTest;
 import xdi2.tests.core.util.XDIAddressUtilTest;
 import xdi2.tests.core.util.XDIStatementUtilTest;
 import xdi2.tests.core.util.XRI2UtilTest;
@@ -46,14 +57,23 @@ public class AllTests {
 		TestSuite suite = new TestSuite(AllTests.class.getName());
 		//$JUnit-BEGIN$
 		suite.addTestSuite(ParserImplTest.class);
+		suite.addTestSuite(CachingParserTest.class);
+		suite.addTestSuite(SinglePassParserImplTest.class);
 		suite.addTestSuite(MemoryGraphTest.class);
+		suite.addTestSuite(ConcurrentMemoryGraphTest.class);
 		suite.addTestSuite(MapKeyValueGraphTest.class);
 		suite.addTestSuite(PropertiesKeyValueGraphTest.class);
+		suite.addTestSuite(LSMKeyValueGraphTest.class);
+		suite.addTestSuite(CompactKeyValueGraphTest.class);
 		suite.addTestSuite(FileWrapperGraphTest.class);
+		suite.addTestSuite(JournaledFileWrapperGraphTest.class);
 		suite.addTestSuite(MemoryJSONGraphTest.class);
 		suite.addTestSuite(FileJSONGraphTest.class);
+		suite.addTestSuite(CachingFileJSONGraphTest.class);
+		suite.addTestSuite(MappedJSONGraphTest.class);
 		suite.addTestSuite(MapKeyValueTest.class);
 		suite.addTestSuite(PropertiesKeyValueTest.class);
+		suite.addTestSuite(LSMKeyValueTest.class);
 		suite.addTestSuite(AbstractLiteralTest.class);
 		suite.addTestSuite(DataTypesTest.class);
 		suite.addTestSuite(DictionaryTest.class);
@@ -79,6 +99,8 @@ public class AllTests {
 		suite.addTestSuite(CloudNameTest.class);
 		suite.addTestSuite(CloudNumberTest.class);
 		suite.addTestSuite(GraphUtilTest.class);
+		suite.addTestSuite(SortedGraphTraversalTest.class);
+		suite.addTestSuite(ParallelGraphTraversalTest.class);
 		suite.addTestSuite(CopyUtilTest.class);
 		suite.addTestSuite(XDIStatementUtilTest.class);
 		suite.addTestSuite(IteratorTest.class);
@@ -1,23 +1,37 @@
 package xdi2.tests.core.features.signatures;
 
+import java.nio.charset.Charset;
 import java.security.KeyPair;
+import java.security.GeneralSecurityException;
 import java.security.KeyPairGenerator;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
 
 import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 
 import junit.framework.TestCase;
+
+import org.apache.commons.codec.binary.Base64;
+
 import xdi2.core.ContextNode;
 import xdi2.core.Graph;
+import xdi2.core.features.keys.Keys;
+import xdi2.core.features.nodetypes.XdiCommonRoot;
+import xdi2.core.features.nodetypes.XdiEntity;
 import xdi2.core.features.signatures.AESSignature;
 import xdi2.core.features.signatures.RSASignature;
 import xdi2.core.features.signatures.Signatures;
 import xdi2.core.impl.memory.MemoryGraphFactory;
+import xdi2.core.security.signature.KeyCache;
+import xdi2.core.security.signature.create.AESGraphSecretKeySignatureCreator;
 import xdi2.core.security.signature.create.AESStaticSecretKeySignatureCreator;
 import xdi2.core.security.signature.create.RSAStaticPrivateKeySignatureCreator;
+import xdi2.core.security.signature.validate.AESGraphSecretKeySignatureValidator;
 import xdi2.core.security.signature.validate.AESStaticSecretKeySignatureValidator;
+import xdi2.core.security.signature.validate.AbstractSignatureValidator;
 import xdi2.core.security.signature.validate.RSAStaticPublicKeySignatureValidator;
 import xdi2.core.syntax.XDIAddress;
 import xdi2.core.syntax.XDIStatement;
@@ -112,4 +126,106 @@ public class SignaturesTest extends TestCase {
 
 		graph.close();
 	}
+
+	public void testValidateNormalizedSerialization() throws Exception {
+
+		KeyGenerator secretKeyGen = KeyGenerator.getInstance("AES");
+		secretKeyGen.init(256);
+		final SecretKey secretKey = secretKeyGen.generateKey(); 
+
+		Graph graph = MemoryGraphFactory.getInstance().openGraph();
+		graph.setStatement(XDIStatement.create("=markus<#email>/&/\"markus@projectdanube.org\""));
+		graph.setStatement(XDIStatement.create("=markus/#friend/=animesh"));
+
+		ContextNode contextNode = graph.getDeepContextNode(XDIAddress.create("=markus"));
+
+		AESSignature signature = new AESStaticSecretKeySignatureCreator(secretKey).createSignature(contextNode);
+
+		// a validator that only implements the method with the normalized serialization
+
+		AbstractSignatureValidator<AESSignature> signatureValidator = new AbstractSignatureValidator<AESSignature> (AESSignature.class) {
+
+			@Override
+			public boolean validate(byte[] normalizedSerialization, byte[] signatureValue, AESSignature signature, XDIAddress signerXDIAddress) throws GeneralSecurityException {
+
+				Mac jceMac = Mac.getInstance(signature.getJCEAlgorithm());
+				jceMac.init(secretKey);
+
+				return Arrays.equals(signatureValue, jceMac.doFinal(normalizedSerialization));
+			}
+		};
+
+		assertTrue(signatureValidator.validateSignature(signature));
+
+		contextNode.setRelation(XDIAddress.create("#friend"), XDIAddress.create("=joseph"));
+
+		assertFalse(signatureValidator.validateSignature(signature));
+
+		graph.close();
+	}
+
+	public void testKeyCache() throws Exception {
+
+		KeyGenerator secretKeyGen = KeyGenerator.getInstance("AES");
+		secretKeyGen.init(256);
+		SecretKey secretKey = secretKeyGen.generateKey();
+		SecretKey otherSecretKey = secretKeyGen.generateKey();
+
+		Graph secretKeyGraph = MemoryGraphFactory.getInstance().openGraph();
+		XdiEntity signerXdiEntity = XdiCommonRoot.findCommonRoot(secretKeyGraph).getXdiEntity(XDIAddress.create("=markus"), true);
+		Keys.setSecretKey(signerXdiEntity, new String(Base64.encodeBase64(secretKey.getEncoded()), Charset.forName("UTF-8")));
+
+		Graph graph = MemoryGraphFactory.getInstance().openGraph();
+		graph.setStatement(XDIStatement.create("=markus/#friend/=animesh"));
+
+		ContextNode contextNode = graph.getDeepContextNode(XDIAddress.create("=markus"));
+
+		KeyCache keyCache = new KeyCache();
+
+		AESGraphSecretKeySignatureCreator signatureCreator = new AESGraphSecretKeySignatureCreator(secretKeyGraph);
+		AESGraphSecretKeySignatureValidator signatureValidator = new AESGraphSecretKeySignatureValidator(secretKeyGraph);
+		signatureCreator.setKeyCache(keyCache);
+		signatureValidator.setKeyCache(keyCache);
+
+		// the creator and the validator decode the key only once
+
+		AESSignature signature = signatureCreator.createSignature(contextNode, XDIAddress.create("=markus"));
+
+		assertTrue(signatureValidator.validateSignature(signature, XDIAddress.create("=markus")));
+		assertTrue(signatureValidator.validateSignature(signature, XDIAddress.create("=markus")));
+		assertEquals(1, keyCache.getCache().size());
+		assertEquals(2, keyCache.getCache().getHitCount());
+
+		// a changed key in the graph is decoded again
+
+		Keys.setSecretKey(signerXdiEntity, new String(Base64.encodeBase64(otherSecretKey.getEncoded()), Charset.forName("UTF-8")));
+
+		assertFalse(signatureValidator.validateSignature(signature, XDIAddress.create("=markus")));
+		assertEquals(2, keyCache.getCache().size());
+
+		// negative caching, expiry and invalidation
+
+		keyCache.put(SecretKey.class, XDIAddress.create("=animesh"), null, null);
+
+		assertNotNull(keyCache.get(SecretKey.class, XDIAddress.create("=animesh"), null));
+		assertNull(keyCache.get(SecretKey.class, XDIAddress.create("=animesh"), null).getKey());
+
+		keyCache.invalidate(XDIAddress.create("=markus"));
+
+		assertEquals(1, keyCache.getCache().size());
+		assertNull(keyCache.get(SecretKey.class, XDIAddress.create("=markus"), KeyCache.fingerprint(new String(Base64.encodeBase64(otherSecretKey.getEncoded()), Charset.forName("UTF-8")))));
+
+		keyCache.setTtl(1);
+		keyCache.put(SecretKey.class, XDIAddress.create("=markus"), null, secretKey);
+		Thread.sleep(10);
+
+		assertNull(keyCache.get(SecretKey.class, XDIAddress.create("=markus"), null));
+
+		keyCache.invalidateAll();
+
+		assertEquals(0, keyCache.getCache().size());
+
+		graph.close();
+		secretKeyGraph.close();
+	}
 }
@@ -31,6 +31,10 @@ import xdi2.core.exceptions.Xdi2GraphException;
 import xdi2.core.features.equivalence.Equivalence;
 import xdi2.core.features.nodetypes.XdiCommonRoot;
 import xdi2.core.features.nodetypes.XdiInnerRoot;
+import xdi2.core.impl.AbstractGraph;
+import xdi2.core.impl.GraphHash;
+import xdi2.core.impl.GraphStatistics;
+import xdi2.core.impl.memory.MemoryGraphFactory;
 import xdi2.core.io.XDIReader;
 import xdi2.core.io.XDIReaderRegistry;
 import xdi2.core.io.XDIWriter;
@@ -1129,6 +1133,169 @@ public abstract class AbstractGraphTest extends AbstractTestCase {
 		graph33.close();
 	}
 
+	public void testIncomingRelationsAfterDelete() throws Exception {
+
+		Graph graph34 = this.getGraphFactory().openGraph(this.getClass().getName() + "-graph-34");
+
+		graph34.setStatement(XDIStatement.create("=a=b/#x/=c"));
+		graph34.setStatement(XDIStatement.create("=a=b/#y/=c"));
+		graph34.setStatement(XDIStatement.create("=d/#x/=c"));
+
+		ContextNode c = graph34.getDeepContextNode(XDIAddress.create("=c"));
+
+		assertEquals(new IteratorCounter(c.getIncomingRelations()).count(), 3);
+		assertEquals(new IteratorCounter(c.getIncomingRelations(XDIAddress.create("#x"))).count(), 2);
+
+		graph34.getDeepContextNode(XDIAddress.create("=a")).delete();
+
+		assertEquals(new IteratorCounter(c.getIncomingRelations()).count(), 1);
+		assertEquals(c.getIncomingRelations().next().getContextNode().getXDIAddress(), XDIAddress.create("=d"));
+
+		graph34.setDeepContextNode(XDIAddress.create("=a=b"));
+
+		assertEquals(new IteratorCounter(c.getIncomingRelations()).count(), 1);
+
+		graph34.getDeepContextNode(XDIAddress.create("=d")).delRelations();
+
+		assertFalse(c.containsIncomingRelations());
+
+		graph34.setStatement(XDIStatement.create("=d/#x/=c"));
+
+		assertEquals(new IteratorCounter(c.getIncomingRelations()).count(), 1);
+
+		graph34.close();
+	}
+
+	public void testGraphHash() throws Exception {
+
+		Graph graph35 = this.getGraphFactory().openGraph(this.getClass().getName() + "-graph-35");
+		Graph graph36 = new MemoryGraphFactory().openGraph();
+
+		graph35.setStatement(XDIStatement.create("=a=b/#x/=c"));
+		graph35.setStatement(XDIStatement.create("=a<#b>/&/\"x\""));
+		graph35.setStatement(XDIStatement.create("=d//=e"));
+		graph35.getRootContextNode().setContextNode(XDIArc.create("(=f/#g)"));
+		graph35.setDeepContextNode(XDIAddress.create("(=f/#g)=h"));
+		graph35.getDeepLiteralNode(XDIAddress.create("=a<#b>&")).setLiteralData("y");
+
+		graph36.setDeepContextNode(XDIAddress.create("(=f/#g)=h"));
+		graph36.setStatement(XDIStatement.create("=d//=e"));
+		graph36.setStatement(XDIStatement.create("=a<#b>/&/\"y\""));
+		graph36.setStatement(XDIStatement.create("=a=b/#x/=c"));
+
+		assertEquals(graph35.getAllStatementCount(), new IteratorCounter(graph35.getAllStatements()).count());
+		assertEquals(((AbstractGraph) graph35).getGraphHash().getHash(), new GraphHash(graph35.getAllStatements()).getHash());
+		assertEquals(graph35, graph36);
+		assertEquals(graph36, graph35);
+		assertEquals(graph35.hashCode(), graph36.hashCode());
+		assertEquals(graph35.compareTo(graph36), 0);
+
+		graph35.getDeepContextNode(XDIAddress.create("=a")).delete();
+		graph35.getRootContextNode().delContextNode(XDIArc.create("(=f/#g)"));
+		graph36.getDeepContextNode(XDIAddress.create("=f")).delRelations();
+		graph36.getDeepContextNode(XDIAddress.create("=a=b")).delete();
+
+		assertEquals(graph35.getAllStatementCount(), new IteratorCounter(graph35.getAllStatements()).count());
+		assertEquals(((AbstractGraph) graph35).getGraphHash().getHash(), new GraphHash(graph35.getAllStatements()).getHash());
+		assertNotEquals(graph35, graph36);
+		assertTrue(graph35.compareTo(graph36) != 0);
+		assertEquals(graph35.compareTo(graph36), - graph36.compareTo(graph35));
+
+		graph36.getDeepContextNode(XDIAddress.create("=a")).delete();
+
+		assertEquals(graph35, graph36);
+		assertEquals(graph35.hashCode(), graph36.hashCode());
+
+		graph35.clear();
+
+		assertEquals(graph35.getAllStatementCount(), 0);
+		assertEquals(((AbstractGraph) graph35).getGraphHash().getHash(), 0);
+
+		graph35.close();
+		graph36.close();
+	}
+
+	public void testCounts() throws Exception {
+
+		Graph graph37 = this.getGraphFactory().openGraph(this.getClass().getName() + "-graph-37");
+
+		graph37.setStatement(XDIStatement.create("=a=b/#x/=c"));
+		graph37.setStatement(XDIStatement.create("=a=b/#x/=d"));
+		graph37.setStatement(XDIStatement.create("=a<#b>/&/\"x\""));
+		graph37.setStatement(XDIStatement.create("=a<#b>/&/\"y\""));
+		graph37.setStatement(XDIStatement.create("=a/#y/(=a/#z)=e"));
+		graph37.setStatement(XDIStatement.create("=d//=e"));
+		graph37.setStatement(XDIStatement.create("=a=b/#x/=c"));
+
+		assertCounts(graph37);
+		assertEquals(graph37.getDeepContextNode(XDIAddress.create("=a")).getAllContextNodeCount(), 2);
+		assertEquals(graph37.getDeepContextNode(XDIAddress.create("=a")).getAllRelationCount(), 4);
+		assertEquals(graph37.getDeepContextNode(XDIAddress.create("=a")).getAllLiteralCount(), 1);
+
+		graph37.getDeepContextNode(XDIAddress.create("=a=b")).delRelation(XDIAddress.create("#x"), XDIAddress.create("=d"));
+		graph37.getDeepContextNode(XDIAddress.create("=a=b")).delRelation(XDIAddress.create("#x"), XDIAddress.create("=d"));
+		graph37.getDeepContextNode(XDIAddress.create("=a<#b>")).delLiteralNode();
+		graph37.getDeepContextNode(XDIAddress.create("=a<#b>")).delLiteralNode();
+
+		assertCounts(graph37);
+
+		graph37.getDeepContextNode(XDIAddress.create("(=a/#z)=e")).delete();
+		graph37.getDeepContextNode(XDIAddress.create("=a")).delRelations();
+
+		assertCounts(graph37);
+
+		graph37.getDeepContextNode(XDIAddress.create("=a")).delete();
+
+		assertCounts(graph37);
+		assertEquals(graph37.getDeepContextNode(XDIAddress.create("=d")).getAllStatementCount(), 1);
+
+		if (this.supportsPersistence()) {
+
+			graph37.close();
+			graph37 = this.getGraphFactory().openGraph(this.getClass().getName() + "-graph-37");
+
+			assertCounts(graph37);
+		}
+
+		graph37.getRootContextNode().delContextNodes();
+
+		assertCounts(graph37);
+		assertEquals(((AbstractGraph) graph37).getGraphStatistics().getStatementCount(), 0);
+
+		graph37.close();
+	}
+
+	public void testModificationCount() throws Exception {
+
+		Graph graph38 = this.getGraphFactory().openGraph(this.getClass().getName() + "-graph-38");
+
+		long modificationCount = ((AbstractGraph) graph38).getModificationCount();
+
+		graph38.setStatement(XDIStatement.create("=a=b/#x/=c"));
+		modificationCount = assertModified(graph38, modificationCount);
+
+		graph38.setStatement(XDIStatement.create("=a<#b>/&/\"x\""));
+		modificationCount = assertModified(graph38, modificationCount);
+
+		graph38.getDeepLiteralNode(XDIAddress.create("=a<#b>&")).setLiteralData("y");
+		modificationCount = assertModified(graph38, modificationCount);
+
+		graph38.getDeepContextNode(XDIAddress.create("=a<#b>")).delLiteralNode();
+		modificationCount = assertModified(graph38, modificationCount);
+
+		graph38.getDeepContextNode(XDIAddress.create("=a=b")).delRelation(XDIAddress.create("#x"), XDIAddress.create("=c"));
+		modificationCount = assertModified(graph38, modificationCount);
+
+		graph38.getRootContextNode().getAllStatementCount();
+		graph38.getDeepContextNode(XDIAddress.create("=a"));
+		assertEquals(modificationCount, ((AbstractGraph) graph38).getModificationCount());
+
+		graph38.getDeepContextNode(XDIAddress.create("=a")).delete();
+		assertModified(graph38, modificationCount);
+
+		graph38.close();
+	}
+
 	/*
 	 * Helper methods
 	 */
@@ -1163,6 +1330,40 @@ public abstract class AbstractGraphTest extends AbstractTestCase {
 		Relation abcTestRelation2 = abcContextNode.setRelation(XDIAddress.create("#rel"), abcPassport2ContextNode);
 	}
 
+	private static long assertModified(Graph graph, long modificationCount) throws Exception {
+
+		long newModificationCount = ((AbstractGraph) graph).getModificationCount();
+
+		assertTrue(newModificationCount > modificationCount);
+
+		return newModificationCount;
+	}
+
+	private static void assertCounts(Graph graph) throws Exception {
+
+		ContextNode rootContextNode = graph.getRootContextNode();
+
+		assertEquals(rootContextNode.getAllContextNodeCount(), new IteratorCounter(rootContextNode.getAllContextNodes()).count());
+		assertEquals(rootContextNode.getAllRelationCount(), new IteratorCounter(rootContextNode.getAllRelations()).count());
+		assertEquals(rootContextNode.getAllLiteralCount(), new IteratorCounter(rootContextNode.getAllLiteralNodes()).count());
+		assertEquals(rootContextNode.getAllStatementCount(), new IteratorCounter(rootContextNode.getAllStatements()).count());
+
+		for (ContextNode contextNode : rootContextNode.getAllContextNodes()) {
+
+			assertEquals(contextNode.getAllContextNodeCount(), new IteratorCounter(contextNode.getAllContextNodes()).count());
+			assertEquals(contextNode.getAllRelationCount(), new IteratorCounter(contextNode.getAllRelations()).count());
+			assertEquals(contextNode.getAllLiteralCount(), new IteratorCounter(contextNode.getAllLiteralNodes()).count());
+			assertEquals(contextNode.getAllStatementCount(), new IteratorCounter(contextNode.getAllStatements()).count());
+		}
+
+		GraphStatistics graphStatistics = ((AbstractGraph) graph).getGraphStatistics();
+
+		assertEquals(graphStatistics.getContextNodeCount(), rootContextNode.getAllContextNodeCount());
+		assertEquals(graphStatistics.getRelationCount(), rootContextNode.getAllRelationCount());
+		assertEquals(graphStatistics.getLiteralCount(), rootContextNode.getAllLiteralCount());
+		assertEquals(graphStatistics.getStatementCount(), graph.getAllStatementCount());
+	}
+
 	private static void testGraph(Graph graph) throws Exception {
 
 		ContextNode rootContextNode = graph.getRootContextNode();
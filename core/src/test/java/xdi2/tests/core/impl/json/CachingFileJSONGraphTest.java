@@ -0,0 +1,127 @@
+package xdi2.tests.core.impl.json;
+
+import com.google.gson.JsonObject;
+
+import xdi2.core.ContextNode;
+import xdi2.core.GraphFactory;
+import xdi2.core.impl.json.JSONGraph;
+import xdi2.core.impl.json.file.FileJSONGraphFactory;
+import xdi2.core.impl.json.file.FileJSONStore;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
+import xdi2.tests.core.impl.AbstractGraphTest;
+
+public class CachingFileJSONGraphTest extends AbstractGraphTest {
+
+	private static FileJSONGraphFactory graphFactory = new FileJSONGraphFactory();
+
+	static {
+
+		graphFactory.setReadCacheSize(1000);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+
+		super.setUp();
+
+		FileJSONStore.cleanup();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+
+		super.tearDown();
+
+		FileJSONStore.cleanup();
+	}
+
+	@Override
+	protected GraphFactory getGraphFactory() {
+
+		return graphFactory;
+	}
+
+	@Override
+	protected boolean supportsPersistence() {
+
+		return true;
+	}
+
+	public void testReadCache() throws Exception {
+
+		JSONGraph graph = (JSONGraph) graphFactory.openGraph(this.getClass().getName() + "-readcache-0");
+
+		graph.setDeepContextNode(XDIAddress.create("=markus<#email>")).setLiteralNode("markus@gmail.com");
+
+		graph.getReadCache().resetStatistics();
+
+		for (int i = 0; i < 10; i++) {
+
+			assertEquals("markus@gmail.com", graph.getDeepLiteralNode(XDIAddress.create("=markus<#email>&")).getLiteralData());
+		}
+
+		assertTrue(graph.getReadCache().getHitCount() > 0);
+		assertTrue(graph.getReadCache().getHitRate() > 0.5d);
+
+		// changes are visible through the cache
+
+		graph.getDeepLiteralNode(XDIAddress.create("=markus<#email>&")).setLiteralData("markus@xdi.org");
+		assertEquals("markus@xdi.org", graph.getDeepLiteralNode(XDIAddress.create("=markus<#email>&")).getLiteralData());
+
+		ContextNode markus = graph.getDeepContextNode(XDIAddress.create("=markus"));
+		markus.setContextNode(XDIArc.create("<#name>"));
+		assertTrue(markus.containsContextNode(XDIArc.create("<#name>")));
+
+		markus.delete();
+		assertNull(graph.getDeepContextNode(XDIAddress.create("=markus")));
+		assertNull(graph.getDeepLiteralNode(XDIAddress.create("=markus<#email>&")));
+
+		// rolled back changes are not in the cache
+
+		graph.beginTransaction();
+		graph.setDeepContextNode(XDIAddress.create("=animesh"));
+		assertNotNull(graph.getDeepContextNode(XDIAddress.create("=animesh")));
+		graph.rollbackTransaction();
+
+		assertEquals(0, graph.getReadCache().size());
+
+		graph.close();
+	}
+
+	public void testReadCacheTransaction() throws Exception {
+
+		JSONGraph graph = (JSONGraph) graphFactory.openGraph(this.getClass().getName() + "-readcache-1");
+
+		graph.setDeepContextNode(XDIAddress.create("=markus<#email>")).setLiteralNode("markus@gmail.com");
+		assertTrue(graph.getDeepContextNode(XDIAddress.create("=markus")).containsContextNode(XDIArc.create("<#email>")));
+
+		JsonObject jsonObject = graph.getReadCache().get("=markus");
+		assertNotNull(jsonObject);
+
+		String jsonString = jsonObject.toString();
+
+		// changes in a transaction do not touch the objects in the read cache
+
+		graph.beginTransaction();
+
+		ContextNode markus = graph.getDeepContextNode(XDIAddress.create("=markus"));
+		assertTrue(markus.containsContextNode(XDIArc.create("<#email>")));
+		markus.setContextNode(XDIArc.create("<#name>"));
+		markus.getContextNode(XDIArc.create("<#email>")).delete();
+
+		assertTrue(markus.containsContextNode(XDIArc.create("<#name>")));
+		assertFalse(markus.containsContextNode(XDIArc.create("<#email>")));
+
+		graph.commitTransaction();
+
+		assertEquals(jsonString, jsonObject.toString());
+
+		// the changes are visible through the read cache
+
+		assertTrue(graph.getDeepContextNode(XDIAddress.create("=markus")).containsContextNode(XDIArc.create("<#name>")));
+		assertFalse(graph.getDeepContextNode(XDIAddress.create("=markus")).containsContextNode(XDIArc.create("<#email>")));
+
+		graph.close();
+	}
+}
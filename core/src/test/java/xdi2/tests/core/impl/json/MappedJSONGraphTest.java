@@ -0,0 +1,120 @@
+package xdi2.tests.core.impl.json;
+
+import java.util.Map;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import xdi2.core.GraphFactory;
+import xdi2.core.impl.json.mapped.MappedJSONGraphFactory;
+import xdi2.core.impl.json.mapped.MappedJSONStore;
+import xdi2.tests.core.impl.AbstractGraphTest;
+
+public class MappedJSONGraphTest extends AbstractGraphTest {
+
+	private static MappedJSONGraphFactory graphFactory = new MappedJSONGraphFactory();
+
+	static {
+
+		graphFactory.setMaxSegmentSize(64 * 1024);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+
+		super.setUp();
+
+		MappedJSONStore.cleanup();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+
+		super.tearDown();
+
+		MappedJSONStore.cleanup();
+	}
+
+	@Override
+	protected GraphFactory getGraphFactory() {
+
+		return graphFactory;
+	}
+
+	@Override
+	protected boolean supportsPersistence() {
+
+		return true;
+	}
+
+	public void testMappedJSONStore() throws Exception {
+
+		String prefix = this.getClass().getName() + "-mapped-0";
+
+		MappedJSONStore jsonStore = new MappedJSONStore(prefix, 1024, 2048);
+		jsonStore.init();
+
+		for (int i = 0; i < 100; i++) jsonStore.save("=a" + i, jsonObject("n", i));
+		jsonStore.save("=b", jsonObject("n", -1));
+		jsonStore.save("=a5", jsonObject("n", 55));
+
+		assertTrue(jsonStore.getNumSegments() > 1);
+		assertEquals(Integer.valueOf(55), Integer.valueOf(jsonStore.load("=a5").get("n").getAsInt()));
+
+		Map<String, JsonObject> jsonObjects = jsonStore.loadWithPrefix("=a1");
+		assertEquals(11, jsonObjects.size());
+		assertTrue(jsonObjects.containsKey("=a1"));
+		assertTrue(jsonObjects.containsKey("=a19"));
+
+		jsonStore.delete("=a2");
+		assertNull(jsonStore.load("=a2"));
+		assertNull(jsonStore.load("=a25"));
+		assertNotNull(jsonStore.load("=a3"));
+
+		jsonStore.close();
+
+		// reopen
+
+		jsonStore = new MappedJSONStore(prefix, 1024, 2048);
+		jsonStore.init();
+
+		assertEquals(Integer.valueOf(55), Integer.valueOf(jsonStore.load("=a5").get("n").getAsInt()));
+		assertNull(jsonStore.load("=a25"));
+		assertEquals(89, jsonStore.loadWithPrefix("=a").size());
+		assertEquals(90, jsonStore.loadWithPrefix("").size());
+
+		// compact
+
+		jsonStore.delete("=a");
+
+		assertEquals(0, jsonStore.getDeadBytes());
+		assertEquals(1, jsonStore.getNumSegments());
+		assertEquals(1, jsonStore.loadWithPrefix("").size());
+
+		for (int i = 0; i < 50; i++) jsonStore.save("=c", jsonObject("n", i));
+
+		jsonStore.compact();
+
+		assertEquals(0, jsonStore.getDeadBytes());
+		assertEquals(1, jsonStore.getNumSegments());
+		assertEquals(Integer.valueOf(49), Integer.valueOf(jsonStore.load("=c").get("n").getAsInt()));
+
+		jsonStore.close();
+
+		jsonStore = new MappedJSONStore(prefix, 1024, 2048);
+		jsonStore.init();
+
+		assertEquals(2, jsonStore.loadWithPrefix("").size());
+		assertEquals(Integer.valueOf(-1), Integer.valueOf(jsonStore.load("=b").get("n").getAsInt()));
+
+		jsonStore.close();
+	}
+
+	private static JsonObject jsonObject(String key, int value) {
+
+		JsonObject jsonObject = new JsonObject();
+		jsonObject.add(key, new JsonPrimitive(Integer.valueOf(value)));
+
+		return jsonObject;
+	}
+}
@@ -0,0 +1,116 @@
+package xdi2.tests.core.impl.keyvalue;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import xdi2.core.Graph;
+import xdi2.core.GraphFactory;
+import xdi2.core.impl.keyvalue.KeyValueGraph;
+import xdi2.core.impl.keyvalue.lsm.LSMKeyValueGraphFactory;
+import xdi2.core.impl.keyvalue.lsm.LSMKeyValueStore;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.tests.core.impl.AbstractGraphTest;
+
+public class CompactKeyValueGraphTest extends AbstractGraphTest {
+
+	private static LSMKeyValueGraphFactory graphFactory = new LSMKeyValueGraphFactory();
+
+	static {
+
+		graphFactory.setCompactKeys(true);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+
+		super.setUp();
+
+		LSMKeyValueStore.cleanup();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+
+		super.tearDown();
+
+		LSMKeyValueStore.cleanup();
+	}
+
+	@Override
+	protected GraphFactory getGraphFactory() {
+
+		return graphFactory;
+	}
+
+	@Override
+	protected boolean supportsPersistence() {
+
+		return true;
+	}
+
+	public void testCompactKeys() throws Exception {
+
+		Graph graph = graphFactory.openGraph(this.getClass().getName() + "-compact-1");
+		assertTrue(((KeyValueGraph) graph).getCompactKeysEnabled());
+
+		graph.setStatement(XDIStatement.create("=markus<#email>/&/\"markus@projectdanube.org\""));
+		graph.setStatement(XDIStatement.create("=animesh<#email>/&/\"animesh@gmail.com\""));
+		graph.setStatement(XDIStatement.create("=markus/#friend/=animesh"));
+
+		// context node keys do not contain addresses, and every arc is stored once
+
+		LSMKeyValueStore keyValueStore = (LSMKeyValueStore) ((KeyValueGraph) graph).getKeyValueStore();
+		int emailArcs = 0;
+
+		for (Iterator<Map.Entry<String, String>> entries = keyValueStore.getAllWithPrefix(""); entries.hasNext(); ) {
+
+			Map.Entry<String, String> entry = entries.next();
+
+			assertFalse(entry.getKey().endsWith("/--C") && entry.getKey().contains("=markus"));
+			if (entry.getValue().equals("<#email>")) emailArcs++;
+		}
+
+		assertEquals(1, emailArcs);
+
+		graph.close();
+
+		// reopen
+
+		graph = graphFactory.openGraph(this.getClass().getName() + "-compact-1");
+
+		assertEquals("animesh@gmail.com", graph.getDeepLiteralNode(XDIAddress.create("=animesh<#email>&")).getLiteralDataString());
+		assertNotNull(graph.getDeepContextNode(XDIAddress.create("=markus")).getRelation(XDIAddress.create("#friend"), XDIAddress.create("=animesh")));
+
+		graph.getDeepContextNode(XDIAddress.create("=markus")).delete();
+		graph.setStatement(XDIStatement.create("=markus<#name>/&/\"Markus\""));
+
+		assertNull(graph.getDeepContextNode(XDIAddress.create("=markus<#email>")));
+		assertNotNull(graph.getDeepLiteralNode(XDIAddress.create("=markus<#name>&")));
+
+		graph.close();
+	}
+
+	public void testKeyScheme() throws Exception {
+
+		LSMKeyValueGraphFactory defaultGraphFactory = new LSMKeyValueGraphFactory();
+
+		Graph graph = graphFactory.openGraph(this.getClass().getName() + "-compact-2");
+		graph.setStatement(XDIStatement.create("=markus/#friend/=animesh"));
+		graph.close();
+
+		Graph defaultGraph = defaultGraphFactory.openGraph(this.getClass().getName() + "-compact-3");
+		defaultGraph.setStatement(XDIStatement.create("=markus/#friend/=animesh"));
+		defaultGraph.close();
+
+		// a store cannot be opened with a different key scheme
+
+		try { defaultGraphFactory.openGraph(this.getClass().getName() + "-compact-2"); fail(); } catch (IOException ex) { }
+		try { graphFactory.openGraph(this.getClass().getName() + "-compact-3"); fail(); } catch (IOException ex) { }
+
+		graph = graphFactory.openGraph(this.getClass().getName() + "-compact-2");
+		assertNotNull(graph.getDeepContextNode(XDIAddress.create("=markus")).getRelation(XDIAddress.create("#friend"), XDIAddress.create("=animesh")));
+		graph.close();
+	}
+}
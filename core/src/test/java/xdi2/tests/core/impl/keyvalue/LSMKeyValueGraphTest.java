@@ -0,0 +1,137 @@
+package xdi2.tests.core.impl.keyvalue;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import xdi2.core.ContextNode;
+import xdi2.core.Graph;
+import xdi2.core.GraphFactory;
+import xdi2.core.impl.keyvalue.KeyValueGraph;
+import xdi2.core.impl.keyvalue.lsm.LSMKeyValueGraphFactory;
+import xdi2.core.impl.keyvalue.lsm.LSMKeyValueStore;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.core.util.iterators.IteratorCounter;
+import xdi2.core.util.iterators.IteratorListMaker;
+import xdi2.tests.core.impl.AbstractGraphTest;
+
+public class LSMKeyValueGraphTest extends AbstractGraphTest {
+
+	private static LSMKeyValueGraphFactory graphFactory = new LSMKeyValueGraphFactory();
+
+	static {
+
+		graphFactory.setMaxMemTableSize(50);
+		graphFactory.setMaxRuns(3);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+
+		super.setUp();
+
+		LSMKeyValueStore.cleanup();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+
+		super.tearDown();
+
+		LSMKeyValueStore.cleanup();
+	}
+
+	@Override
+	protected GraphFactory getGraphFactory() {
+
+		return graphFactory;
+	}
+
+	@Override
+	protected boolean supportsPersistence() {
+
+		return true;
+	}
+
+	public void testSubgraphSiblings() throws Exception {
+
+		Graph graph = graphFactory.openGraph(this.getClass().getName() + "-lsm-1");
+
+		graph.setStatement(XDIStatement.create("=a/#b/=c"));
+		graph.setStatement(XDIStatement.create("=a<#x>/&/\"1\""));
+		graph.setStatement(XDIStatement.create("=ab/#b/=c"));
+		graph.setStatement(XDIStatement.create("=ab<#x>/&/\"2\""));
+
+		ContextNode contextNode = graph.getDeepContextNode(XDIAddress.create("=a"));
+
+		assertEquals(1, new IteratorCounter(contextNode.getAllContextNodes()).count());
+		assertEquals(1, new IteratorCounter(contextNode.getAllRelations()).count());
+		assertEquals(1, new IteratorCounter(contextNode.getAllLiteralNodes()).count());
+		assertEquals("1", contextNode.getAllLiteralNodes().next().getLiteralDataString());
+		assertEquals(3, new IteratorCounter(contextNode.getAllStatements()).count());
+
+		graph.close();
+	}
+
+	public void testSubgraphDelete() throws Exception {
+
+		Graph graph = graphFactory.openGraph(this.getClass().getName() + "-lsm-3");
+
+		for (int i = 0; i < 100; i++) graph.setStatement(XDIStatement.create("=a#" + i + "/#b/=c"));
+
+		ContextNode contextNode = graph.getDeepContextNode(XDIAddress.create("=a"));
+
+		// change the graph while the subgraph is read
+
+		int count = 0;
+
+		for (Iterator<ContextNode> contextNodes = contextNode.getAllContextNodes(); contextNodes.hasNext(); count++) {
+
+			contextNodes.next().delete();
+		}
+
+		assertEquals(100, count);
+		assertFalse(contextNode.getAllContextNodes().hasNext());
+		assertFalse(contextNode.getAllRelations().hasNext());
+
+		graph.close();
+	}
+
+	public void testCountsWithoutStoredCounts() throws Exception {
+
+		Graph graph = graphFactory.openGraph(this.getClass().getName() + "-lsm-2");
+
+		graph.setStatement(XDIStatement.create("=a=b/#x/=c"));
+		graph.setStatement(XDIStatement.create("=a<#b>/&/\"x\""));
+		graph.setStatement(XDIStatement.create("=d//=e"));
+
+		// remove the stored counts, as in a store that was written before they were kept
+
+		LSMKeyValueStore keyValueStore = (LSMKeyValueStore) ((KeyValueGraph) graph).getKeyValueStore();
+
+		for (Map.Entry<String, String> entry : new IteratorListMaker<Map.Entry<String, String>> (keyValueStore.getAllWithPrefix("")).list()) {
+
+			if (entry.getKey().endsWith("/--S")) keyValueStore.delete(entry.getKey());
+		}
+
+		ContextNode contextNode = graph.getDeepContextNode(XDIAddress.create("=a"));
+
+		assertEquals(2, contextNode.getAllContextNodeCount());
+		assertEquals(1, contextNode.getAllRelationCount());
+		assertEquals(1, contextNode.getAllLiteralCount());
+		assertEquals(8, graph.getAllStatementCount());
+
+		// the counts are stored again on the next change
+
+		graph.setStatement(XDIStatement.create("=a=b/#x/=d"));
+
+		assertEquals(2, contextNode.getAllRelationCount());
+		assertEquals(9, graph.getAllStatementCount());
+
+		Iterator<Map.Entry<String, String>> entries = keyValueStore.getAllWithPrefix("=a/--S");
+		assertTrue(entries.hasNext());
+		assertEquals("2 2 1", entries.next().getValue());
+
+		graph.close();
+	}
+}
@@ -0,0 +1,227 @@
+package xdi2.tests.core.impl.keyvalue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+import java.util.Map;
+
+import xdi2.core.impl.keyvalue.KeyValueStore;
+import xdi2.core.impl.keyvalue.lsm.LSMKeyValueStore;
+
+public class LSMKeyValueTest extends AbstractKeyValueTest {
+
+	@Override
+	protected void setUp() throws Exception {
+
+		super.setUp();
+
+		LSMKeyValueStore.cleanup();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+
+		super.tearDown();
+
+		LSMKeyValueStore.cleanup();
+	}
+
+	@Override
+	protected KeyValueStore getKeyValueStore(String id) throws IOException {
+
+		File directory = new File("xdi2-lsm-keyvalue-graph." + id);
+
+		// open store
+
+		KeyValueStore keyValueStore;
+
+		keyValueStore = new LSMKeyValueStore(directory, 4, 2);
+		keyValueStore.init();
+
+		// done
+
+		return keyValueStore;
+	}
+
+	public void testFlushAndCompact() throws Exception {
+
+		File directory = new File("xdi2-lsm-keyvalue-graph." + this.getClass().getName() + "-lsm-1");
+
+		LSMKeyValueStore keyValueStore = new LSMKeyValueStore(directory, 10, 3);
+		keyValueStore.init();
+
+		for (int i = 0; i < 100; i++) keyValueStore.set("k" + (i % 20), "v" + i);
+		for (int i = 0; i < 20; i += 2) keyValueStore.delete("k" + i);
+
+		assertTrue(keyValueStore.getRunCount() <= 3);
+		assertEquals(10, countKeys(keyValueStore.getAllWithPrefix("k")));
+		assertEquals(5, keyValueStore.count("k1"));
+		assertFalse(keyValueStore.contains("k2"));
+
+		keyValueStore.flush();
+		keyValueStore.compact();
+
+		assertEquals(1, keyValueStore.getRunCount());
+		assertEquals(0, keyValueStore.getMemTableSize());
+		assertEquals(50, countEntries(keyValueStore.getAllWithPrefix("")));
+		assertTrue(keyValueStore.contains("k19", "v99"));
+		assertFalse(keyValueStore.contains("k18", "v98"));
+
+		keyValueStore.close();
+	}
+
+	public void testReopen() throws Exception {
+
+		File directory = new File("xdi2-lsm-keyvalue-graph." + this.getClass().getName() + "-lsm-2");
+
+		LSMKeyValueStore keyValueStore = new LSMKeyValueStore(directory, 10, 3);
+		keyValueStore.init();
+
+		for (int i = 0; i < 25; i++) keyValueStore.set("a", "" + i);
+		keyValueStore.delete("a", "3");
+
+		keyValueStore.beginTransaction();
+		keyValueStore.set("b", "1");
+		keyValueStore.delete("a", "4");
+		keyValueStore.commitTransaction();
+
+		keyValueStore.close();
+
+		// simulate a group that was only partially written
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(new File(directory, LSMKeyValueStore.WAL_FILENAME), "rw");
+		randomAccessFile.seek(randomAccessFile.length());
+		randomAccessFile.writeInt(2);
+		randomAccessFile.writeByte(1);
+		randomAccessFile.close();
+
+		keyValueStore = new LSMKeyValueStore(directory, 10, 3);
+		keyValueStore.init();
+
+		assertEquals(23, keyValueStore.count("a"));
+		assertFalse(keyValueStore.contains("a", "3"));
+		assertFalse(keyValueStore.contains("a", "4"));
+		assertEquals("1", keyValueStore.getOne("b"));
+
+		keyValueStore.set("c", "1");
+		keyValueStore.close();
+
+		keyValueStore = new LSMKeyValueStore(directory, 10, 3);
+		keyValueStore.init();
+
+		assertEquals("1", keyValueStore.getOne("c"));
+
+		keyValueStore.close();
+	}
+
+	public void testTransactionClear() throws Exception {
+
+		File directory = new File("xdi2-lsm-keyvalue-graph." + this.getClass().getName() + "-lsm-3");
+
+		LSMKeyValueStore keyValueStore = new LSMKeyValueStore(directory, 4, 2);
+		keyValueStore.init();
+
+		for (int i = 0; i < 10; i++) keyValueStore.set("a", "" + i);
+
+		keyValueStore.beginTransaction();
+		keyValueStore.clear();
+		keyValueStore.set("b", "1");
+
+		assertFalse(keyValueStore.contains("a"));
+		assertTrue(keyValueStore.contains("b"));
+
+		keyValueStore.rollbackTransaction();
+
+		assertEquals(10, keyValueStore.count("a"));
+		assertFalse(keyValueStore.contains("b"));
+
+		keyValueStore.beginTransaction();
+		keyValueStore.clear();
+		keyValueStore.set("b", "1");
+		keyValueStore.commitTransaction();
+
+		assertEquals(0, keyValueStore.getRunCount());
+		assertFalse(keyValueStore.contains("a"));
+		assertTrue(keyValueStore.contains("b"));
+
+		keyValueStore.close();
+	}
+
+	public void testPrefix() throws Exception {
+
+		File directory = new File("xdi2-lsm-keyvalue-graph." + this.getClass().getName() + "-lsm-4");
+
+		LSMKeyValueStore keyValueStore = new LSMKeyValueStore(directory, 3, 2);
+		keyValueStore.init();
+
+		keyValueStore.set("=ab", "2");
+		keyValueStore.set("=a", "1");
+		keyValueStore.set("=a/--C", "x");
+		keyValueStore.set("=b", "3");
+		keyValueStore.set("=", "0");
+
+		Iterator<Map.Entry<String, String>> entries = keyValueStore.getAllWithPrefix("=a");
+
+		assertEquals("=a", entries.next().getKey());
+		assertEquals("=a/--C", entries.next().getKey());
+		assertEquals("=ab", entries.next().getKey());
+		assertFalse(entries.hasNext());
+
+		keyValueStore.close();
+	}
+
+	public void testPrefixSnapshot() throws Exception {
+
+		File directory = new File("xdi2-lsm-keyvalue-graph." + this.getClass().getName() + "-lsm-5");
+
+		LSMKeyValueStore keyValueStore = new LSMKeyValueStore(directory, 100, 2);
+		keyValueStore.init();
+
+		for (int i = 0; i < 1000; i++) keyValueStore.set("k", "v" + (1000 + i));
+
+		Iterator<Map.Entry<String, String>> entries = keyValueStore.getAllWithPrefix("k");
+
+		// change, flush and compact the store while the scan is in use
+
+		assertEquals("v1000", entries.next().getValue());
+
+		keyValueStore.delete("k");
+		for (int i = 0; i < 500; i++) keyValueStore.set("k", "w" + i);
+		keyValueStore.flush();
+		keyValueStore.compact();
+
+		assertEquals(999, countEntries(entries));
+		assertEquals(500, countEntries(keyValueStore.getAllWithPrefix("k")));
+		assertEquals(1, directory.listFiles().length - 1);
+
+		keyValueStore.close();
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private static int countEntries(Iterator<Map.Entry<String, String>> entries) {
+
+		int count = 0;
+		while (entries.hasNext()) { entries.next(); count++; }
+
+		return count;
+	}
+
+	private static int countKeys(Iterator<Map.Entry<String, String>> entries) {
+
+		int count = 0;
+		String lastKey = null;
+
+		while (entries.hasNext()) {
+
+			String key = entries.next().getKey();
+			if (! key.equals(lastKey)) count++;
+			lastKey = key;
+		}
+
+		return count;
+	}
+}
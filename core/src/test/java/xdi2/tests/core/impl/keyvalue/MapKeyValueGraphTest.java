@@ -1,7 +1,11 @@
 package xdi2.tests.core.impl.keyvalue;
 
+import xdi2.core.ContextNode;
+import xdi2.core.Graph;
 import xdi2.core.GraphFactory;
 import xdi2.core.impl.keyvalue.map.MapKeyValueGraphFactory;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.util.iterators.IteratorCounter;
 import xdi2.tests.core.impl.AbstractGraphTest;
 
 public class MapKeyValueGraphTest extends AbstractGraphTest {
@@ -19,4 +23,49 @@ public class MapKeyValueGraphTest extends AbstractGraphTest {
 
 		return false;
 	}
+
+	public void testDeleteWhileIterating() throws Exception {
+
+		Graph graph = graphFactory.openGraph(this.getClass().getName() + "-delete-1");
+		assertTrue(graphFactory.getCopyIterators());
+
+		makeDeleteGraph(graph);
+		graph.getRootContextNode().delContextNodes();
+		assertEquals(0, new IteratorCounter(graph.getRootContextNode().getAllStatements()).count());
+
+		makeDeleteGraph(graph);
+		for (ContextNode contextNode : graph.getRootContextNode().getContextNodes()) contextNode.delete();
+		assertEquals(0, new IteratorCounter(graph.getRootContextNode().getAllStatements()).count());
+
+		graph.close();
+	}
+
+	public void testDelContextNodesWithoutCopyIterators() throws Exception {
+
+		MapKeyValueGraphFactory graphFactory = new MapKeyValueGraphFactory();
+		graphFactory.setCopyIterators(false);
+
+		Graph graph = graphFactory.openGraph(this.getClass().getName() + "-delete-2");
+
+		makeDeleteGraph(graph);
+		graph.getRootContextNode().delContextNodes();
+		assertEquals(0, new IteratorCounter(graph.getRootContextNode().getAllStatements()).count());
+
+		graph.close();
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private static void makeDeleteGraph(Graph graph) {
+
+		for (int i=0; i<10; i++) {
+
+			ContextNode contextNode = graph.setDeepContextNode(XDIAddress.create("=a" + i));
+
+			for (int j=0; j<3; j++) contextNode.setRelation(XDIAddress.create("#friend"), XDIAddress.create("=a" + i + "*" + j));
+			contextNode.setRelation(XDIAddress.create("#friend"), XDIAddress.create("=a" + ((i + 1) % 10)));
+		}
+	}
 }
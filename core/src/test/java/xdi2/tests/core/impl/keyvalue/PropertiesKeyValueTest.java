@@ -1,7 +1,12 @@
 package xdi2.tests.core.impl.keyvalue;
 
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
 
 import xdi2.core.impl.keyvalue.KeyValueStore;
 import xdi2.core.impl.keyvalue.properties.PropertiesKeyValueStore;
@@ -43,4 +48,123 @@ public class PropertiesKeyValueTest extends AbstractKeyValueTest {
 
 		return keyValueStore;
 	}
+
+	public void testWriteBehind() throws Exception {
+
+		String path = "xdi2-properties-keyvalue-graph." + this.getClass().getName() + "-writebehind.properties";
+
+		PropertiesKeyValueStore keyValueStore = new PropertiesKeyValueStore(path, 3, 0);
+		keyValueStore.init();
+
+		keyValueStore.set("a", "1");
+		keyValueStore.set("b", "2");
+
+		assertEquals(2, keyValueStore.getDirty());
+		assertFalse(new File(path).exists());
+
+		keyValueStore.set("c", "3");
+
+		assertEquals(0, keyValueStore.getDirty());
+		assertTrue(new File(path).exists());
+		assertFalse(new File(path + PropertiesKeyValueStore.TEMP_SUFFIX).exists());
+
+		keyValueStore.delete("a");
+
+		assertEquals(1, keyValueStore.getDirty());
+
+		keyValueStore.close();
+
+		keyValueStore = new PropertiesKeyValueStore(path);
+		keyValueStore.init();
+
+		assertFalse(keyValueStore.contains("a"));
+		assertEquals("2", keyValueStore.getOne("b"));
+		assertEquals("3", keyValueStore.getOne("c"));
+
+		keyValueStore.close();
+	}
+
+	public void testWriteBehindTransaction() throws Exception {
+
+		String path = "xdi2-properties-keyvalue-graph." + this.getClass().getName() + "-writebehind-transaction.properties";
+
+		PropertiesKeyValueStore keyValueStore = new PropertiesKeyValueStore(path, 0, 0);
+		keyValueStore.init();
+
+		keyValueStore.set("a", "1");
+
+		assertEquals(1, keyValueStore.getDirty());
+
+		keyValueStore.beginTransaction();
+		keyValueStore.set("b", "2");
+		keyValueStore.rollbackTransaction();
+
+		assertEquals("1", keyValueStore.getOne("a"));
+		assertFalse(keyValueStore.contains("b"));
+
+		keyValueStore.beginTransaction();
+		keyValueStore.set("c", "3");
+		keyValueStore.commitTransaction();
+
+		PropertiesKeyValueStore keyValueStore2 = new PropertiesKeyValueStore(path);
+		keyValueStore2.init();
+
+		assertEquals("1", keyValueStore2.getOne("a"));
+		assertEquals("3", keyValueStore2.getOne("c"));
+
+		keyValueStore2.close();
+		keyValueStore.close();
+	}
+
+	public void testFlushInterval() throws Exception {
+
+		String path = "xdi2-properties-keyvalue-graph." + this.getClass().getName() + "-flushinterval.properties";
+
+		PropertiesKeyValueStore keyValueStore = new PropertiesKeyValueStore(path, 0, 50);
+		keyValueStore.init();
+
+		keyValueStore.set("a", "1");
+
+		for (int i = 0; i < 100 && keyValueStore.getDirty() > 0; i++) Thread.sleep(20);
+
+		assertEquals(0, keyValueStore.getDirty());
+		assertTrue(new File(path).exists());
+
+		keyValueStore.close();
+	}
+
+	public void testReplace() throws Exception {
+
+		String path = "xdi2-properties-keyvalue-graph." + this.getClass().getName() + "-replace.properties";
+
+		PropertiesKeyValueStore keyValueStore = new PropertiesKeyValueStore(path);
+		keyValueStore.init();
+
+		for (int i = 0; i < 10; i++) {
+
+			keyValueStore.replace("a", "" + i);
+
+			Map<String, String> values = new LinkedHashMap<String, String> ();
+			values.put("b", "" + i);
+			values.put("c", "" + i);
+			keyValueStore.replace(values);
+		}
+
+		keyValueStore.delete("c");
+
+		assertEquals("9", keyValueStore.getOne("a"));
+		assertEquals("9", keyValueStore.getOne("b"));
+		assertFalse(keyValueStore.contains("c"));
+
+		keyValueStore.close();
+
+		// only the current values are left in the file
+
+		Properties properties = new Properties();
+		Reader reader = new FileReader(path);
+		properties.load(reader);
+		reader.close();
+
+		assertEquals(6, properties.size());
+	}
 }
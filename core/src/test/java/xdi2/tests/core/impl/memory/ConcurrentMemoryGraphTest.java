@@ -0,0 +1,265 @@
+package xdi2.tests.core.impl.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import xdi2.core.ContextNode;
+import xdi2.core.Graph;
+import xdi2.core.GraphFactory;
+import xdi2.core.Statement;
+import xdi2.core.impl.AbstractGraph;
+import xdi2.core.impl.memory.MemoryGraphFactory;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.core.util.iterators.IteratorCounter;
+import xdi2.tests.core.impl.AbstractGraphTest;
+
+public class ConcurrentMemoryGraphTest extends AbstractGraphTest {
+
+	private static final int WRITERS = 8;
+	private static final int READERS = 4;
+	private static final int ITERATIONS = 200;
+
+	private static MemoryGraphFactory graphFactory = new MemoryGraphFactory();
+
+	static {
+
+		graphFactory.setConcurrent(true);
+		graphFactory.setSortmode(MemoryGraphFactory.SORTMODE_ALPHA);
+	}
+
+	@Override
+	protected GraphFactory getGraphFactory() {
+
+		return graphFactory;
+	}
+
+	@Override
+	protected boolean supportsPersistence() {
+
+		return false;
+	}
+
+	public void testConcurrentStress() throws Exception {
+
+		final Graph graph = graphFactory.openGraph();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch writersDone = new CountDownLatch(WRITERS);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(WRITERS + READERS);
+		List<Future<Long>> futures = new ArrayList<Future<Long>> ();
+
+		// writers change their own subgraphs, and a shared context node
+
+		for (int i = 0; i < WRITERS; i++) {
+
+			final int writer = i;
+
+			futures.add(executorService.submit(new Callable<Long> () {
+
+				@Override
+				public Long call() throws Exception {
+
+					start.await();
+
+					try {
+
+						for (int j = 0; j < ITERATIONS; j++) {
+
+							graph.setStatement(XDIStatement.create("=writer" + writer + "<#n" + j + ">/&/\"" + j + "\""));
+							graph.setStatement(XDIStatement.create("=writer" + writer + "/#r/=shared" + j));
+							graph.setStatement(XDIStatement.create("=shared" + j + "/#w/=writer" + writer));
+
+							if (j % 2 == 1) graph.getDeepContextNode(XDIAddress.create("=writer" + writer + "<#n" + (j - 1) + ">")).delete();
+						}
+					} finally {
+
+						writersDone.countDown();
+					}
+
+					return Long.valueOf(0);
+				}
+			}));
+		}
+
+		// readers traverse the whole graph while it changes
+
+		for (int i = 0; i < READERS; i++) {
+
+			futures.add(executorService.submit(new Callable<Long> () {
+
+				@Override
+				public Long call() throws Exception {
+
+					start.await();
+
+					long traversals = 0;
+
+					do {
+
+						for (Statement statement : graph.getRootContextNode().getAllStatements()) assertNotNull(statement.getXDIStatement());
+						traversals++;
+					} while (writersDone.getCount() > 0);
+
+					return Long.valueOf(traversals);
+				}
+			}));
+		}
+
+		start.countDown();
+
+		for (Future<Long> future : futures) future.get();
+
+		executorService.shutdown();
+
+		// check the result
+
+		for (int i = 0; i < WRITERS; i++) {
+
+			ContextNode contextNode = graph.getDeepContextNode(XDIAddress.create("=writer" + i));
+
+			assertEquals(ITERATIONS / 2, contextNode.getContextNodeCount());
+			assertEquals(ITERATIONS, contextNode.getRelationCount());
+			assertEquals(ITERATIONS, new IteratorCounter(contextNode.getIncomingRelations()).count());
+		}
+
+		for (int j = 0; j < ITERATIONS; j++) {
+
+			assertEquals(WRITERS, graph.getDeepContextNode(XDIAddress.create("=shared" + j)).getRelationCount());
+		}
+
+		assertEquals(new IteratorCounter(graph.getRootContextNode().getAllStatements()).count(), graph.getAllStatementCount());
+
+		graph.close();
+	}
+
+	public void testConcurrentDeleteCounts() throws Exception {
+
+		final Graph graph = graphFactory.openGraph();
+		final CountDownLatch start = new CountDownLatch(1);
+
+		graph.setDeepContextNode(XDIAddress.create("=a"));
+
+		ExecutorService executorService = Executors.newFixedThreadPool(WRITERS + 1);
+		List<Future<Long>> futures = new ArrayList<Future<Long>> ();
+
+		// writers change context nodes that are deleted at the same time
+
+		for (int i = 0; i < WRITERS; i++) {
+
+			final int writer = i;
+
+			futures.add(executorService.submit(new Callable<Long> () {
+
+				@Override
+				public Long call() throws Exception {
+
+					start.await();
+
+					for (int j = 0; j < ITERATIONS; j++) {
+
+						ContextNode contextNode = graph.setDeepContextNode(XDIAddress.create("=a#x" + (j % 4)));
+
+						contextNode.setContextNode(XDIArc.create("<#w" + writer + ">")).setLiteralString("" + j);
+						contextNode.setRelation(XDIAddress.create("#r" + writer), XDIAddress.create("=b"));
+					}
+
+					return Long.valueOf(0);
+				}
+			}));
+		}
+
+		futures.add(executorService.submit(new Callable<Long> () {
+
+			@Override
+			public Long call() throws Exception {
+
+				start.await();
+
+				for (int j = 0; j < ITERATIONS; j++) graph.getDeepContextNode(XDIAddress.create("=a")).delContextNode(XDIArc.create("#x" + (j % 4)));
+
+				return Long.valueOf(0);
+			}
+		}));
+
+		start.countDown();
+
+		for (Future<Long> future : futures) future.get();
+
+		executorService.shutdown();
+
+		// check the counts
+
+		ContextNode contextNode = graph.getDeepContextNode(XDIAddress.create("=a"));
+
+		assertEquals(new IteratorCounter(contextNode.getAllContextNodes()).count(), contextNode.getAllContextNodeCount());
+		assertEquals(new IteratorCounter(contextNode.getAllRelations()).count(), contextNode.getAllRelationCount());
+		assertEquals(new IteratorCounter(contextNode.getAllLiteralNodes()).count(), contextNode.getAllLiteralCount());
+		assertEquals(new IteratorCounter(graph.getRootContextNode().getAllContextNodes()).count(), graph.getRootContextNode().getAllContextNodeCount());
+
+		// changes below a deleted context node are not counted
+
+		ContextNode deletedContextNode = graph.setDeepContextNode(XDIAddress.create("=a#y"));
+		contextNode.delContextNode(XDIArc.create("#y"));
+		deletedContextNode.setContextNode(XDIArc.create("#z"));
+
+		assertEquals(new IteratorCounter(contextNode.getAllContextNodes()).count(), contextNode.getAllContextNodeCount());
+
+		graph.close();
+	}
+
+	public void testWritersOnDifferentSubtrees() throws Exception {
+
+		final Graph graph = graphFactory.openGraph();
+
+		final ContextNode contextNodeA = graph.setDeepContextNode(XDIAddress.create("=a"));
+		final ContextNode contextNodeB = graph.setDeepContextNode(XDIAddress.create("=b"));
+
+		ExecutorService executorService = Executors.newFixedThreadPool(1);
+
+		// a writer below =b does not wait for a writer below =a, or for anything else that is graph-wide
+
+		synchronized (contextNodeA) {
+
+			synchronized (((AbstractGraph) graph).getGraphHash()) {
+
+				Future<Long> future = executorService.submit(new Callable<Long> () {
+
+					@Override
+					public Long call() throws Exception {
+
+						for (int j = 0; j < ITERATIONS; j++) {
+
+							ContextNode contextNode = contextNodeB.setContextNode(XDIArc.create("<#x" + j + ">"));
+
+							contextNode.setLiteralString("" + j);
+							contextNode.setRelation(XDIAddress.create("#r"), XDIAddress.create("=b<#x0>"));
+						}
+
+						return Long.valueOf(0);
+					}
+				});
+
+				future.get(10, TimeUnit.SECONDS);
+			}
+		}
+
+		executorService.shutdown();
+
+		// check the counts
+
+		assertEquals(ITERATIONS, contextNodeB.getAllContextNodeCount());
+		assertEquals(ITERATIONS, contextNodeB.getAllRelationCount());
+		assertEquals(ITERATIONS, contextNodeB.getAllLiteralCount());
+		assertEquals(new IteratorCounter(graph.getRootContextNode().getAllStatements()).count(), graph.getAllStatementCount());
+
+		graph.close();
+	}
+}
@@ -1,7 +1,15 @@
 package xdi2.tests.core.impl.memory;
 
+import java.util.Iterator;
+
+import xdi2.core.ContextNode;
+import xdi2.core.Graph;
 import xdi2.core.GraphFactory;
+import xdi2.core.Relation;
 import xdi2.core.impl.memory.MemoryGraphFactory;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
+import xdi2.core.util.iterators.IteratorCounter;
 import xdi2.tests.core.impl.AbstractGraphTest;
 
 public class MemoryGraphTest extends AbstractGraphTest {
@@ -19,4 +27,34 @@ public class MemoryGraphTest extends AbstractGraphTest {
 
 		return false;
 	}
+
+	public void testChangeWhileIterating() throws Exception {
+
+		Graph graph = graphFactory.openGraph();
+		ContextNode root = graph.getRootContextNode();
+
+		for (int i = 0; i < 10; i++) root.setContextNode(XDIArc.create("=a" + i));
+		for (int i = 0; i < 10; i++) root.setRelation(XDIAddress.create("#r"), XDIAddress.create("=a" + i));
+
+		// iterators keep seeing the children and relations they started with
+
+		Iterator<ContextNode> contextNodes = root.getContextNodes();
+		Iterator<Relation> relations = root.getRelations();
+
+		root.setContextNode(XDIArc.create("=b"));
+		root.getContextNode(XDIArc.create("=a0")).delete();
+		root.delRelations();
+
+		assertEquals(10, new IteratorCounter(contextNodes).count());
+		assertEquals(10, new IteratorCounter(relations).count());
+
+		assertEquals(10, new IteratorCounter(root.getContextNodes()).count());
+		assertFalse(root.getRelations().hasNext());
+
+		for (ContextNode contextNode : root.getContextNodes()) contextNode.delete();
+
+		assertFalse(root.containsContextNodes());
+
+		graph.close();
+	}
 }
@@ -0,0 +1,151 @@
+package xdi2.tests.core.impl.wrapped;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import xdi2.core.ContextNode;
+import xdi2.core.Graph;
+import xdi2.core.GraphFactory;
+import xdi2.core.impl.wrapped.WrappedGraph;
+import xdi2.core.impl.wrapped.file.JournaledFileWrapperGraphFactory;
+import xdi2.core.impl.wrapped.file.JournaledFileWrapperStore;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.tests.core.impl.AbstractGraphTest;
+
+public class JournaledFileWrapperGraphTest extends AbstractGraphTest {
+
+	private static JournaledFileWrapperGraphFactory graphFactory = new JournaledFileWrapperGraphFactory();
+
+	@Override
+	protected void setUp() throws Exception {
+
+		super.setUp();
+
+		JournaledFileWrapperStore.cleanup();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+
+		super.tearDown();
+
+		JournaledFileWrapperStore.cleanup();
+	}
+
+	@Override
+	protected GraphFactory getGraphFactory() {
+
+		return graphFactory;
+	}
+
+	@Override
+	protected boolean supportsPersistence() {
+
+		return true;
+	}
+
+	public void testJournalReplay() throws Exception {
+
+		Graph graph = graphFactory.openGraph(this.getClass().getName() + "-journal-0");
+		JournaledFileWrapperStore store = (JournaledFileWrapperStore) ((WrappedGraph) graph).getWrapperStore();
+
+		graph.beginTransaction();
+		ContextNode markus = graph.setDeepContextNode(XDIAddress.create("=markus"));
+		markus.setDeepContextNode(XDIAddress.create("<#email>")).setLiteralNode("markus@gmail.com");
+		markus.setRelation(XDIAddress.create("#friend"), XDIAddress.create("=animesh"));
+		markus.setRelation(XDIAddress.create("#friend"), XDIAddress.create("=drummond"));
+		graph.commitTransaction();
+
+		assertTrue(store.getJournalFile().exists());
+		assertFalse(new File(store.getPath()).exists());
+
+		graph.beginTransaction();
+		markus.getDeepLiteralNode(XDIAddress.create("<#email>&")).setLiteralData("markus@xdi.org");
+		markus.delRelation(XDIAddress.create("#friend"), XDIAddress.create("=drummond"));
+		graph.getRootContextNode().delContextNode(XDIArc.create("=animesh"));
+		graph.commitTransaction();
+
+		graph.close();
+
+		graph = graphFactory.openGraph(this.getClass().getName() + "-journal-0");
+
+		assertEquals("markus@xdi.org", graph.getDeepLiteralNode(XDIAddress.create("=markus<#email>&")).getLiteralData());
+		assertNotNull(graph.getDeepContextNode(XDIAddress.create("=drummond")));
+		assertNull(graph.getDeepContextNode(XDIAddress.create("=animesh")));
+		assertFalse(graph.getDeepContextNode(XDIAddress.create("=markus")).containsRelations(XDIAddress.create("#friend")));
+
+		graph.close();
+	}
+
+	public void testIncompleteCommit() throws Exception {
+
+		Graph graph = graphFactory.openGraph(this.getClass().getName() + "-journal-1");
+		JournaledFileWrapperStore store = (JournaledFileWrapperStore) ((WrappedGraph) graph).getWrapperStore();
+
+		graph.setStatement(XDIStatement.create("=markus<#name>/&/\"Markus\""));
+		graph.commitTransaction();
+		graph.close();
+
+		// simulate a crash in the middle of a commit
+
+		OutputStream outputStream = new FileOutputStream(store.getJournalFile(), true);
+		outputStream.write("+=animesh<#name>/&/\"Animesh\"\n+=dru".getBytes("UTF-8"));
+		outputStream.close();
+
+		graph = graphFactory.openGraph(this.getClass().getName() + "-journal-1");
+
+		assertNotNull(graph.getDeepLiteralNode(XDIAddress.create("=markus<#name>&")));
+		assertNull(graph.getDeepContextNode(XDIAddress.create("=animesh")));
+
+		graph.setStatement(XDIStatement.create("=drummond<#name>/&/\"Drummond\""));
+		graph.commitTransaction();
+		graph.close();
+
+		graph = graphFactory.openGraph(this.getClass().getName() + "-journal-1");
+
+		assertNotNull(graph.getDeepLiteralNode(XDIAddress.create("=markus<#name>&")));
+		assertNotNull(graph.getDeepLiteralNode(XDIAddress.create("=drummond<#name>&")));
+		assertNull(graph.getDeepContextNode(XDIAddress.create("=animesh")));
+
+		graph.close();
+	}
+
+	public void testCompaction() throws Exception {
+
+		JournaledFileWrapperGraphFactory graphFactory = new JournaledFileWrapperGraphFactory();
+		graphFactory.setMaxJournalSize(512);
+
+		Graph graph = graphFactory.openGraph(this.getClass().getName() + "-journal-2");
+		JournaledFileWrapperStore store = (JournaledFileWrapperStore) ((WrappedGraph) graph).getWrapperStore();
+
+		for (int i = 0; i < 100; i++) {
+
+			graph.beginTransaction();
+			graph.setStatement(XDIStatement.create("=markus<#counter>/&/" + i));
+			graph.setStatement(XDIStatement.create("=markus/#friend/=friend" + i));
+			if (i > 0) graph.getDeepContextNode(XDIAddress.create("=friend" + (i - 1))).delete();
+			graph.commitTransaction();
+
+			// a compaction is only started when no other compaction is running
+
+			store.waitForCompaction();
+		}
+
+		assertTrue(new File(store.getPath()).exists());
+		assertTrue(store.getJournalFile().length() < 512);
+
+		graph.close();
+
+		graph = graphFactory.openGraph(this.getClass().getName() + "-journal-2");
+
+		assertEquals(Double.valueOf(99), graph.getDeepLiteralNode(XDIAddress.create("=markus<#counter>&")).getLiteralDataNumber());
+		assertNotNull(graph.getDeepContextNode(XDIAddress.create("=friend99")));
+		assertNull(graph.getDeepContextNode(XDIAddress.create("=friend98")));
+		assertEquals(1, graph.getDeepContextNode(XDIAddress.create("=markus")).getRelationCount(XDIAddress.create("#friend")));
+
+		graph.close();
+	}
+}
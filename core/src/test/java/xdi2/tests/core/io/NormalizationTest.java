@@ -1,12 +1,26 @@
 package xdi2.tests.core.io;
 
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Iterator;
+
 import junit.framework.TestCase;
 import xdi2.core.ContextNode;
 import xdi2.core.Graph;
+import xdi2.core.features.signatures.Signatures;
 import xdi2.core.impl.memory.MemoryGraphFactory;
 import xdi2.core.io.Normalization;
+import xdi2.core.io.Normalization.NormalizationCopyStrategy;
+import xdi2.core.io.readers.XDIDisplayReader;
 import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
 import xdi2.core.syntax.XDIStatement;
+import xdi2.core.util.CopyUtil.CopyStrategy;
+import xdi2.core.util.CopyUtil.ReplaceRegexLiteralStringCopyStrategy;
+import xdi2.core.util.CopyUtil.ReplaceXDIAddressCopyStrategy;
+import xdi2.core.util.SortedCopyTraversal;
 
 public class NormalizationTest extends TestCase {
 
@@ -24,4 +38,59 @@ public class NormalizationTest extends TestCase {
 
 		graph.close();
 	}
+
+	public void testStreamingSerialization() throws Exception {
+
+		Graph graph = MemoryGraphFactory.getInstance().openGraph();
+		new XDIDisplayReader(null).read(graph, new InputStreamReader(ReaderWriterTest.class.getResourceAsStream("readerwriter.xdi"), Charset.forName("UTF-8")));
+
+		// add signatures, and relations to context nodes that are not copied
+
+		ContextNode messageContextNode = graph.getDeepContextNode(XDIAddress.create("+!:uuid:9999+!:uuid:8888[$msg]*!:uuid:1234"));
+		Signatures.createSignature(messageContextNode, "sha", Integer.valueOf(256), "aes", Integer.valueOf(256), true);
+		Signatures.createSignature(graph.getRootContextNode(), "sha", Integer.valueOf(256), "rsa", Integer.valueOf(2048), true);
+		messageContextNode.setRelation(XDIAddress.create("#test"), XDIAddress.create("+!:uuid:9999+!:uuid:8888[$msg]*!:uuid:1234<$sig>"));
+		messageContextNode.setRelation(XDIAddress.create("#test"), XDIAddress.create("=!:uuid:5555#test"));
+
+		CopyStrategy[] copyStrategies = new CopyStrategy[] {
+				null,
+				new NormalizationCopyStrategy(),
+				new ReplaceRegexLiteralStringCopyStrategy("[0-9]", "x"),
+				new ReplaceXDIAddressCopyStrategy(XDIArc.create("<#age>"), XDIAddress.create("<#years>"))
+		};
+
+		for (CopyStrategy copyStrategy : copyStrategies) {
+
+			assertStreamingSerialization(graph.getRootContextNode(), copyStrategy);
+
+			for (Iterator<ContextNode> contextNodes = graph.getRootContextNode().getAllContextNodes(); contextNodes.hasNext(); ) {
+
+				assertStreamingSerialization(contextNodes.next(), copyStrategy);
+			}
+		}
+
+		assertNotNull(SortedCopyTraversal.getAllStatements(messageContextNode, new NormalizationCopyStrategy()));
+
+		// feed a message digest
+
+		MessageDigest messageDigest1 = MessageDigest.getInstance("SHA-256");
+		MessageDigest messageDigest2 = MessageDigest.getInstance("SHA-256");
+		messageDigest1.update(Normalization.serialize(messageContextNode, new NormalizationCopyStrategy()).getBytes(Charset.forName("UTF-8")));
+		Normalization.update(messageContextNode, new NormalizationCopyStrategy(), messageDigest2);
+
+		assertTrue(Arrays.equals(messageDigest1.digest(), messageDigest2.digest()));
+
+		graph.close();
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private static void assertStreamingSerialization(ContextNode contextNode, CopyStrategy copyStrategy) {
+
+		byte[] normalizedSerialization = Normalization.serialize(contextNode, copyStrategy).getBytes(Charset.forName("UTF-8"));
+
+		assertEquals(contextNode.toString(), new String(normalizedSerialization, Charset.forName("UTF-8")), new String(Normalization.serializeBytes(contextNode, copyStrategy), Charset.forName("UTF-8")));
+	}
 }
@@ -7,9 +7,12 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.util.Iterator;
+import java.util.Properties;
 
 import org.junit.Test;
 
+import com.google.gson.JsonParser;
+
 import junit.framework.TestCase;
 import xdi2.core.Graph;
 import xdi2.core.Statement;
@@ -17,7 +20,11 @@ import xdi2.core.impl.memory.MemoryGraphFactory;
 import xdi2.core.io.MimeType;
 import xdi2.core.io.XDIReaderRegistry;
 import xdi2.core.io.readers.XDIDisplayReader;
+import xdi2.core.io.XDIWriterRegistry;
+import xdi2.core.io.readers.XDIJSONQuadReader;
 import xdi2.core.io.readers.XDIJSONReader;
+import xdi2.core.io.writers.XDIJSONQuadWriter;
+import xdi2.core.io.writers.XDIJSONWriter;
 import xdi2.core.syntax.XDIStatement;
 
 public class ReaderWriterTest extends TestCase {
@@ -107,4 +114,92 @@ public class ReaderWriterTest extends TestCase {
 		graph1.close();
 		graph2.close();
 	}
+
+	@Test
+	public void testXDIJSONWriterStream() throws Exception {
+
+		String xdiDisplayString = readFromFile("readerwriter.xdi");
+
+		Graph graph = MemoryGraphFactory.getInstance().openGraph();
+		new XDIDisplayReader(null).read(graph, new StringReader(xdiDisplayString));
+
+		for (String implied : new String[] { "0", "1" }) {
+
+			Properties parameters = new Properties();
+			parameters.setProperty(XDIWriterRegistry.PARAMETER_ORDERED, "1");
+			parameters.setProperty(XDIWriterRegistry.PARAMETER_IMPLIED, implied);
+
+			StringWriter writer = new StringWriter();
+			new XDIJSONWriter(parameters).write(graph, writer);
+
+			parameters.setProperty(XDIJSONWriter.PARAMETER_STREAM, "1");
+
+			StringWriter streamWriter = new StringWriter();
+			new XDIJSONWriter(parameters).write(graph, streamWriter);
+
+			assertEquals(new JsonParser().parse(writer.toString()), new JsonParser().parse(streamWriter.toString()));
+
+			Graph graph2 = MemoryGraphFactory.getInstance().openGraph();
+			new XDIJSONReader(null).read(graph2, new StringReader(streamWriter.toString()));
+
+			assertEqualsGraphs(graph, graph2);
+
+			graph2.close();
+		}
+
+		graph.close();
+	}
+
+	@Test
+	public void testXDIJSONQuadWriterStream() throws Exception {
+
+		String[] xdiDisplayStrings = new String[] {
+				readFromFile("readerwriter.xdi"),
+				"=markus<#email>/&/\"markus@example.com\"\n" +
+				"=markus/#friend/=animesh\n" +
+				"=markus#home<#address><#city>/&/\"Vienna\"\n" +
+				"=markus[<#tel>]<@~0>/&/\"+1.206.555.1111\"\n" +
+				"=markus=animesh=drummond/#friend/=markus\n" +
+				"(=markus/#friend)=animesh<#name>/&/\"Animesh\"\n" +
+				"(=!:uuid:1111)=markus/#friend/=animesh\n" +
+				"(=!:uuid:1111)(=!:uuid:2222)=animesh<#name>/&/\"Animesh\"\n" +
+				"{$from}/$is#/=markus\n" +
+				"(=markus)/$is$ref/=markus\n"
+		};
+
+		for (String xdiDisplayString : xdiDisplayStrings) {
+
+			Graph graph = MemoryGraphFactory.getInstance().openGraph();
+			new XDIDisplayReader(null).read(graph, new StringReader(xdiDisplayString));
+
+			for (String implied : new String[] { "0", "1" }) {
+
+				for (String ordered : new String[] { "0", "1" }) {
+
+					Properties parameters = new Properties();
+					parameters.setProperty(XDIWriterRegistry.PARAMETER_ORDERED, ordered);
+					parameters.setProperty(XDIWriterRegistry.PARAMETER_IMPLIED, implied);
+
+					StringWriter writer = new StringWriter();
+					new XDIJSONQuadWriter(parameters).write(graph, writer);
+
+					parameters.setProperty(XDIWriterRegistry.PARAMETER_STREAM, "1");
+
+					StringWriter streamWriter = new StringWriter();
+					new XDIJSONQuadWriter(parameters).write(graph, streamWriter);
+
+					assertEquals(new JsonParser().parse(writer.toString()), new JsonParser().parse(streamWriter.toString()));
+
+					Graph graph2 = MemoryGraphFactory.getInstance().openGraph();
+					new XDIJSONQuadReader(null).read(graph2, new StringReader(streamWriter.toString()));
+
+					assertEqualsGraphs(graph, graph2);
+
+					graph2.close();
+				}
+			}
+
+			graph.close();
+		}
+	}
 }
@@ -0,0 +1,60 @@
+package xdi2.tests.core.syntax;
+
+import xdi2.core.syntax.Parser;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.core.syntax.parser.CachingParser;
+import xdi2.core.syntax.parser.ParserImpl;
+
+public class CachingParserTest extends ParserAbstractTest {
+
+	private CachingParser parser = new CachingParser(new ParserImpl(), 100, true);
+
+	@Override
+	public Parser getParser() {
+
+		return this.parser;
+	}
+
+	public void testCaching() throws Exception {
+
+		CachingParser parser = new CachingParser(new ParserImpl(), 100, true);
+
+		XDIAddress XDIaddress1 = parser.parseXDIAddress("=markus$msg#email");
+		XDIAddress XDIaddress2 = parser.parseXDIAddress("=markus$msg#email");
+		XDIAddress XDIaddress3 = parser.parseXDIAddress("=animesh$msg#email");
+
+		assertSame(XDIaddress1, XDIaddress2);
+		assertEquals(parser.getXDIAddressCache().getHitCount(), 1);
+		assertEquals(parser.getXDIAddressCache().getMissCount(), 2);
+
+		assertSame(XDIaddress1.getXDIArc(1), XDIaddress3.getXDIArc(1));
+		assertSame(XDIaddress1.getXDIArc(2), XDIaddress3.getXDIArc(2));
+		assertSame(XDIaddress1.getXDIArc(2), parser.parseXDIArc("#email"));
+
+		XDIStatement XDIstatement = parser.parseXDIStatement("=markus$msg#email/$is#/=animesh$msg#email");
+
+		assertSame(XDIstatement, parser.parseXDIStatement("=markus$msg#email/$is#/=animesh$msg#email"));
+		assertSame(XDIstatement.getSubject(), XDIaddress1);
+		assertSame(XDIstatement.getObject(), XDIaddress3);
+
+		XDIArc XDIarc = parser.parseXDIArc("=markus");
+
+		parser.clear();
+
+		assertNotSame(XDIarc, parser.parseXDIArc("=markus"));
+		assertEquals(XDIarc, parser.parseXDIArc("=markus"));
+	}
+
+	public void testEviction() throws Exception {
+
+		CachingParser parser = new CachingParser(new ParserImpl(), 10, false);
+
+		for (int i = 0; i < 100; i++) parser.parseXDIArc("=a" + i);
+
+		assertTrue(parser.getXDIArcCache().size() <= 10);
+		assertEquals(parser.getXDIArcCache().getMissCount(), 100);
+		assertEquals(parser.getXDIArcCache().getEvictionCount(), 100 - parser.getXDIArcCache().size());
+	}
+}
@@ -0,0 +1,80 @@
+package xdi2.tests.core.syntax;
+
+import xdi2.core.syntax.Parser;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
+import xdi2.core.syntax.parser.ParserException;
+import xdi2.core.syntax.parser.ParserImpl;
+import xdi2.core.syntax.parser.SinglePassParserImpl;
+
+public class SinglePassParserImplTest extends ParserAbstractTest {
+
+	private Parser parser = new SinglePassParserImpl();
+
+	@Override
+	public Parser getParser() {
+
+		return this.parser;
+	}
+
+	public void testSameAsParserImpl() throws Exception {
+
+		Parser parserImpl = new ParserImpl();
+
+		String[] strings = new String[] {
+				"",
+				"=markus",
+				"=markus[<#email>]<*!1>",
+				"+(user)<#(first_name)>",
+				"({[<#(name)>]})",
+				"(=markus/$add)(data:,markus@projectdanube.org)",
+				"{$from}$msg*!1234{[#a]}",
+				"|=a||#b|",
+				"[=]!:uuid:1234[<#tel>]<*~1>",
+				"=a%20b",
+				"=a+b",
+				"=a b",
+				"=markus<#email",
+				"=markus#email>",
+				"markus",
+				"{=markus",
+				"<>",
+				"{}",
+				"=!",
+				"=~~"
+		};
+
+		for (String string : strings) {
+
+			XDIAddress expected = null, actual = null;
+			String expectedException = null, actualException = null;
+
+			try { expected = parserImpl.parseXDIAddress(string); } catch (ParserException ex) { expectedException = ex.getMessage(); }
+			try { actual = this.parser.parseXDIAddress(string); } catch (ParserException ex) { actualException = ex.getMessage(); }
+
+			assertEquals(string, expectedException, actualException);
+			if (expected == null) continue;
+
+			assertEquals(string, expected.getNumXDIArcs(), actual.getNumXDIArcs());
+
+			for (int i = 0; i < expected.getNumXDIArcs(); i++) {
+
+				assertSameXDIArc(expected.getXDIArc(i), actual.getXDIArc(i));
+			}
+		}
+	}
+
+	private static void assertSameXDIArc(XDIArc expected, XDIArc actual) {
+
+		assertEquals(expected.toString(), actual.toString());
+		assertEquals(expected.toString(), expected.getCs(), actual.getCs());
+		assertEquals(expected.toString(), expected.isVariable(), actual.isVariable());
+		assertEquals(expected.toString(), expected.isDefinition(), actual.isDefinition());
+		assertEquals(expected.toString(), expected.isCollection(), actual.isCollection());
+		assertEquals(expected.toString(), expected.isAttribute(), actual.isAttribute());
+		assertEquals(expected.toString(), expected.isImmutable(), actual.isImmutable());
+		assertEquals(expected.toString(), expected.isRelative(), actual.isRelative());
+		assertEquals(expected.toString(), expected.getLiteral(), actual.getLiteral());
+		assertEquals(expected.toString(), expected.getXRef(), actual.getXRef());
+	}
+}
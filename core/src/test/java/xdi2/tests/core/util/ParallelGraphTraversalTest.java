@@ -0,0 +1,202 @@
+package xdi2.tests.core.util;
+
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import xdi2.core.ContextNode;
+import xdi2.core.Graph;
+import xdi2.core.impl.memory.MemoryGraphFactory;
+import xdi2.core.io.MimeType;
+import xdi2.core.io.readers.XDIDisplayReader;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.util.CloneUtil;
+import xdi2.core.util.CopyUtil;
+import xdi2.core.util.ParallelGraphTraversal;
+import xdi2.core.util.ParallelGraphTraversal.ContextNodeVisitor;
+import xdi2.core.util.TaskGroup;
+import xdi2.tests.AbstractTestCase;
+import xdi2.tests.core.io.ReaderWriterTest;
+
+public class ParallelGraphTraversalTest extends AbstractTestCase {
+
+	public void testVisitAllContextNodes() throws Exception {
+
+		Graph graph = readGraph();
+
+		final Set<XDIAddress> visited = Collections.newSetFromMap(new ConcurrentHashMap<XDIAddress, Boolean> ());
+		final AtomicInteger count = new AtomicInteger();
+
+		ParallelGraphTraversal.visitAllContextNodes(graph, new ContextNodeVisitor() {
+
+			@Override
+			public void visitContextNode(ContextNode contextNode) {
+
+				visited.add(contextNode.getXDIAddress());
+				count.incrementAndGet();
+			}
+		}, null);
+
+		Set<XDIAddress> expected = new HashSet<XDIAddress> ();
+		for (Iterator<ContextNode> contextNodes = graph.getRootContextNode().getAllContextNodes(); contextNodes.hasNext(); ) expected.add(contextNodes.next().getXDIAddress());
+
+		assertEquals(expected, visited);
+		assertEquals(expected.size(), count.get());
+
+		graph.close();
+	}
+
+	public void testVisitException() throws Exception {
+
+		Graph graph = readGraph();
+
+		try {
+
+			ParallelGraphTraversal.visitAllContextNodes(graph, new ContextNodeVisitor() {
+
+				@Override
+				public void visitContextNode(ContextNode contextNode) {
+
+					throw new IllegalStateException("test");
+				}
+			}, null);
+
+			fail();
+		} catch (IllegalStateException ex) {
+
+			assertEquals("test", ex.getMessage());
+		}
+
+		graph.close();
+	}
+
+	public void testCopyGraph() throws Exception {
+
+		Graph graph = readGraph();
+
+		Graph copiedGraph = MemoryGraphFactory.getInstance().openGraph();
+		CopyUtil.copyGraph(graph, copiedGraph, null);
+
+		// copy with a small executor, so that tasks are queued
+
+		MemoryGraphFactory concurrentGraphFactory = new MemoryGraphFactory();
+		concurrentGraphFactory.setConcurrent(true);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+		try {
+
+			for (int i = 0; i < 5; i++) {
+
+				Graph parallelCopiedGraph = concurrentGraphFactory.openGraph();
+				CopyUtil.copyGraph(graph, parallelCopiedGraph, null, executorService);
+
+				assertEquals(copiedGraph, parallelCopiedGraph);
+				assertEquals(copiedGraph.toString(new MimeType("text/xdi;ordered=1")), parallelCopiedGraph.toString(new MimeType("text/xdi;ordered=1")));
+				assertEquals(copiedGraph.toString(new MimeType("application/xdi+json;ordered=1")), parallelCopiedGraph.toString(new MimeType("application/xdi+json;ordered=1")));
+
+				parallelCopiedGraph.close();
+			}
+		} finally {
+
+			executorService.shutdown();
+		}
+
+		// clone with the default executor
+
+		Graph clonedGraph = CloneUtil.cloneGraph(graph, null);
+
+		assertEquals(copiedGraph, clonedGraph);
+
+		graph.close();
+		copiedGraph.close();
+		clonedGraph.close();
+	}
+
+	public void testTaskGroupTimeout() throws Exception {
+
+		final CountDownLatch countDownLatch = new CountDownLatch(1);
+
+		TaskGroup taskGroup = new TaskGroup(TaskGroup.getDefaultExecutorService());
+
+		taskGroup.fork(new Runnable() {
+
+			@Override
+			public void run() {
+
+				try {
+
+					countDownLatch.await();
+				} catch (InterruptedException ex) {
+
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+
+		assertFalse(taskGroup.join(50));
+
+		countDownLatch.countDown();
+
+		assertTrue(taskGroup.join(0));
+	}
+
+	public void testNestedTaskGroups() throws Exception {
+
+		final ExecutorService executorService = TaskGroup.getDefaultExecutorService();
+		final AtomicInteger count = new AtomicInteger();
+
+		// more nested task groups than threads in the executor must not wait for each other
+
+		TaskGroup taskGroup = new TaskGroup(executorService);
+
+		for (int i = 0; i < Runtime.getRuntime().availableProcessors() * 2; i++) {
+
+			taskGroup.fork(new Runnable() {
+
+				@Override
+				public void run() {
+
+					TaskGroup nestedTaskGroup = new TaskGroup(executorService);
+
+					for (int ii = 0; ii < 10; ii++) {
+
+						nestedTaskGroup.fork(new Runnable() {
+
+							@Override
+							public void run() {
+
+								count.incrementAndGet();
+							}
+						});
+					}
+
+					nestedTaskGroup.join();
+				}
+			});
+		}
+
+		assertTrue(taskGroup.join(10000));
+		assertEquals(Runtime.getRuntime().availableProcessors() * 20, count.get());
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private static Graph readGraph() throws Exception {
+
+		Graph graph = MemoryGraphFactory.getInstance().openGraph();
+		new XDIDisplayReader(null).read(graph, new InputStreamReader(ReaderWriterTest.class.getResourceAsStream("readerwriter.xdi"), Charset.forName("UTF-8")));
+
+		return graph;
+	}
+}
@@ -0,0 +1,63 @@
+package xdi2.tests.core.util;
+
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+import xdi2.core.Graph;
+import xdi2.core.Statement;
+import xdi2.core.impl.memory.MemoryGraphFactory;
+import xdi2.core.io.MimeType;
+import xdi2.core.io.Normalization;
+import xdi2.core.io.readers.XDIDisplayReader;
+import xdi2.core.util.CopyUtil;
+import xdi2.core.util.SortedGraphTraversal;
+import xdi2.core.util.iterators.CompositeIterator;
+import xdi2.core.util.iterators.MappingContextNodeStatementIterator;
+import xdi2.core.util.iterators.MappingLiteralNodeStatementIterator;
+import xdi2.core.util.iterators.MappingRelationStatementIterator;
+import xdi2.tests.AbstractTestCase;
+import xdi2.tests.core.io.ReaderWriterTest;
+
+public class SortedGraphTraversalTest extends AbstractTestCase {
+
+	public void testSortedGraphTraversal() throws Exception {
+
+		Graph graph = MemoryGraphFactory.getInstance().openGraph();
+		new XDIDisplayReader(null).read(graph, new InputStreamReader(ReaderWriterTest.class.getResourceAsStream("readerwriter.xdi"), Charset.forName("UTF-8")));
+
+		MemoryGraphFactory memoryGraphFactory = new MemoryGraphFactory();
+		memoryGraphFactory.setSortmode(MemoryGraphFactory.SORTMODE_ALPHA);
+		Graph sortedGraph = memoryGraphFactory.openGraph();
+		CopyUtil.copyGraph(graph, sortedGraph, null);
+
+		// the traversal must visit the statements in the same order as a sorted copy
+
+		@SuppressWarnings("unchecked")
+		Iterator<Statement> sortedStatements = new CompositeIterator<Statement> (
+				new MappingContextNodeStatementIterator(sortedGraph.getRootContextNode(true).getAllContextNodes()),
+				new MappingRelationStatementIterator(sortedGraph.getRootContextNode(true).getAllRelations()),
+				new MappingLiteralNodeStatementIterator(sortedGraph.getRootContextNode(true).getAllLiteralNodes()));
+
+		Iterator<Statement> statements = SortedGraphTraversal.getAllStatements(graph.getRootContextNode(true));
+
+		while (sortedStatements.hasNext()) {
+
+			assertTrue(statements.hasNext());
+			assertEquals(sortedStatements.next().getXDIStatement(), statements.next().getXDIStatement());
+		}
+
+		assertFalse(statements.hasNext());
+
+		// ordered writing must give the same result as writing a sorted copy
+
+		assertEquals(sortedGraph.toString(new MimeType("application/xdi+json")), graph.toString(new MimeType("application/xdi+json;ordered=1")));
+		assertEquals(sortedGraph.toString(new MimeType("application/xdi+json;implied=1")), graph.toString(new MimeType("application/xdi+json;ordered=1;implied=1")));
+		assertEquals(sortedGraph.toString(new MimeType("text/xdi;ordered=1")), graph.toString(new MimeType("text/xdi;ordered=1")));
+
+		assertEquals(Normalization.serialize(sortedGraph), Normalization.serialize(graph));
+
+		graph.close();
+		sortedGraph.close();
+	}
+}
@@ -276,6 +276,47 @@ public class XDIAddressUtilTest extends TestCase {
 		assertEquals(XDIAddressUtil.concatXDIAddresses(XDIaddresses), XDIAddress.create("=a+b+c+d+e"));
 	}
 
+	public void testSharedXDIArcs() throws Exception {
+
+		XDIAddress XDIaddress = XDIAddress.create("=a*b*c*d");
+
+		XDIAddress parentXDIAddress = XDIAddressUtil.parentXDIAddress(XDIaddress, -1);
+		XDIAddress localXDIAddress = XDIAddressUtil.localXDIAddress(XDIaddress, -1);
+		XDIAddress subXDIAddress = XDIAddressUtil.subXDIAddress(XDIaddress, 1, 3);
+		XDIAddress concatXDIAddress = XDIAddressUtil.concatXDIAddresses(subXDIAddress, XDIArc.create("=e"));
+
+		assertSame(parentXDIAddress.getXDIArc(2), XDIaddress.getXDIArc(2));
+		assertSame(localXDIAddress.getXDIArc(0), XDIaddress.getXDIArc(1));
+		assertSame(subXDIAddress.getFirstXDIArc(), XDIaddress.getXDIArc(1));
+		assertSame(subXDIAddress.getLastXDIArc(), XDIaddress.getXDIArc(2));
+		assertSame(concatXDIAddress.getXDIArc(1), XDIaddress.getXDIArc(2));
+
+		assertEquals(subXDIAddress.getNumXDIArcs(), 2);
+		assertEquals(subXDIAddress.getXDIArcs().size(), 2);
+		assertEquals(concatXDIAddress.getNumXDIArcs(), 3);
+
+		assertEquals(parentXDIAddress.hashCode(), "=a*b*c".hashCode());
+		assertEquals(localXDIAddress.hashCode(), "*b*c*d".hashCode());
+		assertEquals(subXDIAddress.hashCode(), "*b*c".hashCode());
+		assertEquals(concatXDIAddress.hashCode(), "*b*c=e".hashCode());
+
+		assertEquals(subXDIAddress, XDIAddress.create("*b*c"));
+		assertEquals(XDIAddress.create("*b*c"), subXDIAddress);
+		assertEquals(concatXDIAddress, XDIAddress.create("*b*c=e"));
+		assertFalse(subXDIAddress.equals(XDIAddress.create("*b*d")));
+
+		assertEquals(subXDIAddress.toString(), "*b*c");
+		assertEquals(concatXDIAddress.toString(), "*b*c=e");
+
+		try {
+
+			subXDIAddress.getXDIArc(2);
+			fail();
+		} catch (IndexOutOfBoundsException ex) {
+
+		}
+	}
+
 	// TODO: DISABLED
 	public void DISABLEDtestRemoveStartXDIAddressVariables() throws Exception {
 
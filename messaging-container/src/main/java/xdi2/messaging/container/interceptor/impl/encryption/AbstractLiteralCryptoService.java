@@ -1,7 +1,41 @@
 package xdi2.messaging.container.interceptor.impl.encryption;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import xdi2.core.Graph;
+import xdi2.core.LiteralNode;
+import xdi2.core.impl.AbstractLiteralNode;
+import xdi2.core.util.TaskGroup;
+
+/**
+ * Base class for LiteralCryptoService implementations.
+ * 
+ * If an executor is set, graphs with at least as many literals as the parallel threshold
+ * are decrypted in parallel. This requires decryptLiteralDataString() to be thread-safe.
+ * The decrypted literals are always written to the graph by the calling thread.
+ */
 public abstract class AbstractLiteralCryptoService implements LiteralCryptoService {
 
+	private static final Logger log = LoggerFactory.getLogger(AbstractLiteralCryptoService.class);
+
+	public static final int DEFAULT_PARALLELTHRESHOLD = 256;
+
+	private Executor executor;
+	private int parallelThreshold;
+
+	public AbstractLiteralCryptoService() {
+
+		this.executor = null;
+		this.parallelThreshold = DEFAULT_PARALLELTHRESHOLD;
+	}
+
 	@Override
 	public void init() throws Exception {
 
@@ -11,4 +45,130 @@ public abstract class AbstractLiteralCryptoService implements LiteralCryptoServi
 	public void shutdown() throws Exception {
 
 	}
+
+	/**
+	 * Decrypts all literals of a graph in one pass. Literals that cannot be decrypted are left unchanged.
+	 */
+	public void decryptLiteralNodes(Graph graph) throws Exception {
+
+		// collect literals
+
+		List<LiteralNode> literals = new ArrayList<LiteralNode> ();
+		List<String> encryptedLiteralDataStrings = new ArrayList<String> ();
+
+		for (Iterator<LiteralNode> literalNodes = graph.getRootContextNode(true).getAllLiteralNodes(); literalNodes.hasNext(); ) {
+
+			LiteralNode literal = literalNodes.next();
+
+			String encryptedLiteralDataString = literal.getLiteralDataString();
+			if (encryptedLiteralDataString == null) continue;
+
+			literals.add(literal);
+			encryptedLiteralDataStrings.add(encryptedLiteralDataString);
+		}
+
+		// decrypt literals
+
+		String[] literalDataStrings = new String[literals.size()];
+
+		Executor executor = this.getExecutor();
+
+		if (executor != null && literals.size() >= Math.max(this.getParallelThreshold(), 2)) {
+
+			this.decryptLiteralDataStrings(encryptedLiteralDataStrings, literalDataStrings, executor);
+		} else {
+
+			this.decryptLiteralDataStrings(encryptedLiteralDataStrings, literalDataStrings, 0, literalDataStrings.length);
+		}
+
+		// write literals
+
+		for (int i = 0; i < literalDataStrings.length; i++) {
+
+			if (literalDataStrings[i] == null) continue;
+
+			literals.get(i).setLiteralData(AbstractLiteralNode.stringToLiteralData(literalDataStrings[i]));
+		}
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private void decryptLiteralDataStrings(List<String> encryptedLiteralDataStrings, String[] literalDataStrings, int start, int end) {
+
+		for (int i = start; i < end; i++) {
+
+			try {
+
+				literalDataStrings[i] = this.decryptLiteralDataString(encryptedLiteralDataStrings.get(i));
+			} catch (Exception ex) {
+
+				if (log.isDebugEnabled()) log.debug("Problem while decrypting literal string: " + ex.getMessage(), ex);
+			}
+		}
+	}
+
+	private void decryptLiteralDataStrings(final List<String> encryptedLiteralDataStrings, final String[] literalDataStrings, Executor executor) {
+
+		// split the literals into one chunk per threshold, at most one per processor
+
+		int chunks = Math.min(literalDataStrings.length / Math.max(this.getParallelThreshold(), 1), Runtime.getRuntime().availableProcessors());
+		if (chunks < 2) chunks = 2;
+
+		int chunkSize = (literalDataStrings.length + chunks - 1) / chunks;
+
+		TaskGroup taskGroup = new TaskGroup(executor);
+
+		for (int chunk = 0; chunk < chunks; chunk++) {
+
+			final int start = Math.min(chunk * chunkSize, literalDataStrings.length);
+			final int end = Math.min(start + chunkSize, literalDataStrings.length);
+
+			taskGroup.fork(new Runnable() {
+
+				@Override
+				public void run() {
+
+					AbstractLiteralCryptoService.this.decryptLiteralDataStrings(encryptedLiteralDataStrings, literalDataStrings, start, end);
+				}
+			});
+		}
+
+		// wait for all chunks; this also makes the results visible to this thread
+
+		taskGroup.join();
+	}
+
+	/**
+	 * Returns the shared executor of TaskGroup, with one daemon thread for every available processor.
+	 */
+	public static ExecutorService getDefaultExecutorService() {
+
+		return TaskGroup.getDefaultExecutorService();
+	}
+
+	/*
+	 * Getters and setters
+	 */
+
+	public Executor getExecutor() {
+
+		return this.executor;
+	}
+
+	public void setExecutor(Executor executor) {
+
+		this.executor = executor;
+	}
+
+	public int getParallelThreshold() {
+
+		return this.parallelThreshold;
+	}
+
+	public void setParallelThreshold(int parallelThreshold) {
+
+		this.parallelThreshold = parallelThreshold;
+	}
 }
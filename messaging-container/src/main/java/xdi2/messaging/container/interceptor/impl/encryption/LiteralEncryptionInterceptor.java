@@ -83,6 +83,23 @@ public class LiteralEncryptionInterceptor extends AbstractInterceptor<MessagingC
 	@Override
 	public InterceptorResult after(Operation operation, Graph operationResultGraph, ExecutionContext executionContext) throws Xdi2MessagingException {
 
+		// decrypt literals in one pass, if the literal crypto service supports it
+
+		if (this.getLiteralCryptoService() instanceof AbstractLiteralCryptoService) {
+
+			try {
+
+				((AbstractLiteralCryptoService) this.getLiteralCryptoService()).decryptLiteralNodes(operationResultGraph);
+			} catch (Exception ex) {
+
+				throw new Xdi2MessagingException("Problem while decrypting literals: " + ex.getMessage(), ex, executionContext);
+			}
+
+			return InterceptorResult.DEFAULT;
+		}
+
+		// decrypt literals
+
 		for (LiteralNode literal : operationResultGraph.getRootContextNode(true).getAllLiteralNodes()) {
 
 			String encryptedLiteralDataString = literal.getLiteralDataString();
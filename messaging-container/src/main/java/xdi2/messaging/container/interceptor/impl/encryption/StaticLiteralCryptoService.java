@@ -1,6 +1,8 @@
 package xdi2.messaging.container.interceptor.impl.encryption;
 
 import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -11,6 +13,11 @@ import org.apache.commons.codec.binary.Base64;
 /**
  * A LiteralCryptoService that performs encryption and decryption using a statically
  * configured AES secret key.
+ * 
+ * Initialized ciphers are kept in a pool of the service and reused, so that the provider lookup
+ * and key schedule are not repeated for every literal. A cipher is used by one thread at a time,
+ * so large graphs are decrypted in parallel with the default executor service. The pool is
+ * discarded with the key when the service is shut down.
  */
 public class StaticLiteralCryptoService extends AbstractLiteralCryptoService implements LiteralCryptoService {
 
@@ -24,12 +31,16 @@ public class StaticLiteralCryptoService extends AbstractLiteralCryptoService imp
 	private String transformation;
 
 	private SecretKey secretKey;
+	private Queue<Cipher> encryptCiphers;
+	private Queue<Cipher> decryptCiphers;
 
 	public StaticLiteralCryptoService() {
 
 		this.secretKeyString = null;
 		this.algorithm = DEFAULT_ALGORITHM;
 		this.transformation = DEFAULT_TRANSFORMATION;
+
+		this.setExecutor(getDefaultExecutorService());
 	}
 
 	/*
@@ -42,12 +53,22 @@ public class StaticLiteralCryptoService extends AbstractLiteralCryptoService imp
 		if (this.getSecretKeyString() == null) throw new NullPointerException("No secret key string.");
 
 		this.secretKey = new SecretKeySpec(Base64.decodeBase64(this.getSecretKeyString().getBytes(Charset.forName("UTF-8"))), this.getAlgorithm());
+		this.encryptCiphers = new ConcurrentLinkedQueue<Cipher> ();
+		this.decryptCiphers = new ConcurrentLinkedQueue<Cipher> ();
 	}
 
 	@Override
 	public void shutdown() throws Exception {
 
+		Queue<Cipher> encryptCiphers = this.encryptCiphers;
+		Queue<Cipher> decryptCiphers = this.decryptCiphers;
+
 		this.secretKey = null;
+		this.encryptCiphers = null;
+		this.decryptCiphers = null;
+
+		if (encryptCiphers != null) encryptCiphers.clear();
+		if (decryptCiphers != null) decryptCiphers.clear();
 	}
 
 	@Override
@@ -55,9 +76,12 @@ public class StaticLiteralCryptoService extends AbstractLiteralCryptoService imp
 
 		String encryptedLiteralDataString;
 
-		Cipher cipher = Cipher.getInstance(this.getTransformation());
-		cipher.init(Cipher.ENCRYPT_MODE, this.secretKey);
+		Queue<Cipher> encryptCiphers = this.encryptCiphers;
+		Cipher cipher = this.getCipher(encryptCiphers, Cipher.ENCRYPT_MODE);
 		byte[] encryptedLiteralDataBytes = cipher.doFinal(literalDataString.getBytes(Charset.forName("UTF-8")));
+
+		encryptCiphers.offer(cipher);
+
 		encryptedLiteralDataString = new String(Base64.encodeBase64(encryptedLiteralDataBytes), Charset.forName("UTF-8"));
 
 		return encryptedLiteralDataString;
@@ -68,14 +92,41 @@ public class StaticLiteralCryptoService extends AbstractLiteralCryptoService imp
 
 		String literalDataString;
 
-		Cipher cipher = Cipher.getInstance(this.getTransformation());
-		cipher.init(Cipher.DECRYPT_MODE, this.secretKey);
+		Queue<Cipher> decryptCiphers = this.decryptCiphers;
+		Cipher cipher = this.getCipher(decryptCiphers, Cipher.DECRYPT_MODE);
 		byte[] literalDataBytes = cipher.doFinal(Base64.decodeBase64(encryptedLiteralDataString.getBytes(Charset.forName("UTF-8"))));
+
+		decryptCiphers.offer(cipher);
+
 		literalDataString = new String(literalDataBytes, Charset.forName("UTF-8"));
 
 		return literalDataString;
 	}
 
+	/*
+	 * Helper methods
+	 */
+
+	/**
+	 * Takes a cipher from the pool, or initializes a new one if the pool is empty.
+	 * A cipher is reset after doFinal(), so it is returned to the pool afterwards.
+	 * If doFinal() fails, the cipher is discarded.
+	 */
+	private Cipher getCipher(Queue<Cipher> ciphers, int mode) throws Exception {
+
+		if (ciphers == null) throw new IllegalStateException("Not initialized.");
+
+		Cipher cipher = ciphers.poll();
+
+		if (cipher == null) {
+
+			cipher = Cipher.getInstance(this.getTransformation());
+			cipher.init(mode, this.secretKey);
+		}
+
+		return cipher;
+	}
+
 	/*
 	 * Getters and setters
 	 */
@@ -0,0 +1,284 @@
+package xdi2.messaging.container.interceptor.impl.linkcontract;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import xdi2.core.ContextNode;
+import xdi2.core.Graph;
+import xdi2.core.constants.XDILinkContractConstants;
+import xdi2.core.features.linkcontracts.instance.LinkContract;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIArc;
+import xdi2.core.util.XDIAddressUtil;
+import xdi2.messaging.container.impl.graph.GraphMessagingContainer;
+
+/**
+ * A link contract's permission targets, compiled into tries of arcs.
+ * For every permission (e.g. $get), the positive and negative target addresses of that permission
+ * and of $all are resolved once and put into a trie, so that finding the longest matching
+ * permission target for an address is a single walk along the arcs of that address.
+ * Target addresses that contain variables cannot be put into a trie and are matched one by one.
+ * If a target address cannot be resolved, the targets of that permission are not compiled, and are
+ * resolved and matched one by one for every decision instead.
+ *
+ * @author markus
+ */
+public class CompiledLinkContract {
+
+	private static final Logger log = LoggerFactory.getLogger(CompiledLinkContract.class);
+
+	private final LinkContract linkContract;
+	private final Graph linkContractsGraph;
+	private final long modificationCount;
+
+	private final Map<XDIAddress, PermissionTargets> positivePermissionTargets;
+	private final Map<XDIAddress, PermissionTargets> negativePermissionTargets;
+
+	public CompiledLinkContract(LinkContract linkContract, Graph linkContractsGraph, long modificationCount) {
+
+		this.linkContract = linkContract;
+		this.linkContractsGraph = linkContractsGraph;
+		this.modificationCount = modificationCount;
+
+		this.positivePermissionTargets = new ConcurrentHashMap<XDIAddress, PermissionTargets> ();
+		this.negativePermissionTargets = new ConcurrentHashMap<XDIAddress, PermissionTargets> ();
+	}
+
+	/**
+	 * Decides if the link contract grants a permission on a target address.
+	 * This is the case if the longest matching positive permission target is longer than
+	 * the longest matching negative permission target.
+	 */
+	public boolean decidePermission(XDIAddress permissionXDIAddress, XDIAddress targetXDIAddress) {
+
+		PermissionTargets positivePermissionTargets = this.getPositivePermissionTargets(permissionXDIAddress);
+		PermissionTargets negativePermissionTargets = this.getNegativePermissionTargets(permissionXDIAddress);
+
+		int longestPositivePermission = positivePermissionTargets != null ?
+				positivePermissionTargets.longestMatch(targetXDIAddress) :
+				Math.max(
+						longestMatch(this.linkContract.getPermissionTargetXDIAddresses(permissionXDIAddress), this.linkContractsGraph, targetXDIAddress),
+						longestMatch(this.linkContract.getPermissionTargetXDIAddresses(XDILinkContractConstants.XDI_ADD_ALL), this.linkContractsGraph, targetXDIAddress));
+
+		int longestNegativePermission = negativePermissionTargets != null ?
+				negativePermissionTargets.longestMatch(targetXDIAddress) :
+				Math.max(
+						longestMatch(this.linkContract.getNegativePermissionTargetXDIAddresses(permissionXDIAddress), this.linkContractsGraph, targetXDIAddress),
+						longestMatch(this.linkContract.getNegativePermissionTargetXDIAddresses(XDILinkContractConstants.XDI_ADD_ALL), this.linkContractsGraph, targetXDIAddress));
+
+		if (log.isDebugEnabled()) log.debug("Link contract " + this.linkContract + " longest positive " + permissionXDIAddress + " permission on " + targetXDIAddress + ": " + longestPositivePermission + ", longest negative: " + longestNegativePermission);
+
+		return longestPositivePermission > longestNegativePermission;
+	}
+
+	/*
+	 * Getters
+	 */
+
+	public LinkContract getLinkContract() {
+
+		return this.linkContract;
+	}
+
+	public Graph getLinkContractsGraph() {
+
+		return this.linkContractsGraph;
+	}
+
+	/**
+	 * Returns the modification count of the link contracts graph before this link contract was compiled.
+	 */
+	public long getModificationCount() {
+
+		return this.modificationCount;
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private PermissionTargets getPositivePermissionTargets(XDIAddress permissionXDIAddress) {
+
+		PermissionTargets permissionTargets = this.positivePermissionTargets.get(permissionXDIAddress);
+
+		if (permissionTargets == null) {
+
+			permissionTargets = new PermissionTargets();
+
+			if (! permissionTargets.addAll(this.linkContract.getPermissionTargetXDIAddresses(permissionXDIAddress), this.linkContractsGraph)) return null;
+			if (! permissionTargets.addAll(this.linkContract.getPermissionTargetXDIAddresses(XDILinkContractConstants.XDI_ADD_ALL), this.linkContractsGraph)) return null;
+
+			this.positivePermissionTargets.put(permissionXDIAddress, permissionTargets);
+		}
+
+		return permissionTargets;
+	}
+
+	private PermissionTargets getNegativePermissionTargets(XDIAddress permissionXDIAddress) {
+
+		PermissionTargets permissionTargets = this.negativePermissionTargets.get(permissionXDIAddress);
+
+		if (permissionTargets == null) {
+
+			permissionTargets = new PermissionTargets();
+
+			if (! permissionTargets.addAll(this.linkContract.getNegativePermissionTargetXDIAddresses(permissionXDIAddress), this.linkContractsGraph)) return null;
+			if (! permissionTargets.addAll(this.linkContract.getNegativePermissionTargetXDIAddresses(XDILinkContractConstants.XDI_ADD_ALL), this.linkContractsGraph)) return null;
+
+			this.negativePermissionTargets.put(permissionXDIAddress, permissionTargets);
+		}
+
+		return permissionTargets;
+	}
+
+	/**
+	 * Returns the number of arcs of the longest permission target that the given address starts with,
+	 * or -1 if there is none, without compiling the permission targets.
+	 * Permission targets that cannot be resolved do not match.
+	 */
+	private static int longestMatch(Iterator<XDIAddress> targetXDIAddresses, Graph linkContractsGraph, XDIAddress XDIaddress) {
+
+		int longestMatch = -1;
+
+		while (targetXDIAddresses.hasNext()) {
+
+			ContextNode targetContextNode = GraphMessagingContainer.getContextNode(linkContractsGraph, targetXDIAddresses.next());
+			if (targetContextNode == null) continue;
+
+			XDIAddress targetXDIAddress = targetContextNode.getXDIAddress();
+			if (targetXDIAddress.getNumXDIArcs() <= longestMatch) continue;
+
+			if (XDIAddressUtil.startsWithXDIAddress(XDIaddress, targetXDIAddress, false, true) != null) {
+
+				longestMatch = targetXDIAddress.getNumXDIArcs();
+			}
+		}
+
+		return longestMatch;
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	/**
+	 * A set of permission target addresses.
+	 * Once built, instances are only read, so they can be shared between threads.
+	 */
+	private static class PermissionTargets {
+
+		private final Node root;
+		private final List<XDIAddress> variableTargetXDIAddresses;
+
+		private PermissionTargets() {
+
+			this.root = new Node();
+			this.variableTargetXDIAddresses = new ArrayList<XDIAddress> ();
+		}
+
+		/**
+		 * Adds permission target addresses, and returns false if one of them cannot be resolved.
+		 */
+		private boolean addAll(Iterator<XDIAddress> targetXDIAddresses, Graph linkContractsGraph) {
+
+			while (targetXDIAddresses.hasNext()) {
+
+				XDIAddress targetXDIAddress = targetXDIAddresses.next();
+
+				// resolve the target address in the link contracts graph
+
+				ContextNode targetContextNode = GraphMessagingContainer.getContextNode(linkContractsGraph, targetXDIAddress);
+
+				if (targetContextNode == null) {
+
+					if (log.isDebugEnabled()) log.debug("Cannot resolve permission target " + targetXDIAddress + ", not compiling.");
+					return false;
+				}
+
+				this.add(targetContextNode.getXDIAddress());
+			}
+
+			return true;
+		}
+
+		private void add(XDIAddress targetXDIAddress) {
+
+			if (hasVariables(targetXDIAddress)) {
+
+				this.variableTargetXDIAddresses.add(targetXDIAddress);
+				return;
+			}
+
+			Node node = this.root;
+
+			for (XDIArc XDIarc : targetXDIAddress.getXDIArcs()) {
+
+				Node childNode = node.children.get(XDIarc);
+
+				if (childNode == null) {
+
+					childNode = new Node();
+					node.children.put(XDIarc, childNode);
+				}
+
+				node = childNode;
+			}
+
+			node.terminal = true;
+		}
+
+		/**
+		 * Returns the number of arcs of the longest permission target that the given address starts with,
+		 * or -1 if there is none.
+		 */
+		private int longestMatch(XDIAddress XDIaddress) {
+
+			int longestMatch = -1;
+
+			// walk the trie
+
+			Node node = this.root;
+			if (node.terminal) longestMatch = 0;
+
+			for (int i = 0; i < XDIaddress.getNumXDIArcs(); i++) {
+
+				node = node.children.get(XDIaddress.getXDIArc(i));
+				if (node == null) break;
+
+				if (node.terminal) longestMatch = i + 1;
+			}
+
+			// match the targets with variables
+
+			for (XDIAddress variableTargetXDIAddress : this.variableTargetXDIAddresses) {
+
+				if (variableTargetXDIAddress.getNumXDIArcs() <= longestMatch) continue;
+
+				if (XDIAddressUtil.startsWithXDIAddress(XDIaddress, variableTargetXDIAddress, false, true) != null) {
+
+					longestMatch = variableTargetXDIAddress.getNumXDIArcs();
+				}
+			}
+
+			return longestMatch;
+		}
+
+		private static boolean hasVariables(XDIAddress XDIaddress) {
+
+			return XDIaddress.toString().indexOf('{') != -1;
+		}
+	}
+
+	private static class Node {
+
+		private final Map<XDIArc, Node> children = new HashMap<XDIArc, Node> ();
+		private boolean terminal = false;
+	}
+}
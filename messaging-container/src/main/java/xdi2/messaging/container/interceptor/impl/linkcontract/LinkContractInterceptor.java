@@ -1,7 +1,5 @@
 package xdi2.messaging.container.interceptor.impl.linkcontract;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -18,12 +16,12 @@ import xdi2.core.features.nodetypes.XdiAbstractEntity;
 import xdi2.core.features.nodetypes.XdiEntity;
 import xdi2.core.features.policy.PolicyRoot;
 import xdi2.core.features.policy.evaluation.PolicyEvaluationContext;
+import xdi2.core.impl.AbstractGraph;
 import xdi2.core.syntax.XDIAddress;
 import xdi2.core.syntax.XDIStatement;
+import xdi2.core.util.BoundedCache;
 import xdi2.core.util.XDIAddressUtil;
-import xdi2.core.util.iterators.CompositeIterator;
 import xdi2.core.util.iterators.IterableIterator;
-import xdi2.core.util.iterators.MappingContextNodeXDIAddressIterator;
 import xdi2.messaging.Message;
 import xdi2.messaging.container.MessagingContainer;
 import xdi2.messaging.container.Prototype;
@@ -50,22 +48,31 @@ import xdi2.messaging.operations.SetOperation;
 /**
  * This interceptor enforces link contracts while a message is executed.
  * 
+ * Link contracts are compiled into CompiledLinkContract objects, which are cached by link contract address.
+ * A compiled link contract remembers the modification count of the link contracts graph at the time it was compiled,
+ * and is only used as long as the graph has not been changed since then, no matter how the graph is changed.
+ * If the link contracts graph does not have a modification count, link contracts are compiled for every use.
+ * 
  * @author animesh
  */
 public class LinkContractInterceptor extends AbstractInterceptor<MessagingContainer> implements MessageInterceptor, OperationInterceptor, TargetInterceptor, Prototype<LinkContractInterceptor> {
 
 	private static Logger log = LoggerFactory.getLogger(LinkContractInterceptor.class.getName());
 
+	public static final int DEFAULT_COMPILED_LINK_CONTRACTS_CACHE_SIZE = 1000;
+
 	private Graph linkContractsGraph;
+	private BoundedCache<XDIAddress, CompiledLinkContract> compiledLinkContracts;
 
 	public LinkContractInterceptor(Graph linkContractsGraph) {
 
 		this.linkContractsGraph = linkContractsGraph;
+		this.compiledLinkContracts = new BoundedCache<XDIAddress, CompiledLinkContract> (DEFAULT_COMPILED_LINK_CONTRACTS_CACHE_SIZE);
 	}
 
 	public LinkContractInterceptor() {
 
-		this.linkContractsGraph = null;
+		this(null);
 	}
 
 	/*
@@ -75,9 +82,18 @@ public class LinkContractInterceptor extends AbstractInterceptor<MessagingContai
 	@Override
 	public LinkContractInterceptor instanceFor(PrototypingContext prototypingContext) {
 
+		// create new interceptor
+
+		LinkContractInterceptor interceptor = new LinkContractInterceptor();
+
+		// set the link contracts graph and the size of the compiled link contracts cache
+
+		interceptor.setLinkContractsGraph(this.getLinkContractsGraph());
+		interceptor.setCompiledLinkContractsCacheSize(this.getCompiledLinkContracts().getMaxSize());
+
 		// done
 
-		return this;
+		return interceptor;
 	}
 
 	/*
@@ -213,8 +229,6 @@ public class LinkContractInterceptor extends AbstractInterceptor<MessagingContai
 	@Override
 	public InterceptorResult after(Operation operation, Graph operationResultGraph, ExecutionContext executionContext) throws Xdi2MessagingException {
 
-		// done
-
 		return InterceptorResult.DEFAULT;
 	}
 
@@ -366,6 +380,26 @@ public class LinkContractInterceptor extends AbstractInterceptor<MessagingContai
 	public void setLinkContractsGraph(Graph linkContractsGraph) {
 
 		this.linkContractsGraph = linkContractsGraph;
+
+		this.clearCompiledLinkContracts();
+	}
+
+	public BoundedCache<XDIAddress, CompiledLinkContract> getCompiledLinkContracts() {
+
+		return this.compiledLinkContracts;
+	}
+
+	public void setCompiledLinkContractsCacheSize(int compiledLinkContractsCacheSize) {
+
+		this.compiledLinkContracts = new BoundedCache<XDIAddress, CompiledLinkContract> (compiledLinkContractsCacheSize);
+	}
+
+	/**
+	 * Discards all compiled link contracts.
+	 */
+	public void clearCompiledLinkContracts() {
+
+		this.compiledLinkContracts.clear();
 	}
 
 	/*
@@ -423,57 +457,37 @@ public class LinkContractInterceptor extends AbstractInterceptor<MessagingContai
 		return false;
 	}
 
-	private static Iterator<XDIAddress> resolveTargetXDIAddresses(Iterator<XDIAddress> targetXDIAddresses, Graph linkContractsGraph) {
-
-		return new MappingContextNodeXDIAddressIterator(
-				new GraphMessagingContainer.MappingXDIAddressContextNodeIterator(linkContractsGraph, targetXDIAddresses));
-	}
-
-	private static boolean decideLinkContractPermission(XDIAddress permissionXDIAddress, XDIAddress targetXDIaddress, LinkContract linkContract, Graph linkContractsGraph) {
+	private CompiledLinkContract getCompiledLinkContract(LinkContract linkContract, Graph linkContractsGraph) {
 
-		// check positive permissions for the target address
+		XDIAddress linkContractXDIAddress = linkContract.getContextNode().getXDIAddress();
 
-		List<Iterator<? extends XDIAddress>> positiveIterators = new ArrayList<Iterator<? extends XDIAddress>> ();
-		positiveIterators.add(resolveTargetXDIAddresses(linkContract.getPermissionTargetXDIAddresses(permissionXDIAddress), linkContractsGraph));
-		positiveIterators.add(resolveTargetXDIAddresses(linkContract.getPermissionTargetXDIAddresses(XDILinkContractConstants.XDI_ADD_ALL), linkContractsGraph));
-		CompositeIterator<XDIAddress> positiveIterator = new CompositeIterator<XDIAddress> (positiveIterators.iterator());
+		// read the modification count before compiling, so a change during compiling makes the result outdated
 
-		int longestPositivePermission = -1;
+		long modificationCount = linkContractsGraph instanceof AbstractGraph ? ((AbstractGraph) linkContractsGraph).getModificationCount() : -1;
 
-		for (XDIAddress permissionTargetXDIAddress : positiveIterator) {
+		CompiledLinkContract compiledLinkContract = this.compiledLinkContracts.get(linkContractXDIAddress);
 
-			if (XDIAddressUtil.startsWithXDIAddress(targetXDIaddress, permissionTargetXDIAddress, false, true) != null) {
+		if (compiledLinkContract != null &&
+				compiledLinkContract.getLinkContractsGraph() == linkContractsGraph &&
+				compiledLinkContract.getModificationCount() == modificationCount &&
+				modificationCount != -1) {
 
-				int positiveMatch = permissionTargetXDIAddress.getNumXDIArcs();
-				if (positiveMatch > longestPositivePermission) longestPositivePermission = positiveMatch;
-
-				if (log.isDebugEnabled()) log.debug("Link contract " + linkContract + " allows " + permissionXDIAddress + " on " + targetXDIaddress);
-			}
+			return compiledLinkContract;
 		}
 
-		// check negative permissions for the target address
+		if (log.isDebugEnabled()) log.debug("Compiling link contract " + linkContract);
 
-		List<Iterator<? extends XDIAddress>> negativeIterators = new ArrayList<Iterator<? extends XDIAddress>> ();
-		negativeIterators.add(resolveTargetXDIAddresses(linkContract.getNegativePermissionTargetXDIAddresses(permissionXDIAddress), linkContractsGraph));
-		negativeIterators.add(resolveTargetXDIAddresses(linkContract.getNegativePermissionTargetXDIAddresses(XDILinkContractConstants.XDI_ADD_ALL), linkContractsGraph));
-		CompositeIterator<XDIAddress> negativeIterator = new CompositeIterator<XDIAddress> (negativeIterators.iterator());
+		compiledLinkContract = new CompiledLinkContract(linkContract, linkContractsGraph, modificationCount);
+		if (modificationCount != -1) this.compiledLinkContracts.put(linkContractXDIAddress, compiledLinkContract);
 
-		int longestNegativePermission = -1;
-
-		for (XDIAddress permissionTargetXDIAddress : negativeIterator) {
-
-			if (XDIAddressUtil.startsWithXDIAddress(targetXDIaddress, permissionTargetXDIAddress, false, true) != null) {
+		return compiledLinkContract;
+	}
 
-				int negativeMatch = permissionTargetXDIAddress.getNumXDIArcs();
-				if (negativeMatch > longestNegativePermission) longestNegativePermission = negativeMatch;
+	private boolean decideLinkContractPermission(XDIAddress permissionXDIAddress, XDIAddress targetXDIaddress, LinkContract linkContract, Graph linkContractsGraph) {
 
-				if (log.isDebugEnabled()) log.debug("Link contract " + linkContract + " does not allow " + permissionXDIAddress + " on " + targetXDIaddress);
-			}
-		}
-
-		// decide
+		// look up the longest positive and negative permissions for the target address
 
-		boolean decision = longestPositivePermission > longestNegativePermission;
+		boolean decision = this.getCompiledLinkContract(linkContract, linkContractsGraph).decidePermission(permissionXDIAddress, targetXDIaddress);
 
 		// done
 
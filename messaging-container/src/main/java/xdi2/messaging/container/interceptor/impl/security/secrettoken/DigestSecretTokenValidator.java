@@ -1,25 +1,62 @@
 package xdi2.messaging.container.interceptor.impl.security.secrettoken;
 
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import xdi2.core.features.secrettokens.SecretTokens;
 import xdi2.core.syntax.XDIAddress;
+import xdi2.core.util.BoundedCache;
 
 /**
  * A SecretTokenAuthenticator that can authenticate a secret token against
  * a stored digest secret token, using both a global salt and local salts
  * for producing the digest.
+ * 
+ * Successfully validated secret tokens are cached for a short time, together with the
+ * stored digest secret token they were validated against. If the stored digest secret
+ * token of a sender changes, the cached entry no longer matches. Only an HMAC of the
+ * secret token is kept in the cache, with a random key of the validator that is never stored.
  */
 public abstract class DigestSecretTokenValidator extends AbstractSecretTokenValidator implements SecretTokenValidator {
 
 	private static Logger log = LoggerFactory.getLogger(DigestSecretTokenValidator.class.getName());
 
+	public static final int DEFAULT_CACHE_MAXSIZE = 1000;
+	public static final long DEFAULT_CACHE_TTL = 60 * 1000L;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String HMAC_ALGORITHM = "HmacSHA256";
+
 	private String globalSalt;
+	private final BoundedCache<String, CachedSecretToken> cache;
+	private volatile long cacheTtl;
+
+	private final SecretKey hmacKey;
+	private final Queue<Mac> hmacs;
 
 	public DigestSecretTokenValidator(String globalSalt) {
 
 		this.globalSalt = globalSalt;
+		this.cache = new BoundedCache<String, CachedSecretToken> (DEFAULT_CACHE_MAXSIZE);
+		this.cacheTtl = DEFAULT_CACHE_TTL;
+
+		byte[] hmacKeyBytes = new byte[32];
+		new SecureRandom().nextBytes(hmacKeyBytes);
+
+		this.hmacKey = new SecretKeySpec(hmacKeyBytes, HMAC_ALGORITHM);
+		this.hmacs = new ConcurrentLinkedQueue<Mac> ();
 	}
 
 	public DigestSecretTokenValidator() {
@@ -41,6 +78,29 @@ public abstract class DigestSecretTokenValidator extends AbstractSecretTokenVali
 
 		if (log.isDebugEnabled()) log.debug("Local salt and digest secret token found for sender " + senderXDIAddress + ": " + localSaltAndDigestSecretToken);
 
+		// look for a cached validation
+
+		String cacheKey = senderXDIAddress + " " + localSaltAndDigestSecretToken;
+		byte[] secretTokenHmac = this.getCacheTtl() > 0 ? this.hmac(secretToken) : null;
+
+		if (secretTokenHmac != null) {
+
+			CachedSecretToken cachedSecretToken = this.cache.get(cacheKey);
+
+			if (cachedSecretToken != null) {
+
+				if (cachedSecretToken.isExpired()) {
+
+					this.cache.remove(cacheKey);
+				} else if (MessageDigest.isEqual(cachedSecretToken.secretTokenHmac, secretTokenHmac)) {
+
+					if (log.isDebugEnabled()) log.debug("Secret token of sender " + senderXDIAddress + " has already been validated.");
+
+					return true;
+				}
+			}
+		}
+
 		// prepare authentication
 
 		String[] parts = localSaltAndDigestSecretToken.split(":");
@@ -66,11 +126,56 @@ public abstract class DigestSecretTokenValidator extends AbstractSecretTokenVali
 
 		boolean authenticated = digestSecretToken.equals(SecretTokens.digestSecretToken(secretToken, this.getGlobalSalt(), localSalt));
 
+		// cache the validation
+
+		if (authenticated && secretTokenHmac != null) this.cache.put(cacheKey, new CachedSecretToken(secretTokenHmac, System.currentTimeMillis() + this.getCacheTtl()));
+
 		return authenticated;
 	}
 
 	protected abstract String getLocalSaltAndDigestSecretToken(XDIAddress senderXDIAddress);
 
+	/**
+	 * Removes all cached validations, e.g. after a secret token has been revoked.
+	 */
+	public void invalidateCache() {
+
+		this.cache.clear();
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	/**
+	 * Returns the HMAC of a string with the key of this validator, or null if no HMAC is available.
+	 * The initialized MACs are kept in a pool of the validator, since a MAC can only be used by one thread at a time.
+	 */
+	private byte[] hmac(String string) {
+
+		Mac mac = this.hmacs.poll();
+
+		if (mac == null) {
+
+			try {
+
+				mac = Mac.getInstance(HMAC_ALGORITHM);
+				mac.init(this.hmacKey);
+			} catch (GeneralSecurityException ex) {
+
+				if (log.isWarnEnabled()) log.warn("Cannot cache validated secret tokens: " + ex.getMessage(), ex);
+
+				return null;
+			}
+		}
+
+		byte[] hmac = mac.doFinal(string.getBytes(UTF8));
+
+		this.hmacs.offer(mac);
+
+		return hmac;
+	}
+
 	/*
 	 * Getters and setters
 	 */
@@ -83,5 +188,58 @@ public abstract class DigestSecretTokenValidator extends AbstractSecretTokenVali
 	public void setGlobalSalt(String globalSalt) {
 
 		this.globalSalt = globalSalt;
+
+		this.invalidateCache();
+	}
+
+	/**
+	 * Returns the number of cached validations.
+	 */
+	public int getCacheSize() {
+
+		return this.cache.size();
+	}
+
+	/**
+	 * Returns how often a cached validation has been found.
+	 */
+	public long getCacheHitCount() {
+
+		return this.cache.getHitCount();
+	}
+
+	/**
+	 * Returns how long a validated secret token is cached, in milliseconds.
+	 * A value of 0 or less disables the cache.
+	 */
+	public long getCacheTtl() {
+
+		return this.cacheTtl;
+	}
+
+	public void setCacheTtl(long cacheTtl) {
+
+		this.cacheTtl = cacheTtl;
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	private static class CachedSecretToken {
+
+		private final byte[] secretTokenHmac;
+		private final long expires;
+
+		private CachedSecretToken(byte[] secretTokenHmac, long expires) {
+
+			this.secretTokenHmac = secretTokenHmac;
+			this.expires = expires;
+		}
+
+		private boolean isExpired() {
+
+			return System.currentTimeMillis() >= this.expires;
+		}
 	}
 }
@@ -2,7 +2,12 @@ package xdi2.messaging.container.interceptor.impl.security.signature;
 
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,8 +21,9 @@ import xdi2.core.security.signature.validate.AESGraphSecretKeySignatureValidator
 import xdi2.core.security.signature.validate.RSAGraphPublicKeySignatureValidator;
 import xdi2.core.security.signature.validate.SignatureValidator;
 import xdi2.core.syntax.XDIAddress;
-import xdi2.core.util.iterators.ReadOnlyIterator;
+import xdi2.core.util.TaskGroup;
 import xdi2.messaging.Message;
+import xdi2.messaging.MessageEnvelope;
 import xdi2.messaging.container.MessagingContainer;
 import xdi2.messaging.container.Prototype;
 import xdi2.messaging.container.exceptions.Xdi2MessagingException;
@@ -25,14 +31,25 @@ import xdi2.messaging.container.exceptions.Xdi2SecurityException;
 import xdi2.messaging.container.execution.ExecutionContext;
 import xdi2.messaging.container.execution.ExecutionResult;
 import xdi2.messaging.container.interceptor.InterceptorResult;
+import xdi2.messaging.container.interceptor.MessageEnvelopeInterceptor;
 import xdi2.messaging.container.interceptor.MessageInterceptor;
 import xdi2.messaging.container.interceptor.impl.AbstractInterceptor;
+import xdi2.messaging.operations.GetOperation;
+import xdi2.messaging.operations.Operation;
 
 /**
  * This interceptor looks for a signature on an incoming XDI message,
  * and invokes an instance of SignatureValidator to validate it.
+ * 
+ * If an executor is set, the signatures of all messages in a message envelope are validated
+ * in parallel before the message envelope is executed, and the results are then used
+ * when the messages are executed.
+ * 
+ * This is only done for message envelopes with nothing but $get operations, since the signatures are
+ * validated with the keys in the graph before the message envelope is executed, and its messages
+ * may change them. Messages that are not validated within the timeout are validated when they are executed.
  */
-public class SignatureInterceptor extends AbstractInterceptor<MessagingContainer> implements MessageInterceptor, Prototype<SignatureInterceptor> {
+public class SignatureInterceptor extends AbstractInterceptor<MessagingContainer> implements MessageEnvelopeInterceptor, MessageInterceptor, Prototype<SignatureInterceptor> {
 
 	private static Logger log = LoggerFactory.getLogger(SignatureInterceptor.class.getName());
 
@@ -45,11 +62,22 @@ public class SignatureInterceptor extends AbstractInterceptor<MessagingContainer
 		DEFAULT_SIGNATURE_VALIDATORS.add(new RSAGraphPublicKeySignatureValidator());
 	}
 
+	public static final long DEFAULT_TIMEOUT = 10000;
+
 	private List<SignatureValidator<? extends Signature>> signatureValidators;
+	private Executor executor;
+	private long timeout;
 
-	public SignatureInterceptor(List<SignatureValidator<? extends Signature>> signatureValidators) {
+	public SignatureInterceptor(List<SignatureValidator<? extends Signature>> signatureValidators, Executor executor) {
 
 		this.signatureValidators = signatureValidators;
+		this.executor = executor;
+		this.timeout = DEFAULT_TIMEOUT;
+	}
+
+	public SignatureInterceptor(List<SignatureValidator<? extends Signature>> signatureValidators) {
+
+		this(signatureValidators, getDefaultExecutorService());
 	}
 
 	public SignatureInterceptor() {
@@ -72,11 +100,104 @@ public class SignatureInterceptor extends AbstractInterceptor<MessagingContainer
 
 		interceptor.setSignatureValidators(this.getSignatureValidators());
 
+		// set the executor
+
+		interceptor.setExecutor(this.getExecutor());
+		interceptor.setTimeout(this.getTimeout());
+
 		// done
 
 		return interceptor;
 	}
 
+	/*
+	 * MessageEnvelopeInterceptor
+	 */
+
+	@Override
+	public InterceptorResult before(MessageEnvelope messageEnvelope, ExecutionContext executionContext, ExecutionResult executionResult) throws Xdi2MessagingException {
+
+		putSignatureResultsPerMessageEnvelope(executionContext, null);
+
+		if (this.getExecutor() == null) return InterceptorResult.DEFAULT;
+
+		// the messages may change the keys that are used to validate the signatures
+
+		for (Operation operation : messageEnvelope.getOperations()) {
+
+			if (! (operation instanceof GetOperation)) return InterceptorResult.DEFAULT;
+		}
+
+		// find messages with signatures
+
+		List<Message> messages = new ArrayList<Message> ();
+
+		for (Message message : messageEnvelope.getMessages()) {
+
+			if (message.getSignatures().hasNext()) messages.add(message);
+		}
+
+		if (messages.size() < 2) return InterceptorResult.DEFAULT;
+
+		if (log.isDebugEnabled()) log.debug("Validating signatures of " + messages.size() + " messages in parallel.");
+
+		// validate signatures in parallel
+
+		final Map<XDIAddress, Object> results = new ConcurrentHashMap<XDIAddress, Object> ();
+		TaskGroup taskGroup = new TaskGroup(this.getExecutor());
+
+		for (final Message message : messages) {
+
+			taskGroup.fork(new Runnable() {
+
+				@Override
+				public void run() {
+
+					try {
+
+						results.put(message.getContextNode().getXDIAddress(), SignatureInterceptor.this.validateSignatures(message));
+					} catch (GeneralSecurityException ex) {
+
+						results.put(message.getContextNode().getXDIAddress(), ex);
+					} catch (RuntimeException ex) {
+
+						if (log.isWarnEnabled()) log.warn("Cannot validate signatures of " + message + ": " + ex.getMessage(), ex);
+					}
+				}
+			});
+		}
+
+		try {
+
+			if (! taskGroup.join(this.getTimeout())) {
+
+				if (log.isWarnEnabled()) log.warn("Validated signatures of only " + results.size() + " of " + messages.size() + " messages within " + this.getTimeout() + " ms.");
+			}
+		} catch (RuntimeException ex) {
+
+			throw new Xdi2MessagingException("Cannot validate signatures: " + ex.getMessage(), ex, executionContext);
+		}
+
+		// remember the results for the messages
+
+		putSignatureResultsPerMessageEnvelope(executionContext, new HashMap<XDIAddress, Object> (results));
+
+		// done
+
+		return InterceptorResult.DEFAULT;
+	}
+
+	@Override
+	public InterceptorResult after(MessageEnvelope messageEnvelope, ExecutionContext executionContext, ExecutionResult executionResult) throws Xdi2MessagingException {
+
+		return InterceptorResult.DEFAULT;
+	}
+
+	@Override
+	public void exception(MessageEnvelope messageEnvelope, ExecutionContext executionContext, ExecutionResult executionResult, Exception ex) {
+
+	}
+
 	/*
 	 * MessageInterceptor
 	 */
@@ -86,16 +207,61 @@ public class SignatureInterceptor extends AbstractInterceptor<MessagingContainer
 
 		// look for signature on the message
 
-		ReadOnlyIterator<Signature> signatures = message.getSignatures();
-		if (! signatures.hasNext()) return InterceptorResult.DEFAULT;
+		if (! message.getSignatures().hasNext()) return InterceptorResult.DEFAULT;
 
-		// validate signatures
+		// validate signatures, or use the result of validating them with the message envelope
+
+		XDIAddress senderXDIAddress = message.getSenderXDIAddress();
+
+		Object result = getSignatureResultPerMessageEnvelope(executionContext, message);
+
+		boolean validated;
+
+		try {
+
+			if (result instanceof GeneralSecurityException) throw (GeneralSecurityException) result;
+
+			validated = result instanceof Boolean ? ((Boolean) result).booleanValue() : this.validateSignatures(message);
+		} catch (GeneralSecurityException ex) {
+
+			throw new Xdi2MessagingException(ex.getMessage(), ex.getCause(), executionContext);
+		}
+
+		// signature is valid?
+
+		XdiAttribute signatureValidXdiAttribute = XdiAttributeSingleton.fromContextNode(message.getContextNode().setDeepContextNode(XDISecurityConstants.XDI_ADD_SIGNATURE_VALID));
+		LiteralNode signatureValidLiteral = signatureValidXdiAttribute.setLiteralBoolean(Boolean.valueOf(validated));
+
+		if (log.isDebugEnabled()) log.debug("Valid for " + senderXDIAddress + ": " + signatureValidLiteral.getStatement());
+
+		if (! validated) throw new Xdi2SecurityException("Invalid signature.", null, executionContext);
+
+		// done
+
+		return InterceptorResult.DEFAULT;
+	}
+
+	@Override
+	public InterceptorResult after(Message message, ExecutionContext executionContext, ExecutionResult executionResult) throws Xdi2MessagingException {
+
+		return InterceptorResult.DEFAULT;
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	/**
+	 * Validates the signatures of a message. This does not change the message, so it can be called
+	 * for several messages at the same time.
+	 */
+	private boolean validateSignatures(Message message) throws GeneralSecurityException {
 
 		XDIAddress senderXDIAddress = message.getSenderXDIAddress();
 
 		boolean validated = false;
 
-		for (Signature signature : signatures) {
+		for (Signature signature : message.getSignatures()) {
 
 			boolean validatedSignature = false;
 
@@ -114,7 +280,7 @@ public class SignatureInterceptor extends AbstractInterceptor<MessagingContainer
 					if (validatedSignature) break;
 				} catch (GeneralSecurityException ex) {
 
-					throw new Xdi2MessagingException("Unable to validate signature for " + senderXDIAddress + " via " + signatureValidator.getClass().getSimpleName() + ": " + ex.getMessage(), ex, executionContext);
+					throw new GeneralSecurityException("Unable to validate signature for " + senderXDIAddress + " via " + signatureValidator.getClass().getSimpleName() + ": " + ex.getMessage(), ex);
 				}
 			}
 
@@ -122,24 +288,15 @@ public class SignatureInterceptor extends AbstractInterceptor<MessagingContainer
 			if (! validated) break;
 		}
 
-		// signature is valid?
-
-		XdiAttribute signatureValidXdiAttribute = XdiAttributeSingleton.fromContextNode(message.getContextNode().setDeepContextNode(XDISecurityConstants.XDI_ADD_SIGNATURE_VALID));
-		LiteralNode signatureValidLiteral = signatureValidXdiAttribute.setLiteralBoolean(Boolean.valueOf(validated));
-
-		if (log.isDebugEnabled()) log.debug("Valid for " + senderXDIAddress + ": " + signatureValidLiteral.getStatement());
-
-		if (! validated) throw new Xdi2SecurityException("Invalid signature.", null, executionContext);
-
-		// done
-
-		return InterceptorResult.DEFAULT;
+		return validated;
 	}
 
-	@Override
-	public InterceptorResult after(Message message, ExecutionContext executionContext, ExecutionResult executionResult) throws Xdi2MessagingException {
+	/**
+	 * Returns the shared executor of TaskGroup, with one daemon thread for every available processor.
+	 */
+	public static ExecutorService getDefaultExecutorService() {
 
-		return InterceptorResult.DEFAULT;
+		return TaskGroup.getDefaultExecutorService();
 	}
 
 	/*
@@ -155,4 +312,56 @@ public class SignatureInterceptor extends AbstractInterceptor<MessagingContainer
 
 		this.signatureValidators = signatureValidators;
 	}
+
+	/**
+	 * Returns the executor for validating the signatures of a message envelope in parallel,
+	 * or null if signatures are validated one message at a time.
+	 */
+	public Executor getExecutor() {
+
+		return this.executor;
+	}
+
+	public void setExecutor(Executor executor) {
+
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns the maximum time in milliseconds to wait for the signatures of a message envelope,
+	 * or 0 to wait until all of them are validated.
+	 */
+	public long getTimeout() {
+
+		return this.timeout;
+	}
+
+	public void setTimeout(long timeout) {
+
+		this.timeout = timeout;
+	}
+
+	/*
+	 * ExecutionContext helper methods
+	 */
+
+	private static final String EXECUTIONCONTEXT_KEY_SIGNATURERESULTS_PER_MESSAGEENVELOPE = SignatureInterceptor.class.getCanonicalName() + "#signatureresultspermessageenvelope";
+
+	/**
+	 * Returns the result of validating the signatures of a message with the message envelope,
+	 * which is a Boolean or a GeneralSecurityException, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object getSignatureResultPerMessageEnvelope(ExecutionContext executionContext, Message message) {
+
+		Map<XDIAddress, Object> signatureResults = (Map<XDIAddress, Object>) executionContext.getMessageEnvelopeAttribute(EXECUTIONCONTEXT_KEY_SIGNATURERESULTS_PER_MESSAGEENVELOPE);
+		if (signatureResults == null) return null;
+
+		return signatureResults.get(message.getContextNode().getXDIAddress());
+	}
+
+	private static void putSignatureResultsPerMessageEnvelope(ExecutionContext executionContext, Map<XDIAddress, Object> signatureResults) {
+
+		executionContext.putMessageEnvelopeAttribute(EXECUTIONCONTEXT_KEY_SIGNATURERESULTS_PER_MESSAGEENVELOPE, signatureResults);
+	}
 }
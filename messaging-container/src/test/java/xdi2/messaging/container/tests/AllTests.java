@@ -10,7 +10,9 @@ import xdi2.messaging.container.tests.impl.graph.MemoryGraphMessagingContainerTe
 import xdi2.messaging.container.tests.impl.graph.MemoryJSONGraphMessagingContainerTest;
 import xdi2.messaging.container.tests.impl.graph.PropertiesKeyValueGraphMessagingContainerTest;
 import xdi2.messaging.container.tests.interceptor.impl.authentication.secrettoken.AuthenticationSecretTokenInterceptorTest;
+import xdi2.messaging.container.tests.interceptor.impl.encryption.StaticLiteralCryptoServiceTest;
 import xdi2.messaging.container.tests.interceptor.impl.linkcontract.LinkContractInterceptorTest;
+import xdi2.messaging.container.tests.interceptor.impl.security.signature.SignatureInterceptorTest;
 
 public class AllTests {
 
@@ -26,6 +28,8 @@ public class AllTests {
 		suite.addTestSuite(LinkContractInterceptorTest.class);
 		suite.addTestSuite(ContributorTest.class);
 		suite.addTestSuite(AuthenticationSecretTokenInterceptorTest.class);
+		suite.addTestSuite(SignatureInterceptorTest.class);
+		suite.addTestSuite(StaticLiteralCryptoServiceTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -1,8 +1,11 @@
 package xdi2.messaging.container.tests.interceptor.impl.authentication.secrettoken;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import junit.framework.TestCase;
+import xdi2.core.features.secrettokens.SecretTokens;
 import xdi2.core.syntax.XDIAddress;
 import xdi2.messaging.Message;
 import xdi2.messaging.MessageEnvelope;
@@ -33,4 +36,39 @@ public class AuthenticationSecretTokenInterceptorTest extends TestCase {
 
 		assertTrue(staticSecretTokenAuthenticator.authenticate(message.getSecretToken(), message.getSenderXDIAddress()));
 	}
+
+	public void testCachedSecretTokenAuthenticator() throws Exception {
+
+		Map<XDIAddress, String> localSaltAndDigestSecretTokens = new HashMap<XDIAddress, String> ();
+		localSaltAndDigestSecretTokens.put(SENDER, LOCAL_SALT_AND_DIGEST_SECRET_TOKEN);
+
+		StaticSecretTokenValidator staticSecretTokenAuthenticator = new StaticSecretTokenValidator(GLOBAL_SALT, localSaltAndDigestSecretTokens);
+
+		// the second validation is cached
+
+		assertTrue(staticSecretTokenAuthenticator.authenticate(SECRET_TOKEN, SENDER));
+		assertEquals(1, staticSecretTokenAuthenticator.getCacheSize());
+		assertTrue(staticSecretTokenAuthenticator.authenticate(SECRET_TOKEN, SENDER));
+		assertEquals(1, staticSecretTokenAuthenticator.getCacheHitCount());
+
+		// a wrong secret token is not accepted from the cache
+
+		assertFalse(staticSecretTokenAuthenticator.authenticate("wrong", SENDER));
+		assertFalse(staticSecretTokenAuthenticator.authenticate("wrong", XDIAddress.create("=other")));
+
+		// a changed digest secret token invalidates the cached validation
+
+		localSaltAndDigestSecretTokens.put(SENDER, SecretTokens.localSaltAndDigestSecretToken("n3w", GLOBAL_SALT));
+
+		assertFalse(staticSecretTokenAuthenticator.authenticate(SECRET_TOKEN, SENDER));
+		assertTrue(staticSecretTokenAuthenticator.authenticate("n3w", SENDER));
+
+		// without a time to live, nothing is cached
+
+		staticSecretTokenAuthenticator.invalidateCache();
+		staticSecretTokenAuthenticator.setCacheTtl(0);
+
+		assertTrue(staticSecretTokenAuthenticator.authenticate("n3w", SENDER));
+		assertEquals(0, staticSecretTokenAuthenticator.getCacheSize());
+	}
 }
@@ -0,0 +1,114 @@
+package xdi2.messaging.container.tests.interceptor.impl.encryption;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
+
+import javax.crypto.KeyGenerator;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.codec.binary.Base64;
+
+import xdi2.core.Graph;
+import xdi2.core.impl.AbstractLiteralNode;
+import xdi2.core.impl.memory.MemoryGraphFactory;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.core.util.TaskGroup;
+import xdi2.messaging.container.interceptor.impl.encryption.StaticLiteralCryptoService;
+
+public class StaticLiteralCryptoServiceTest extends TestCase {
+
+	private static final Executor[] EXECUTORS = new Executor[] { null, TaskGroup.getDefaultExecutorService() };
+
+	public void testEncryptDecrypt() throws Exception {
+
+		StaticLiteralCryptoService literalCryptoService = createLiteralCryptoService();
+
+		for (int i = 0; i < 10; i++) {
+
+			String encryptedLiteralDataString = literalCryptoService.encryptLiteralDataString("literal" + i);
+
+			assertFalse(("literal" + i).equals(encryptedLiteralDataString));
+			assertEquals("literal" + i, literalCryptoService.decryptLiteralDataString(encryptedLiteralDataString));
+		}
+
+		// a failed decryption must not break the cipher of the thread
+
+		try {
+
+			literalCryptoService.decryptLiteralDataString("invalid");
+
+			fail();
+		} catch (Exception ex) {
+
+		}
+
+		String encryptedLiteralDataString = literalCryptoService.encryptLiteralDataString("literal");
+
+		assertEquals("literal", literalCryptoService.decryptLiteralDataString(encryptedLiteralDataString));
+
+		// after shutdown, the ciphers must not be used any more
+
+		literalCryptoService.shutdown();
+
+		try {
+
+			literalCryptoService.decryptLiteralDataString(encryptedLiteralDataString);
+
+			fail();
+		} catch (IllegalStateException ex) {
+
+		}
+	}
+
+	public void testDecryptLiteralNodes() throws Exception {
+
+		for (Executor executor : EXECUTORS) this.testDecryptLiteralNodes(executor);
+	}
+
+	private void testDecryptLiteralNodes(Executor executor) throws Exception {
+
+		StaticLiteralCryptoService literalCryptoService = createLiteralCryptoService();
+		literalCryptoService.setExecutor(executor);
+		literalCryptoService.setParallelThreshold(100);
+
+		Graph graph = MemoryGraphFactory.getInstance().openGraph();
+
+		for (int i = 0; i < 1000; i++) {
+
+			graph.setStatement(XDIStatement.fromLiteralComponents(XDIAddress.create("=markus<#test" + i + ">"), literalCryptoService.encryptLiteralDataString(AbstractLiteralNode.literalDataToString("literal" + i))));
+		}
+
+		graph.setStatement(XDIStatement.fromLiteralComponents(XDIAddress.create("=markus<#invalid>"), "invalid"));
+
+		literalCryptoService.decryptLiteralNodes(graph);
+
+		for (int i = 0; i < 1000; i++) {
+
+			assertEquals("literal" + i, graph.getDeepLiteralNode(XDIAddress.create("=markus<#test" + i + ">&")).getLiteralDataString());
+		}
+
+		assertEquals("invalid", graph.getDeepLiteralNode(XDIAddress.create("=markus<#invalid>&")).getLiteralDataString());
+
+		graph.close();
+
+		literalCryptoService.shutdown();
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private static StaticLiteralCryptoService createLiteralCryptoService() throws Exception {
+
+		KeyGenerator secretKeyGen = KeyGenerator.getInstance("AES");
+		secretKeyGen.init(128);
+
+		StaticLiteralCryptoService literalCryptoService = new StaticLiteralCryptoService();
+		literalCryptoService.setSecretKeyString(new String(Base64.encodeBase64(secretKeyGen.generateKey().getEncoded()), Charset.forName("UTF-8")));
+		literalCryptoService.init();
+
+		return literalCryptoService;
+	}
+}
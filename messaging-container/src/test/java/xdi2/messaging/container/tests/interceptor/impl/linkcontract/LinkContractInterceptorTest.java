@@ -1,5 +1,7 @@
 package xdi2.messaging.container.tests.interceptor.impl.linkcontract;
 
+import java.io.StringReader;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,6 +10,7 @@ import xdi2.core.Graph;
 import xdi2.core.impl.memory.MemoryGraphFactory;
 import xdi2.core.io.XDIReader;
 import xdi2.core.io.readers.XDIDisplayReader;
+import xdi2.core.syntax.XDIAddress;
 import xdi2.messaging.MessageEnvelope;
 import xdi2.messaging.container.exceptions.Xdi2NotAuthorizedException;
 import xdi2.messaging.container.execution.ExecutionContext;
@@ -123,4 +126,106 @@ public class LinkContractInterceptorTest extends TestCase {
 
 		assertTrue(i > 1);
 	}
+
+	public void testCompiledLinkContractInvalidation() throws Exception {
+
+		Graph graph = graphFactory.openGraph();
+		autoReader.read(graph, new StringReader(
+				"(=markus/=markus)($contract$do$if/$true){$from}/$is/=markus\n" +
+				"(=markus/=markus)$contract$do/$get/=markus<#age>\n" +
+				"(=markus/=markus)$contract$do/$all/(=markus/=markus)\n" +
+				"=markus<#age>/&/\"33\"\n" +
+				"=markus<#name>/&/\"Markus Sabadello\"\n"));
+
+		LinkContractInterceptor linkContractsInterceptor = new LinkContractInterceptor();
+		linkContractsInterceptor.setLinkContractsGraph(graph);
+
+		GraphMessagingContainer graphMessagingContainer = new GraphMessagingContainer();
+		graphMessagingContainer.setGraph(graph);
+		graphMessagingContainer.getInterceptors().addInterceptor(linkContractsInterceptor);
+
+		String getAge = "=markus[$msg]*!:uuid:1/$contract/(=markus/=markus)$contract\n=markus[$msg]*!:uuid:1$do/$get/=markus<#age>\n";
+		String getName = "=markus[$msg]*!:uuid:2/$contract/(=markus/=markus)$contract\n=markus[$msg]*!:uuid:2$do/$get/=markus<#name>\n";
+		String setPermission = "=markus[$msg]*!:uuid:3/$contract/(=markus/=markus)$contract\n(=markus[$msg]*!:uuid:3$do/$set)(=markus/=markus)$contract$do/$get/=markus<#name>\n";
+
+		assertTrue(this.execute(graphMessagingContainer, getAge));
+		assertFalse(this.execute(graphMessagingContainer, getName));
+		assertEquals(linkContractsInterceptor.getCompiledLinkContracts().size(), 1);
+		assertTrue(linkContractsInterceptor.getCompiledLinkContracts().getHitCount() > 0);
+
+		// a permission granted by a message is used
+
+		assertTrue(this.execute(graphMessagingContainer, setPermission));
+		assertTrue(this.execute(graphMessagingContainer, getName));
+
+		// a permission revoked directly in the graph is no longer used
+
+		graph.getDeepContextNode(XDIAddress.create("(=markus/=markus)$contract$do")).delRelation(XDIAddress.create("$get"), XDIAddress.create("=markus<#name>"));
+		assertFalse(this.execute(graphMessagingContainer, getName));
+		assertTrue(this.execute(graphMessagingContainer, getAge));
+
+		// the compiled link contract is used again as long as the graph does not change
+
+		long hitCount = linkContractsInterceptor.getCompiledLinkContracts().getHitCount();
+		assertTrue(this.execute(graphMessagingContainer, getAge));
+		assertTrue(linkContractsInterceptor.getCompiledLinkContracts().getHitCount() > hitCount);
+
+		graph.close();
+	}
+
+	public void testUnresolvedPermissionTarget() throws Exception {
+
+		Graph graph = graphFactory.openGraph();
+		autoReader.read(graph, new StringReader(
+				"(=markus/=markus)($contract$do$if/$true){$from}/$is/=markus\n" +
+				"(=markus/=markus)$contract$do/$get/=markus<#age>\n" +
+				"(=markus/=markus)$contract$do/$get/=markus<#missing>\n" +
+				"=markus<#age>/&/\"33\"\n" +
+				"=markus<#name>/&/\"Markus Sabadello\"\n"));
+
+		LinkContractInterceptor linkContractsInterceptor = new LinkContractInterceptor();
+		linkContractsInterceptor.setLinkContractsGraph(graph);
+
+		// every prototyped interceptor has its own compiled link contracts
+
+		LinkContractInterceptor prototypedLinkContractsInterceptor = linkContractsInterceptor.instanceFor(null);
+
+		assertNotSame(linkContractsInterceptor, prototypedLinkContractsInterceptor);
+		assertNotSame(linkContractsInterceptor.getCompiledLinkContracts(), prototypedLinkContractsInterceptor.getCompiledLinkContracts());
+		assertSame(graph, prototypedLinkContractsInterceptor.getLinkContractsGraph());
+
+		GraphMessagingContainer graphMessagingContainer = new GraphMessagingContainer();
+		graphMessagingContainer.setGraph(graph);
+		graphMessagingContainer.getInterceptors().addInterceptor(prototypedLinkContractsInterceptor);
+
+		String getAge = "=markus[$msg]*!:uuid:1/$contract/(=markus/=markus)$contract\n=markus[$msg]*!:uuid:1$do/$get/=markus<#age>\n";
+		String getName = "=markus[$msg]*!:uuid:2/$contract/(=markus/=markus)$contract\n=markus[$msg]*!:uuid:2$do/$get/=markus<#name>\n";
+
+		// a permission target that cannot be resolved does not prevent the others from being used
+
+		assertTrue(this.execute(graphMessagingContainer, getAge));
+		assertTrue(this.execute(graphMessagingContainer, getAge));
+		assertFalse(this.execute(graphMessagingContainer, getName));
+
+		graph.close();
+	}
+
+	private boolean execute(GraphMessagingContainer graphMessagingContainer, String message) throws Exception {
+
+		Graph messageGraph = graphFactory.openGraph();
+		autoReader.read(messageGraph, new StringReader(message));
+
+		MessageEnvelope messageEnvelope = MessageEnvelope.fromGraph(messageGraph);
+		ExecutionContext executionContext = ExecutionContext.createExecutionContext();
+		ExecutionResult executionResult = ExecutionResult.createExecutionResult(messageEnvelope);
+
+		try {
+
+			graphMessagingContainer.execute(messageEnvelope, executionContext, executionResult);
+			return true;
+		} catch (Xdi2NotAuthorizedException ex) {
+
+			return false;
+		}
+	}
 }
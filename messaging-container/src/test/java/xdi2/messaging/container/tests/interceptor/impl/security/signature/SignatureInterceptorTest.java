@@ -0,0 +1,105 @@
+package xdi2.messaging.container.tests.interceptor.impl.security.signature;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import junit.framework.TestCase;
+import xdi2.core.constants.XDISecurityConstants;
+import xdi2.core.features.signatures.Signature;
+import xdi2.core.security.signature.create.AESStaticSecretKeySignatureCreator;
+import xdi2.core.security.signature.validate.AESStaticSecretKeySignatureValidator;
+import xdi2.core.security.signature.validate.SignatureValidator;
+import xdi2.core.syntax.XDIAddress;
+import xdi2.core.syntax.XDIStatement;
+import xdi2.core.util.TaskGroup;
+import xdi2.messaging.Message;
+import xdi2.messaging.MessageEnvelope;
+import xdi2.messaging.container.exceptions.Xdi2SecurityException;
+import xdi2.messaging.container.execution.ExecutionContext;
+import xdi2.messaging.container.interceptor.impl.security.signature.SignatureInterceptor;
+
+public class SignatureInterceptorTest extends TestCase {
+
+	private static final Executor[] EXECUTORS = new Executor[] { null, TaskGroup.getDefaultExecutorService() };
+
+	public void testSignatureValidation() throws Exception {
+
+		for (Executor executor : EXECUTORS) this.testSignatureValidation(executor, false);
+	}
+
+	public void testSignatureValidationWithWrite() throws Exception {
+
+		for (Executor executor : EXECUTORS) this.testSignatureValidation(executor, true);
+	}
+
+	private void testSignatureValidation(Executor executor, boolean write) throws Exception {
+
+		KeyGenerator secretKeyGen = KeyGenerator.getInstance("AES");
+		secretKeyGen.init(256);
+
+		Map<XDIAddress, SecretKey> secretKeys = new HashMap<XDIAddress, SecretKey> ();
+
+		MessageEnvelope messageEnvelope = new MessageEnvelope();
+		List<Message> messages = new ArrayList<Message> ();
+
+		for (int i = 0; i < 8; i++) {
+
+			XDIAddress senderXDIAddress = XDIAddress.create("=sender" + i);
+			secretKeys.put(senderXDIAddress, secretKeyGen.generateKey());
+
+			Message message = messageEnvelope.createMessage(senderXDIAddress);
+			if (write && i == 0) message.createSetOperation(XDIAddress.create("=sender" + i + "<#email>"));
+			else message.createGetOperation(XDIAddress.create("=sender" + i + "<#email>"));
+			messages.add(message);
+		}
+
+		AESStaticSecretKeySignatureCreator signatureCreator = new AESStaticSecretKeySignatureCreator(secretKeys);
+
+		for (Message message : messages) signatureCreator.createSignature(message.getContextNode(), message.getSenderXDIAddress());
+
+		// change a message after it has been signed
+
+		messageEnvelope.getGraph().setStatement(XDIStatement.fromRelationComponents(messages.get(5).getContextNode().getXDIAddress(), XDIAddress.create("#test"), XDIAddress.create("=test")));
+
+		// validate the signatures with the message envelope
+
+		List<SignatureValidator<? extends Signature>> signatureValidators = new ArrayList<SignatureValidator<? extends Signature>> ();
+		signatureValidators.add(new AESStaticSecretKeySignatureValidator(secretKeys));
+
+		SignatureInterceptor signatureInterceptor = new SignatureInterceptor(signatureValidators, executor);
+
+		ExecutionContext executionContext = ExecutionContext.createExecutionContext();
+
+		signatureInterceptor.before(messageEnvelope, executionContext, null);
+
+		// with an executor, the messages use the results of the message envelope, and don't need the validators,
+		// unless the message envelope has writes, and the signatures were not validated with it
+
+		if (executor != null) signatureInterceptor.setSignatureValidators(Collections.<SignatureValidator<? extends Signature>> emptyList());
+
+		for (int i = 0; i < messages.size(); i++) {
+
+			Message message = messages.get(i);
+			boolean valid = i != 5 && ! (executor != null && write);
+
+			try {
+
+				signatureInterceptor.before(message, executionContext, null);
+
+				if (! valid) fail();
+			} catch (Xdi2SecurityException ex) {
+
+				if (valid) throw ex;
+			}
+
+			assertEquals(Boolean.valueOf(valid), message.getContextNode().getDeepLiteralNode(XDISecurityConstants.XDI_ADD_SIGNATURE_VALID.concatXDIAddress(XDIAddress.create("&"))).getLiteralDataBoolean());
+		}
+	}
+}
@@ -3,8 +3,10 @@ package xdi2.transport.impl.http;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +42,8 @@ public class HttpTransport extends UriTransport<HttpTransportRequest, HttpTransp
 	private static final Map<String, String> DEFAULT_HEADERS_DELETE;
 	private static final Map<String, String> DEFAULT_HEADERS_OPTIONS;
 
+	public static final boolean DEFAULT_STREAMBODY = false;
+
 	static {
 
 		DEFAULT_HEADERS = new HashMap<String, String> ();
@@ -62,6 +66,7 @@ public class HttpTransport extends UriTransport<HttpTransportRequest, HttpTransp
 	private Map<String, String> headersPut;
 	private Map<String, String> headersDelete;
 	private Map<String, String> headersOptions;
+	private boolean streamBody;
 
 	public HttpTransport(UriMessagingContainerRegistry uriMessagingContainerRegistry) {
 
@@ -72,6 +77,7 @@ public class HttpTransport extends UriTransport<HttpTransportRequest, HttpTransp
 		this.headersPut = DEFAULT_HEADERS_PUT;
 		this.headersDelete = DEFAULT_HEADERS_DELETE;
 		this.headersOptions = DEFAULT_HEADERS_OPTIONS;
+		this.streamBody = DEFAULT_STREAMBODY;
 	}
 
 	public HttpTransport() {
@@ -96,9 +102,11 @@ public class HttpTransport extends UriTransport<HttpTransportRequest, HttpTransp
 
 		if (log.isInfoEnabled()) log.info("Incoming " + request.getMethod() + " request to " + request.getRequestPath() + ". Content-Type: " + request.getContentType());
 
+		UriMessagingContainerMount uriMessagingContainerMount = null;
+
 		try {
 
-			UriMessagingContainerMount uriMessagingContainerMount = this.getUriMessagingContainerRegistry().lookup(request.getRequestPath());
+			uriMessagingContainerMount = this.getUriMessagingContainerRegistry().acquire(request.getRequestPath());
 
 			if (HttpTransportRequest.METHOD_GET.equals(request.getMethod())) this.processGetRequest(request, response, uriMessagingContainerMount);
 			else if (HttpTransportRequest.METHOD_POST.equals(request.getMethod())) this.processPostRequest(request, response, uriMessagingContainerMount);
@@ -113,6 +121,9 @@ public class HttpTransport extends UriTransport<HttpTransportRequest, HttpTransp
 
 			sendErrorInternalServer(request, response, ex);
 			return;
+		} finally {
+
+			this.getUriMessagingContainerRegistry().release(uriMessagingContainerMount);
 		}
 
 		if (log.isDebugEnabled()) log.debug("Successfully processed " + request.getMethod() + " request.");
@@ -429,24 +440,56 @@ public class HttpTransport extends UriTransport<HttpTransportRequest, HttpTransp
 			if (log.isDebugEnabled()) log.debug("Accept: " + request.getHeader("Accept"));
 
 			XDIWriter writer = null;
+			Properties writerParameters = new Properties();
 
 			String acceptHeader = request.getHeader("Accept");
 			MimeType sendMimeType = acceptHeader != null ? AcceptHeader.parse(acceptHeader).bestMimeType(false, true) : null;
 			writer = sendMimeType != null ? XDIWriterRegistry.forMimeType(sendMimeType) : null;
 
+			if (writer != null) writerParameters.putAll(sendMimeType.getParameters());
 			if (writer == null) writer = XDIWriterRegistry.getDefault();
 
+			// ask the writer not to build the whole result in memory, if it can do that
+
+			if (this.isStreamBody()) {
+
+				writerParameters.setProperty(XDIWriterRegistry.PARAMETER_STREAM, "1");
+				writer = XDIWriterRegistry.forFormat(writer.getFormat(), writerParameters);
+			}
+
 			// send out the message result
 
 			if (log.isDebugEnabled()) log.debug("Sending result in " + sendMimeType + " with writer " + writer.getClass().getSimpleName() + ".");
 
-			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-			writer.write(messagingResponse.getGraph(), buffer);
+			if (this.isStreamBody()) {
+
+				// write the result directly to the response, without content length.
+				// once writing has started, the status can no longer be changed, so if the writer fails,
+				// we leave the response unfinished and let the exception abort the connection
+
+				response.setContentType(writer.getMimeType().toString());
+
+				OutputStream outputStream = response.getBodyOutputStream();
+
+				try {
 
-			response.setContentType(writer.getMimeType().toString());
-			response.setContentLength(buffer.size());
+					writer.write(messagingResponse.getGraph(), outputStream);
+				} catch (RuntimeException ex) {
 
-			response.writeBody(buffer.toByteArray(), true);
+					throw new IOException("Cannot write result after the response was started: " + ex.getMessage(), ex);
+				}
+
+				outputStream.close();
+			} else {
+
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				writer.write(messagingResponse.getGraph(), buffer);
+
+				response.setContentType(writer.getMimeType().toString());
+				response.setContentLength(buffer.size());
+
+				response.writeBody(buffer.toByteArray(), true);
+			}
 		}
 
 		if (log.isDebugEnabled()) log.debug("Output complete.");
@@ -538,4 +581,23 @@ public class HttpTransport extends UriTransport<HttpTransportRequest, HttpTransp
 
 		this.headersOptions = headersOptions;
 	}
+
+	public boolean isStreamBody() {
+
+		return this.streamBody;
+	}
+
+	/**
+	 * If set, the result of a request is written directly to the response,
+	 * instead of being written to a buffer first so that the content length can be sent.
+	 * Writers that support it (e.g. the default XDI/JSON/QUAD writer) then also write the
+	 * result without building it in memory first.
+	 * If writing fails after the response was started, no error status can be sent anymore.
+	 * Instead, the exception is passed on to the servlet container, which aborts the connection,
+	 * so that the client sees a truncated response rather than a complete one.
+	 */
+	public void setStreamBody(boolean streamBody) {
+
+		this.streamBody = streamBody;
+	}
 }
@@ -1,6 +1,8 @@
 package xdi2.transport.impl.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 import xdi2.transport.TransportResponse;
 import xdi2.transport.impl.uri.UriTransportResponse;
@@ -23,6 +25,22 @@ public abstract class HttpTransportResponse extends UriTransportResponse impleme
 	public abstract void writeBody(String string, boolean close) throws IOException;
 	public abstract void writeBody(byte[] bytes, boolean close) throws IOException;
 
+	/**
+	 * Returns a stream to write the body to. The body is complete when the stream is closed.
+	 * By default, the stream is buffered and written with writeBody(byte[], boolean) when it is closed.
+	 */
+	public OutputStream getBodyOutputStream() throws IOException {
+
+		return new ByteArrayOutputStream() {
+
+			@Override
+			public void close() throws IOException {
+
+				HttpTransportResponse.this.writeBody(this.toByteArray(), true);
+			}
+		};
+	}
+
 	public void setContentType(String contentType) {
 
 		this.setHeader("Content-Type", contentType);
@@ -91,4 +91,10 @@ public class ServletHttpTransportResponse extends HttpTransportResponse implemen
 		if (bytes.length > 0) outputStream.write(bytes);
 		if (close) { outputStream.flush(); outputStream.close(); }
 	}
+
+	@Override
+	public OutputStream getBodyOutputStream() throws IOException {
+
+		return this.getHttpServletResponse().getOutputStream();
+	}
 }
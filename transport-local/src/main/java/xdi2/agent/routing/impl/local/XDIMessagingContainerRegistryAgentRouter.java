@@ -66,9 +66,10 @@ public class XDIMessagingContainerRegistryAgentRouter extends XDIAbstractAgentRo
 			return null;
 		}
 
-		// construct the route
+		// construct the route. the client acquires the messaging container from the registry for every
+		// message envelope, so that it is not evicted while it is in use
 
-		XDILocalClientRoute route = new XDILocalClientRoute(toPeerRootXDIArc, messagingContainer);
+		XDILocalClientRoute route = new XDILocalClientRoute(toPeerRootXDIArc, this.getMessagingContainerRegistry());
 
 		// add interceptors if supported
 
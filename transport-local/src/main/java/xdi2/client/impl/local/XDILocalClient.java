@@ -10,9 +10,11 @@ import xdi2.client.XDIClient;
 import xdi2.client.exceptions.Xdi2ClientException;
 import xdi2.client.impl.XDIAbstractClient;
 import xdi2.core.Graph;
+import xdi2.core.syntax.XDIArc;
 import xdi2.messaging.MessageEnvelope;
 import xdi2.messaging.response.TransportMessagingResponse;
 import xdi2.messaging.container.MessagingContainer;
+import xdi2.messaging.container.exceptions.Xdi2MessagingException;
 import xdi2.messaging.container.impl.graph.GraphMessagingContainer;
 import xdi2.messaging.container.interceptor.Interceptor;
 import xdi2.transport.Transport;
@@ -20,10 +22,15 @@ import xdi2.transport.exceptions.Xdi2TransportException;
 import xdi2.transport.impl.local.LocalTransport;
 import xdi2.transport.impl.local.LocalTransportRequest;
 import xdi2.transport.impl.local.LocalTransportResponse;
+import xdi2.transport.registry.MessagingContainerMount;
+import xdi2.transport.registry.MessagingContainerRegistry;
 
 /**
  * An XDI client that can apply XDI messages locally on messaging containers.
  * 
+ * If a messaging container registry is set, the messaging container of the owner peer root is
+ * acquired from it for every message envelope, so that it is not evicted while it is in use.
+ * 
  * @author markus
  */
 public class XDILocalClient extends XDIAbstractClient<TransportMessagingResponse> implements XDIClient<TransportMessagingResponse> {
@@ -32,6 +39,8 @@ public class XDILocalClient extends XDIAbstractClient<TransportMessagingResponse
 
 	private MessagingContainer messagingContainer;
 	private Graph graph;
+	private MessagingContainerRegistry messagingContainerRegistry;
+	private XDIArc ownerPeerRootXDIArc;
 	private Collection<Interceptor<Transport<?, ?>>> interceptors;
 
 	public XDILocalClient(MessagingContainer messagingContainer, Graph graph) {
@@ -40,6 +49,8 @@ public class XDILocalClient extends XDIAbstractClient<TransportMessagingResponse
 
 		this.messagingContainer = messagingContainer;
 		this.graph = graph;
+		this.messagingContainerRegistry = null;
+		this.ownerPeerRootXDIArc = null;
 		this.interceptors = new ArrayList<Interceptor<Transport<?, ?>>> ();
 	}
 
@@ -108,6 +119,8 @@ public class XDILocalClient extends XDIAbstractClient<TransportMessagingResponse
 	@Override
 	protected TransportMessagingResponse sendInternal(MessageEnvelope messageEnvelope) throws Xdi2ClientException {
 
+		if (this.getMessagingContainerRegistry() != null) return this.sendToMessagingContainerRegistry(messageEnvelope);
+
 		// connect
 
 		MessagingContainer messagingContainer;
@@ -120,6 +133,49 @@ public class XDILocalClient extends XDIAbstractClient<TransportMessagingResponse
 			throw new Xdi2ClientException("Cannot open messaging container: " + ex.getMessage(), ex);
 		}
 
+		// done
+
+		return this.send(messageEnvelope, messagingContainer);
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	private TransportMessagingResponse sendToMessagingContainerRegistry(MessageEnvelope messageEnvelope) throws Xdi2ClientException {
+
+		// acquire the messaging container
+
+		MessagingContainerMount messagingContainerMount;
+
+		try {
+
+			messagingContainerMount = this.getMessagingContainerRegistry().acquire(this.getOwnerPeerRootXDIArc());
+		} catch (Xdi2TransportException ex) {
+
+			throw new Xdi2ClientException("Cannot look up messaging container for " + this.getOwnerPeerRootXDIArc() + ": " + ex.getMessage(), ex);
+		} catch (Xdi2MessagingException ex) {
+
+			throw new Xdi2ClientException("Cannot look up messaging container for " + this.getOwnerPeerRootXDIArc() + ": " + ex.getMessage(), ex);
+		}
+
+		if (messagingContainerMount == null) throw new Xdi2ClientException("No messaging container for " + this.getOwnerPeerRootXDIArc());
+
+		// send, and release the messaging container
+
+		try {
+
+			if (messagingContainerMount.getMessagingContainer() == null) throw new Xdi2ClientException("No messaging container for " + this.getOwnerPeerRootXDIArc());
+
+			return this.send(messageEnvelope, messagingContainerMount.getMessagingContainer());
+		} finally {
+
+			this.getMessagingContainerRegistry().release(messagingContainerMount);
+		}
+	}
+
+	private TransportMessagingResponse send(MessageEnvelope messageEnvelope, MessagingContainer messagingContainer) throws Xdi2ClientException {
+
 		// create the transport
 
 		LocalTransport localTransport = new LocalTransport(messagingContainer);
@@ -175,6 +231,26 @@ public class XDILocalClient extends XDIAbstractClient<TransportMessagingResponse
 		this.graph = graph;
 	}
 
+	public MessagingContainerRegistry getMessagingContainerRegistry() {
+
+		return this.messagingContainerRegistry;
+	}
+
+	public void setMessagingContainerRegistry(MessagingContainerRegistry messagingContainerRegistry) {
+
+		this.messagingContainerRegistry = messagingContainerRegistry;
+	}
+
+	public XDIArc getOwnerPeerRootXDIArc() {
+
+		return this.ownerPeerRootXDIArc;
+	}
+
+	public void setOwnerPeerRootXDIArc(XDIArc ownerPeerRootXDIArc) {
+
+		this.ownerPeerRootXDIArc = ownerPeerRootXDIArc;
+	}
+
 	public Collection<Interceptor<Transport<?, ?>>> getInterceptors() {
 
 		return this.interceptors;
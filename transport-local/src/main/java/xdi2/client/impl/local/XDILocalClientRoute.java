@@ -10,11 +10,13 @@ import xdi2.core.syntax.XDIArc;
 import xdi2.messaging.container.MessagingContainer;
 import xdi2.messaging.container.interceptor.Interceptor;
 import xdi2.transport.Transport;
+import xdi2.transport.registry.MessagingContainerRegistry;
 
 public class XDILocalClientRoute extends XDIAbstractClientRoute<XDILocalClient> implements XDIClientRoute<XDILocalClient> {
 
 	private MessagingContainer messagingContainer;
 	private Graph graph;
+	private MessagingContainerRegistry messagingContainerRegistry;
 	private Collection<Interceptor<Transport<?, ?>>> interceptors;
 
 	public XDILocalClientRoute(XDIArc toPeerRootXDIArc, MessagingContainer messagingContainer, Graph graph) {
@@ -23,9 +25,17 @@ public class XDILocalClientRoute extends XDIAbstractClientRoute<XDILocalClient>
 
 		this.messagingContainer = messagingContainer;
 		this.graph = graph;
+		this.messagingContainerRegistry = null;
 		this.interceptors = new ArrayList<Interceptor<Transport<?, ?>>> ();
 	}
 
+	public XDILocalClientRoute(XDIArc toPeerRootXDIArc, MessagingContainerRegistry messagingContainerRegistry) {
+
+		this(toPeerRootXDIArc, null, null);
+
+		this.messagingContainerRegistry = messagingContainerRegistry;
+	}
+
 	public XDILocalClientRoute(XDIArc toPeerRootXDIArc, MessagingContainer messagingContainer) {
 
 		this(toPeerRootXDIArc, messagingContainer, null);
@@ -58,6 +68,12 @@ public class XDILocalClientRoute extends XDIAbstractClientRoute<XDILocalClient>
 
 		XDILocalClient xdiClient = new XDILocalClient(this.getMessagingContainer(), this.getGraph());
 
+		if (this.getMessagingContainerRegistry() != null) {
+
+			xdiClient.setMessagingContainerRegistry(this.getMessagingContainerRegistry());
+			xdiClient.setOwnerPeerRootXDIArc(this.getToPeerRootXDIArc());
+		}
+
 		// add interceptors if supported
 
 		if (this.getInterceptors() != null) {
@@ -94,6 +110,16 @@ public class XDILocalClientRoute extends XDIAbstractClientRoute<XDILocalClient>
 		this.graph = graph;
 	}
 
+	public MessagingContainerRegistry getMessagingContainerRegistry() {
+
+		return this.messagingContainerRegistry;
+	}
+
+	public void setMessagingContainerRegistry(MessagingContainerRegistry messagingContainerRegistry) {
+
+		this.messagingContainerRegistry = messagingContainerRegistry;
+	}
+
 	public Collection<Interceptor<Transport<?, ?>>> getInterceptors() {
 
 		return this.interceptors;
@@ -1,23 +1,99 @@
 package xdi2.transport.registry.impl.uri;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import xdi2.messaging.container.MessagingContainer;
+import xdi2.messaging.container.factory.impl.uri.UriMessagingContainerFactory;
 import xdi2.transport.registry.MessagingContainerMount;
 
 public class UriMessagingContainerMount implements MessagingContainerMount {
 
 	private String messagingContainerPath;
 	private MessagingContainer messagingContainer;
+	private UriMessagingContainerFactory messagingContainerFactory;
+	private volatile long lastAccessTime;
+	private AtomicInteger references;
+	private volatile boolean unmounted;
 
-	public UriMessagingContainerMount(String messagingContainerPath, MessagingContainer messagingContainer) {
+	public UriMessagingContainerMount(String messagingContainerPath, MessagingContainer messagingContainer, UriMessagingContainerFactory messagingContainerFactory) {
 
 		this.messagingContainerPath = messagingContainerPath;
 		this.messagingContainer = messagingContainer;
+		this.messagingContainerFactory = messagingContainerFactory;
+		this.lastAccessTime = System.currentTimeMillis();
+		this.references = new AtomicInteger();
+		this.unmounted = false;
+	}
+
+	public UriMessagingContainerMount(String messagingContainerPath, MessagingContainer messagingContainer) {
+
+		this(messagingContainerPath, messagingContainer, null);
 	}
 
 	public UriMessagingContainerMount() {
 
+		this.references = new AtomicInteger();
+		this.unmounted = false;
+	}
+
+	/*
+	 * References
+	 */
+
+	/**
+	 * Marks the messaging container as in use.
+	 * @return False, if it has been evicted or unmounted and must not be used.
+	 */
+	boolean acquire() {
+
+		if (this.unmounted) return false;
+
+		while (true) {
+
+			int references = this.references.get();
+			if (references < 0) return false;
+
+			if (this.references.compareAndSet(references, references + 1)) return true;
+		}
+	}
+
+	/**
+	 * Marks the messaging container as no longer in use by one user.
+	 * @return True, if it has been unmounted in the meantime, and this was the last user, so it must be shut down now.
+	 */
+	boolean release() {
+
+		return this.references.decrementAndGet() == 0 && this.unmounted && this.references.compareAndSet(0, -1);
+	}
+
+	/**
+	 * Marks the messaging container as unmounted, so that it cannot be acquired anymore.
+	 * @return True, if it is not in use, so it must be shut down now. Otherwise the last user shuts it down.
+	 */
+	boolean unmount() {
+
+		this.unmounted = true;
+
+		return this.references.compareAndSet(0, -1);
+	}
+
+	/**
+	 * Marks the messaging container as evicted, if it is not in use.
+	 * @return True, if it has been evicted, so it must be shut down now.
+	 */
+	boolean evict() {
+
+		if (! this.references.compareAndSet(0, -1)) return false;
+
+		this.unmounted = true;
+
+		return true;
 	}
 
+	/*
+	 * Getters and setters
+	 */
+
 	public String getMessagingContainerPath() {
 
 		return this.messagingContainerPath;
@@ -39,6 +115,30 @@ public class UriMessagingContainerMount implements MessagingContainerMount {
 		this.messagingContainer = messagingContainer;
 	}
 
+	/**
+	 * Returns the messaging container factory that mounted the messaging container,
+	 * or null if it was mounted directly.
+	 */
+	public UriMessagingContainerFactory getMessagingContainerFactory() {
+
+		return this.messagingContainerFactory;
+	}
+
+	public void setMessagingContainerFactory(UriMessagingContainerFactory messagingContainerFactory) {
+
+		this.messagingContainerFactory = messagingContainerFactory;
+	}
+
+	public long getLastAccessTime() {
+
+		return this.lastAccessTime;
+	}
+
+	public void setLastAccessTime(long lastAccessTime) {
+
+		this.lastAccessTime = lastAccessTime;
+	}
+
 	@Override
 	public String toString() {
 
@@ -1,11 +1,19 @@
 package xdi2.transport.registry.impl.uri;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +22,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 
 import xdi2.core.syntax.XDIArc;
+import xdi2.core.util.BoundedCache;
 import xdi2.messaging.container.MessagingContainer;
 import xdi2.messaging.container.exceptions.Xdi2MessagingException;
 import xdi2.messaging.container.factory.impl.uri.UriMessagingContainerFactory;
@@ -25,6 +34,24 @@ import xdi2.transport.registry.impl.AbstractMessagingContainerRegistry;
 /**
  * Registry to mount and unmount messaging containers.
  * 
+ * Mounts are kept in sorted concurrent maps, so that looking up the messaging container for a
+ * request path is a lock-free longest-prefix search. Mounting and unmounting are synchronized.
+ * Messaging container factories update mounted messaging containers while holding a lock for the
+ * path of the messaging container, so that concurrent requests to the same path do not update or
+ * unmount it twice, and requests to other paths are not blocked.
+ * 
+ * Messaging containers that were mounted by a messaging container factory can be evicted again,
+ * either when more than a maximum number of them are mounted (least recently used first), or when
+ * they have not been used for some time. Evicting a messaging container shuts it down, which closes
+ * its graph. This is done after the registry is unlocked again, and a messaging container factory
+ * only mounts a messaging container at the same path again after that. Messaging containers that
+ * were mounted directly are never evicted.
+ * 
+ * A messaging container obtained with acquire() is in use until it is passed to release(). Messaging
+ * containers that are in use are never evicted, so the maximum number of mounted messaging containers
+ * can be exceeded while they are in use. Unmounting a messaging container that is in use shuts it down
+ * when it is released.
+ * 
  * @author markus
  */
 public class UriMessagingContainerRegistry extends AbstractMessagingContainerRegistry implements MessagingContainerRegistry, ApplicationContextAware {
@@ -33,24 +60,55 @@ public class UriMessagingContainerRegistry extends AbstractMessagingContainerReg
 
 	public static final boolean DEFAULT_CHECKDISABLED = true;
 	public static final boolean DEFAULT_CHECKEXPIRED = true;
+	public static final int DEFAULT_MAXFACTORYMOUNTS = 0;
+	public static final long DEFAULT_IDLETIME = 0;
+	public static final long DEFAULT_EVICTIONINTERVAL = 60000;
+	public static final int DEFAULT_EVICTEDPATHSCACHESIZE = 10000;
 
-	private Map<String, UriMessagingContainerMount> messagingContainerMounts;
-	private Map<String, UriMessagingContainerFactoryMount> messagingContainerFactoryMounts;
+	private static final int MOUNT_LOCKS = 64;
+
+	private ConcurrentNavigableMap<String, UriMessagingContainerMount> messagingContainerMounts;
+	private ConcurrentNavigableMap<String, UriMessagingContainerFactoryMount> messagingContainerFactoryMounts;
 
 	private ApplicationContext applicationContext;
 
 	private boolean checkDisabled;
 	private boolean checkExpired;
+	private int maxFactoryMounts;
+	private long idleTime;
+	private long evictionInterval;
+
+	private UriMessagingContainerFactory mountingMessagingContainerFactory;
+	private LinkedHashMap<String, UriMessagingContainerMount> factoryMessagingContainerMounts;
+	private BoundedCache<String, Boolean> evictedPaths;
+	private ConcurrentNavigableMap<String, CountDownLatch> closingPaths;
+	private AtomicLong evictionCount;
+	private AtomicLong remountCount;
+	private ScheduledExecutorService evictionExecutorService;
+	private Object[] mountLocks;
 
 	public UriMessagingContainerRegistry() {
 
-		this.messagingContainerMounts = new HashMap<String, UriMessagingContainerMount> ();
-		this.messagingContainerFactoryMounts = new HashMap<String, UriMessagingContainerFactoryMount> ();
+		this.messagingContainerMounts = new ConcurrentSkipListMap<String, UriMessagingContainerMount> ();
+		this.messagingContainerFactoryMounts = new ConcurrentSkipListMap<String, UriMessagingContainerFactoryMount> ();
 
 		this.applicationContext = null;
 
 		this.checkDisabled = DEFAULT_CHECKDISABLED;
 		this.checkExpired = DEFAULT_CHECKEXPIRED;
+		this.maxFactoryMounts = DEFAULT_MAXFACTORYMOUNTS;
+		this.idleTime = DEFAULT_IDLETIME;
+		this.evictionInterval = DEFAULT_EVICTIONINTERVAL;
+
+		this.mountingMessagingContainerFactory = null;
+		this.factoryMessagingContainerMounts = new LinkedHashMap<String, UriMessagingContainerMount> (16, 0.75f, true);
+		this.evictedPaths = new BoundedCache<String, Boolean> (DEFAULT_EVICTEDPATHSCACHESIZE);
+		this.closingPaths = new ConcurrentSkipListMap<String, CountDownLatch> ();
+		this.evictionCount = new AtomicLong();
+		this.remountCount = new AtomicLong();
+		this.evictionExecutorService = null;
+		this.mountLocks = new Object[MOUNT_LOCKS];
+		for (int i=0; i<this.mountLocks.length; i++) this.mountLocks[i] = new Object();
 	}
 
 	@Override
@@ -63,6 +121,14 @@ public class UriMessagingContainerRegistry extends AbstractMessagingContainerReg
 
 	public synchronized void init() throws Xdi2TransportException {
 
+		// start evicting idle messaging containers
+
+		if (this.idleTime > 0 && this.evictionInterval > 0 && this.evictionExecutorService == null) {
+
+			this.evictionExecutorService = Executors.newSingleThreadScheduledExecutor(new EvictionThreadFactory());
+			this.evictionExecutorService.scheduleWithFixedDelay(new EvictionRunnable(), this.evictionInterval, this.evictionInterval, TimeUnit.MILLISECONDS);
+		}
+
 		// no application context?
 
 		if (this.applicationContext == null) {
@@ -113,6 +179,14 @@ public class UriMessagingContainerRegistry extends AbstractMessagingContainerReg
 
 		int size = this.messagingContainerMounts.size();
 
+		// stop evicting idle messaging containers
+
+		if (this.evictionExecutorService != null) {
+
+			this.evictionExecutorService.shutdownNow();
+			this.evictionExecutorService = null;
+		}
+
 		// unmount all our messaging containers
 
 		List<UriMessagingContainerMount> tempList = this.getMessagingContainerMounts();
@@ -166,10 +240,22 @@ public class UriMessagingContainerRegistry extends AbstractMessagingContainerReg
 		while (messagingContainerPath.startsWith("/")) messagingContainerPath = messagingContainerPath.substring(1);
 		messagingContainerPath = "/" + messagingContainerPath;
 
-		UriMessagingContainerMount messagingContainerMount = new UriMessagingContainerMount(messagingContainerPath, messagingContainer);
+		UriMessagingContainerMount messagingContainerMount = new UriMessagingContainerMount(messagingContainerPath, messagingContainer, this.mountingMessagingContainerFactory);
 
 		this.messagingContainerMounts.put(messagingContainerPath, messagingContainerMount);
 
+		// mounted by a messaging container factory?
+
+		if (messagingContainerMount.getMessagingContainerFactory() != null) {
+
+			synchronized (this.factoryMessagingContainerMounts) {
+
+				this.factoryMessagingContainerMounts.put(messagingContainerPath, messagingContainerMount);
+			}
+
+			if (this.evictedPaths.remove(messagingContainerPath) != null) this.remountCount.incrementAndGet();
+		}
+
 		// done
 
 		log.info("Messaging target " + messagingContainer.getClass().getCanonicalName() + " mounted at path " + messagingContainerPath + ".");
@@ -230,25 +316,49 @@ public class UriMessagingContainerRegistry extends AbstractMessagingContainerReg
 
 		if (log.isDebugEnabled()) log.debug("Unmounting messaging container " + messagingContainer.getClass().getSimpleName());
 
-		// shutdown messaging container
+		// unmount messaging container
 
-		try {
+		boolean mounted = false;
+		boolean inUse = false;
 
-			messagingContainer.shutdown();
-		} catch (Exception ex) {
+		for (Iterator<Entry<String, UriMessagingContainerMount>> messagingContainerMounts = this.messagingContainerMounts.entrySet().iterator(); messagingContainerMounts.hasNext(); ) {
 
-			log.warn("Exception while shutting down messaging container " + messagingContainer.getClass().getCanonicalName() + ": " + ex.getMessage(), ex);
+			UriMessagingContainerMount messagingContainerMount = messagingContainerMounts.next().getValue();
+
+			if (messagingContainerMount.getMessagingContainer() != messagingContainer) continue;
+
+			messagingContainerMounts.remove();
+			mounted = true;
+
+			if (! messagingContainerMount.unmount()) inUse = true;
+
+			if (messagingContainerMount.getMessagingContainerFactory() != null) {
+
+				synchronized (this.factoryMessagingContainerMounts) {
+
+					this.factoryMessagingContainerMounts.remove(messagingContainerMount.getMessagingContainerPath());
+				}
+			}
 		}
 
-		// unmount messaging container
+		// already unmounted by someone else?
 
-		for (Iterator<Entry<String, UriMessagingContainerMount>> messagingContainerMounts = this.messagingContainerMounts.entrySet().iterator(); messagingContainerMounts.hasNext(); ) {
+		if (! mounted) {
 
-			UriMessagingContainerMount messagingContainerMount = messagingContainerMounts.next().getValue();
+			if (log.isDebugEnabled()) log.debug("Messaging target " + messagingContainer.getClass().getCanonicalName() + " is not mounted.");
+			return;
+		}
 
-			if (messagingContainerMount.getMessagingContainer() == messagingContainer) messagingContainerMounts.remove();
+		// shutdown messaging container, unless it is still in use
+
+		if (inUse) {
+
+			log.info("Messaging target " + messagingContainer.getClass().getCanonicalName() + " unmounted. It will be shut down when it is no longer in use.");
+			return;
 		}
 
+		this.shutdownMessagingContainer(messagingContainer);
+
 		// done
 
 		log.info("Messaging target " + messagingContainer.getClass().getCanonicalName() + " unmounted.");
@@ -290,81 +400,255 @@ public class UriMessagingContainerRegistry extends AbstractMessagingContainerReg
 	 * Lookup
 	 */
 
-	public synchronized UriMessagingContainerMount lookup(String requestPath) throws Xdi2TransportException, Xdi2MessagingException {
+	/**
+	 * Looks up the messaging container for a request path, and marks it as in use, so that it is not
+	 * evicted or shut down until it is passed to release().
+	 * @return The mount of the messaging container. Its messaging container is null, if none was found.
+	 */
+	public UriMessagingContainerMount acquire(String requestPath) throws Xdi2TransportException, Xdi2MessagingException {
 
 		if (log.isDebugEnabled()) log.debug("Looking up messaging container for request path " + requestPath);
 
-		// look at messaging containers
+		while (true) {
 
-		String messagingContainerPath = this.findMessagingContainerPath(requestPath);
-		MessagingContainer messagingContainer = messagingContainerPath == null ? null : this.getMessagingContainer(messagingContainerPath);
+			long evictionCount = this.evictionCount.get();
 
-		if (log.isDebugEnabled()) log.debug("messagingContainerPath=" + messagingContainerPath + ", messagingContainer=" + (messagingContainer == null ? null : messagingContainer.getClass().getSimpleName()));
+			// look at messaging containers
 
-		// look at messaging container factorys
+			String messagingContainerPath = this.findMessagingContainerPath(requestPath);
+			UriMessagingContainerMount messagingContainerMount = messagingContainerPath == null ? null : this.messagingContainerMounts.get(messagingContainerPath);
+
+			if (log.isDebugEnabled()) log.debug("messagingContainerPath=" + messagingContainerPath + ", messagingContainerMount=" + messagingContainerMount);
+
+			// look at messaging container factorys
+
+			String messagingContainerFactoryPath = this.findMessagingContainerFactoryPath(requestPath);
+			UriMessagingContainerFactory messagingContainerFactory = messagingContainerFactoryPath == null ? null : this.getMessagingContainerFactory(messagingContainerFactoryPath);
+
+			if (log.isDebugEnabled()) log.debug("messagingContainerFactoryPath=" + messagingContainerFactoryPath + ", messagingContainerFactory=" + (messagingContainerFactory == null ? null : messagingContainerFactory.getClass().getSimpleName()));
+
+			// what did we find?
+
+			if (messagingContainerFactory != null) {
+
+				if (messagingContainerMount == null) {
+
+					UriMessagingContainerMount mountedMessagingContainerMount = null;
+					List<UriMessagingContainerMount> evictedMessagingContainerMounts = null;
+					CountDownLatch closingLatch = null;
+
+					// if we don't have a messaging container, see if the messaging container factory can create one.
+					// this is synchronized, and we look again, since another request may just have mounted it
+
+					synchronized (this) {
+
+						messagingContainerPath = this.findMessagingContainerPath(requestPath);
+						messagingContainerMount = messagingContainerPath == null ? null : this.messagingContainerMounts.get(messagingContainerPath);
+
+						// an evicted messaging container may still be shutting down, then we wait for it before mounting it again
+
+						String closingPath = findLongestPrefix(this.closingPaths, requestPath);
+						if (messagingContainerMount == null && closingPath != null) closingLatch = this.closingPaths.get(closingPath);
+
+						if (messagingContainerMount == null && closingLatch == null) {
+
+							this.mountingMessagingContainerFactory = messagingContainerFactory;
+
+							try {
+
+								messagingContainerFactory.mountMessagingContainer(this, messagingContainerFactoryPath, requestPath, this.isCheckDisabled(), this.isCheckExpired());
+							} finally {
+
+								this.mountingMessagingContainerFactory = null;
+							}
+
+							// use the new messaging container right away, so that it is not evicted below
+
+							messagingContainerPath = this.findMessagingContainerPath(requestPath);
+							mountedMessagingContainerMount = messagingContainerPath == null ? null : this.messagingContainerMounts.get(messagingContainerPath);
+
+							if (mountedMessagingContainerMount != null && ! mountedMessagingContainerMount.acquire()) mountedMessagingContainerMount = null;
+							if (mountedMessagingContainerMount != null) this.touch(mountedMessagingContainerMount);
+
+							// too many messaging containers mounted by factories?
+
+							if (this.maxFactoryMounts > 0 && this.getNumFactoryMounts() > this.maxFactoryMounts) {
+
+								evictedMessagingContainerMounts = this.removeLeastRecentlyUsedMessagingContainers(this.maxFactoryMounts);
+							}
+						}
+					}
+
+					// shut down the evicted messaging containers without holding the lock
+
+					if (evictedMessagingContainerMounts != null) this.shutdownEvictedMessagingContainers(evictedMessagingContainerMounts);
+
+					if (mountedMessagingContainerMount != null) return mountedMessagingContainerMount;
+
+					if (closingLatch != null) {
+
+						try {
+
+							closingLatch.await();
+						} catch (InterruptedException ex) {
 
-		String messagingContainerFactoryPath = this.findMessagingContainerFactoryPath(requestPath);
-		UriMessagingContainerFactory messagingContainerFactory = messagingContainerFactoryPath == null ? null : this.getMessagingContainerFactory(messagingContainerFactoryPath);
+							Thread.currentThread().interrupt();
+							throw new Xdi2TransportException("Interrupted while waiting for an evicted messaging container to shut down.", ex);
+						}
 
-		if (log.isDebugEnabled()) log.debug("messagingContainerFactoryPath=" + messagingContainerFactoryPath + ", messagingContainerFactory=" + (messagingContainerFactory == null ? null : messagingContainerFactory.getClass().getSimpleName()));
+						continue;
+					}
+				} else {
 
-		// what did we find?
+					// if we do have a messaging container, see if the messaging container factory wants to modify or remove it.
+					// this is synchronized on the path, and we look again, since another request may just have unmounted it
 
-		if (messagingContainerFactory != null) {
+					synchronized (this.getMountLock(messagingContainerPath)) {
 
-			if (messagingContainer == null) {
+						if (this.messagingContainerMounts.get(messagingContainerPath) == messagingContainerMount) {
 
-				// if we don't have a messaging container, see if the messaging container factory can create one
+							messagingContainerFactory.updateMessagingContainer(this, messagingContainerFactoryPath, requestPath, this.isCheckDisabled(), this.isCheckExpired(), messagingContainerMount.getMessagingContainer());
+						}
+					}
+				}
 
-				messagingContainerFactory.mountMessagingContainer(this, messagingContainerFactoryPath, requestPath, this.isCheckDisabled(), this.isCheckExpired());
-			} else {
+				// after the messaging container factory did its work, look for the messaging container again
 
-				// if we do have a messaging container, see if the messaging container factory wants to modify or remove it
+				messagingContainerPath = this.findMessagingContainerPath(requestPath);
+				messagingContainerMount = messagingContainerPath == null ? null : this.messagingContainerMounts.get(messagingContainerPath);
 
-				messagingContainerFactory.updateMessagingContainer(this, messagingContainerFactoryPath, requestPath, this.isCheckDisabled(), this.isCheckExpired(), messagingContainer);
+				if (log.isDebugEnabled()) log.debug("messagingContainerPath=" + messagingContainerPath + ", messagingContainerMount=" + messagingContainerMount);
 			}
 
-			// after the messaging container factory did its work, look for the messaging container again
+			// no messaging container? look again if it was just evicted, otherwise there is none
 
-			messagingContainerPath = this.findMessagingContainerPath(requestPath);
-			messagingContainer = messagingContainerPath == null ? null : this.getMessagingContainer(messagingContainerPath);
+			if (messagingContainerMount == null) {
 
-			if (log.isDebugEnabled()) log.debug("messagingContainerPath=" + messagingContainerPath + ", messagingContainer=" + (messagingContainer == null ? null : messagingContainer.getClass().getSimpleName()));
+				if (this.evictionCount.get() != evictionCount) continue;
+
+				return new UriMessagingContainerMount(null, null);
+			}
+
+			// use the messaging container. look again if it was just evicted or unmounted
+
+			if (! messagingContainerMount.acquire()) continue;
+
+			this.touch(messagingContainerMount);
+
+			return messagingContainerMount;
 		}
+	}
 
-		// done
+	/**
+	 * Marks a messaging container obtained with acquire() as no longer in use.
+	 */
+	public void release(UriMessagingContainerMount messagingContainerMount) {
+
+		if (messagingContainerMount == null || messagingContainerMount.getMessagingContainer() == null) return;
+
+		this.touch(messagingContainerMount);
+
+		// unmounted while we were using it?
+
+		if (messagingContainerMount.release()) {
+
+			this.shutdownMessagingContainer(messagingContainerMount.getMessagingContainer());
+
+			log.info("Messaging target " + messagingContainerMount.getMessagingContainer().getClass().getCanonicalName() + " shut down after it was unmounted.");
+		}
+	}
+
+	/**
+	 * Looks up the messaging container for a request path.
+	 * The messaging container is not marked as in use, so it may be evicted or shut down while it is used.
+	 * Use acquire() and release() to prevent that.
+	 */
+	public UriMessagingContainerMount lookup(String requestPath) throws Xdi2TransportException, Xdi2MessagingException {
+
+		UriMessagingContainerMount messagingContainerMount = this.acquire(requestPath);
+		this.release(messagingContainerMount);
 
-		return new UriMessagingContainerMount(messagingContainerPath, messagingContainer);
+		return messagingContainerMount;
 	}
 
 	@Override
-	public synchronized UriMessagingContainerMount lookup(XDIArc ownerPeerRootXDIArc) throws Xdi2TransportException, Xdi2MessagingException {
+	public UriMessagingContainerMount lookup(XDIArc ownerPeerRootXDIArc) throws Xdi2TransportException, Xdi2MessagingException {
 
-		if (log.isDebugEnabled()) log.debug("Looking up messaging container for owner peer root " + ownerPeerRootXDIArc);
+		String requestPath = this.findRequestPath(ownerPeerRootXDIArc);
+		if (requestPath == null) return null;
 
-		// look at messaging containers
+		return this.lookup(requestPath);
+	}
 
-		for (UriMessagingContainerMount messagingContainerMount : this.getMessagingContainerMounts()) {
+	@Override
+	public UriMessagingContainerMount acquire(XDIArc ownerPeerRootXDIArc) throws Xdi2TransportException, Xdi2MessagingException {
 
-			String requestPath = messagingContainerMount.getMessagingContainerPath();
-			if (! ownerPeerRootXDIArc.equals(messagingContainerMount.getMessagingContainer().getOwnerPeerRootXDIArc())) continue;
+		String requestPath = this.findRequestPath(ownerPeerRootXDIArc);
+		if (requestPath == null) return null;
 
-			return this.lookup(requestPath);
-		}
+		return this.acquire(requestPath);
+	}
 
-		// look at messaging container factorys
+	@Override
+	public void release(MessagingContainerMount messagingContainerMount) {
 
-		for (UriMessagingContainerFactoryMount messagingContainerFactoryMount : this.getMessagingContainerFactoryMounts()) {
+		this.release((UriMessagingContainerMount) messagingContainerMount);
+	}
 
-			String requestPath = messagingContainerFactoryMount.getMessagingContainerFactory().getRequestPath(messagingContainerFactoryMount.getMessagingContainerFactoryPath(), ownerPeerRootXDIArc);
-			if (requestPath == null) continue;
+	/*
+	 * Eviction
+	 */
+
+	/**
+	 * Evicts all messaging containers mounted by messaging container factories
+	 * that have not been used for longer than the idle time, and are not in use.
+	 * @return The number of evicted messaging containers.
+	 */
+	public int evictIdleMessagingContainers() {
+
+		List<UriMessagingContainerMount> evictedMessagingContainerMounts = this.removeIdleMessagingContainers();
 
-			return this.lookup(requestPath);
+		this.shutdownEvictedMessagingContainers(evictedMessagingContainerMounts);
+
+		return evictedMessagingContainerMounts.size();
+	}
+
+	/**
+	 * Evicts the least recently used messaging containers mounted by messaging container factories
+	 * that are not in use, until no more than the given number of them is left.
+	 * @return The number of evicted messaging containers.
+	 */
+	public int evictLeastRecentlyUsedMessagingContainers(int maxFactoryMounts) {
+
+		List<UriMessagingContainerMount> evictedMessagingContainerMounts = this.removeLeastRecentlyUsedMessagingContainers(maxFactoryMounts);
+
+		this.shutdownEvictedMessagingContainers(evictedMessagingContainerMounts);
+
+		return evictedMessagingContainerMounts.size();
+	}
+
+	public int getNumFactoryMounts() {
+
+		synchronized (this.factoryMessagingContainerMounts) {
+
+			return this.factoryMessagingContainerMounts.size();
 		}
+	}
 
-		// done
+	/**
+	 * Returns how many messaging containers have been evicted.
+	 */
+	public long getEvictionCount() {
 
-		return null;
+		return this.evictionCount.get();
+	}
+
+	/**
+	 * Returns how many messaging containers have been mounted again after having been evicted.
+	 */
+	public long getRemountCount() {
+
+		return this.remountCount.get();
 	}
 
 	/*
@@ -372,39 +656,31 @@ public class UriMessagingContainerRegistry extends AbstractMessagingContainerReg
 	 */
 
 	@Override
-	public synchronized List<UriMessagingContainerMount> getMessagingContainerMounts() {
+	public List<UriMessagingContainerMount> getMessagingContainerMounts() {
 
 		return new ArrayList<UriMessagingContainerMount> (this.messagingContainerMounts.values());
 	}
 
 	@Override
-	public synchronized int getNumMessagingContainers() {
+	public int getNumMessagingContainers() {
 
 		return this.messagingContainerMounts.size();
 	}
 
-	public synchronized String findMessagingContainerPath(String requestPath) {
+	public String findMessagingContainerPath(String requestPath) {
 
 		if (! requestPath.startsWith("/")) requestPath = "/" + requestPath;
 
 		if (log.isDebugEnabled()) log.debug("Finding messaging container for path: " + requestPath);
 
-		String longestMessagingContainerPath = null;
-
-		for (Map.Entry<String, UriMessagingContainerMount> messagingContainerMount : this.messagingContainerMounts.entrySet()) {
-
-			if (requestPath.startsWith(messagingContainerMount.getKey()) && (longestMessagingContainerPath == null || messagingContainerMount.getKey().length() > longestMessagingContainerPath.length())) {
-
-				longestMessagingContainerPath = messagingContainerMount.getKey();
-			}
-		}
+		String longestMessagingContainerPath = findLongestPrefix(this.messagingContainerMounts, requestPath);
 
 		if (log.isDebugEnabled()) log.debug("Longest matching path of messaging container: " + longestMessagingContainerPath);
 
 		return longestMessagingContainerPath;
 	}
 
-	public synchronized MessagingContainer getMessagingContainer(String messagingContainerPath) {
+	public MessagingContainer getMessagingContainer(String messagingContainerPath) {
 
 		if (! messagingContainerPath.startsWith("/")) messagingContainerPath = "/" + messagingContainerPath;
 
@@ -413,9 +689,9 @@ public class UriMessagingContainerRegistry extends AbstractMessagingContainerReg
 		return messagingContainerMount == null ? null : messagingContainerMount.getMessagingContainer();
 	}
 
-	public synchronized String[] getMessagingContainerPaths() {
+	public String[] getMessagingContainerPaths() {
 
-		return this.messagingContainerMounts.keySet().toArray(new String[this.messagingContainerMounts.size()]);
+		return this.messagingContainerMounts.keySet().toArray(new String[0]);
 	}
 
 	/*
@@ -423,39 +699,31 @@ public class UriMessagingContainerRegistry extends AbstractMessagingContainerReg
 	 */
 
 	@Override
-	public synchronized List<UriMessagingContainerFactoryMount> getMessagingContainerFactoryMounts() {
+	public List<UriMessagingContainerFactoryMount> getMessagingContainerFactoryMounts() {
 
 		return new ArrayList<UriMessagingContainerFactoryMount> (this.messagingContainerFactoryMounts.values());
 	}
 
 	@Override
-	public synchronized int getNumMessagingContainerFactorys() {
+	public int getNumMessagingContainerFactorys() {
 
 		return this.messagingContainerFactoryMounts.size();
 	}
 
-	public synchronized String findMessagingContainerFactoryPath(String requestPath) {
+	public String findMessagingContainerFactoryPath(String requestPath) {
 
 		if (! requestPath.startsWith("/")) requestPath = "/" + requestPath;
 
 		if (log.isDebugEnabled()) log.debug("Finding messaging container factory for path: " + requestPath);
 
-		String longestMessagingContainerFactoryPath = null;
-
-		for (Map.Entry<String, UriMessagingContainerFactoryMount> messagingContainerFactoryMount : this.messagingContainerFactoryMounts.entrySet()) {
-
-			if (requestPath.startsWith(messagingContainerFactoryMount.getKey()) && (longestMessagingContainerFactoryPath == null || messagingContainerFactoryMount.getKey().length() > longestMessagingContainerFactoryPath.length())) {
-
-				longestMessagingContainerFactoryPath = messagingContainerFactoryMount.getKey();
-			}
-		}
+		String longestMessagingContainerFactoryPath = findLongestPrefix(this.messagingContainerFactoryMounts, requestPath);
 
 		if (log.isDebugEnabled()) log.debug("Longest matching path of messaging container factory: " + longestMessagingContainerFactoryPath);
 
 		return longestMessagingContainerFactoryPath;
 	}
 
-	public synchronized UriMessagingContainerFactory getMessagingContainerFactory(String messagingContainerFactoryPath) {
+	public UriMessagingContainerFactory getMessagingContainerFactory(String messagingContainerFactoryPath) {
 
 		if (! messagingContainerFactoryPath.startsWith("/")) messagingContainerFactoryPath = "/" + messagingContainerFactoryPath;
 
@@ -464,9 +732,222 @@ public class UriMessagingContainerRegistry extends AbstractMessagingContainerReg
 		return messagingContainerFactoryMount == null ? null : messagingContainerFactoryMount.getMessagingContainerFactory();
 	}
 
-	public synchronized String[] getMessagingContainerFactoryPaths() {
+	public String[] getMessagingContainerFactoryPaths() {
+
+		return this.messagingContainerFactoryMounts.keySet().toArray(new String[0]);
+	}
+
+	/*
+	 * Helper methods
+	 */
+
+	/**
+	 * Finds the request path of the messaging container for an owner peer root, or null.
+	 */
+	private String findRequestPath(XDIArc ownerPeerRootXDIArc) {
+
+		if (log.isDebugEnabled()) log.debug("Looking up messaging container for owner peer root " + ownerPeerRootXDIArc);
+
+		// look at messaging containers
+
+		for (UriMessagingContainerMount messagingContainerMount : this.getMessagingContainerMounts()) {
+
+			if (! ownerPeerRootXDIArc.equals(messagingContainerMount.getMessagingContainer().getOwnerPeerRootXDIArc())) continue;
+
+			return messagingContainerMount.getMessagingContainerPath();
+		}
+
+		// look at messaging container factorys
+
+		for (UriMessagingContainerFactoryMount messagingContainerFactoryMount : this.getMessagingContainerFactoryMounts()) {
+
+			String requestPath = messagingContainerFactoryMount.getMessagingContainerFactory().getRequestPath(messagingContainerFactoryMount.getMessagingContainerFactoryPath(), ownerPeerRootXDIArc);
+			if (requestPath == null) continue;
+
+			return requestPath;
+		}
+
+		// done
+
+		return null;
+	}
+
+	/**
+	 * Removes the idle messaging containers, which then have to be shut down without holding the lock.
+	 */
+	private synchronized List<UriMessagingContainerMount> removeIdleMessagingContainers() {
+
+		List<UriMessagingContainerMount> evictedMessagingContainerMounts = new ArrayList<UriMessagingContainerMount> ();
+
+		if (this.idleTime <= 0) return evictedMessagingContainerMounts;
+
+		long lastAccessTime = System.currentTimeMillis() - this.idleTime;
+
+		synchronized (this.factoryMessagingContainerMounts) {
+
+			// the least recently used messaging containers come first, so we can stop at the first one that is not idle
+
+			for (Iterator<UriMessagingContainerMount> messagingContainerMounts = this.factoryMessagingContainerMounts.values().iterator(); messagingContainerMounts.hasNext(); ) {
+
+				UriMessagingContainerMount messagingContainerMount = messagingContainerMounts.next();
+
+				if (messagingContainerMount.getLastAccessTime() >= lastAccessTime) break;
+				if (! messagingContainerMount.evict()) continue;
+
+				messagingContainerMounts.remove();
+				this.removeEvictedMessagingContainer(messagingContainerMount);
+				evictedMessagingContainerMounts.add(messagingContainerMount);
+			}
+		}
+
+		return evictedMessagingContainerMounts;
+	}
+
+	/**
+	 * Removes the least recently used messaging containers, which then have to be shut down without holding the lock.
+	 */
+	private synchronized List<UriMessagingContainerMount> removeLeastRecentlyUsedMessagingContainers(int maxFactoryMounts) {
+
+		List<UriMessagingContainerMount> evictedMessagingContainerMounts = new ArrayList<UriMessagingContainerMount> ();
+
+		synchronized (this.factoryMessagingContainerMounts) {
+
+			int numFactoryMounts = this.factoryMessagingContainerMounts.size();
+
+			for (Iterator<UriMessagingContainerMount> messagingContainerMounts = this.factoryMessagingContainerMounts.values().iterator(); numFactoryMounts > maxFactoryMounts && messagingContainerMounts.hasNext(); ) {
+
+				UriMessagingContainerMount messagingContainerMount = messagingContainerMounts.next();
+
+				if (! messagingContainerMount.evict()) continue;
+
+				messagingContainerMounts.remove();
+				numFactoryMounts--;
+				this.removeEvictedMessagingContainer(messagingContainerMount);
+				evictedMessagingContainerMounts.add(messagingContainerMount);
+			}
+		}
+
+		return evictedMessagingContainerMounts;
+	}
+
+	private void removeEvictedMessagingContainer(UriMessagingContainerMount messagingContainerMount) {
+
+		// remember that the messaging container is shutting down, so that it is not mounted again before that is done
+
+		this.closingPaths.put(messagingContainerMount.getMessagingContainerPath(), new CountDownLatch(1));
+
+		// count the eviction before removing the mount, so that lookups which miss it will look again
+
+		this.evictedPaths.put(messagingContainerMount.getMessagingContainerPath(), Boolean.TRUE);
+		this.evictionCount.incrementAndGet();
+
+		this.messagingContainerMounts.remove(messagingContainerMount.getMessagingContainerPath(), messagingContainerMount);
+	}
+
+	private void shutdownEvictedMessagingContainers(List<UriMessagingContainerMount> evictedMessagingContainerMounts) {
+
+		for (UriMessagingContainerMount messagingContainerMount : evictedMessagingContainerMounts) {
+
+			log.info("Evicting messaging container at path " + messagingContainerMount.getMessagingContainerPath() + " (last used at " + messagingContainerMount.getLastAccessTime() + ").");
+
+			try {
+
+				this.shutdownMessagingContainer(messagingContainerMount.getMessagingContainer());
+			} finally {
+
+				CountDownLatch closingLatch = this.closingPaths.remove(messagingContainerMount.getMessagingContainerPath());
+				if (closingLatch != null) closingLatch.countDown();
+			}
+		}
+	}
+
+	private void shutdownMessagingContainer(MessagingContainer messagingContainer) {
+
+		try {
+
+			messagingContainer.shutdown();
+		} catch (Exception ex) {
+
+			log.warn("Exception while shutting down messaging container " + messagingContainer.getClass().getCanonicalName() + ": " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Remembers when a messaging container was last used, and moves it to the end of the least recently used order.
+	 */
+	private void touch(UriMessagingContainerMount messagingContainerMount) {
+
+		if (messagingContainerMount.getMessagingContainerFactory() == null) {
+
+			messagingContainerMount.setLastAccessTime(System.currentTimeMillis());
+			return;
+		}
+
+		synchronized (this.factoryMessagingContainerMounts) {
+
+			messagingContainerMount.setLastAccessTime(System.currentTimeMillis());
+			this.factoryMessagingContainerMounts.get(messagingContainerMount.getMessagingContainerPath());
+		}
+	}
+
+	private Object getMountLock(String messagingContainerPath) {
+
+		return this.mountLocks[(messagingContainerPath.hashCode() & Integer.MAX_VALUE) % this.mountLocks.length];
+	}
+
+	/**
+	 * Finds the longest key of a sorted map that is a prefix of a path.
+	 * The greatest key that is not greater than the path is either the longest prefix, or it shares
+	 * a common prefix with the path, which the longest prefix cannot be longer than. So we continue
+	 * the search with that common prefix, which gets shorter each time.
+	 */
+	private static String findLongestPrefix(ConcurrentNavigableMap<String, ?> map, String path) {
+
+		while (true) {
+
+			String key = map.floorKey(path);
+			if (key == null) return null;
+
+			if (path.startsWith(key)) return key;
+
+			int i = 0;
+			while (i < key.length() && i < path.length() && key.charAt(i) == path.charAt(i)) i++;
+
+			path = path.substring(0, i);
+		}
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	private class EvictionRunnable implements Runnable {
+
+		@Override
+		public void run() {
+
+			try {
+
+				int count = UriMessagingContainerRegistry.this.evictIdleMessagingContainers();
+
+				if (log.isDebugEnabled()) log.debug("Evicted " + count + " idle messaging containers.");
+			} catch (Exception ex) {
+
+				log.warn("Exception while evicting idle messaging containers: " + ex.getMessage(), ex);
+			}
+		}
+	}
+
+	private static class EvictionThreadFactory implements ThreadFactory {
 
-		return this.messagingContainerFactoryMounts.keySet().toArray(new String[this.messagingContainerFactoryMounts.size()]);
+		@Override
+		public Thread newThread(Runnable runnable) {
+
+			Thread thread = new Thread(runnable, UriMessagingContainerRegistry.class.getSimpleName() + "-eviction");
+			thread.setDaemon(true);
+
+			return thread;
+		}
 	}
 
 	/*
@@ -492,5 +973,45 @@ public class UriMessagingContainerRegistry extends AbstractMessagingContainerReg
 
 		this.checkExpired = checkExpired;
 	}
-}
 
+	public int getMaxFactoryMounts() {
+
+		return this.maxFactoryMounts;
+	}
+
+	/**
+	 * Sets the maximum number of messaging containers mounted by messaging container factories.
+	 * 0 means no limit.
+	 */
+	public void setMaxFactoryMounts(int maxFactoryMounts) {
+
+		this.maxFactoryMounts = maxFactoryMounts;
+	}
+
+	public long getIdleTime() {
+
+		return this.idleTime;
+	}
+
+	/**
+	 * Sets the time in milliseconds after which unused messaging containers mounted by
+	 * messaging container factories are evicted. 0 means they are never evicted for being idle.
+	 */
+	public void setIdleTime(long idleTime) {
+
+		this.idleTime = idleTime;
+	}
+
+	public long getEvictionInterval() {
+
+		return this.evictionInterval;
+	}
+
+	/**
+	 * Sets the interval in milliseconds in which idle messaging containers are looked for.
+	 */
+	public void setEvictionInterval(long evictionInterval) {
+
+		this.evictionInterval = evictionInterval;
+	}
+}
@@ -0,0 +1,17 @@
+package xdi2.transport.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import xdi2.transport.tests.registry.impl.uri.UriMessagingContainerRegistryTest;
+
+public class AllTests {
+
+	public static Test suite() {
+		TestSuite suite = new TestSuite(AllTests.class.getName());
+		//$JUnit-BEGIN$
+		suite.addTestSuite(UriMessagingContainerRegistryTest.class);
+		//$JUnit-END$
+		return suite;
+	}
+
+}
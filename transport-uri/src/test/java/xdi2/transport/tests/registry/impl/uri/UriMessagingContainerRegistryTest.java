@@ -0,0 +1,416 @@
+package xdi2.transport.tests.registry.impl.uri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import xdi2.core.features.nodetypes.XdiPeerRoot;
+import xdi2.core.impl.memory.MemoryGraphFactory;
+import xdi2.core.syntax.XDIArc;
+import xdi2.messaging.container.MessagingContainer;
+import xdi2.messaging.container.exceptions.Xdi2MessagingException;
+import xdi2.messaging.container.factory.impl.uri.UriMessagingContainerFactory;
+import xdi2.messaging.container.impl.graph.GraphMessagingContainer;
+import xdi2.transport.exceptions.Xdi2TransportException;
+import xdi2.transport.registry.impl.uri.UriMessagingContainerMount;
+import xdi2.transport.registry.impl.uri.UriMessagingContainerRegistry;
+
+public class UriMessagingContainerRegistryTest extends TestCase {
+
+	public void testConcurrentUpdateAndUnmount() throws Exception {
+
+		final UriMessagingContainerRegistry uriMessagingContainerRegistry = new UriMessagingContainerRegistry();
+		final TestMessagingContainerFactory messagingContainerFactory = new TestMessagingContainerFactory();
+
+		uriMessagingContainerRegistry.mountMessagingContainerFactory("/users/*", messagingContainerFactory);
+
+		// every request either mounts a messaging container, or unmounts the one mounted by an earlier request
+
+		messagingContainerFactory.setUnmount(true);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+		try {
+
+			List<Future<Object>> futures = new ArrayList<Future<Object>> ();
+
+			for (int i = 0; i < 8; i++) {
+
+				futures.add(executorService.submit(new Callable<Object> () {
+
+					@Override
+					public Object call() throws Exception {
+
+						for (int i = 0; i < 200; i++) uriMessagingContainerRegistry.lookup("/users/=alice");
+
+						return null;
+					}
+				}));
+			}
+
+			for (Future<Object> future : futures) future.get();
+		} finally {
+
+			executorService.shutdown();
+		}
+
+		// every messaging container was shut down once, unless it is still mounted
+
+		assertTrue(messagingContainerFactory.getMessagingContainers().size() > 1);
+
+		for (CountingMessagingContainer messagingContainer : messagingContainerFactory.getMessagingContainers()) {
+
+			boolean mounted = uriMessagingContainerRegistry.getMessagingContainer("/users/=alice") == messagingContainer;
+
+			assertEquals(mounted ? 0 : 1, messagingContainer.getShutdownCount());
+		}
+
+		uriMessagingContainerRegistry.shutdown();
+	}
+
+	public void testIdleEviction() throws Exception {
+
+		UriMessagingContainerRegistry uriMessagingContainerRegistry = new UriMessagingContainerRegistry();
+		TestMessagingContainerFactory messagingContainerFactory = new TestMessagingContainerFactory();
+
+		uriMessagingContainerRegistry.setIdleTime(200);
+		uriMessagingContainerRegistry.mountMessagingContainerFactory("/users/*", messagingContainerFactory);
+
+		uriMessagingContainerRegistry.lookup("/users/=alice");
+		UriMessagingContainerMount messagingContainerMount = uriMessagingContainerRegistry.acquire("/users/=bob");
+
+		assertEquals(2, uriMessagingContainerRegistry.getNumFactoryMounts());
+		assertEquals(0, uriMessagingContainerRegistry.evictIdleMessagingContainers());
+
+		Thread.sleep(300);
+
+		// only the messaging container that is not in use is evicted
+
+		assertEquals(1, uriMessagingContainerRegistry.evictIdleMessagingContainers());
+		assertEquals(1, messagingContainerFactory.getMessagingContainer("/users/=alice").getShutdownCount());
+		assertEquals(0, messagingContainerFactory.getMessagingContainer("/users/=bob").getShutdownCount());
+		assertNull(uriMessagingContainerRegistry.getMessagingContainer("/users/=alice"));
+		assertSame(messagingContainerMount.getMessagingContainer(), uriMessagingContainerRegistry.getMessagingContainer("/users/=bob"));
+
+		// once it is no longer in use, it can be evicted too
+
+		uriMessagingContainerRegistry.release(messagingContainerMount);
+
+		assertEquals(0, uriMessagingContainerRegistry.evictIdleMessagingContainers());
+
+		Thread.sleep(300);
+
+		assertEquals(1, uriMessagingContainerRegistry.evictIdleMessagingContainers());
+		assertEquals(1, messagingContainerFactory.getMessagingContainer("/users/=bob").getShutdownCount());
+		assertEquals(0, uriMessagingContainerRegistry.getNumFactoryMounts());
+		assertEquals(2, uriMessagingContainerRegistry.getEvictionCount());
+
+		// an evicted messaging container is mounted again
+
+		assertNotNull(uriMessagingContainerRegistry.lookup("/users/=alice").getMessagingContainer());
+		assertEquals(1, uriMessagingContainerRegistry.getRemountCount());
+
+		uriMessagingContainerRegistry.shutdown();
+	}
+
+	public void testLeastRecentlyUsedEviction() throws Exception {
+
+		UriMessagingContainerRegistry uriMessagingContainerRegistry = new UriMessagingContainerRegistry();
+		TestMessagingContainerFactory messagingContainerFactory = new TestMessagingContainerFactory();
+
+		uriMessagingContainerRegistry.setMaxFactoryMounts(2);
+		uriMessagingContainerRegistry.mountMessagingContainerFactory("/users/*", messagingContainerFactory);
+
+		uriMessagingContainerRegistry.lookup("/users/=alice");
+		uriMessagingContainerRegistry.lookup("/users/=bob");
+		uriMessagingContainerRegistry.lookup("/users/=alice");
+		uriMessagingContainerRegistry.lookup("/users/=carol");
+
+		// bob was used less recently than alice
+
+		assertEquals(2, uriMessagingContainerRegistry.getNumFactoryMounts());
+		assertNotNull(uriMessagingContainerRegistry.getMessagingContainer("/users/=alice"));
+		assertNull(uriMessagingContainerRegistry.getMessagingContainer("/users/=bob"));
+		assertNotNull(uriMessagingContainerRegistry.getMessagingContainer("/users/=carol"));
+		assertEquals(1, messagingContainerFactory.getMessagingContainer("/users/=bob").getShutdownCount());
+
+		uriMessagingContainerRegistry.lookup("/users/=dave");
+
+		assertNull(uriMessagingContainerRegistry.getMessagingContainer("/users/=alice"));
+		assertNotNull(uriMessagingContainerRegistry.getMessagingContainer("/users/=carol"));
+		assertNotNull(uriMessagingContainerRegistry.getMessagingContainer("/users/=dave"));
+		assertEquals(2, uriMessagingContainerRegistry.getEvictionCount());
+
+		uriMessagingContainerRegistry.shutdown();
+	}
+
+	public void testInFlightMessagingContainers() throws Exception {
+
+		UriMessagingContainerRegistry uriMessagingContainerRegistry = new UriMessagingContainerRegistry();
+		TestMessagingContainerFactory messagingContainerFactory = new TestMessagingContainerFactory();
+
+		uriMessagingContainerRegistry.setMaxFactoryMounts(1);
+		uriMessagingContainerRegistry.mountMessagingContainerFactory("/users/*", messagingContainerFactory);
+
+		// messaging containers in use are not evicted, even if there are too many
+
+		UriMessagingContainerMount aliceMessagingContainerMount = uriMessagingContainerRegistry.acquire("/users/=alice");
+		UriMessagingContainerMount bobMessagingContainerMount = uriMessagingContainerRegistry.acquire("/users/=bob");
+
+		assertEquals(2, uriMessagingContainerRegistry.getNumFactoryMounts());
+		assertEquals(0, uriMessagingContainerRegistry.evictLeastRecentlyUsedMessagingContainers(0));
+
+		uriMessagingContainerRegistry.release(aliceMessagingContainerMount);
+
+		assertEquals(1, uriMessagingContainerRegistry.evictLeastRecentlyUsedMessagingContainers(1));
+		assertEquals(1, messagingContainerFactory.getMessagingContainer("/users/=alice").getShutdownCount());
+
+		// messaging containers unmounted while in use are shut down when they are released
+
+		uriMessagingContainerRegistry.unmountMessagingContainer(bobMessagingContainerMount.getMessagingContainer());
+
+		assertEquals(0, uriMessagingContainerRegistry.getNumFactoryMounts());
+		assertEquals(0, messagingContainerFactory.getMessagingContainer("/users/=bob").getShutdownCount());
+
+		uriMessagingContainerRegistry.release(bobMessagingContainerMount);
+
+		assertEquals(1, messagingContainerFactory.getMessagingContainer("/users/=bob").getShutdownCount());
+
+		// an evicted messaging container is never handed out
+
+		final UriMessagingContainerRegistry finalUriMessagingContainerRegistry = uriMessagingContainerRegistry;
+		ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+		try {
+
+			List<Future<Object>> futures = new ArrayList<Future<Object>> ();
+
+			for (int i = 0; i < 8; i++) {
+
+				final String requestPath = "/users/=user" + (i % 4);
+
+				futures.add(executorService.submit(new Callable<Object> () {
+
+					@Override
+					public Object call() throws Exception {
+
+						for (int i = 0; i < 200; i++) {
+
+							UriMessagingContainerMount messagingContainerMount = finalUriMessagingContainerRegistry.acquire(requestPath);
+
+							try {
+
+								assertEquals(0, ((CountingMessagingContainer) messagingContainerMount.getMessagingContainer()).getShutdownCount());
+							} finally {
+
+								finalUriMessagingContainerRegistry.release(messagingContainerMount);
+							}
+						}
+
+						return null;
+					}
+				}));
+			}
+
+			for (Future<Object> future : futures) future.get();
+		} finally {
+
+			executorService.shutdown();
+		}
+
+		assertTrue(uriMessagingContainerRegistry.getEvictionCount() > 1);
+
+		for (CountingMessagingContainer messagingContainer : messagingContainerFactory.getMessagingContainers()) {
+
+			assertTrue(messagingContainer.getShutdownCount() <= 1);
+		}
+
+		uriMessagingContainerRegistry.shutdown();
+	}
+
+	public void testEvictionWithoutLock() throws Exception {
+
+		final UriMessagingContainerRegistry uriMessagingContainerRegistry = new UriMessagingContainerRegistry();
+		TestMessagingContainerFactory messagingContainerFactory = new TestMessagingContainerFactory();
+
+		uriMessagingContainerRegistry.setMaxFactoryMounts(1);
+		uriMessagingContainerRegistry.mountMessagingContainerFactory("/users/*", messagingContainerFactory);
+
+		CountDownLatch shutdownLatch = new CountDownLatch(1);
+		messagingContainerFactory.setShutdownLatch(shutdownLatch);
+
+		MessagingContainer aliceMessagingContainer = uriMessagingContainerRegistry.lookup("/users/=alice").getMessagingContainer();
+
+		ExecutorService executorService = Executors.newFixedThreadPool(3);
+
+		try {
+
+			// mounting bob evicts alice, and shutting down alice blocks
+
+			Future<UriMessagingContainerMount> bobFuture = executorService.submit(new AcquireCallable(uriMessagingContainerRegistry, "/users/=bob"));
+
+			while (messagingContainerFactory.getMessagingContainer("/users/=alice").getShutdownCount() == 0) Thread.sleep(1);
+
+			// other messaging containers can be mounted in the meantime
+
+			UriMessagingContainerMount carolMessagingContainerMount = executorService.submit(new AcquireCallable(uriMessagingContainerRegistry, "/users/=carol")).get(10, TimeUnit.SECONDS);
+
+			assertNotNull(carolMessagingContainerMount.getMessagingContainer());
+
+			// alice is not mounted again before it has been shut down
+
+			Future<UriMessagingContainerMount> aliceFuture = executorService.submit(new AcquireCallable(uriMessagingContainerRegistry, "/users/=alice"));
+
+			Thread.sleep(100);
+			assertFalse(aliceFuture.isDone());
+
+			shutdownLatch.countDown();
+
+			UriMessagingContainerMount aliceMessagingContainerMount = aliceFuture.get(10, TimeUnit.SECONDS);
+			UriMessagingContainerMount bobMessagingContainerMount = bobFuture.get(10, TimeUnit.SECONDS);
+
+			assertNotSame(aliceMessagingContainer, aliceMessagingContainerMount.getMessagingContainer());
+			assertEquals(0, ((CountingMessagingContainer) aliceMessagingContainerMount.getMessagingContainer()).getShutdownCount());
+
+			uriMessagingContainerRegistry.release(aliceMessagingContainerMount);
+			uriMessagingContainerRegistry.release(bobMessagingContainerMount);
+			uriMessagingContainerRegistry.release(carolMessagingContainerMount);
+		} finally {
+
+			shutdownLatch.countDown();
+			executorService.shutdown();
+		}
+
+		uriMessagingContainerRegistry.shutdown();
+	}
+
+	/*
+	 * Helper classes
+	 */
+
+	private static class AcquireCallable implements Callable<UriMessagingContainerMount> {
+
+		private UriMessagingContainerRegistry uriMessagingContainerRegistry;
+		private String requestPath;
+
+		private AcquireCallable(UriMessagingContainerRegistry uriMessagingContainerRegistry, String requestPath) {
+
+			this.uriMessagingContainerRegistry = uriMessagingContainerRegistry;
+			this.requestPath = requestPath;
+		}
+
+		@Override
+		public UriMessagingContainerMount call() throws Exception {
+
+			return this.uriMessagingContainerRegistry.acquire(this.requestPath);
+		}
+	}
+
+	private static class CountingMessagingContainer extends GraphMessagingContainer {
+
+		private AtomicInteger shutdownCount;
+		private CountDownLatch shutdownLatch;
+
+		private CountingMessagingContainer(CountDownLatch shutdownLatch) {
+
+			super(MemoryGraphFactory.getInstance().openGraph());
+
+			this.shutdownCount = new AtomicInteger();
+			this.shutdownLatch = shutdownLatch;
+		}
+
+		@Override
+		public void shutdown() throws Exception {
+
+			this.shutdownCount.incrementAndGet();
+
+			if (this.shutdownLatch != null) this.shutdownLatch.await();
+
+			super.shutdown();
+		}
+
+		private int getShutdownCount() {
+
+			return this.shutdownCount.get();
+		}
+	}
+
+	private static class TestMessagingContainerFactory extends UriMessagingContainerFactory {
+
+		private List<CountingMessagingContainer> messagingContainers;
+		private Map<String, CountingMessagingContainer> lastMessagingContainers;
+		private volatile boolean unmount;
+		private volatile CountDownLatch shutdownLatch;
+
+		private TestMessagingContainerFactory() {
+
+			this.messagingContainers = Collections.synchronizedList(new ArrayList<CountingMessagingContainer> ());
+			this.lastMessagingContainers = new ConcurrentHashMap<String, CountingMessagingContainer> ();
+			this.unmount = false;
+			this.shutdownLatch = null;
+		}
+
+		@Override
+		public MessagingContainer mountMessagingContainer(UriMessagingContainerRegistry uriMessagingContainerRegistry, String messagingContainerFactoryPath, String requestPath, boolean checkDisabled, boolean checkExpired) throws Xdi2TransportException, Xdi2MessagingException {
+
+			String ownerString = requestPath.substring(messagingContainerFactoryPath.length() + 1);
+			if (ownerString.contains("/")) ownerString = ownerString.substring(0, ownerString.indexOf("/"));
+
+			String messagingContainerPath = messagingContainerFactoryPath + "/" + ownerString;
+
+			CountingMessagingContainer messagingContainer = new CountingMessagingContainer(this.shutdownLatch);
+			this.messagingContainers.add(messagingContainer);
+			this.lastMessagingContainers.put(messagingContainerPath, messagingContainer);
+
+			uriMessagingContainerRegistry.mountMessagingContainer(messagingContainerPath, messagingContainer);
+
+			return messagingContainer;
+		}
+
+		@Override
+		public MessagingContainer updateMessagingContainer(UriMessagingContainerRegistry uriMessagingContainerRegistry, String messagingContainerFactoryPath, String requestPath, boolean checkDisabled, boolean checkExpired, MessagingContainer messagingContainer) throws Xdi2TransportException, Xdi2MessagingException {
+
+			if (! this.unmount) return messagingContainer;
+
+			uriMessagingContainerRegistry.unmountMessagingContainer(messagingContainer);
+
+			return null;
+		}
+
+		@Override
+		public String getRequestPath(String messagingContainerFactoryPath, XDIArc ownerPeerRootXDIArc) {
+
+			return messagingContainerFactoryPath + "/" + XdiPeerRoot.getXDIAddressOfPeerRootXDIArc(ownerPeerRootXDIArc);
+		}
+
+		private List<CountingMessagingContainer> getMessagingContainers() {
+
+			return this.messagingContainers;
+		}
+
+		private CountingMessagingContainer getMessagingContainer(String messagingContainerPath) {
+
+			return this.lastMessagingContainers.get(messagingContainerPath);
+		}
+
+		private void setUnmount(boolean unmount) {
+
+			this.unmount = unmount;
+		}
+
+		private void setShutdownLatch(CountDownLatch shutdownLatch) {
+
+			this.shutdownLatch = shutdownLatch;
+		}
+	}
+}
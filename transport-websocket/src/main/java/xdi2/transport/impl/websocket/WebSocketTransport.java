@@ -104,9 +104,11 @@ public class WebSocketTransport extends UriTransport<WebSocketTransportRequest,
 
 		if (log.isInfoEnabled()) log.info("Incoming message to " + request.getRequestPath() + ". Subprotocol: " + request.getNegotiatedSubprotocol());
 
+		UriMessagingContainerMount uriMessagingContainerMount = null;
+
 		try {
 
-			UriMessagingContainerMount uriMessagingContainerMount = this.getUriMessagingContainerRegistry().lookup(request.getRequestPath());
+			uriMessagingContainerMount = this.getUriMessagingContainerRegistry().acquire(request.getRequestPath());
 
 			this.processMessage(request, response, uriMessagingContainerMount);
 		} catch (IOException ex) {
@@ -116,6 +118,9 @@ public class WebSocketTransport extends UriTransport<WebSocketTransportRequest,
 
 			sendCloseCannotAccept(request, response, ex);
 			return;
+		} finally {
+
+			this.getUriMessagingContainerRegistry().release(uriMessagingContainerMount);
 		}
 
 		if (log.isDebugEnabled()) log.debug("Successfully processed message.");
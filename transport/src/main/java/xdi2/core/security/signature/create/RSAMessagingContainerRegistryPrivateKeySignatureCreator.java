@@ -67,7 +67,7 @@ public class RSAMessagingContainerRegistryPrivateKeySignatureCreator extends RSA
 
 		try {
 
-			messagingContainerMount = this.getMessagingContainerRegistry().lookup(XdiPeerRoot.createPeerRootXDIArc(signerXDIAddress));
+			messagingContainerMount = this.getMessagingContainerRegistry().acquire(XdiPeerRoot.createPeerRootXDIArc(signerXDIAddress));
 		} catch (Exception ex) {
 
 			throw new GeneralSecurityException("Messaging target not found for " + signerXDIAddress + ": " + ex.getMessage(), ex);
@@ -76,24 +76,34 @@ public class RSAMessagingContainerRegistryPrivateKeySignatureCreator extends RSA
 		if (log.isDebugEnabled()) log.debug("Messaging target mount: " + messagingContainerMount);
 		if (messagingContainerMount == null) return null;
 
-		MessagingContainer messagingContainer = messagingContainerMount.getMessagingContainer();
-		Graph graph = ((GraphMessagingContainer) messagingContainer).getGraph();	// TODO: what if this is another messaging container?
+		// the messaging container must not be evicted while we read from its graph
 
-		// signer entity
+		try {
+
+			MessagingContainer messagingContainer = messagingContainerMount.getMessagingContainer();
+			if (messagingContainer == null) return null;
+
+			Graph graph = ((GraphMessagingContainer) messagingContainer).getGraph();	// TODO: what if this is another messaging container?
 
-		XdiEntity signerXdiEntity = XdiCommonRoot.findCommonRoot(graph).getXdiEntity(signerXDIAddress, false);
-		signerXdiEntity = signerXdiEntity == null ? null : signerXdiEntity.dereference();
+			// signer entity
 
-		if (log.isDebugEnabled()) log.debug("Signer entity: " + signerXdiEntity + " in graph " + GraphUtil.getOwnerPeerRootXDIArc(graph));
-		if (signerXdiEntity == null) return null;
+			XdiEntity signerXdiEntity = XdiCommonRoot.findCommonRoot(graph).getXdiEntity(signerXDIAddress, false);
+			signerXdiEntity = signerXdiEntity == null ? null : signerXdiEntity.dereference();
 
-		// find private key
+			if (log.isDebugEnabled()) log.debug("Signer entity: " + signerXdiEntity + " in graph " + GraphUtil.getOwnerPeerRootXDIArc(graph));
+			if (signerXdiEntity == null) return null;
 
-		RSAPrivateKey privateKey = rsaPrivateKeyFromPrivateKeyString(Keys.getSignaturePrivateKey(signerXdiEntity));
+			// find private key
 
-		// done
+			RSAPrivateKey privateKey = rsaPrivateKeyFromPrivateKeyString(Keys.getSignaturePrivateKey(signerXdiEntity));
 
-		return privateKey;
+			// done
+
+			return privateKey;
+		} finally {
+
+			this.getMessagingContainerRegistry().release(messagingContainerMount);
+		}
 	}
 
 	/*
@@ -11,6 +11,18 @@ public interface MessagingContainerRegistry {
 	public List<? extends MessagingContainerMount> getMessagingContainerMounts();
 	public List<? extends MessagingContainerFactoryMount> getMessagingContainerFactoryMounts();
 	public MessagingContainerMount lookup(XDIArc ownerPeerRootXDIArc) throws Xdi2TransportException, Xdi2MessagingException;
+
+	/**
+	 * Looks up the messaging container for an owner peer root, and marks it as in use, so that it is not
+	 * evicted or shut down until it is passed to release(). Use this instead of lookup() if the messaging
+	 * container is used after it has been looked up.
+	 */
+	public MessagingContainerMount acquire(XDIArc ownerPeerRootXDIArc) throws Xdi2TransportException, Xdi2MessagingException;
+
+	/**
+	 * Marks a messaging container obtained with acquire() as no longer in use.
+	 */
+	public void release(MessagingContainerMount messagingContainerMount);
 	public int getNumMessagingContainers();
 	public int getNumMessagingContainerFactorys();
 }
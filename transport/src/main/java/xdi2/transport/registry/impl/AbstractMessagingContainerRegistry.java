@@ -1,7 +1,24 @@
 package xdi2.transport.registry.impl;
 
+import xdi2.core.syntax.XDIArc;
+import xdi2.messaging.container.exceptions.Xdi2MessagingException;
+import xdi2.transport.exceptions.Xdi2TransportException;
+import xdi2.transport.registry.MessagingContainerMount;
 import xdi2.transport.registry.MessagingContainerRegistry;
 
 public abstract class AbstractMessagingContainerRegistry implements MessagingContainerRegistry {
 
+	/**
+	 * By default, messaging containers are never evicted, so this is the same as lookup().
+	 */
+	@Override
+	public MessagingContainerMount acquire(XDIArc ownerPeerRootXDIArc) throws Xdi2TransportException, Xdi2MessagingException {
+
+		return this.lookup(ownerPeerRootXDIArc);
+	}
+
+	@Override
+	public void release(MessagingContainerMount messagingContainerMount) {
+
+	}
 }